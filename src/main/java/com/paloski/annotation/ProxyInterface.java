@@ -10,6 +10,9 @@ import java.lang.annotation.Target;
  * A marker annotation used to denote that an interface is reflectively proxied by a tool such as <a
  * href="http://square.github.io/retrofit/">Retrofit</a> or <a href="https://github.com/OpenFeign/feign">OpenFeign</a>.
  * <p/>
+ * When {@link com.paloski.annotation.processor.ProxyInterfaceProcessor} is on the annotation processor path, a
+ * statically linked implementation that forwards to a delegate, optionally recording per-method statistics, is
+ * generated for each annotated interface.
  *
  * @author Adam
  */
@@ -0,0 +1,30 @@
+package com.paloski.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation used to denote that the outcome and latency of every invocation of a method should
+ * be recorded into the named {@link com.paloski.statistics.RecorderRegistry registered} {@code
+ * StatisticsRecorder}.
+ * <p/>
+ * When {@link com.paloski.statistics.agent.StatisticsAgent} is installed as a Java agent, the
+ * bytecode of annotated methods is rewritten as their classes are loaded to record a timed success
+ * when the method returns and a failure when it throws an exception. Unlike a proxy this works for
+ * concrete classes and private, static and final methods. Abstract and native methods, and methods
+ * of interfaces, are not rewritten.
+ *
+ * @author Adam
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Documented
+public @interface Recorded {
+	/**
+	 * The name of the registered recorder that invocations are recorded into.
+	 */
+	String value();
+}
@@ -0,0 +1,355 @@
+package com.paloski.annotation.processor;
+
+import com.paloski.annotation.ProxyInterface;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An annotation processor that generates a plain Java implementation for every interface annotated
+ * with {@link ProxyInterface}.
+ * <p/>
+ * For an interface {@code Foo} the processor generates {@code FooStaticProxy} in the same package.
+ * The generated class implements {@code Foo} by invoking the same method on a delegate instance of
+ * {@code Foo} (the handler) through a direct, statically linked call, rather than through a {@link
+ * java.lang.reflect.InvocationHandler}. This avoids the boxed argument array and {@link
+ * java.lang.reflect.Method#invoke(Object, Object...)} dispatch of a reflective proxy.
+ * <p/>
+ * Generated classes optionally record the outcome of each method into a {@link
+ * com.paloski.statistics.StatisticsRecorder} dedicated to that method. Recording is enabled by
+ * passing {@code true} to the two argument constructor, and the per-method statistics are obtained
+ * through the generated {@value #SNAPSHOT_METHOD_NAME}() method, which returns a map keyed by the
+ * method signature (e.g. {@code "get(java.lang.String, int)"}).
+ * <p/>
+ * Nested interfaces are supported as long as they are not private; the generated name flattens the
+ * enclosing type names with an underscore, so {@code Outer.Inner} becomes {@code
+ * Outer_InnerStaticProxy}.
+ *
+ * @author Adam
+ */
+@SupportedAnnotationTypes("com.paloski.annotation.ProxyInterface")
+public final class ProxyInterfaceProcessor extends AbstractProcessor {
+
+	/**
+	 * The suffix appended to the (flattened) interface name to form the generated class name.
+	 */
+	public static final String GENERATED_SUFFIX = "StaticProxy";
+
+	/**
+	 * The name of the generated method that returns the per-method statistics of a generated
+	 * class. Interfaces declaring a no-argument method with this name cannot be processed.
+	 */
+	public static final String SNAPSHOT_METHOD_NAME = "takeMethodSnapshots";
+
+	private static final String RECORDER_TYPE = "com.paloski.statistics.StatisticsRecorder";
+	private static final String STATISTICS_TYPE = "com.paloski.statistics.Statistics";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+		for (final Element element : roundEnv.getElementsAnnotatedWith(ProxyInterface.class)) {
+			if (element.getKind() != ElementKind.INTERFACE) {
+				error(element, "@ProxyInterface may only be applied to interfaces");
+			} else if (element.getModifiers().contains(Modifier.PRIVATE)) {
+				error(element, "@ProxyInterface cannot generate a static proxy for a private interface");
+			} else {
+				generate((TypeElement) element);
+			}
+		}
+		return false;
+	}
+
+	private void generate(final TypeElement iface) {
+		final Elements elements = processingEnv.getElementUtils();
+		final Types types = processingEnv.getTypeUtils();
+		final DeclaredType ifaceType = (DeclaredType) iface.asType();
+
+		final List<ProxiedMethod> methods = new ArrayList<>();
+		final Map<String, ProxiedMethod> bySignature = new LinkedHashMap<>();
+		for (final ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(iface))) {
+			if (method.getEnclosingElement().getKind() != ElementKind.INTERFACE
+				|| method.getModifiers().contains(Modifier.STATIC)
+				|| method.getModifiers().contains(Modifier.PRIVATE)) {
+				continue;
+			}
+			final ExecutableType resolved = (ExecutableType) types.asMemberOf(ifaceType, method);
+			final ProxiedMethod proxied = new ProxiedMethod(method, resolved, types, methods.size());
+			if (SNAPSHOT_METHOD_NAME.equals(proxied.mName) && proxied.mParameterTypes.isEmpty()) {
+				error(method, "Interfaces with a static proxy cannot declare " + SNAPSHOT_METHOD_NAME + "()");
+				return;
+			}
+			if (!bySignature.containsKey(proxied.mSignature)) {
+				bySignature.put(proxied.mSignature, proxied);
+				methods.add(proxied);
+			}
+		}
+
+		final PackageElement pkg = elements.getPackageOf(iface);
+		final String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+		final String generatedName = flattenedName(iface) + GENERATED_SUFFIX;
+		final String qualifiedName = packageName.isEmpty() ? generatedName : packageName + "." + generatedName;
+
+		try {
+			final Filer filer = processingEnv.getFiler();
+			final JavaFileObject file = filer.createSourceFile(qualifiedName, iface);
+			try (final Writer writer = file.openWriter()) {
+				write(new PrintWriter(writer), iface, packageName, generatedName, methods);
+			}
+		} catch (final IOException exp) {
+			error(iface, "Unable to write static proxy " + qualifiedName + ": " + exp.getMessage());
+		}
+	}
+
+	private void write(final PrintWriter out,
+					   final TypeElement iface,
+					   final String packageName,
+					   final String generatedName,
+					   final List<ProxiedMethod> methods) {
+		final String typeParameters = renderTypeParameters(iface.getTypeParameters());
+		final String ifaceName = iface.getQualifiedName() + typeArguments(iface.getTypeParameters());
+		final String visibility = iface.getModifiers().contains(Modifier.PUBLIC) ? "public " : "";
+
+		if (!packageName.isEmpty()) {
+			out.println("package " + packageName + ";");
+			out.println();
+		}
+		out.println("/**");
+		out.println(" * A statically linked proxy for {@link " + iface.getQualifiedName() + "}, generated by");
+		out.println(" * {@link " + ProxyInterfaceProcessor.class.getName() + "}.");
+		out.println(" */");
+		out.println(visibility + "final class " + generatedName + typeParameters + " implements " + ifaceName + " {");
+		out.println();
+		out.println("\tprivate final " + ifaceName + " mDelegate;");
+		for (final ProxiedMethod method : methods) {
+			out.println("\tprivate final " + RECORDER_TYPE + " " + method.recorderField() + ";");
+		}
+		out.println();
+		out.println("\t/**");
+		out.println("\t * Creates a new proxy that forwards every call to the given delegate without recording statistics.");
+		out.println("\t */");
+		out.println("\tpublic " + generatedName + "(final " + ifaceName + " delegate) {");
+		out.println("\t\tthis(delegate, false);");
+		out.println("\t}");
+		out.println();
+		out.println("\t/**");
+		out.println("\t * Creates a new proxy that forwards every call to the given delegate, optionally recording the");
+		out.println("\t * outcome of each method into its own recorder.");
+		out.println("\t */");
+		out.println("\tpublic " + generatedName + "(final " + ifaceName + " delegate, final boolean recordStatistics) {");
+		out.println("\t\tif (delegate == null) {");
+		out.println("\t\t\tthrow new IllegalArgumentException(\"Delegate cannot be null\");");
+		out.println("\t\t}");
+		out.println("\t\tmDelegate = delegate;");
+		for (final ProxiedMethod method : methods) {
+			out.println("\t\t" + method.recorderField() + " = recordStatistics ? " + RECORDER_TYPE + ".newRecorder() : null;");
+		}
+		out.println("\t}");
+
+		for (final ProxiedMethod method : methods) {
+			out.println();
+			writeMethod(out, method);
+		}
+
+		out.println();
+		out.println("\t/**");
+		out.println("\t * Takes a snapshot of the statistics of every method, keyed by method signature. The map is empty");
+		out.println("\t * if this proxy was not created to record statistics.");
+		out.println("\t */");
+		out.println("\tpublic java.util.Map<String, " + STATISTICS_TYPE + "> " + SNAPSHOT_METHOD_NAME + "() {");
+		out.println("\t\tfinal java.util.Map<String, " + STATISTICS_TYPE + "> snapshots = new java.util.LinkedHashMap<>();");
+		for (final ProxiedMethod method : methods) {
+			out.println("\t\tif (" + method.recorderField() + " != null) {");
+			out.println("\t\t\tsnapshots.put(\"" + method.mSignature + "\", " + method.recorderField() + ".takeSnapshot());");
+			out.println("\t\t}");
+		}
+		out.println("\t\treturn java.util.Collections.unmodifiableMap(snapshots);");
+		out.println("\t}");
+		out.println("}");
+		out.flush();
+	}
+
+	private static void writeMethod(final PrintWriter out, final ProxiedMethod method) {
+		final StringBuilder params = new StringBuilder();
+		final StringBuilder args = new StringBuilder();
+		for (int index = 0; index < method.mParameterTypes.size(); index++) {
+			if (index != 0) {
+				params.append(", ");
+				args.append(", ");
+			}
+			final String name = method.mParameterNames.get(index);
+			final TypeMirror type = method.mParameterTypes.get(index);
+			if (method.mVarArgs && index == method.mParameterTypes.size() - 1) {
+				params.append("final ").append(((ArrayType) type).getComponentType()).append("... ").append(name);
+			} else {
+				params.append("final ").append(type).append(' ').append(name);
+			}
+			args.append(name);
+		}
+
+		final StringBuilder thrown = new StringBuilder();
+		for (final TypeMirror type : method.mThrownTypes) {
+			thrown.append(thrown.length() == 0 ? " throws " : ", ").append(type);
+		}
+
+		final boolean isVoid = method.mReturnType.getKind() == TypeKind.VOID;
+		final String call = "mDelegate." + method.mName + "(" + args + ")";
+
+		out.println("\t@Override");
+		out.println("\tpublic " + method.mTypeParameters + method.mReturnType + " " + method.mName + "(" + params + ")" + thrown + " {");
+		out.println("\t\tfinal " + RECORDER_TYPE + " $recorder = " + method.recorderField() + ";");
+		out.println("\t\tif ($recorder == null) {");
+		out.println("\t\t\t" + (isVoid ? "" : "return ") + call + ";");
+		if (isVoid) {
+			out.println("\t\t\treturn;");
+		}
+		out.println("\t\t}");
+		out.println("\t\ttry {");
+		if (isVoid) {
+			out.println("\t\t\t" + call + ";");
+			out.println("\t\t\t$recorder.recordSuccess();");
+		} else {
+			out.println("\t\t\tfinal " + method.mReturnType + " $result = " + call + ";");
+			out.println("\t\t\t$recorder.recordSuccess();");
+			out.println("\t\t\treturn $result;");
+		}
+		out.println("\t\t} catch (final Exception $exp) {");
+		out.println("\t\t\t$recorder.recordFailure($exp);");
+		out.println("\t\t\tthrow $exp;");
+		out.println("\t\t}");
+		out.println("\t}");
+	}
+
+	private static String flattenedName(final TypeElement type) {
+		final StringBuilder name = new StringBuilder(type.getSimpleName());
+		Element enclosing = type.getEnclosingElement();
+		while (enclosing instanceof TypeElement) {
+			name.insert(0, ((TypeElement) enclosing).getSimpleName() + "_");
+			enclosing = enclosing.getEnclosingElement();
+		}
+		return name.toString();
+	}
+
+	private static String renderTypeParameters(final List<? extends TypeParameterElement> parameters) {
+		if (parameters.isEmpty()) {
+			return "";
+		}
+		final StringBuilder builder = new StringBuilder("<");
+		for (int index = 0; index < parameters.size(); index++) {
+			final TypeParameterElement parameter = parameters.get(index);
+			if (index != 0) {
+				builder.append(", ");
+			}
+			builder.append(parameter.getSimpleName());
+			final List<? extends TypeMirror> bounds = parameter.getBounds();
+			final boolean onlyObject = bounds.size() == 1 && "java.lang.Object".equals(bounds.get(0).toString());
+			if (!bounds.isEmpty() && !onlyObject) {
+				builder.append(" extends ");
+				for (int boundIndex = 0; boundIndex < bounds.size(); boundIndex++) {
+					if (boundIndex != 0) {
+						builder.append(" & ");
+					}
+					builder.append(bounds.get(boundIndex));
+				}
+			}
+		}
+		return builder.append('>').toString();
+	}
+
+	private static String typeArguments(final List<? extends TypeParameterElement> parameters) {
+		if (parameters.isEmpty()) {
+			return "";
+		}
+		final StringBuilder builder = new StringBuilder("<");
+		for (int index = 0; index < parameters.size(); index++) {
+			if (index != 0) {
+				builder.append(", ");
+			}
+			builder.append(parameters.get(index).getSimpleName());
+		}
+		return builder.append('>').toString();
+	}
+
+	private void error(final Element element, final String message) {
+		final Messager messager = processingEnv.getMessager();
+		messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+	/**
+	 * The information required to generate a single forwarding method, resolved against the
+	 * annotated interface so that inherited generic methods are rendered with the correct types.
+	 */
+	private static final class ProxiedMethod {
+
+		private final String mName;
+		private final String mTypeParameters;
+		private final TypeMirror mReturnType;
+		private final List<? extends TypeMirror> mParameterTypes;
+		private final List<String> mParameterNames;
+		private final List<? extends TypeMirror> mThrownTypes;
+		private final boolean mVarArgs;
+		private final String mSignature;
+		private final int mIndex;
+
+		private ProxiedMethod(final ExecutableElement element,
+							  final ExecutableType resolved,
+							  final Types types,
+							  final int index) {
+			mName = element.getSimpleName().toString();
+			final String typeParameters = renderTypeParameters(element.getTypeParameters());
+			mTypeParameters = typeParameters.isEmpty() ? "" : typeParameters + " ";
+			mReturnType = resolved.getReturnType();
+			mParameterTypes = resolved.getParameterTypes();
+			mThrownTypes = resolved.getThrownTypes();
+			mVarArgs = element.isVarArgs();
+			mIndex = index;
+
+			mParameterNames = new ArrayList<>(element.getParameters().size());
+			final StringBuilder signature = new StringBuilder(mName).append('(');
+			for (int param = 0; param < element.getParameters().size(); param++) {
+				mParameterNames.add(element.getParameters().get(param).getSimpleName().toString());
+				if (param != 0) {
+					signature.append(", ");
+				}
+				signature.append(types.erasure(mParameterTypes.get(param)));
+			}
+			mSignature = signature.append(')').toString();
+		}
+
+		private String recorderField() {
+			return "mRecorder" + mIndex + "_" + mName;
+		}
+	}
+}
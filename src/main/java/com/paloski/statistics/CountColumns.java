@@ -0,0 +1,74 @@
+package com.paloski.statistics;
+
+/**
+ * The counts of Statistics that are kept as columns of longs by {@link StatisticsArchive} and the
+ * history files of {@link StatisticsHistoryWriter}: the successes, errors and {@link
+ * OutcomeCategory outcomes}.
+ *
+ * @author Adam
+ */
+/* package */ final class CountColumns {
+
+	/* package */ static final int SUCCESSES = 0;
+	/* package */ static final int ERRORS = 1;
+	/* package */ static final int TIMED_OUT = 2;
+	/* package */ static final int CANCELLED = 3;
+	/* package */ static final int REJECTED = 4;
+	/* package */ static final int INTERRUPTED = 5;
+	/* package */ static final int COUNT = 6;
+
+	private CountColumns() {
+		throw new AssertionError("No instances");
+	}
+
+	/**
+	 * Obtains the counts of the given statistics.
+	 *
+	 * @param statistics
+	 * 		The non-null statistics.
+	 *
+	 * @return A new array of the count of each column.
+	 */
+	/* package */ static long[] of(final Statistics statistics) {
+		final long[] columns = new long[COUNT];
+		columns[SUCCESSES] = statistics.getSuccessCount();
+		columns[ERRORS] = statistics.getErrorCount();
+		columns[TIMED_OUT] = statistics.getTimedOutCount();
+		columns[CANCELLED] = statistics.getCancelledCount();
+		columns[REJECTED] = statistics.getRejectedCount();
+		columns[INTERRUPTED] = statistics.getInterruptedCount();
+		return columns;
+	}
+
+	/**
+	 * Obtains the time of a capture of the counts taken at the given wall clock time, which holds a
+	 * wall clock that stepped backwards at the time of the previous capture, so that the times of
+	 * captures never decrease.
+	 *
+	 * @param nowMillis
+	 * 		The wall clock time of the capture.
+	 * @param previousMillis
+	 * 		The time of the previous capture.
+	 *
+	 * @return The time of the capture.
+	 */
+	/* package */ static long captureMillis(final long nowMillis, final long previousMillis) {
+		return Math.max(nowMillis, previousMillis);
+	}
+
+	/**
+	 * Creates statistics of the given counts, whose errors are all unattributed.
+	 *
+	 * @param columns
+	 * 		The non-null count of each column.
+	 * @param timeRange
+	 * 		The non-null time the counts were recorded over.
+	 *
+	 * @return A new Statistics of the counts.
+	 */
+	/* package */ static Statistics toStatistics(final long[] columns, final TimeRange timeRange) {
+		return new Statistics(SuccessStatistics.forSuccessCount(columns[SUCCESSES]).withTimeRange(timeRange),
+							  ErrorStatistics.forUncategorizedFailureCount(columns[ERRORS]).withTimeRange(timeRange))
+				.withOutcomeCounts(columns[TIMED_OUT], columns[CANCELLED], columns[REJECTED], columns[INTERRUPTED]);
+	}
+}
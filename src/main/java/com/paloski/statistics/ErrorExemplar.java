@@ -0,0 +1,127 @@
+package com.paloski.statistics;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+
+/**
+ * A single exception that was recorded by a {@link StatisticsRecorder}, kept as an example of what
+ * the errors of its type looked like.
+ * <p/>
+ * The stack trace of the exception is only rendered when it is first requested through {@link
+ * #getStackTrace()}, so keeping exemplars costs nothing beyond holding onto the exception itself.
+ * An exemplar may instead be detached from its exception, as by recorders that hold exception
+ * types weakly, in which case its stack trace is rendered up front and the exception, which
+ * would otherwise keep its class loaded, is only held weakly.
+ * <p/>
+ * This class is thread safe, although the exception it holds may not be.
+ *
+ * @author Adam
+ */
+public final class ErrorExemplar {
+
+	private final Exception mException;
+	private final WeakReference<Exception> mDetachedException;
+	private final String mExceptionTypeName;
+	private final long mTimestampMillis;
+	private volatile String mStackTrace;
+
+	/**
+	 * Creates a new exemplar of the given exception.
+	 *
+	 * @param exception
+	 * 		The non-null exception that was recorded.
+	 * @param timestampMillis
+	 * 		The time the exception was recorded, in milliseconds since the epoch.
+	 */
+	/* package */ ErrorExemplar(final Exception exception, final long timestampMillis) {
+		if (exception == null) {
+			throw new NullPointerException("Null exception is not allowed");
+		}
+		mException = exception;
+		mDetachedException = null;
+		mExceptionTypeName = exception.getClass().getName();
+		mTimestampMillis = timestampMillis;
+	}
+
+	private ErrorExemplar(final ErrorExemplar attached) {
+		mException = null;
+		mDetachedException = new WeakReference<>(attached.mException);
+		mExceptionTypeName = attached.mExceptionTypeName;
+		mTimestampMillis = attached.mTimestampMillis;
+		mStackTrace = attached.getStackTrace();
+	}
+
+	/**
+	 * Creates a copy of this exemplar that does not keep its exception, or the class of the
+	 * exception, reachable, rendering its stack trace now.
+	 *
+	 * @return A detached copy of this exemplar, or this exemplar if it is already detached.
+	 */
+	/* package */ ErrorExemplar detach() {
+		return mException == null ? this : new ErrorExemplar(this);
+	}
+
+	/**
+	 * Obtains the exception that was recorded.
+	 *
+	 * @return The exception, which is only null if this exemplar was detached from it and it has
+	 * since been garbage collected.
+	 */
+	public Exception getException() {
+		return mException != null ? mException : mDetachedException.get();
+	}
+
+	/**
+	 * Obtains the type of the exception that was recorded.
+	 *
+	 * @return The exception type, which is only null if this exemplar was detached from its
+	 * exception and the exception has since been garbage collected.
+	 */
+	public Class<? extends Exception> getExceptionType() {
+		final Exception exception = getException();
+		return exception != null ? exception.getClass() : null;
+	}
+
+	/**
+	 * Obtains the name of the type of the exception that was recorded, which is known even once a
+	 * detached exemplar has lost its exception.
+	 *
+	 * @return The non-null {@link Class#getName() name} of the exception type.
+	 */
+	public String getExceptionTypeName() {
+		return mExceptionTypeName;
+	}
+
+	/**
+	 * Obtains the time at which the exception was recorded.
+	 *
+	 * @return The time of recording, in milliseconds since the epoch.
+	 */
+	public long getTimestampMillis() {
+		return mTimestampMillis;
+	}
+
+	/**
+	 * Obtains the stack trace of the exception, as printed by {@link Exception#printStackTrace()}.
+	 * The stack trace is rendered the first time this is invoked.
+	 *
+	 * @return The non-null stack trace of the exception.
+	 */
+	public String getStackTrace() {
+		String stackTrace = mStackTrace;
+		if (stackTrace == null) {
+			final StringWriter writer = new StringWriter();
+			mException.printStackTrace(new PrintWriter(writer, true));
+			stackTrace = writer.toString();
+			mStackTrace = stackTrace;
+		}
+		return stackTrace;
+	}
+
+	@Override
+	public String toString() {
+		final Exception exception = getException();
+		return "ErrorExemplar(" + (exception != null ? exception : mExceptionTypeName) + " at " + mTimestampMillis + ")";
+	}
+}
@@ -2,6 +2,7 @@ package com.paloski.statistics;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -14,10 +15,17 @@ import java.util.Objects;
  */
 public final class ErrorStatistics {
 
-	private static final ErrorStatistics EMPTY = new ErrorStatistics(0, Collections.<Class<? extends Exception>, Long>emptyMap());
+	private static final ErrorStatistics EMPTY = new ErrorStatistics(0, Collections.<Class<? extends Exception>, Long>emptyMap(), HeavyHitters.empty(), HyperLogLog.empty(), ExemplarReservoir.empty(), Collections.<String, Long>emptyMap(), 0L, Collections.<String, Long>emptyMap(), TimeRange.unknown());
 
 	private final long mErrorCount;
 	private final /*Immutable*/ Map<Class<? extends Exception>, Long> mExceptionTypeMap;
+	private final HeavyHitters mErrorKeys;
+	private final HyperLogLog mDistinctEntities;
+	private final ExemplarReservoir mExemplars;
+	private final /*Immutable*/ Map<String, Long> mUnresolvedTypeMap;
+	private final long mOverflowCount;
+	private final /*Immutable*/ Map<String, Long> mCategoryMap;
+	private final TimeRange mTimeRange;
 
 	/**
 	 * A factory method that returns a ErrorStatistics object based upon the failure count
@@ -33,7 +41,7 @@ public final class ErrorStatistics {
 		if (failureCount == 0L) {
 			return empty();
 		} else {
-			return new ErrorStatistics(failureCount, Collections.<Class<? extends Exception>, Long>emptyMap());
+			return new ErrorStatistics(failureCount, Collections.<Class<? extends Exception>, Long>emptyMap(), HeavyHitters.empty(), HyperLogLog.empty(), ExemplarReservoir.empty(), Collections.<String, Long>emptyMap(), 0L, Collections.<String, Long>emptyMap(), TimeRange.unknown());
 		}
 	}
 
@@ -56,7 +64,70 @@ public final class ErrorStatistics {
 		} else if (typedErrors.isEmpty()) {
 			return forUncategorizedFailureCount(unattributedFailures);
 		} else {
-			return new ErrorStatistics(unattributedFailures, typedErrors);
+			return new ErrorStatistics(unattributedFailures, typedErrors, HeavyHitters.empty(), HyperLogLog.empty(), ExemplarReservoir.empty(), Collections.<String, Long>emptyMap(), 0L, Collections.<String, Long>emptyMap(), TimeRange.unknown());
+		}
+	}
+
+	/**
+	 * A factory method that returns an ErrorStatistics object based upon an unattributed failure
+	 * count, a number of attributed failures and a summary of the keys errors were recorded
+	 * against.
+	 *
+	 * @param unattributedFailures
+	 * 		The number of unattributed failures
+	 * @param typedErrors
+	 * 		A map from known exception types to the number of errors that occurred from them.
+	 * @param errorKeys
+	 * 		A summary of the most frequent keys that errors were recorded against.
+	 *
+	 * @return A non-null ErrorStatistics containing the given failures
+	 */
+	/* package */
+	static ErrorStatistics forFailures(final long unattributedFailures,
+									   final Map<Class<? extends Exception>, Long> typedErrors,
+									   final HeavyHitters errorKeys) {
+		if (null == errorKeys) {
+			throw new IllegalArgumentException("Cannot handle null error keys, use empty instead");
+		} else if (errorKeys.getTotalCount() == 0L && errorKeys.getCapacity() == HeavyHitters.DEFAULT_CAPACITY) {
+			return forFailures(unattributedFailures, typedErrors);
+		} else if (null == typedErrors) {
+			throw new IllegalArgumentException("Cannot handle null map of exceptions, use empty instead");
+		} else {
+			return new ErrorStatistics(unattributedFailures, typedErrors, errorKeys, HyperLogLog.empty(), ExemplarReservoir.empty(), Collections.<String, Long>emptyMap(), 0L, Collections.<String, Long>emptyMap(), TimeRange.unknown());
+		}
+	}
+
+	/**
+	 * A factory method that returns an ErrorStatistics object based upon an unattributed failure
+	 * count, a number of attributed failures, a summary of the keys errors were recorded against
+	 * and a sketch of the distinct entities that failed.
+	 *
+	 * @param unattributedFailures
+	 * 		The number of unattributed failures
+	 * @param typedErrors
+	 * 		A map from known exception types to the number of errors that occurred from them.
+	 * @param errorKeys
+	 * 		A summary of the most frequent keys that errors were recorded against.
+	 * @param distinctEntities
+	 * 		A sketch of the distinct keys that errors were recorded against.
+	 *
+	 * @return A non-null ErrorStatistics containing the given failures
+	 */
+	/* package */
+	static ErrorStatistics forFailures(final long unattributedFailures,
+									   final Map<Class<? extends Exception>, Long> typedErrors,
+									   final HeavyHitters errorKeys,
+									   final HyperLogLog distinctEntities) {
+		if (null == distinctEntities) {
+			throw new IllegalArgumentException("Cannot handle null distinct entities, use empty instead");
+		} else if (distinctEntities.getPrecision() == 0) {
+			return forFailures(unattributedFailures, typedErrors, errorKeys);
+		} else if (null == typedErrors) {
+			throw new IllegalArgumentException("Cannot handle null map of exceptions, use empty instead");
+		} else if (null == errorKeys) {
+			throw new IllegalArgumentException("Cannot handle null error keys, use empty instead");
+		} else {
+			return new ErrorStatistics(unattributedFailures, typedErrors, errorKeys, distinctEntities, ExemplarReservoir.empty(), Collections.<String, Long>emptyMap(), 0L, Collections.<String, Long>emptyMap(), TimeRange.unknown());
 		}
 	}
 
@@ -67,15 +138,127 @@ public final class ErrorStatistics {
 	 * 		The number of failures recorded in this statistics object.
 	 * @param exceptionTypeMap
 	 * 		A mapping from each exception to how often they occurred.
+	 * @param errorKeys
+	 * 		A summary of the most frequent keys errors were recorded against.
+	 * @param distinctEntities
+	 * 		A sketch of the distinct keys errors were recorded against.
+	 * @param exemplars
+	 * 		A sample of the exceptions that were recorded.
+	 * @param unresolvedTypeMap
+	 * 		A mapping from the name of each unloaded exception type to how often they occurred.
+	 * @param overflowCount
+	 * 		The number of errors whose type was not tracked as too many types were.
+	 * @param categoryMap
+	 * 		A mapping from each error category to how many errors were classified into it.
+	 * @param timeRange
+	 * 		The time the errors were recorded over.
 	 */
 	private ErrorStatistics(final long failureCount,
-							final Map<Class<? extends Exception>, Long> exceptionTypeMap) {
+							final Map<Class<? extends Exception>, Long> exceptionTypeMap,
+							final HeavyHitters errorKeys,
+							final HyperLogLog distinctEntities,
+							final ExemplarReservoir exemplars,
+							final Map<String, Long> unresolvedTypeMap,
+							final long overflowCount,
+							final Map<String, Long> categoryMap,
+							final TimeRange timeRange) {
 		if (failureCount < 0L) {
 			throw new IllegalArgumentException("A negative number of errors (" + failureCount + ")is not handled by this function");
+		} else if (overflowCount < 0L) {
+			throw new IllegalArgumentException("A negative number of overflowed errors (" + overflowCount + ") is not handled by this function");
 		}
 
 		mErrorCount = failureCount;
 		mExceptionTypeMap = Collections.unmodifiableMap(new HashMap<>(exceptionTypeMap));
+		mErrorKeys = errorKeys;
+		mDistinctEntities = distinctEntities;
+		mExemplars = exemplars;
+		mUnresolvedTypeMap = unresolvedTypeMap.isEmpty()
+							 ? Collections.<String, Long>emptyMap()
+							 : Collections.unmodifiableMap(new HashMap<>(unresolvedTypeMap));
+		mOverflowCount = overflowCount;
+		mCategoryMap = categoryMap.isEmpty()
+					   ? Collections.<String, Long>emptyMap()
+					   : Collections.unmodifiableMap(new HashMap<>(categoryMap));
+		mTimeRange = timeRange;
+	}
+
+	/**
+	 * Creates a copy of this ErrorStatistics that carries the given sample of the exceptions that
+	 * were recorded.
+	 *
+	 * @param exemplars
+	 * 		The non-null sample of recorded exceptions.
+	 *
+	 * @return A new ErrorStatistics with the given exemplars, or this object if the sample is
+	 * empty.
+	 */
+	/* package */ ErrorStatistics withExemplars(final ExemplarReservoir exemplars) {
+		if (null == exemplars) {
+			throw new IllegalArgumentException("Cannot handle null exemplars, use empty instead");
+		} else if (exemplars.getExemplarsByType().isEmpty()) {
+			return this;
+		}
+		return new ErrorStatistics(mErrorCount, mExceptionTypeMap, mErrorKeys, mDistinctEntities, exemplars,
+								   mUnresolvedTypeMap, mOverflowCount, mCategoryMap, mTimeRange);
+	}
+
+	/**
+	 * Creates a copy of this ErrorStatistics that also carries the errors whose exception type is
+	 * no longer, or was never, individually tracked by the recorder.
+	 *
+	 * @param unresolvedTypes
+	 * 		A non-null map from the name of each unloaded exception type to how often they occurred.
+	 * @param overflowCount
+	 * 		The number of errors whose type was not tracked as too many types were.
+	 *
+	 * @return A new ErrorStatistics with the given untracked errors, or this object if there are
+	 * none.
+	 */
+	/* package */ ErrorStatistics withUntrackedTypes(final Map<String, Long> unresolvedTypes, final long overflowCount) {
+		if (null == unresolvedTypes) {
+			throw new IllegalArgumentException("Cannot handle null map of unresolved types, use empty instead");
+		} else if (unresolvedTypes.isEmpty() && overflowCount == 0L) {
+			return this;
+		}
+		return new ErrorStatistics(mErrorCount, mExceptionTypeMap, mErrorKeys, mDistinctEntities, mExemplars,
+								   unresolvedTypes, overflowCount, mCategoryMap, mTimeRange);
+	}
+
+	/**
+	 * Creates a copy of this ErrorStatistics that carries the number of errors classified into each
+	 * category by an {@link ExceptionClassifier}.
+	 *
+	 * @param categoryCounts
+	 * 		A non-null map from each error category to how many errors were classified into it.
+	 *
+	 * @return A new ErrorStatistics with the given category counts, or this object if there are
+	 * none.
+	 */
+	/* package */ ErrorStatistics withCategoryCounts(final Map<String, Long> categoryCounts) {
+		if (null == categoryCounts) {
+			throw new IllegalArgumentException("Cannot handle null map of category counts, use empty instead");
+		} else if (categoryCounts.isEmpty()) {
+			return this;
+		}
+		return new ErrorStatistics(mErrorCount, mExceptionTypeMap, mErrorKeys, mDistinctEntities, mExemplars,
+								   mUnresolvedTypeMap, mOverflowCount, categoryCounts, mTimeRange);
+	}
+
+	/**
+	 * Creates a copy of this ErrorStatistics that was recorded over the given time.
+	 *
+	 * @param timeRange
+	 * 		The non-null time the errors were recorded over.
+	 *
+	 * @return A new ErrorStatistics with the given time range.
+	 */
+	/* package */ ErrorStatistics withTimeRange(final TimeRange timeRange) {
+		if (null == timeRange) {
+			throw new IllegalArgumentException("Cannot handle null time range, use unknown instead");
+		}
+		return new ErrorStatistics(mErrorCount, mExceptionTypeMap, mErrorKeys, mDistinctEntities, mExemplars,
+								   mUnresolvedTypeMap, mOverflowCount, mCategoryMap, timeRange);
 	}
 
 	/**
@@ -100,24 +283,34 @@ public final class ErrorStatistics {
 	 * @return A new ErrorStatistics object containing the sum of this statistics and the other.
 	 */
 	public ErrorStatistics mergeWith(final ErrorStatistics other) {
-		final Map<Class<? extends Exception>, Long> myExceptionTypeMap = getCountOfExceptionTypes();
-		final Map<Class<? extends Exception>, Long> otherExceptionTypeMap = other.getCountOfExceptionTypes();
+		return new ErrorStatistics(getUncategorizedErrorCount() + other.getUncategorizedErrorCount(),
+								   sumCounts(getCountOfExceptionTypes(), other.getCountOfExceptionTypes()),
+								   getErrorKeys().mergeWith(other.getErrorKeys()),
+								   getDistinctEntities().mergeWith(other.getDistinctEntities()),
+								   getExemplars().mergeWith(other.getExemplars()),
+								   sumCounts(getCountOfUnresolvedExceptionTypes(), other.getCountOfUnresolvedExceptionTypes()),
+								   getOverflowErrorCount() + other.getOverflowErrorCount(),
+								   sumCounts(getCountOfErrorCategories(), other.getCountOfErrorCategories()),
+								   getTimeRange().mergeWith(other.getTimeRange()));
+	}
 
-		final Map<Class<? extends Exception>, Long> mergedMap = new HashMap<>(myExceptionTypeMap.size() + otherExceptionTypeMap.size());
-		for (final Class<? extends Exception> cls : myExceptionTypeMap.keySet()) {
-			final Long otherCount = otherExceptionTypeMap.get(cls);
-			mergedMap.put(cls, myExceptionTypeMap.get(cls) + (null == otherCount ? 0L : otherCount));
+	/**
+	 * Creates a map holding the sum of the counts of each key of the given maps.
+	 */
+	private static <K> Map<K, Long> sumCounts(final Map<K, Long> first, final Map<K, Long> second) {
+		final Map<K, Long> mergedMap = new HashMap<>(first.size() + second.size());
+		for (final K key : first.keySet()) {
+			final Long otherCount = second.get(key);
+			mergedMap.put(key, first.get(key) + (null == otherCount ? 0L : otherCount));
 		}
 
 		//Now do it for the other side...
-		for (final Class<? extends Exception> cls : otherExceptionTypeMap.keySet()) {
-			if (!mergedMap.containsKey(cls)) {
-				mergedMap.put(cls, otherExceptionTypeMap.get(cls));
+		for (final K key : second.keySet()) {
+			if (!mergedMap.containsKey(key)) {
+				mergedMap.put(key, second.get(key));
 			}
 		}
-
-		return new ErrorStatistics(getUncategorizedErrorCount() + other.getUncategorizedErrorCount(),
-								   mergedMap);
+		return mergedMap;
 	}
 
 	/**
@@ -137,10 +330,13 @@ public final class ErrorStatistics {
 	 * @return The number of errors reported by this object.
 	 */
 	public long getTotalErrorCount() {
-		Long total = mErrorCount;
+		Long total = mErrorCount + mOverflowCount;
 		for (final Long value : mExceptionTypeMap.values()) {
 			total += value;
 		}
+		for (final Long value : mUnresolvedTypeMap.values()) {
+			total += value;
+		}
 		return total;
 	}
 
@@ -155,18 +351,161 @@ public final class ErrorStatistics {
 		return mExceptionTypeMap;
 	}
 
+	/**
+	 * Returns an unmodifiable map with the count of how many times each exception type, whose class
+	 * was unloaded while being weakly tracked, was recorded to occur. Types are keyed by their
+	 * {@link Class#getName() name}, and may only appear when the recorder was built with {@link
+	 * StatisticsRecorder.Builder#withWeakExceptionTypes()}.
+	 *
+	 * @return A non-null, but unmodifiable map of exception type name -> count of occurrences
+	 */
+	public Map<String, Long> getCountOfUnresolvedExceptionTypes() {
+		return mUnresolvedTypeMap;
+	}
+
+	/**
+	 * Obtains the number of errors whose exception type was not tracked because the recorder
+	 * already tracked the maximum number of types configured through {@link
+	 * StatisticsRecorder.Builder#withMaxExceptionTypes(int)}.
+	 *
+	 * @return The count of errors in the overflow bucket.
+	 */
+	public long getOverflowErrorCount() {
+		return mOverflowCount;
+	}
+
+	/**
+	 * Obtains a bounded summary of the keys (e.g. customer IDs or URLs) that errors were recorded
+	 * against through {@link StatisticsRecorder#recordError(Exception, String)}.
+	 *
+	 * @return A non-null summary of the most frequent error keys.
+	 */
+	public HeavyHitters getErrorKeys() {
+		return mErrorKeys;
+	}
+
+	/**
+	 * Obtains up to {@code limit} of the keys that errors were most frequently recorded against,
+	 * along with the bounds of their counts.
+	 *
+	 * @param limit
+	 * 		The maximum number of keys to return.
+	 *
+	 * @return A non-null, unmodifiable list of the most frequent error keys, most frequent first.
+	 */
+	public List<HeavyHitters.Entry> getTopErrorKeys(final int limit) {
+		return mErrorKeys.getTopKeys(limit);
+	}
+
+	/**
+	 * Obtains the sketch of the distinct keys (e.g. customer IDs) that errors were recorded against
+	 * through {@link StatisticsRecorder#recordError(Exception, String)}. The sketch is empty unless
+	 * the recorder was built with distinct entity tracking enabled.
+	 *
+	 * @return The non-null distinct entity sketch.
+	 */
+	public HyperLogLog getDistinctEntities() {
+		return mDistinctEntities;
+	}
+
+	/**
+	 * Estimates the number of distinct keys that errors were recorded against, i.e. how many
+	 * entities were affected by failures.
+	 *
+	 * @return The estimated number of distinct entities with an error.
+	 */
+	public long getDistinctEntityCount() {
+		return mDistinctEntities.getEstimate();
+	}
+
+	/**
+	 * Obtains the sample of the exceptions that were recorded, kept when the recorder was built
+	 * with {@link StatisticsRecorder.Builder#withExemplarsPerType(int)}. The sample is random, so
+	 * it is not considered by {@link #equals(Object)}.
+	 *
+	 * @return The non-null sample of recorded exceptions.
+	 */
+	public ExemplarReservoir getExemplars() {
+		return mExemplars;
+	}
+
+	/**
+	 * Obtains the sampled exceptions of the given type.
+	 *
+	 * @param type
+	 * 		The exception type to obtain exemplars of.
+	 *
+	 * @return A non-null, unmodifiable list of recorded exceptions of the given type.
+	 */
+	public List<ErrorExemplar> getExemplars(final Class<? extends Exception> type) {
+		return mExemplars.getExemplars(type);
+	}
+
+	/**
+	 * Obtains the number of errors classified into each category by the {@link
+	 * ExceptionClassifier} of the recorder, configured through {@link
+	 * StatisticsRecorder.Builder#withExceptionClassifier(ExceptionClassifier)}. Errors are
+	 * classified as they are recorded, so the counts remain exact even for exception types that
+	 * were unloaded or not tracked. Unattributed errors are not classified.
+	 *
+	 * @return A non-null, unmodifiable map of category -> count of errors, which is empty unless
+	 * the recorder has a classifier.
+	 */
+	public Map<String, Long> getCountOfErrorCategories() {
+		return mCategoryMap;
+	}
+
+	/**
+	 * Obtains the number of errors classified into the given category.
+	 *
+	 * @param category
+	 * 		The category to obtain the count of.
+	 *
+	 * @return The number of errors in the category, or 0 if there are none.
+	 */
+	public long getErrorCategoryCount(final String category) {
+		final Long count = mCategoryMap.get(category);
+		return count != null ? count : 0L;
+	}
+
+	/**
+	 * Obtains the time that these errors were recorded over. The time range is not considered by
+	 * {@link #equals(Object)}.
+	 *
+	 * @return The non-null time range, which is {@link TimeRange#isKnown() unknown} unless these
+	 * statistics came from a recorder.
+	 */
+	public TimeRange getTimeRange() {
+		return mTimeRange;
+	}
+
+	/**
+	 * Obtains the rate of errors over the {@link #getTimeRange() time range} they were recorded
+	 * over.
+	 *
+	 * @return The number of errors per second, or 0.0 if the time range is unknown.
+	 */
+	public double getErrorsPerSecond() {
+		return mTimeRange.getRatePerSecond(getTotalErrorCount());
+	}
+
 	@Override
 	public boolean equals(final Object o) {
 		if (this == o) return true;
 		if (!(o instanceof ErrorStatistics)) return false;
 		final ErrorStatistics that = (ErrorStatistics) o;
 		return getTotalErrorCount() == that.getTotalErrorCount() &&
-			   Objects.equals(mExceptionTypeMap, that.mExceptionTypeMap);
+			   Objects.equals(mExceptionTypeMap, that.mExceptionTypeMap) &&
+			   Objects.equals(mUnresolvedTypeMap, that.mUnresolvedTypeMap) &&
+			   mOverflowCount == that.mOverflowCount &&
+			   Objects.equals(mCategoryMap, that.mCategoryMap) &&
+			   Objects.equals(mErrorKeys, that.mErrorKeys) &&
+			   Objects.equals(mDistinctEntities, that.mDistinctEntities);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(getTotalErrorCount(), mExceptionTypeMap);
+		return Objects.hash(getTotalErrorCount(), mExceptionTypeMap, mUnresolvedTypeMap, mOverflowCount, mCategoryMap, mErrorKeys, mDistinctEntities);
 	}
 
 	@Override
@@ -178,9 +517,25 @@ public final class ErrorStatistics {
 			builder.append(occurrenceEntry.getKey().getCanonicalName()).append(": ").append(occurrenceEntry.getValue())
 				   	.append(" (").append(String.format("%.2f%%", (((float) occurrenceEntry.getValue()) / getTotalErrorCount()) * 100)).append( ")\n");
 		}
+		for (final Map.Entry<String, Long> occurrenceEntry : mUnresolvedTypeMap.entrySet()) {
+			builder.append(occurrenceEntry.getKey()).append(" (unloaded): ").append(occurrenceEntry.getValue())
+				   .append(" (").append(String.format("%.2f%%", (((float) occurrenceEntry.getValue()) / getTotalErrorCount()) * 100)).append(")\n");
+		}
+		if (mOverflowCount != 0L) {
+			builder.append("Overflow: ").append(mOverflowCount).append(" (").append(String.format("%.2f%%", (((float) mOverflowCount) / getTotalErrorCount()) * 100)).append(")\n");
+		}
 		builder.append("Uncategorized: ").append(getUncategorizedErrorCount()).append(" (").append(String.format("%.2f%%", (((float) getUncategorizedErrorCount()) / getTotalErrorCount()) * 100)).append(")\n")
 				.append("--------\n")
 				.append("Total: ").append(getTotalErrorCount());
+		if (!mCategoryMap.isEmpty()) {
+			builder.append("\nCategories: ").append(mCategoryMap);
+		}
+		if (!mErrorKeys.getEntries().isEmpty()) {
+			builder.append("\nTop keys: ").append(getTopErrorKeys(10));
+		}
+		if (mDistinctEntities.getPrecision() != 0) {
+			builder.append("\nDistinct keys: ~").append(getDistinctEntityCount());
+		}
 		return builder.toString();
 	}
 }
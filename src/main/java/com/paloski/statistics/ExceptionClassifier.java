@@ -0,0 +1,224 @@
+package com.paloski.statistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Classifies exception types into named error categories, such as client errors, server errors
+ * and retryable infrastructure failures, so that a {@link StatisticsRecorder} can count the errors
+ * of each category as they are recorded (see {@link ErrorStatistics#getCountOfErrorCategories()}).
+ * <p/>
+ * A classifier is an ordered list of rules, each of which matches exception types by their type
+ * hierarchy, their package or an arbitrary predicate. An exception type is classified into the
+ * category of the first rule that matches it, or the default category if none do. Rules are
+ * evaluated only once per exception type, after which its category is cached alongside the class
+ * itself through a {@link ClassValue}, so classifying does not prevent exception classes from
+ * being unloaded.
+ * <p/>
+ * This class is immutable and (therefore) thread safe, as long as the predicates of its rules are.
+ *
+ * @author Adam
+ */
+public final class ExceptionClassifier {
+
+	/**
+	 * The category of exception types that match no rule, unless the classifier was built with
+	 * another default.
+	 */
+	public static final String DEFAULT_CATEGORY = "uncategorized";
+
+	private final List<Rule> mRules;
+	private final /*Immutable*/ List<String> mCategories;
+	private final int mDefaultIndex;
+	private final ClassValue<Integer> mCache = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(final Class<?> type) {
+			return evaluate(type.asSubclass(Exception.class));
+		}
+	};
+
+	private ExceptionClassifier(final Builder builder) {
+		mRules = new ArrayList<>(builder.mRules);
+		final List<String> categories = new ArrayList<>(builder.mCategories);
+		int defaultIndex = categories.indexOf(builder.mDefaultCategory);
+		if (defaultIndex < 0) {
+			defaultIndex = categories.size();
+			categories.add(builder.mDefaultCategory);
+		}
+		mCategories = Collections.unmodifiableList(categories);
+		mDefaultIndex = defaultIndex;
+	}
+
+	/**
+	 * Creates a new Builder of an ExceptionClassifier, which has no rules and classifies every type
+	 * as {@link #DEFAULT_CATEGORY} by default.
+	 *
+	 * @return A new Builder.
+	 */
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * Obtains every category that this classifier may classify a type into, including the default
+	 * category.
+	 *
+	 * @return A non-null, unmodifiable list of categories, in the order they were first used by a
+	 * rule.
+	 */
+	public List<String> getCategories() {
+		return mCategories;
+	}
+
+	/**
+	 * Classifies the given exception type.
+	 *
+	 * @param type
+	 * 		The non-null exception type to classify.
+	 *
+	 * @return The non-null category of the type.
+	 */
+	public String classify(final Class<? extends Exception> type) {
+		return mCategories.get(indexOf(type));
+	}
+
+	/**
+	 * Classifies the given exception type into the index of its category within {@link
+	 * #getCategories()}.
+	 */
+	/* package */ int indexOf(final Class<? extends Exception> type) {
+		return mCache.get(type);
+	}
+
+	private int evaluate(final Class<? extends Exception> type) {
+		for (final Rule rule : mRules) {
+			if (rule.mMatcher.test(type)) {
+				return rule.mCategoryIndex;
+			}
+		}
+		return mDefaultIndex;
+	}
+
+	/**
+	 * A rule of a classifier, classifying the types it matches into a category.
+	 */
+	private static final class Rule {
+		private final Predicate<Class<? extends Exception>> mMatcher;
+		private final int mCategoryIndex;
+
+		private Rule(final Predicate<Class<? extends Exception>> matcher, final int categoryIndex) {
+			mMatcher = matcher;
+			mCategoryIndex = categoryIndex;
+		}
+	}
+
+	/**
+	 * A builder of ExceptionClassifier objects, whose rules are evaluated in the order they are
+	 * added.
+	 * <p/>
+	 * This class is not thread safe.
+	 */
+	public static final class Builder {
+
+		private final List<Rule> mRules = new ArrayList<>();
+		private final List<String> mCategories = new ArrayList<>();
+		private String mDefaultCategory = DEFAULT_CATEGORY;
+
+		private Builder() {
+		}
+
+		/**
+		 * Adds a rule classifying the given type, and every subtype of it, into the given category.
+		 *
+		 * @param type
+		 * 		The non-null exception type to match.
+		 * @param category
+		 * 		The non-null category of matching types.
+		 *
+		 * @return This builder
+		 */
+		public Builder classifyType(final Class<? extends Exception> type, final String category) {
+			if (type == null) {
+				throw new IllegalArgumentException("Type cannot be null");
+			}
+			return addRule(type::isAssignableFrom, category);
+		}
+
+		/**
+		 * Adds a rule classifying every type within the given package, or any of its subpackages,
+		 * into the given category.
+		 *
+		 * @param packageName
+		 * 		The non-null name of the package to match, e.g. {@code java.sql}.
+		 * @param category
+		 * 		The non-null category of matching types.
+		 *
+		 * @return This builder
+		 */
+		public Builder classifyPackage(final String packageName, final String category) {
+			if (packageName == null) {
+				throw new IllegalArgumentException("Package name cannot be null");
+			}
+			final String prefix = packageName + ".";
+			return addRule(type -> type.getName().startsWith(prefix), category);
+		}
+
+		/**
+		 * Adds a rule classifying every type that the given predicate accepts into the given
+		 * category. The predicate is evaluated at most once for each type.
+		 *
+		 * @param predicate
+		 * 		The non-null predicate to match types with.
+		 * @param category
+		 * 		The non-null category of matching types.
+		 *
+		 * @return This builder
+		 */
+		public Builder classifyMatching(final Predicate<Class<? extends Exception>> predicate, final String category) {
+			if (predicate == null) {
+				throw new IllegalArgumentException("Predicate cannot be null");
+			}
+			return addRule(predicate, category);
+		}
+
+		/**
+		 * Configures the category of types that match no rule.
+		 *
+		 * @param category
+		 * 		The non-null default category.
+		 *
+		 * @return This builder
+		 */
+		public Builder withDefaultCategory(final String category) {
+			if (category == null) {
+				throw new IllegalArgumentException("Category cannot be null");
+			}
+			mDefaultCategory = category;
+			return this;
+		}
+
+		private Builder addRule(final Predicate<Class<? extends Exception>> matcher, final String category) {
+			if (category == null) {
+				throw new IllegalArgumentException("Category cannot be null");
+			}
+			int index = mCategories.indexOf(category);
+			if (index < 0) {
+				index = mCategories.size();
+				mCategories.add(category);
+			}
+			mRules.add(new Rule(matcher, index));
+			return this;
+		}
+
+		/**
+		 * Creates a new ExceptionClassifier with the rules of this builder.
+		 *
+		 * @return A new ExceptionClassifier
+		 */
+		public ExceptionClassifier build() {
+			return new ExceptionClassifier(this);
+		}
+	}
+}
@@ -0,0 +1,245 @@
+package com.paloski.statistics;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the number of errors recorded for each exception type, used by {@link StatisticsRecorder}.
+ * <p/>
+ * Exception types may be held weakly, in which case a type whose class is unloaded has its count
+ * folded into a bucket keyed by the name of the type, so that recorders do not pin the class
+ * loaders of dynamically generated exceptions. The number of tracked types may also be capped, in
+ * which case errors of any type beyond the cap are counted in a single overflow bucket. The names
+ * of unloaded types count against the cap as well, so that the unique names of generated
+ * exceptions cannot grow the name keyed buckets without bound.
+ * <p/>
+ * This is a hash table in the manner of {@link java.util.WeakHashMap}, with the count stored in
+ * each entry so that recording an error of a known type does not allocate.
+ * <p/>
+ * This class is not thread safe, though its read methods may be invoked while another thread is
+ * modifying it, as by an optimistic snapshot of a {@link StatisticsRecorder}: they always
+ * terminate, but may then return an inconsistent copy or throw.
+ */
+/* package */ final class ExceptionTypeCounter {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final boolean mWeak;
+	private final int mMaxTypes;
+	private final ReferenceQueue<Class<? extends Exception>> mCollected = new ReferenceQueue<>();
+	private final Map<String, Long> mUnresolvedCounts = new HashMap<>();
+
+	private TypeEntry[] mTable = new TypeEntry[INITIAL_CAPACITY];
+	private int mSize;
+	private long mOverflowCount;
+
+	/**
+	 * Creates a new counter with no counts.
+	 *
+	 * @param weak
+	 * 		If exception types should be held weakly, allowing their classes to be unloaded.
+	 * @param maxTypes
+	 * 		The maximum number of exception types to count individually, which must be positive.
+	 */
+	/* package */ ExceptionTypeCounter(final boolean weak, final int maxTypes) {
+		if (maxTypes < 1) {
+			throw new IllegalArgumentException("Max types (" + maxTypes + ") must be positive");
+		}
+		mWeak = weak;
+		mMaxTypes = maxTypes;
+	}
+
+	/**
+	 * Increments the count of the given exception type, or the overflow count if the type is not
+	 * already tracked and the maximum number of types (or names of unloaded types) are.
+	 *
+	 * @param type
+	 * 		The non-null exception type to increment.
+	 */
+	/* package */ void increment(final Class<? extends Exception> type) {
+		add(type, 1L);
+	}
+
+	/**
+	 * Adds the given number of errors to the count of the given exception type, or to the overflow
+	 * count if the type is not already tracked and the maximum number of types are.
+	 *
+	 * @param type
+	 * 		The non-null exception type to add to.
+	 * @param count
+	 * 		The non-negative number of errors to add.
+	 */
+	/* package */ void add(final Class<? extends Exception> type, final long count) {
+		expungeCollected();
+		final int hash = System.identityHashCode(type);
+		final int index = hash & (mTable.length - 1);
+		for (TypeEntry entry = mTable[index]; entry != null; entry = entry.mNext) {
+			if (entry.get() == type) {
+				entry.mCount += count;
+				return;
+			}
+		}
+
+		if (isFull()) {
+			mOverflowCount += count;
+			return;
+		}
+		final TypeEntry entry = new TypeEntry(type, hash, mWeak, mCollected);
+		entry.mCount = count;
+		entry.mNext = mTable[index];
+		mTable[index] = entry;
+		if (++mSize > mTable.length * 3 / 4) {
+			resize();
+		}
+	}
+
+	/**
+	 * Obtains a copy of the counts of the exception types whose classes are still loaded.
+	 *
+	 * @return A new map of exception type -> count of errors.
+	 */
+	/* package */ Map<Class<? extends Exception>, Long> getTypeCounts() {
+		final Map<Class<? extends Exception>, Long> counts = new HashMap<>(Math.max(0, mSize) * 4 / 3 + 1);
+		final TypeEntry[] table = mTable;
+		int visited = 0;
+		for (final TypeEntry head : table) {
+			for (TypeEntry entry = head; entry != null; entry = entry.mNext) {
+				checkVisited(++visited, table);
+				final Class<? extends Exception> type = entry.get();
+				if (type != null) {
+					counts.put(type, entry.mCount);
+				}
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Obtains a copy of the counts of exception types whose classes were unloaded, keyed by the name
+	 * of the type.
+	 *
+	 * @return A new map of exception type name -> count of errors.
+	 */
+	/* package */ Map<String, Long> getUnresolvedCounts() {
+		if (!mWeak) {
+			return Collections.emptyMap();
+		}
+		final Map<String, Long> counts = new HashMap<>(mUnresolvedCounts);
+		// Entries that were collected but not yet expunged are only folded into the copy, as this may
+		// be called while other threads are reading
+		final TypeEntry[] table = mTable;
+		int visited = 0;
+		for (final TypeEntry head : table) {
+			for (TypeEntry entry = head; entry != null; entry = entry.mNext) {
+				checkVisited(++visited, table);
+				if (entry.get() == null) {
+					addTo(counts, entry.mName, entry.mCount);
+				}
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Obtains the number of errors whose type was not counted because too many types already were.
+	 *
+	 * @return The overflow count.
+	 */
+	/* package */ long getOverflowCount() {
+		return mOverflowCount;
+	}
+
+	/**
+	 * Removes the entries of every exception type whose class has been unloaded, folding their
+	 * counts into the name keyed bucket.
+	 */
+	private void expungeCollected() {
+		for (Reference<? extends Class<? extends Exception>> collected; (collected = mCollected.poll()) != null; ) {
+			final TypeEntry stale = (TypeEntry) collected;
+			final int index = stale.mHash & (mTable.length - 1);
+			TypeEntry previous = null;
+			for (TypeEntry entry = mTable[index]; entry != null; previous = entry, entry = entry.mNext) {
+				if (entry == stale) {
+					if (previous == null) {
+						mTable[index] = entry.mNext;
+					} else {
+						previous.mNext = entry.mNext;
+					}
+					mSize--;
+					if (mUnresolvedCounts.containsKey(stale.mName) || !isFull()) {
+						addTo(mUnresolvedCounts, stale.mName, stale.mCount);
+					} else {
+						mOverflowCount += stale.mCount;
+					}
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Determines if the maximum number of types are tracked, counting both loaded types and the
+	 * names of unloaded ones.
+	 */
+	private boolean isFull() {
+		return mSize + mUnresolvedCounts.size() >= mMaxTypes;
+	}
+
+	/**
+	 * Ensures that a read has not visited more entries than the table can hold, which only occurs
+	 * when it follows the chains of a table that is being resized concurrently, which may form a
+	 * cycle from the point of view of the reader.
+	 */
+	private static void checkVisited(final int visited, final TypeEntry[] table) {
+		if (visited > table.length) {
+			throw new ConcurrentModificationException("Exception types were modified while being read");
+		}
+	}
+
+	private void resize() {
+		final TypeEntry[] table = new TypeEntry[mTable.length * 2];
+		for (final TypeEntry head : mTable) {
+			TypeEntry entry = head;
+			while (entry != null) {
+				final TypeEntry next = entry.mNext;
+				final int index = entry.mHash & (table.length - 1);
+				entry.mNext = table[index];
+				table[index] = entry;
+				entry = next;
+			}
+		}
+		mTable = table;
+	}
+
+	private static void addTo(final Map<String, Long> counts, final String name, final long count) {
+		final Long current = counts.get(name);
+		counts.put(name, current == null ? count : current + count);
+	}
+
+	/**
+	 * The count of a single exception type, which references the type weakly. A strong reference
+	 * is also kept when types are not to be held weakly.
+	 */
+	private static final class TypeEntry extends WeakReference<Class<? extends Exception>> {
+
+		private final int mHash;
+		private final String mName;
+		@SuppressWarnings({"unused", "FieldCanBeLocal"})
+		private final Class<? extends Exception> mStrongType;
+		private long mCount;
+		private TypeEntry mNext;
+
+		private TypeEntry(final Class<? extends Exception> type, final int hash, final boolean weak,
+						  final ReferenceQueue<Class<? extends Exception>> queue) {
+			super(type, queue);
+			mHash = hash;
+			mName = type.getName();
+			mStrongType = weak ? null : type;
+		}
+	}
+}
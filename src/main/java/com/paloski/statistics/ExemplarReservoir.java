@@ -0,0 +1,295 @@
+package com.paloski.statistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A fixed size, uniformly random sample of the exceptions recorded for each exception type, which
+ * shows what the errors counted by {@link ErrorStatistics} actually looked like.
+ * <p/>
+ * Each type keeps at most {@link #getCapacityPerType()} {@link ErrorExemplar}s, chosen by <a
+ * href="https://doi.org/10.1145/3147.3165">reservoir sampling</a> so that every exception of the
+ * type was equally likely to be kept. Recording an exception costs a single random draw once the
+ * reservoir of its type is full.
+ * <p/>
+ * Reservoirs are mergeable: the merged sample of a type draws from either side in proportion to how
+ * many exceptions each side saw. As the contents are random, reservoirs do not take part in the
+ * equality of {@link ErrorStatistics}.
+ * <p/>
+ * This class is immutable and (therefore) thread safe.
+ *
+ * @author Adam
+ */
+public final class ExemplarReservoir {
+
+	private static final ExemplarReservoir EMPTY = new ExemplarReservoir(0,
+																		 Collections.<Class<? extends Exception>, List<ErrorExemplar>>emptyMap(),
+																		 Collections.<Class<? extends Exception>, Long>emptyMap());
+
+	private final int mCapacityPerType;
+	private final /*Immutable*/ Map<Class<? extends Exception>, List<ErrorExemplar>> mExemplars;
+	private final /*Immutable*/ Map<Class<? extends Exception>, Long> mSeenCounts;
+
+	private ExemplarReservoir(final int capacityPerType,
+							  final Map<Class<? extends Exception>, List<ErrorExemplar>> exemplars,
+							  final Map<Class<? extends Exception>, Long> seenCounts) {
+		mCapacityPerType = capacityPerType;
+		mExemplars = exemplars;
+		mSeenCounts = seenCounts;
+	}
+
+	/**
+	 * Obtains an empty reservoir, which keeps no exemplars.
+	 *
+	 * @return A non-null, empty ExemplarReservoir.
+	 */
+	/* package */
+	static ExemplarReservoir empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Obtains the maximum number of exemplars kept for each exception type.
+	 *
+	 * @return The capacity per type, or 0 if exemplars were not recorded.
+	 */
+	public int getCapacityPerType() {
+		return mCapacityPerType;
+	}
+
+	/**
+	 * Obtains the exemplars kept for the given exception type.
+	 *
+	 * @param type
+	 * 		The exception type to obtain exemplars of.
+	 *
+	 * @return A non-null, unmodifiable list of exemplars of exactly the given type, in no particular
+	 * order.
+	 */
+	public List<ErrorExemplar> getExemplars(final Class<? extends Exception> type) {
+		final List<ErrorExemplar> exemplars = mExemplars.get(type);
+		return exemplars != null ? exemplars : Collections.<ErrorExemplar>emptyList();
+	}
+
+	/**
+	 * Obtains the exemplars kept for every exception type.
+	 *
+	 * @return A non-null, unmodifiable map of exception type -> exemplars of that type.
+	 */
+	public Map<Class<? extends Exception>, List<ErrorExemplar>> getExemplarsByType() {
+		return mExemplars;
+	}
+
+	/**
+	 * Merges this reservoir with another, creating a reservoir that samples the exceptions of both.
+	 * The result keeps as many exemplars per type as the larger capacity of the two.
+	 *
+	 * @param other
+	 * 		Another non-null ExemplarReservoir.
+	 *
+	 * @return A new ExemplarReservoir sampling the exceptions of both reservoirs.
+	 */
+	public ExemplarReservoir mergeWith(final ExemplarReservoir other) {
+		if (other.mExemplars.isEmpty()) {
+			return this;
+		} else if (mExemplars.isEmpty()) {
+			return other;
+		}
+		final int capacity = Math.max(mCapacityPerType, other.mCapacityPerType);
+		final Random random = ThreadLocalRandom.current();
+		final Map<Class<? extends Exception>, List<ErrorExemplar>> exemplars = new HashMap<>(mExemplars);
+		final Map<Class<? extends Exception>, Long> seenCounts = new HashMap<>(mSeenCounts);
+		for (final Map.Entry<Class<? extends Exception>, List<ErrorExemplar>> entry : other.mExemplars.entrySet()) {
+			final Class<? extends Exception> type = entry.getKey();
+			final long otherSeen = other.mSeenCounts.get(type);
+			final Long mySeen = mSeenCounts.get(type);
+			if (mySeen == null) {
+				exemplars.put(type, entry.getValue());
+				seenCounts.put(type, otherSeen);
+			} else {
+				exemplars.put(type, mergeSamples(mExemplars.get(type), mySeen, entry.getValue(), otherSeen, capacity, random));
+				seenCounts.put(type, mySeen + otherSeen);
+			}
+		}
+		return new ExemplarReservoir(capacity, Collections.unmodifiableMap(exemplars), Collections.unmodifiableMap(seenCounts));
+	}
+
+	/**
+	 * Merges two uniform samples into a single sample of at most {@code capacity} exemplars, where
+	 * each exemplar is taken from a side with probability proportional to the number of exceptions
+	 * that side saw.
+	 */
+	private static List<ErrorExemplar> mergeSamples(final List<ErrorExemplar> first, final long firstSeen,
+													final List<ErrorExemplar> second, final long secondSeen,
+													final int capacity, final Random random) {
+		final List<ErrorExemplar> remainingFirst = new ArrayList<>(first);
+		final List<ErrorExemplar> remainingSecond = new ArrayList<>(second);
+		Collections.shuffle(remainingFirst, random);
+		Collections.shuffle(remainingSecond, random);
+		final double firstProbability = ((double) firstSeen) / (firstSeen + secondSeen);
+		final List<ErrorExemplar> merged = new ArrayList<>(Math.min(capacity, first.size() + second.size()));
+		while (merged.size() < capacity && !(remainingFirst.isEmpty() && remainingSecond.isEmpty())) {
+			final boolean takeFirst = remainingSecond.isEmpty()
+									  || (!remainingFirst.isEmpty() && random.nextDouble() < firstProbability);
+			merged.add((takeFirst ? remainingFirst : remainingSecond).remove(0));
+		}
+		return Collections.unmodifiableList(merged);
+	}
+
+	@Override
+	public String toString() {
+		return "ExemplarReservoir(capacityPerType=" + mCapacityPerType + ", exemplars=" + mExemplars + ")";
+	}
+
+	/**
+	 * A mutable reservoir, used by recorders to sample exceptions as they are recorded.
+	 * <p/>
+	 * Like the counts of {@link ExceptionTypeCounter}, the number of sampled types may be capped,
+	 * beyond which exceptions of new types are not sampled, and types may be held weakly. Weakly
+	 * held types keep {@link ErrorExemplar#detach() detached} exemplars, so that their exceptions
+	 * do not keep the types loaded, and the samples of a type are discarded once it is unloaded.
+	 * <p/>
+	 * This class is not thread safe.
+	 */
+	/* package */ static final class Accumulator {
+
+		private final int mCapacityPerType;
+		private final int mMaxTypes;
+		private final boolean mWeak;
+		private final Map<Class<? extends Exception>, Sample> mSamples;
+
+		/**
+		 * Creates a new, empty accumulator that samples every type, holding them strongly.
+		 *
+		 * @param capacityPerType
+		 * 		The maximum number of exemplars to keep for each exception type, which must be
+		 * 		positive.
+		 */
+		/* package */ Accumulator(final int capacityPerType) {
+			this(capacityPerType, Integer.MAX_VALUE, false);
+		}
+
+		/**
+		 * Creates a new, empty accumulator.
+		 *
+		 * @param capacityPerType
+		 * 		The maximum number of exemplars to keep for each exception type, which must be
+		 * 		positive.
+		 * @param maxTypes
+		 * 		The maximum number of exception types to sample, which must be positive.
+		 * @param weak
+		 * 		If exception types should be held weakly, allowing their classes to be unloaded.
+		 */
+		/* package */ Accumulator(final int capacityPerType, final int maxTypes, final boolean weak) {
+			if (capacityPerType < 1) {
+				throw new IllegalArgumentException("Capacity per type (" + capacityPerType + ") must be positive");
+			} else if (maxTypes < 1) {
+				throw new IllegalArgumentException("Max types (" + maxTypes + ") must be positive");
+			}
+			mCapacityPerType = capacityPerType;
+			mMaxTypes = maxTypes;
+			mWeak = weak;
+			mSamples = weak ? new WeakHashMap<Class<? extends Exception>, Sample>() : new HashMap<Class<? extends Exception>, Sample>();
+		}
+
+		/**
+		 * Offers a recorded exception to the reservoir of its type.
+		 *
+		 * @param exception
+		 * 		The non-null exception that was recorded.
+		 */
+		/* package */ void add(final Exception exception) {
+			final Class<? extends Exception> type = exception.getClass();
+			Sample sample = mSamples.get(type);
+			if (sample == null) {
+				if (mSamples.size() >= mMaxTypes) {
+					return;
+				}
+				sample = new Sample(mCapacityPerType);
+				mSamples.put(type, sample);
+			}
+			final long seen = ++sample.mSeen;
+			if (sample.mExemplars.size() < mCapacityPerType) {
+				sample.mExemplars.add(newExemplar(exception));
+			} else {
+				// Algorithm R: the nth exception replaces a random exemplar with probability k/n
+				final long slot = (long) (ThreadLocalRandom.current().nextDouble() * seen);
+				if (slot < mCapacityPerType) {
+					sample.mExemplars.set((int) slot, newExemplar(exception));
+				}
+			}
+		}
+
+		private ErrorExemplar newExemplar(final Exception exception) {
+			final ErrorExemplar exemplar = new ErrorExemplar(exception, System.currentTimeMillis());
+			return mWeak ? exemplar.detach() : exemplar;
+		}
+
+		/**
+		 * Merges the given reservoir into this accumulator, as if its exceptions had been offered
+		 * to this accumulator.
+		 *
+		 * @param reservoir
+		 * 		A non-null reservoir to merge.
+		 */
+		/* package */ void addAll(final ExemplarReservoir reservoir) {
+			final Random random = ThreadLocalRandom.current();
+			for (final Map.Entry<Class<? extends Exception>, List<ErrorExemplar>> entry : reservoir.mExemplars.entrySet()) {
+				final Class<? extends Exception> type = entry.getKey();
+				final long seen = reservoir.mSeenCounts.get(type);
+				Sample sample = mSamples.get(type);
+				if (sample == null) {
+					if (mSamples.size() >= mMaxTypes) {
+						continue;
+					}
+					sample = new Sample(mCapacityPerType);
+					mSamples.put(type, sample);
+				}
+				final List<ErrorExemplar> merged = mergeSamples(sample.mExemplars, sample.mSeen, entry.getValue(), seen, mCapacityPerType, random);
+				sample.mExemplars.clear();
+				for (final ErrorExemplar exemplar : merged) {
+					sample.mExemplars.add(mWeak ? exemplar.detach() : exemplar);
+				}
+				sample.mSeen += seen;
+			}
+		}
+
+		/**
+		 * Creates an immutable copy of the exemplars sampled so far.
+		 *
+		 * @return A new ExemplarReservoir of the current contents of this accumulator.
+		 */
+		/* package */ ExemplarReservoir snapshot() {
+			if (mSamples.isEmpty()) {
+				return new ExemplarReservoir(mCapacityPerType,
+											 Collections.<Class<? extends Exception>, List<ErrorExemplar>>emptyMap(),
+											 Collections.<Class<? extends Exception>, Long>emptyMap());
+			}
+			final Map<Class<? extends Exception>, List<ErrorExemplar>> exemplars = new HashMap<>(mSamples.size());
+			final Map<Class<? extends Exception>, Long> seenCounts = new HashMap<>(mSamples.size());
+			for (final Map.Entry<Class<? extends Exception>, Sample> entry : mSamples.entrySet()) {
+				exemplars.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue().mExemplars)));
+				seenCounts.put(entry.getKey(), entry.getValue().mSeen);
+			}
+			return new ExemplarReservoir(mCapacityPerType, Collections.unmodifiableMap(exemplars), Collections.unmodifiableMap(seenCounts));
+		}
+
+		/**
+		 * The reservoir of a single exception type.
+		 */
+		private static final class Sample {
+			private final List<ErrorExemplar> mExemplars;
+			private long mSeen;
+
+			private Sample(final int capacity) {
+				mExemplars = new ArrayList<>(capacity);
+			}
+		}
+	}
+}
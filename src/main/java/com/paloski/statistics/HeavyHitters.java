@@ -0,0 +1,432 @@
+package com.paloski.statistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A bounded summary of the most frequently recorded keys of a stream, such as the customer IDs,
+ * URLs or shard keys that errors were recorded against.
+ * <p/>
+ * The summary is built by the <a href="https://doi.org/10.1007/978-3-540-30570-5_27">Space-Saving</a>
+ * algorithm, which tracks at most {@link #getCapacity()} keys no matter how many distinct keys are
+ * recorded. Each tracked key carries an estimated count, which never underestimates the true count,
+ * along with the maximum amount by which it may overestimate it. Any key that occurred more than
+ * {@code getTotalCount() / getCapacity()} times is guaranteed to be tracked.
+ * <p/>
+ * Summaries are mergeable. Merging follows the mergeable summaries construction of Agarwal et al.,
+ * where keys missing from one side are assumed to have that side's minimum tracked count, which is
+ * added to their error bound, and the largest counts of the union are kept.
+ * <p/>
+ * This class is immutable and (therefore) thread safe.
+ *
+ * @author Adam
+ */
+public final class HeavyHitters {
+
+	/**
+	 * The number of keys tracked by recorders unless configured otherwise.
+	 */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private static final HeavyHitters EMPTY = new HeavyHitters(DEFAULT_CAPACITY, 0L, Collections.<Entry>emptyList());
+
+	private static final Comparator<Entry> BY_COUNT_DESCENDING = new Comparator<Entry>() {
+		@Override
+		public int compare(final Entry first, final Entry second) {
+			final int byCount = Long.compare(second.getCount(), first.getCount());
+			return byCount != 0 ? byCount : first.getKey().compareTo(second.getKey());
+		}
+	};
+
+	private final int mCapacity;
+	private final long mTotalCount;
+	private final /*Immutable*/ List<Entry> mEntries;
+
+	private HeavyHitters(final int capacity, final long totalCount, final List<Entry> entries) {
+		mCapacity = capacity;
+		mTotalCount = totalCount;
+		mEntries = entries;
+	}
+
+	/**
+	 * Obtains an empty summary with the default capacity.
+	 *
+	 * @return A non-null, empty HeavyHitters object.
+	 */
+	/* package */
+	static HeavyHitters empty() {
+		return EMPTY;
+	}
+
+	private static HeavyHitters of(final int capacity, final long totalCount, final List<Entry> entries) {
+		if (totalCount == 0L && capacity == DEFAULT_CAPACITY) {
+			return EMPTY;
+		}
+		final List<Entry> sorted = new ArrayList<>(entries);
+		Collections.sort(sorted, BY_COUNT_DESCENDING);
+		return new HeavyHitters(capacity, totalCount, Collections.unmodifiableList(sorted));
+	}
+
+	/**
+	 * Obtains the maximum number of keys tracked by this summary.
+	 *
+	 * @return The capacity of this summary.
+	 */
+	public int getCapacity() {
+		return mCapacity;
+	}
+
+	/**
+	 * Obtains the number of keyed events summarized, including those whose keys are no longer
+	 * tracked.
+	 *
+	 * @return The total number of keyed events recorded.
+	 */
+	public long getTotalCount() {
+		return mTotalCount;
+	}
+
+	/**
+	 * Obtains up to {@code limit} of the most frequent keys, in descending order of estimated
+	 * count.
+	 *
+	 * @param limit
+	 * 		The maximum number of keys to return, which must not be negative.
+	 *
+	 * @return A non-null, unmodifiable list of the most frequent keys.
+	 */
+	public List<Entry> getTopKeys(final int limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("Limit (" + limit + ") cannot be negative");
+		}
+		return mEntries.subList(0, Math.min(limit, mEntries.size()));
+	}
+
+	/**
+	 * Obtains every tracked key, in descending order of estimated count.
+	 *
+	 * @return A non-null, unmodifiable list of all tracked keys.
+	 */
+	public List<Entry> getEntries() {
+		return mEntries;
+	}
+
+	/**
+	 * Obtains an upper bound of the number of times the given key was recorded. For untracked keys
+	 * this is the smallest tracked count when the summary is full, as any such key may have been
+	 * evicted with that count, and 0 otherwise.
+	 *
+	 * @param key
+	 * 		The key to look up.
+	 *
+	 * @return An upper bound of the count of {@code key}.
+	 */
+	public long getEstimatedCount(final String key) {
+		for (final Entry entry : mEntries) {
+			if (entry.getKey().equals(key)) {
+				return entry.getCount();
+			}
+		}
+		return getUntrackedBound();
+	}
+
+	private long getUntrackedBound() {
+		return mEntries.size() < mCapacity || mEntries.isEmpty() ? 0L : mEntries.get(mEntries.size() - 1).getCount();
+	}
+
+	/**
+	 * Merges this summary with another, creating a summary of both streams of keys. The capacity
+	 * of the result is the larger of the two capacities.
+	 *
+	 * @param other
+	 * 		Another non-null HeavyHitters object.
+	 *
+	 * @return A new HeavyHitters summarizing the keys of both this and {@code other}.
+	 */
+	public HeavyHitters mergeWith(final HeavyHitters other) {
+		if (other.mTotalCount == 0L && other.mCapacity <= mCapacity) {
+			return this;
+		} else if (mTotalCount == 0L && mCapacity <= other.mCapacity) {
+			return other;
+		}
+
+		final long myBound = getUntrackedBound();
+		final long otherBound = other.getUntrackedBound();
+		final Map<String, Entry> merged = new HashMap<>();
+		for (final Entry entry : mEntries) {
+			merged.put(entry.getKey(), new Entry(entry.getKey(), entry.getCount() + otherBound, entry.getError() + otherBound));
+		}
+		for (final Entry entry : other.mEntries) {
+			final Entry mine = merged.get(entry.getKey());
+			if (mine == null) {
+				merged.put(entry.getKey(), new Entry(entry.getKey(), entry.getCount() + myBound, entry.getError() + myBound));
+			} else {
+				// Undo the assumption that the key was untracked in other
+				merged.put(entry.getKey(), new Entry(entry.getKey(),
+													 mine.getCount() - otherBound + entry.getCount(),
+													 mine.getError() - otherBound + entry.getError()));
+			}
+		}
+
+		final int capacity = Math.max(mCapacity, other.mCapacity);
+		final List<Entry> entries = new ArrayList<>(merged.values());
+		Collections.sort(entries, BY_COUNT_DESCENDING);
+		return of(capacity, mTotalCount + other.mTotalCount, entries.subList(0, Math.min(capacity, entries.size())));
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) return true;
+		if (!(o instanceof HeavyHitters)) return false;
+		final HeavyHitters that = (HeavyHitters) o;
+		return mCapacity == that.mCapacity &&
+			   mTotalCount == that.mTotalCount &&
+			   Objects.equals(mEntries, that.mEntries);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(mCapacity, mTotalCount, mEntries);
+	}
+
+	@Override
+	public String toString() {
+		return "HeavyHitters(total=" + mTotalCount + ", top=" + getTopKeys(10) + ")";
+	}
+
+	/**
+	 * A single tracked key of a HeavyHitters summary.
+	 * <p/>
+	 * This class is immutable and (therefore) thread safe.
+	 */
+	public static final class Entry {
+
+		private final String mKey;
+		private final long mCount;
+		private final long mError;
+
+		private Entry(final String key, final long count, final long error) {
+			mKey = key;
+			mCount = count;
+			mError = error;
+		}
+
+		/**
+		 * Obtains the key that was recorded.
+		 *
+		 * @return The non-null key.
+		 */
+		public String getKey() {
+			return mKey;
+		}
+
+		/**
+		 * Obtains the estimated number of times the key was recorded, which is never less than the
+		 * true count.
+		 *
+		 * @return An upper bound of the count of this key.
+		 */
+		public long getCount() {
+			return mCount;
+		}
+
+		/**
+		 * Obtains the maximum amount by which {@link #getCount()} may overestimate the true count.
+		 *
+		 * @return The error bound of the count of this key.
+		 */
+		public long getError() {
+			return mError;
+		}
+
+		/**
+		 * Obtains the number of times this key is guaranteed to have been recorded.
+		 *
+		 * @return A lower bound of the count of this key.
+		 */
+		public long getGuaranteedCount() {
+			return mCount - mError;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Entry)) return false;
+			final Entry that = (Entry) o;
+			return mCount == that.mCount && mError == that.mError && mKey.equals(that.mKey);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(mKey, mCount, mError);
+		}
+
+		@Override
+		public String toString() {
+			return mKey + "=" + mCount + (mError == 0L ? "" : "(+/-" + mError + ")");
+		}
+	}
+
+	/**
+	 * A mutable Space-Saving summary, used by recorders to accumulate keys.
+	 * <p/>
+	 * Tracked keys are kept in a min-heap ordered by count, so that recording a key costs O(log
+	 * capacity) no matter how many distinct keys are seen.
+	 * <p/>
+	 * This class is not thread safe.
+	 */
+	/* package */ static final class Accumulator {
+
+		private final int mCapacity;
+		private final Map<String, Counter> mCounters = new HashMap<>();
+		private Counter[] mHeap = new Counter[0];
+		private int mSize;
+		private long mTotalCount;
+
+		/**
+		 * Creates a new, empty accumulator that tracks at most {@code capacity} keys.
+		 *
+		 * @param capacity
+		 * 		The maximum number of tracked keys, which must be positive.
+		 */
+		/* package */ Accumulator(final int capacity) {
+			if (capacity < 1) {
+				throw new IllegalArgumentException("Capacity (" + capacity + ") must be positive");
+			}
+			mCapacity = capacity;
+		}
+
+		/**
+		 * Records that the given key occurred {@code count} times.
+		 *
+		 * @param key
+		 * 		The non-null key that occurred.
+		 * @param count
+		 * 		The number of occurrences, which must be positive.
+		 */
+		/* package */ void add(final String key, final long count) {
+			mTotalCount += count;
+			final Counter existing = mCounters.get(key);
+			if (existing != null) {
+				existing.mCount += count;
+				siftDown(existing.mHeapIndex);
+			} else if (mSize < mCapacity) {
+				if (mSize == mHeap.length) {
+					mHeap = Arrays.copyOf(mHeap, Math.min(mCapacity, Math.max(8, mSize * 2)));
+				}
+				final Counter counter = new Counter(key, count, 0L);
+				mCounters.put(key, counter);
+				counter.mHeapIndex = mSize;
+				mHeap[mSize++] = counter;
+				siftUp(counter.mHeapIndex);
+			} else {
+				// Replace the minimum, inheriting its count as the error of the new key
+				final Counter minimum = mHeap[0];
+				mCounters.remove(minimum.mKey);
+				minimum.mKey = key;
+				minimum.mError = minimum.mCount;
+				minimum.mCount += count;
+				mCounters.put(key, minimum);
+				siftDown(0);
+			}
+		}
+
+		/**
+		 * Merges the given summary into this accumulator.
+		 *
+		 * @param summary
+		 * 		A non-null summary to merge into this accumulator.
+		 */
+		/* package */ void addAll(final HeavyHitters summary) {
+			if (summary.getTotalCount() == 0L) {
+				return;
+			}
+			final HeavyHitters merged = snapshot().mergeWith(summary);
+			mCounters.clear();
+			mHeap = new Counter[0];
+			mSize = 0;
+			mTotalCount = 0L;
+			for (final Entry entry : merged.getTopKeys(mCapacity)) {
+				add(entry.getKey(), entry.getCount());
+				mCounters.get(entry.getKey()).mError = entry.getError();
+			}
+			mTotalCount = merged.getTotalCount();
+		}
+
+		/**
+		 * Creates an immutable summary of the keys recorded so far.
+		 *
+		 * @return A new HeavyHitters of the current contents of this accumulator.
+		 */
+		/* package */ HeavyHitters snapshot() {
+			final List<Entry> entries = new ArrayList<>(mSize);
+			for (int index = 0; index < mSize; index++) {
+				entries.add(new Entry(mHeap[index].mKey, mHeap[index].mCount, mHeap[index].mError));
+			}
+			return of(mCapacity, mTotalCount, entries);
+		}
+
+		private void siftUp(final int start) {
+			int index = start;
+			while (index > 0) {
+				final int parent = (index - 1) / 2;
+				if (mHeap[parent].mCount <= mHeap[index].mCount) {
+					return;
+				}
+				swap(index, parent);
+				index = parent;
+			}
+		}
+
+		private void siftDown(final int start) {
+			int index = start;
+			while (true) {
+				final int left = index * 2 + 1;
+				final int right = left + 1;
+				int smallest = index;
+				if (left < mSize && mHeap[left].mCount < mHeap[smallest].mCount) {
+					smallest = left;
+				}
+				if (right < mSize && mHeap[right].mCount < mHeap[smallest].mCount) {
+					smallest = right;
+				}
+				if (smallest == index) {
+					return;
+				}
+				swap(index, smallest);
+				index = smallest;
+			}
+		}
+
+		private void swap(final int first, final int second) {
+			final Counter counter = mHeap[first];
+			mHeap[first] = mHeap[second];
+			mHeap[second] = counter;
+			mHeap[first].mHeapIndex = first;
+			mHeap[second].mHeapIndex = second;
+		}
+
+		/**
+		 * The mutable count of a single tracked key.
+		 */
+		private static final class Counter {
+
+			private String mKey;
+			private long mCount;
+			private long mError;
+			private int mHeapIndex;
+
+			private Counter(final String key, final long count, final long error) {
+				mKey = key;
+				mCount = count;
+				mError = error;
+			}
+		}
+	}
+}
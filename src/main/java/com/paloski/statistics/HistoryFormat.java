@@ -0,0 +1,71 @@
+package com.paloski.statistics;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The file format shared by {@link StatisticsHistoryWriter} and {@link StatisticsHistoryReader}.
+ * <p/>
+ * A history file starts with a header of {@link #MAGIC} and {@link #VERSION}, followed by blocks
+ * that each decode independently of the others. A block has a header of the length of its
+ * payload, the number of records within it, the start of the interval of its first record and the
+ * end of the interval of its last record, which lets readers skip blocks outside of a query.
+ * <p/>
+ * Each record is the end of its interval, as the zig-zag varint of the difference between the
+ * length of its interval and that of the previous record (the delta of delta of its timestamp),
+ * followed by the varint of each {@link CountColumns count column}: the count of the interval
+ * XORed with the count of the previous interval. Records of a steady process therefore take about
+ * a byte per field. The previous interval and counts of the first record of a block are 0.
+ *
+ * @author Adam
+ */
+/* package */ final class HistoryFormat {
+
+	/* package */ static final int MAGIC = 0x53544846;
+	/* package */ static final int VERSION = 1;
+	/* package */ static final int FILE_HEADER_BYTES = 8;
+	/* package */ static final int BLOCK_HEADER_BYTES = 24;
+	/* package */ static final int MAX_RECORD_BYTES = 10 * (1 + CountColumns.COUNT);
+
+	private HistoryFormat() {
+		throw new AssertionError("No instances");
+	}
+
+	/**
+	 * Writes the given value as an unsigned varint, 7 bits per byte with the least significant
+	 * first.
+	 */
+	/* package */ static void putVarint(final ByteBuffer buffer, final long value) {
+		long remaining = value;
+		while ((remaining & ~0x7FL) != 0L) {
+			buffer.put((byte) ((remaining & 0x7FL) | 0x80L));
+			remaining >>>= 7;
+		}
+		buffer.put((byte) remaining);
+	}
+
+	/**
+	 * Reads an unsigned varint written by {@link #putVarint(ByteBuffer, long)}.
+	 */
+	/* package */ static long getVarint(final ByteBuffer buffer) {
+		long value = 0L;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final byte next = buffer.get();
+			value |= (next & 0x7FL) << shift;
+			if (next >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalStateException("Malformed varint");
+	}
+
+	/**
+	 * Maps signed values to unsigned ones such that values near 0 stay small.
+	 */
+	/* package */ static long zigZag(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/* package */ static long unZigZag(final long value) {
+		return (value >>> 1) ^ -(value & 1L);
+	}
+}
@@ -0,0 +1,276 @@
+package com.paloski.statistics;
+
+import java.util.Arrays;
+
+/**
+ * A sketch that estimates the number of distinct values (such as user or request IDs) recorded,
+ * using a fixed amount of memory no matter how many values are seen.
+ * <p/>
+ * The sketch is a <a href="http://algo.inria.fr/flajolet/Publications/FlFuGaMe07.pdf">HyperLogLog</a>
+ * with {@code 2^precision} one byte registers, so the default precision of 12 uses 4KB and has a
+ * standard error of about 1.6% ({@code 1.04 / sqrt(2^precision)}). Small cardinalities are
+ * estimated through linear counting, which makes them close to exact.
+ * <p/>
+ * Merging two sketches is lossless: the result is exactly the sketch that would have been built by
+ * recording the union of both sets of values, so fleet wide distinct counts can be computed by
+ * merging the sketches of every recorder. Sketches of different precisions are merged by folding
+ * the more precise sketch down to the lower precision.
+ * <p/>
+ * This class is immutable and (therefore) thread safe. Sketches are built by the package private
+ * {@link Accumulator}.
+ *
+ * @author Adam
+ */
+public final class HyperLogLog {
+
+	/**
+	 * The precision used by recorders when distinct counting is enabled without a precision.
+	 */
+	public static final int DEFAULT_PRECISION = 12;
+
+	/**
+	 * The smallest supported precision.
+	 */
+	public static final int MIN_PRECISION = 4;
+
+	/**
+	 * The largest supported precision.
+	 */
+	public static final int MAX_PRECISION = 18;
+
+	private static final HyperLogLog EMPTY = new HyperLogLog(0, null);
+
+	private final int mPrecision;
+	private final /*Immutable*/ byte[] mRegisters;
+
+	private HyperLogLog(final int precision, final byte[] registers) {
+		mPrecision = precision;
+		mRegisters = registers;
+	}
+
+	/**
+	 * Obtains an empty sketch, which estimates 0 distinct values and merges with a sketch of any
+	 * precision.
+	 *
+	 * @return A non-null, empty HyperLogLog.
+	 */
+	/* package */
+	static HyperLogLog empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Obtains the precision of this sketch, or 0 if it is empty and has no registers.
+	 *
+	 * @return The precision of this sketch.
+	 */
+	public int getPrecision() {
+		return mPrecision;
+	}
+
+	/**
+	 * Estimates the number of distinct values recorded in this sketch.
+	 *
+	 * @return The estimated number of distinct values.
+	 */
+	public long getEstimate() {
+		if (mRegisters == null) {
+			return 0L;
+		}
+		final int registerCount = mRegisters.length;
+		double sum = 0.0;
+		int zeroRegisters = 0;
+		for (final byte register : mRegisters) {
+			sum += 1.0 / (1L << register);
+			if (register == 0) {
+				zeroRegisters++;
+			}
+		}
+
+		final double estimate = alpha(registerCount) * registerCount * registerCount / sum;
+		if (estimate <= 2.5 * registerCount && zeroRegisters != 0) {
+			// Linear counting is far more accurate for small cardinalities
+			return Math.round(registerCount * Math.log((double) registerCount / zeroRegisters));
+		}
+		return Math.round(estimate);
+	}
+
+	/**
+	 * Merges this sketch with another, creating a sketch of the union of the values of both.
+	 *
+	 * @param other
+	 * 		Another non-null HyperLogLog.
+	 *
+	 * @return A new HyperLogLog estimating the distinct values recorded in either sketch.
+	 */
+	public HyperLogLog mergeWith(final HyperLogLog other) {
+		if (other.mRegisters == null) {
+			return this;
+		} else if (mRegisters == null) {
+			return other;
+		}
+		final int precision = Math.min(mPrecision, other.mPrecision);
+		final byte[] registers = foldTo(precision);
+		final byte[] otherRegisters = other.foldTo(precision);
+		for (int index = 0; index < registers.length; index++) {
+			registers[index] = (byte) Math.max(registers[index], otherRegisters[index]);
+		}
+		return new HyperLogLog(precision, registers);
+	}
+
+	/**
+	 * Creates a copy of the registers of this sketch at the given, lower or equal, precision.
+	 */
+	private byte[] foldTo(final int precision) {
+		if (precision == mPrecision) {
+			return mRegisters.clone();
+		}
+		final int droppedBits = mPrecision - precision;
+		final byte[] folded = new byte[1 << precision];
+		for (int index = 0; index < mRegisters.length; index++) {
+			if (mRegisters[index] == 0) {
+				continue;
+			}
+			// The dropped index bits become the leading bits of the remaining hash
+			final int dropped = index & ((1 << droppedBits) - 1);
+			final int rank = dropped != 0
+							 ? Integer.numberOfLeadingZeros(dropped) - (32 - droppedBits) + 1
+							 : droppedBits + mRegisters[index];
+			final int target = index >>> droppedBits;
+			folded[target] = (byte) Math.max(folded[target], rank);
+		}
+		return folded;
+	}
+
+	private static double alpha(final int registerCount) {
+		switch (registerCount) {
+			case 16:
+				return 0.673;
+			case 32:
+				return 0.697;
+			case 64:
+				return 0.709;
+			default:
+				return 0.7213 / (1.0 + 1.079 / registerCount);
+		}
+	}
+
+	/**
+	 * Computes the 64 bit hash of a value, mixing an FNV-1a hash of its characters with the
+	 * MurmurHash3 finalizer so that every bit is well distributed.
+	 */
+	/* package */
+	static long hash(final CharSequence value) {
+		long hash = 0xcbf29ce484222325L;
+		for (int index = 0; index < value.length(); index++) {
+			hash ^= value.charAt(index);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) return true;
+		if (!(o instanceof HyperLogLog)) return false;
+		final HyperLogLog that = (HyperLogLog) o;
+		return mPrecision == that.mPrecision && Arrays.equals(mRegisters, that.mRegisters);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * mPrecision + Arrays.hashCode(mRegisters);
+	}
+
+	@Override
+	public String toString() {
+		return "HyperLogLog(precision=" + mPrecision + ", estimate=" + getEstimate() + ")";
+	}
+
+	/**
+	 * A mutable HyperLogLog, used by recorders to accumulate values.
+	 * <p/>
+	 * This class is not thread safe.
+	 */
+	/* package */ static final class Accumulator {
+
+		private final int mPrecision;
+		private final byte[] mRegisters;
+		private boolean mEmpty = true;
+
+		/**
+		 * Creates a new, empty accumulator of the given precision.
+		 *
+		 * @param precision
+		 * 		The precision, between {@link #MIN_PRECISION} and {@link #MAX_PRECISION} inclusive.
+		 */
+		/* package */ Accumulator(final int precision) {
+			if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+				throw new IllegalArgumentException("Precision (" + precision + ") must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+			}
+			mPrecision = precision;
+			mRegisters = new byte[1 << precision];
+		}
+
+		/**
+		 * Records a value.
+		 *
+		 * @param value
+		 * 		The non-null value to record.
+		 */
+		/* package */ void add(final CharSequence value) {
+			addHash(hash(value));
+		}
+
+		/**
+		 * Records a value by its 64 bit hash.
+		 *
+		 * @param hash
+		 * 		The well distributed hash of the value.
+		 */
+		/* package */ void addHash(final long hash) {
+			final int index = (int) (hash >>> (64 - mPrecision));
+			// Guarantee a terminating one bit so the rank cannot exceed the remaining bits
+			final long remaining = (hash << mPrecision) | (1L << (mPrecision - 1));
+			final byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+			if (rank > mRegisters[index]) {
+				mRegisters[index] = rank;
+			}
+			mEmpty = false;
+		}
+
+		/**
+		 * Merges the given sketch into this accumulator. The sketch must not have a lower precision
+		 * than this accumulator.
+		 *
+		 * @param sketch
+		 * 		A non-null sketch to merge.
+		 */
+		/* package */ void addAll(final HyperLogLog sketch) {
+			if (sketch.mRegisters == null) {
+				return;
+			} else if (sketch.mPrecision < mPrecision) {
+				throw new IllegalArgumentException("Cannot merge a sketch of precision " + sketch.mPrecision + " into precision " + mPrecision);
+			}
+			final byte[] registers = sketch.foldTo(mPrecision);
+			for (int index = 0; index < registers.length; index++) {
+				mRegisters[index] = (byte) Math.max(mRegisters[index], registers[index]);
+			}
+			mEmpty = false;
+		}
+
+		/**
+		 * Creates an immutable sketch of the values recorded so far.
+		 *
+		 * @return A new HyperLogLog of the current contents of this accumulator.
+		 */
+		/* package */ HyperLogLog snapshot() {
+			return mEmpty ? EMPTY : new HyperLogLog(mPrecision, mRegisters.clone());
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package com.paloski.statistics;
+
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The ways in which a call can end, other than by succeeding or failing, that say more about the
+ * circumstances of the call (such as a deadline or a shutdown) than about the health of the code
+ * being called. Outcomes in these categories are counted by {@link Statistics} separately from
+ * errors, so they do not inflate error rates.
+ *
+ * @author Adam
+ */
+public enum OutcomeCategory {
+
+	/**
+	 * The call did not complete within its deadline, e.g. it threw a {@link TimeoutException}.
+	 */
+	TIMED_OUT,
+
+	/**
+	 * The call was cancelled before it completed, e.g. it threw a {@link CancellationException}.
+	 */
+	CANCELLED,
+
+	/**
+	 * The call was never run as it was refused, e.g. by an executor that threw a {@link
+	 * RejectedExecutionException} because it was saturated or shut down.
+	 */
+	REJECTED,
+
+	/**
+	 * The thread making the call was interrupted, e.g. it threw an {@link InterruptedException}.
+	 */
+	INTERRUPTED;
+
+	/**
+	 * Determines the category of the call that ended by throwing the given exception.
+	 *
+	 * @param exp
+	 * 		The non-null exception that ended the call.
+	 *
+	 * @return The category of the outcome of the call, or null if the exception is an error.
+	 */
+	public static OutcomeCategory classify(final Exception exp) {
+		if (exp instanceof TimeoutException) {
+			return TIMED_OUT;
+		} else if (exp instanceof CancellationException) {
+			return CANCELLED;
+		} else if (exp instanceof RejectedExecutionException) {
+			return REJECTED;
+		} else if (exp instanceof InterruptedException || exp instanceof ClosedByInterruptException) {
+			return INTERRUPTED;
+		}
+		return null;
+	}
+}
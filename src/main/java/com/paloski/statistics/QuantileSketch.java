@@ -0,0 +1,519 @@
+package com.paloski.statistics;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A mergeable sketch of the distribution of non-negative long values (such as durations in
+ * nanoseconds) that answers quantile queries with a bounded relative error.
+ * <p/>
+ * The sketch follows the design of <a href="https://arxiv.org/abs/1908.10693">DDSketch</a>: values
+ * are counted in logarithmically sized bins, so that any quantile returned by {@link
+ * #getQuantile(double)} is within {@link #getRelativeAccuracy()} of the true value for that rank
+ * (i.e. a p99 of 100ms with an accuracy of 0.01 is somewhere between 99ms and 101ms). Because the
+ * bins of two sketches with the same accuracy line up exactly, merging is lossless and the
+ * accuracy guarantee holds for sketches merged from any number of sources.
+ * <p/>
+ * Memory is bounded by {@link #getMaxBins()}. If the recorded values span more bins than that, the
+ * lowest bins are collapsed together, which only affects the accuracy of the lowest quantiles. With
+ * the default accuracy of 1% every positive long value fits into fewer than 2200 bins, and a more
+ * typical range of one microsecond to ten seconds fits into about 800.
+ * <p/>
+ * The sketch has a compact serialized form, obtained through {@link #toByteArray()} and read back
+ * through {@link #fromByteArray(byte[])}, in which counts are encoded as variable length integers.
+ * <p/>
+ * This class is immutable and (therefore) thread safe. Sketches are built by the package private
+ * {@link Accumulator}.
+ *
+ * @author Adam
+ */
+public final class QuantileSketch {
+
+	/**
+	 * The relative accuracy used by recorders unless configured otherwise.
+	 */
+	public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+	/**
+	 * The maximum number of bins used by recorders unless configured otherwise.
+	 */
+	public static final int DEFAULT_MAX_BINS = 2048;
+
+	private static final byte SERIAL_VERSION = 1;
+	private static final long[] NO_BINS = new long[0];
+	private static final QuantileSketch EMPTY = new QuantileSketch(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BINS, 0, NO_BINS, 0L, 0L, 0L, 0L, 0L);
+
+	private final double mRelativeAccuracy;
+	private final int mMaxBins;
+	private final int mMinIndex;
+	private final /*Immutable*/ long[] mBins;
+	private final long mZeroCount;
+	private final long mCount;
+	private final long mSum;
+	private final long mMin;
+	private final long mMax;
+
+	private QuantileSketch(final double relativeAccuracy,
+						   final int maxBins,
+						   final int minIndex,
+						   final long[] bins,
+						   final long zeroCount,
+						   final long count,
+						   final long sum,
+						   final long min,
+						   final long max) {
+		mRelativeAccuracy = relativeAccuracy;
+		mMaxBins = maxBins;
+		mMinIndex = minIndex;
+		mBins = bins;
+		mZeroCount = zeroCount;
+		mCount = count;
+		mSum = sum;
+		mMin = min;
+		mMax = max;
+	}
+
+	/**
+	 * Obtains an empty sketch with the default accuracy and bin limit.
+	 *
+	 * @return A non-null, empty QuantileSketch.
+	 */
+	/* package */
+	static QuantileSketch empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Reads a sketch from the serialized form produced by {@link #toByteArray()}.
+	 *
+	 * @param bytes
+	 * 		The serialized sketch.
+	 *
+	 * @return A new QuantileSketch equal to the one that was serialized.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If the bytes are not a serialized sketch.
+	 */
+	public static QuantileSketch fromByteArray(final byte[] bytes) {
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		try {
+			final byte version = buffer.get();
+			if (version != SERIAL_VERSION) {
+				throw new IllegalArgumentException("Unknown serial version " + version);
+			}
+			final double relativeAccuracy = buffer.getDouble();
+			final int maxBins = (int) readVarLong(buffer);
+			validate(relativeAccuracy, maxBins);
+			final long zeroCount = readVarLong(buffer);
+			final long sum = readVarLong(buffer);
+			final long min = readVarLong(buffer);
+			final long max = readVarLong(buffer);
+			final int minIndex = (int) zigZagDecode(readVarLong(buffer));
+			final int binCount = (int) readVarLong(buffer);
+			if (binCount < 0 || binCount > maxBins) {
+				throw new IllegalArgumentException("Invalid bin count " + binCount);
+			}
+			final long[] bins = new long[binCount];
+			long count = zeroCount;
+			for (int index = 0; index < binCount; index++) {
+				bins[index] = readVarLong(buffer);
+				count += bins[index];
+			}
+			return new QuantileSketch(relativeAccuracy, maxBins, minIndex, bins, zeroCount, count, sum, min, max);
+		} catch (final RuntimeException exp) {
+			if (exp instanceof IllegalArgumentException) {
+				throw exp;
+			}
+			throw new IllegalArgumentException("Malformed quantile sketch", exp);
+		}
+	}
+
+	/**
+	 * Obtains the relative accuracy guaranteed by this sketch, e.g. 0.01 for 1%.
+	 *
+	 * @return The relative accuracy of quantiles returned by this sketch.
+	 */
+	public double getRelativeAccuracy() {
+		return mRelativeAccuracy;
+	}
+
+	/**
+	 * Obtains the maximum number of bins this sketch will use before collapsing its lowest bins.
+	 *
+	 * @return The bin limit of this sketch.
+	 */
+	public int getMaxBins() {
+		return mMaxBins;
+	}
+
+	/**
+	 * Obtains the number of values recorded in this sketch.
+	 *
+	 * @return The number of values in this sketch.
+	 */
+	public long getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Obtains the exact sum of the values recorded in this sketch. Numeric overflow is not handled.
+	 *
+	 * @return The sum of all recorded values.
+	 */
+	public long getSum() {
+		return mSum;
+	}
+
+	/**
+	 * Obtains the exact smallest value recorded in this sketch.
+	 *
+	 * @return The minimum value, or 0L if the sketch is empty.
+	 */
+	public long getMin() {
+		return mMin;
+	}
+
+	/**
+	 * Obtains the exact largest value recorded in this sketch.
+	 *
+	 * @return The maximum value, or 0L if the sketch is empty.
+	 */
+	public long getMax() {
+		return mMax;
+	}
+
+	/**
+	 * Obtains the estimated value at the given quantile.
+	 *
+	 * @param quantile
+	 * 		The quantile to query, between 0.0 and 1.0 inclusive (e.g. 0.99 for the p99).
+	 *
+	 * @return The estimated value at the given quantile, within the relative accuracy of this
+	 * sketch, or 0.0 if the sketch is empty.
+	 */
+	public double getQuantile(final double quantile) {
+		if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+			throw new IllegalArgumentException("Quantile (" + quantile + ") must be between 0 and 1");
+		}
+		if (mCount == 0L) {
+			return 0.0;
+		} else if (quantile == 0.0) {
+			return mMin;
+		} else if (quantile == 1.0) {
+			return mMax;
+		}
+
+		final double rank = quantile * (mCount - 1);
+		long cumulative = mZeroCount;
+		if (rank < cumulative) {
+			return 0.0;
+		}
+		for (int offset = 0; offset < mBins.length; offset++) {
+			cumulative += mBins[offset];
+			if (rank < cumulative) {
+				return Math.max(mMin, Math.min(mMax, valueOf(mMinIndex + offset)));
+			}
+		}
+		return mMax;
+	}
+
+	/**
+	 * Merges this sketch with another, creating a sketch of the combined distribution.
+	 * <p/>
+	 * Sketches with equal accuracy merge losslessly. If the accuracies differ, the result uses the
+	 * coarser accuracy of the two, and the values of the finer sketch are re-binned at their
+	 * estimated values, so that the error of those values is bounded by the sum of both
+	 * accuracies.
+	 *
+	 * @param other
+	 * 		Another non-null QuantileSketch
+	 *
+	 * @return A new QuantileSketch containing the values of both this sketch and {@code other}.
+	 */
+	public QuantileSketch mergeWith(final QuantileSketch other) {
+		if (other.mCount == 0L) {
+			return this;
+		} else if (mCount == 0L) {
+			return other;
+		}
+
+		final QuantileSketch coarser = mRelativeAccuracy >= other.mRelativeAccuracy ? this : other;
+		final QuantileSketch finer = coarser == this ? other : this;
+		final Accumulator accumulator = new Accumulator(coarser.mRelativeAccuracy, Math.max(mMaxBins, other.mMaxBins));
+		accumulator.addAll(coarser);
+		accumulator.addAll(finer);
+		return accumulator.snapshot();
+	}
+
+	/**
+	 * Serializes this sketch into a compact binary form that can be read by {@link
+	 * #fromByteArray(byte[])}.
+	 *
+	 * @return A new byte array containing this sketch.
+	 */
+	public byte[] toByteArray() {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream(32 + mBins.length * 2);
+		output.write(SERIAL_VERSION);
+		final long accuracyBits = Double.doubleToLongBits(mRelativeAccuracy);
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			output.write((int) (accuracyBits >>> shift));
+		}
+		writeVarLong(output, mMaxBins);
+		writeVarLong(output, mZeroCount);
+		writeVarLong(output, mSum);
+		writeVarLong(output, mMin);
+		writeVarLong(output, mMax);
+		writeVarLong(output, zigZagEncode(mMinIndex));
+		writeVarLong(output, mBins.length);
+		for (final long bin : mBins) {
+			writeVarLong(output, bin);
+		}
+		return output.toByteArray();
+	}
+
+	private double valueOf(final int index) {
+		final double gamma = gamma(mRelativeAccuracy);
+		return 2.0 * Math.pow(gamma, index) / (gamma + 1.0);
+	}
+
+	private static double gamma(final double relativeAccuracy) {
+		return (1.0 + relativeAccuracy) / (1.0 - relativeAccuracy);
+	}
+
+	private static void validate(final double relativeAccuracy, final int maxBins) {
+		if (!(relativeAccuracy > 0.0 && relativeAccuracy < 1.0)) {
+			throw new IllegalArgumentException("Relative accuracy (" + relativeAccuracy + ") must be between 0 and 1 exclusive");
+		} else if (maxBins < 1) {
+			throw new IllegalArgumentException("Max bins (" + maxBins + ") must be positive");
+		}
+	}
+
+	private static long zigZagEncode(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long zigZagDecode(final long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeVarLong(final ByteArrayOutputStream output, final long value) {
+		long remaining = value;
+		while ((remaining & ~0x7FL) != 0L) {
+			output.write((int) ((remaining & 0x7F) | 0x80));
+			remaining >>>= 7;
+		}
+		output.write((int) remaining);
+	}
+
+	private static long readVarLong(final ByteBuffer buffer) {
+		long value = 0L;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final byte next = buffer.get();
+			value |= (long) (next & 0x7F) << shift;
+			if ((next & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed variable length integer");
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) return true;
+		if (!(o instanceof QuantileSketch)) return false;
+		final QuantileSketch that = (QuantileSketch) o;
+		if (mCount == 0L && that.mCount == 0L) {
+			return true;
+		}
+		return Double.compare(mRelativeAccuracy, that.mRelativeAccuracy) == 0 &&
+			   mZeroCount == that.mZeroCount &&
+			   mCount == that.mCount &&
+			   mSum == that.mSum &&
+			   mMin == that.mMin &&
+			   mMax == that.mMax &&
+			   mMinIndex == that.mMinIndex &&
+			   Arrays.equals(mBins, that.mBins);
+	}
+
+	@Override
+	public int hashCode() {
+		if (mCount == 0L) {
+			return 0;
+		}
+		return Objects.hash(mRelativeAccuracy, mZeroCount, mCount, mSum, mMin, mMax, mMinIndex, Arrays.hashCode(mBins));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("QuantileSketch(count=%d, p50=%.0f, p99=%.0f, max=%d, accuracy=%.4f)",
+							 mCount, getQuantile(0.5), getQuantile(0.99), mMax, mRelativeAccuracy);
+	}
+
+	/**
+	 * A mutable builder of QuantileSketch objects, used by recorders to accumulate values.
+	 * <p/>
+	 * This class is not thread safe.
+	 */
+	/* package */ static final class Accumulator {
+
+		private final double mRelativeAccuracy;
+		private final double mLogGamma;
+		private final int mMaxBins;
+
+		private long[] mBins = NO_BINS;
+		private int mMinIndex;
+		private int mLowest;
+		private int mHighest;
+		private long mZeroCount;
+		private long mCount;
+		private long mSum;
+		private long mMin;
+		private long mMax;
+
+		/**
+		 * Creates a new, empty accumulator with the given accuracy and bin limit.
+		 *
+		 * @param relativeAccuracy
+		 * 		The relative accuracy of quantiles, between 0 and 1 exclusive.
+		 * @param maxBins
+		 * 		The maximum number of bins, which must be positive.
+		 */
+		/* package */ Accumulator(final double relativeAccuracy, final int maxBins) {
+			validate(relativeAccuracy, maxBins);
+			mRelativeAccuracy = relativeAccuracy;
+			mLogGamma = Math.log(gamma(relativeAccuracy));
+			mMaxBins = maxBins;
+		}
+
+		/**
+		 * Adds a single value to this accumulator.
+		 *
+		 * @param value
+		 * 		The value to add. Negative values are treated as 0.
+		 */
+		/* package */ void add(final long value) {
+			addCount(Math.max(0L, value), 1L);
+			mSum += Math.max(0L, value);
+		}
+
+		/**
+		 * Adds all of the values of the given sketch to this accumulator.
+		 *
+		 * @param sketch
+		 * 		A non-null sketch whose values are to be added.
+		 */
+		/* package */ void addAll(final QuantileSketch sketch) {
+			if (sketch.mCount == 0L) {
+				return;
+			}
+			final boolean aligned = Double.compare(sketch.mRelativeAccuracy, mRelativeAccuracy) == 0;
+			final long minBefore = mCount == 0L ? sketch.mMin : Math.min(mMin, sketch.mMin);
+			final long maxBefore = mCount == 0L ? sketch.mMax : Math.max(mMax, sketch.mMax);
+
+			addCount(0L, sketch.mZeroCount);
+			for (int offset = 0; offset < sketch.mBins.length; offset++) {
+				final long count = sketch.mBins[offset];
+				if (count == 0L) {
+					continue;
+				}
+				if (aligned) {
+					addToIndex(sketch.mMinIndex + offset, count);
+				} else {
+					addToIndex(indexOf(Math.max(1L, (long) sketch.valueOf(sketch.mMinIndex + offset))), count);
+				}
+				mCount += count;
+			}
+			mSum += sketch.mSum;
+			mMin = minBefore;
+			mMax = maxBefore;
+		}
+
+		/**
+		 * Creates an immutable sketch of the values added so far.
+		 *
+		 * @return A new QuantileSketch of the current contents of this accumulator.
+		 */
+		/* package */ QuantileSketch snapshot() {
+			if (mCount == 0L && Double.compare(mRelativeAccuracy, DEFAULT_RELATIVE_ACCURACY) == 0 && mMaxBins == DEFAULT_MAX_BINS) {
+				return EMPTY;
+			}
+			if (mBins.length == 0) {
+				return new QuantileSketch(mRelativeAccuracy, mMaxBins, 0, NO_BINS, mZeroCount, mCount, mSum, mMin, mMax);
+			}
+			final long[] bins = Arrays.copyOfRange(mBins, mLowest - mMinIndex, mHighest - mMinIndex + 1);
+			return new QuantileSketch(mRelativeAccuracy, mMaxBins, mLowest, bins, mZeroCount, mCount, mSum, mMin, mMax);
+		}
+
+		private void addCount(final long value, final long count) {
+			if (count == 0L) {
+				return;
+			}
+			if (mCount == 0L) {
+				mMin = value;
+				mMax = value;
+			} else {
+				mMin = Math.min(mMin, value);
+				mMax = Math.max(mMax, value);
+			}
+			if (value == 0L) {
+				mZeroCount += count;
+			} else {
+				addToIndex(indexOf(value), count);
+			}
+			mCount += count;
+		}
+
+		private int indexOf(final long value) {
+			return (int) Math.ceil(Math.log(value) / mLogGamma);
+		}
+
+		private void addToIndex(final int index, final long count) {
+			final int high = mBins.length == 0 ? index : Math.max(index, mHighest);
+			final int low = mBins.length == 0 ? index : Math.min(index, mLowest);
+			final int floor = high - mMaxBins + 1;
+
+			int target = index;
+			if (low < floor) {
+				// Too wide a range, collapse everything below the floor into the floor bin
+				long collapsed = 0L;
+				for (int bin = mLowest; bin < floor && bin <= mHighest; bin++) {
+					collapsed += mBins[bin - mMinIndex];
+					mBins[bin - mMinIndex] = 0L;
+				}
+				ensureRange(floor, high);
+				mBins[floor - mMinIndex] += collapsed;
+				mLowest = floor;
+				target = Math.max(index, floor);
+			} else {
+				ensureRange(low, high);
+			}
+
+			mBins[target - mMinIndex] += count;
+			mLowest = Math.min(mLowest, target);
+			mHighest = Math.max(mHighest, target);
+		}
+
+		private void ensureRange(final int low, final int high) {
+			if (mBins.length != 0 && low >= mMinIndex && high < mMinIndex + mBins.length) {
+				return;
+			}
+			final int required = high - low + 1;
+			final int capacity = Math.max(required, Math.min(mMaxBins, Math.max(32, mBins.length * 2)));
+			// Leave the spare capacity on the side that the range is growing towards
+			final int start = mBins.length != 0 && low < mMinIndex ? high - capacity + 1 : low;
+			final long[] bins = new long[capacity];
+			if (mBins.length != 0) {
+				for (int bin = Math.max(mLowest, start); bin <= mHighest && bin < start + capacity; bin++) {
+					bins[bin - start] = mBins[bin - mMinIndex];
+				}
+			} else {
+				mLowest = low;
+				mHighest = high;
+			}
+			mBins = bins;
+			mMinIndex = start;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.paloski.statistics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A process wide registry of StatisticsRecorders by name, used by code that cannot be handed a
+ * recorder directly, such as the methods woven by {@link com.paloski.statistics.agent.StatisticsAgent}.
+ * <p/>
+ * A recorder that is obtained before being {@link #register(String, StatisticsRecorder) registered}
+ * is created with the default configuration, so recorders that need another configuration must be
+ * registered before any code that records into them runs.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Adam
+ */
+public final class RecorderRegistry {
+
+	private static final ConcurrentMap<String, StatisticsRecorder> RECORDERS = new ConcurrentHashMap<>();
+
+	private RecorderRegistry() {
+		throw new AssertionError("No instances");
+	}
+
+	/**
+	 * Obtains the recorder registered with the given name, registering a new, default, recorder if
+	 * there is none.
+	 *
+	 * @param name
+	 * 		The non-null name of the recorder.
+	 *
+	 * @return The non-null recorder registered with the name.
+	 */
+	public static StatisticsRecorder getRecorder(final String name) {
+		if (name == null) {
+			throw new IllegalArgumentException("Name cannot be null");
+		}
+		final StatisticsRecorder recorder = RECORDERS.get(name);
+		return recorder != null ? recorder : RECORDERS.computeIfAbsent(name, ignored -> StatisticsRecorder.newRecorder());
+	}
+
+	/**
+	 * Registers the given recorder with the given name.
+	 *
+	 * @param name
+	 * 		The non-null name of the recorder.
+	 * @param recorder
+	 * 		The non-null recorder to register.
+	 *
+	 * @throws IllegalStateException
+	 * 		If a recorder is already registered with the name.
+	 */
+	public static void register(final String name, final StatisticsRecorder recorder) {
+		if (name == null) {
+			throw new IllegalArgumentException("Name cannot be null");
+		} else if (recorder == null) {
+			throw new IllegalArgumentException("Recorder cannot be null");
+		}
+		if (RECORDERS.putIfAbsent(name, recorder) != null) {
+			throw new IllegalStateException("A recorder is already registered as " + name);
+		}
+	}
+
+	/**
+	 * Obtains every registered recorder.
+	 *
+	 * @return A non-null, unmodifiable view of the registered recorders by name.
+	 */
+	public static Map<String, StatisticsRecorder> getRecorders() {
+		return Collections.unmodifiableMap(RECORDERS);
+	}
+}
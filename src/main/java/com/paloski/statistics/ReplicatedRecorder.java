@@ -0,0 +1,131 @@
+package com.paloski.statistics;
+
+/**
+ * A node of a cluster that records statistics locally and exchanges them with the other nodes as
+ * {@link ReplicatedStatistics}, so that every node converges on the statistics of the whole
+ * cluster without counting anything twice, no matter how often states are resent.
+ * <p/>
+ * Events are recorded into the {@link #getLocalRecorder() local recorder} as usual, which becomes
+ * the counters this node owns. States received from other nodes are merged in through {@link
+ * #merge(ReplicatedStatistics)}, and the changes to send to other nodes are obtained through
+ * {@link #exportDelta()}, or {@link #getState()} for a full state.
+ * <p/>
+ * The ID of a node must be unique within the cluster, and should also be unique to each run of a
+ * process (e.g. by including its start time), as a restarted node would otherwise start its
+ * counters below the values the cluster already knows about.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Adam
+ */
+public final class ReplicatedRecorder {
+
+	private final String mNodeId;
+	private final StatisticsRecorder mLocalRecorder;
+
+	//Guarded by this
+	private ReplicatedStatistics mRemoteState = ReplicatedStatistics.empty();
+	private ReplicatedStatistics mLastExported = ReplicatedStatistics.empty();
+
+	private ReplicatedRecorder(final String nodeId, final StatisticsRecorder localRecorder) {
+		mNodeId = nodeId;
+		mLocalRecorder = localRecorder;
+	}
+
+	/**
+	 * Creates a new node that records into a new, default, StatisticsRecorder.
+	 *
+	 * @param nodeId
+	 * 		The non-null, unique ID of the node.
+	 *
+	 * @return A new ReplicatedRecorder.
+	 */
+	public static ReplicatedRecorder forNode(final String nodeId) {
+		return forNode(nodeId, StatisticsRecorder.newRecorder());
+	}
+
+	/**
+	 * Creates a new node that records into the given StatisticsRecorder, including its children.
+	 *
+	 * @param nodeId
+	 * 		The non-null, unique ID of the node.
+	 * @param localRecorder
+	 * 		The non-null recorder that events of this node are recorded into.
+	 *
+	 * @return A new ReplicatedRecorder.
+	 */
+	public static ReplicatedRecorder forNode(final String nodeId, final StatisticsRecorder localRecorder) {
+		if (nodeId == null) {
+			throw new IllegalArgumentException("Node ID cannot be null");
+		} else if (localRecorder == null) {
+			throw new IllegalArgumentException("Local recorder cannot be null");
+		}
+		return new ReplicatedRecorder(nodeId, localRecorder);
+	}
+
+	/**
+	 * Obtains the ID of this node.
+	 *
+	 * @return The non-null node ID.
+	 */
+	public String getNodeId() {
+		return mNodeId;
+	}
+
+	/**
+	 * Obtains the recorder that the events of this node should be recorded into.
+	 *
+	 * @return The non-null local recorder.
+	 */
+	public StatisticsRecorder getLocalRecorder() {
+		return mLocalRecorder;
+	}
+
+	/**
+	 * Merges the state or delta of another node into the state of this node. Merging the same
+	 * state more than once has no further effect.
+	 *
+	 * @param remote
+	 * 		The non-null state received from another node.
+	 */
+	public synchronized void merge(final ReplicatedStatistics remote) {
+		if (remote == null) {
+			throw new IllegalArgumentException("Remote state cannot be null");
+		}
+		mRemoteState = mRemoteState.mergeWith(remote);
+	}
+
+	/**
+	 * Obtains the full state of this node, i.e. its own counters along with everything merged from
+	 * other nodes.
+	 *
+	 * @return A non-null ReplicatedStatistics of everything known to this node.
+	 */
+	public synchronized ReplicatedStatistics getState() {
+		return mRemoteState.mergeWith(ReplicatedStatistics.forNode(mNodeId, mLocalRecorder.takeSnapshot()));
+	}
+
+	/**
+	 * Obtains the changes to the state of this node since the last time this was invoked, which is
+	 * all that needs to be sent to nodes that received every previous delta. Deltas that are lost
+	 * may be recovered by sending the {@link #getState() full state}.
+	 *
+	 * @return A non-null, possibly empty, ReplicatedStatistics of the changes since the last
+	 * export.
+	 */
+	public synchronized ReplicatedStatistics exportDelta() {
+		final ReplicatedStatistics state = getState();
+		final ReplicatedStatistics delta = state.deltaSince(mLastExported);
+		mLastExported = state;
+		return delta;
+	}
+
+	/**
+	 * Takes a snapshot of the statistics of the whole cluster, as known to this node.
+	 *
+	 * @return A non-null Statistics object of the totals of every known node.
+	 */
+	public Statistics takeSnapshot() {
+		return getState().toStatistics();
+	}
+}
@@ -0,0 +1,364 @@
+package com.paloski.statistics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The statistics of a cluster of nodes, in a form that can be exchanged between the nodes any
+ * number of times without counting anything twice.
+ * <p/>
+ * This is a state based CRDT: every node owns a set of grow-only counters (of successes,
+ * unattributed errors, errors of each exception type and outcomes of each {@link
+ * OutcomeCategory}) that only it increments, and merging two
+ * states takes the maximum of each counter of each node. Merging is therefore commutative,
+ * associative and idempotent, so states may be merged in any order, repeatedly, and after any
+ * number of retries, and every node that has seen the same updates will agree on the same totals.
+ * <p/>
+ * A state may also be a delta, holding only the counters that changed since a previous state (see
+ * {@link ReplicatedRecorder#exportDelta()}); merging a delta is the same as merging the full state
+ * it was taken from into any state that already contains the previous one.
+ * <p/>
+ * Exception types are identified by name, so that nodes need not share class loaders. Types that
+ * cannot be loaded when converted {@link #toStatistics() to Statistics} are reported through
+ * {@link ErrorStatistics#getCountOfUnresolvedExceptionTypes()}.
+ * <p/>
+ * This class is immutable and (therefore) thread safe.
+ *
+ * @author Adam
+ */
+public final class ReplicatedStatistics {
+
+	private static final OutcomeCategory[] OUTCOMES = OutcomeCategory.values();
+	private static final ReplicatedStatistics EMPTY = new ReplicatedStatistics(Collections.<String, NodeCounters>emptyMap());
+
+	private final /*Immutable*/ Map<String, NodeCounters> mNodes;
+
+	private ReplicatedStatistics(final Map<String, NodeCounters> nodes) {
+		mNodes = nodes;
+	}
+
+	/**
+	 * Obtains an empty state, which has no nodes.
+	 *
+	 * @return A non-null, empty ReplicatedStatistics.
+	 */
+	public static ReplicatedStatistics empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Creates the state of a single node, whose counters are the counts of the given statistics.
+	 * <p/>
+	 * The counters of a node may only grow, so the statistics given for a node over time must never
+	 * count less than they did previously, as is the case for snapshots of a single {@link
+	 * StatisticsRecorder}. Errors that were not attributed to a type, including {@link
+	 * ErrorStatistics#getOverflowErrorCount() overflowed} errors, are counted as unattributed.
+	 *
+	 * @param nodeId
+	 * 		The non-null ID of the node, which must be unique within the cluster.
+	 * @param statistics
+	 * 		The non-null statistics recorded by the node.
+	 *
+	 * @return A new ReplicatedStatistics holding only the given node.
+	 */
+	public static ReplicatedStatistics forNode(final String nodeId, final Statistics statistics) {
+		if (nodeId == null) {
+			throw new IllegalArgumentException("Node ID cannot be null");
+		} else if (statistics == null) {
+			throw new IllegalArgumentException("Statistics cannot be null");
+		}
+		final ErrorStatistics errors = statistics.getErrorStatistics();
+		final Map<String, Long> typeCounts = new HashMap<>(errors.getCountOfUnresolvedExceptionTypes());
+		for (final Map.Entry<Class<? extends Exception>, Long> entry : errors.getCountOfExceptionTypes().entrySet()) {
+			final Long current = typeCounts.get(entry.getKey().getName());
+			typeCounts.put(entry.getKey().getName(), current == null ? entry.getValue() : current + entry.getValue());
+		}
+		final long[] outcomes = new long[OUTCOMES.length];
+		for (final OutcomeCategory category : OUTCOMES) {
+			outcomes[category.ordinal()] = statistics.getOutcomeCount(category);
+		}
+		final NodeCounters counters = new NodeCounters(statistics.getSuccessCount(),
+													   errors.getUncategorizedErrorCount() + errors.getOverflowErrorCount(),
+													   typeCounts, outcomes);
+		return new ReplicatedStatistics(Collections.singletonMap(nodeId, counters));
+	}
+
+	/**
+	 * Obtains the IDs of every node that this state holds counters of.
+	 *
+	 * @return A non-null, unmodifiable set of node IDs.
+	 */
+	public Set<String> getNodeIds() {
+		return mNodes.keySet();
+	}
+
+	/**
+	 * Obtains the number of successes recorded by every node.
+	 *
+	 * @return The total number of successes.
+	 */
+	public long getSuccessCount() {
+		long total = 0L;
+		for (final NodeCounters counters : mNodes.values()) {
+			total += counters.mSuccesses;
+		}
+		return total;
+	}
+
+	/**
+	 * Obtains the number of errors recorded by every node.
+	 *
+	 * @return The total number of errors.
+	 */
+	public long getErrorCount() {
+		long total = 0L;
+		for (final NodeCounters counters : mNodes.values()) {
+			total += counters.getErrorCount();
+		}
+		return total;
+	}
+
+	/**
+	 * Obtains the number of calls with an outcome of the given category recorded by every node.
+	 *
+	 * @param category
+	 * 		The non-null category of outcome.
+	 *
+	 * @return The total number of calls with an outcome of the category.
+	 */
+	public long getOutcomeCount(final OutcomeCategory category) {
+		long total = 0L;
+		for (final NodeCounters counters : mNodes.values()) {
+			total += counters.mOutcomes[category.ordinal()];
+		}
+		return total;
+	}
+
+	/**
+	 * Obtains the number of errors of each exception type recorded by every node.
+	 *
+	 * @return A non-null, unmodifiable map of exception type name -> count of errors.
+	 */
+	public Map<String, Long> getCountOfExceptionTypes() {
+		final Map<String, Long> totals = new HashMap<>();
+		for (final NodeCounters counters : mNodes.values()) {
+			for (final Map.Entry<String, Long> entry : counters.mTypeCounts.entrySet()) {
+				final Long current = totals.get(entry.getKey());
+				totals.put(entry.getKey(), current == null ? entry.getValue() : current + entry.getValue());
+			}
+		}
+		return Collections.unmodifiableMap(totals);
+	}
+
+	/**
+	 * Merges this state with another, taking the largest value of every counter of every node.
+	 * Merging is commutative, associative and idempotent.
+	 *
+	 * @param other
+	 * 		Another non-null state or delta.
+	 *
+	 * @return A new ReplicatedStatistics that includes every update known to either state.
+	 */
+	public ReplicatedStatistics mergeWith(final ReplicatedStatistics other) {
+		if (other.mNodes.isEmpty()) {
+			return this;
+		} else if (mNodes.isEmpty()) {
+			return other;
+		}
+		final Map<String, NodeCounters> nodes = new HashMap<>(mNodes);
+		for (final Map.Entry<String, NodeCounters> entry : other.mNodes.entrySet()) {
+			final NodeCounters mine = nodes.get(entry.getKey());
+			nodes.put(entry.getKey(), mine == null ? entry.getValue() : mine.mergeWith(entry.getValue()));
+		}
+		return new ReplicatedStatistics(Collections.unmodifiableMap(nodes));
+	}
+
+	/**
+	 * Creates a delta holding only the counters of this state that are larger than in the given
+	 * previous state, such that merging the delta into anything containing {@code previous} yields
+	 * the same result as merging this state.
+	 *
+	 * @param previous
+	 * 		A non-null state that this state is known to contain.
+	 *
+	 * @return A new, possibly empty, ReplicatedStatistics of what changed since {@code previous}.
+	 */
+	/* package */ ReplicatedStatistics deltaSince(final ReplicatedStatistics previous) {
+		final Map<String, NodeCounters> nodes = new HashMap<>();
+		for (final Map.Entry<String, NodeCounters> entry : mNodes.entrySet()) {
+			final NodeCounters before = previous.mNodes.get(entry.getKey());
+			final NodeCounters delta = before == null ? entry.getValue() : entry.getValue().deltaSince(before);
+			if (delta != null) {
+				nodes.put(entry.getKey(), delta);
+			}
+		}
+		return nodes.isEmpty() ? EMPTY : new ReplicatedStatistics(Collections.unmodifiableMap(nodes));
+	}
+
+	/**
+	 * Converts this state to the Statistics of the whole cluster, resolving exception types through
+	 * the class loader of this class.
+	 *
+	 * @return A non-null Statistics object of the totals of every node.
+	 */
+	public Statistics toStatistics() {
+		return toStatistics(ReplicatedStatistics.class.getClassLoader());
+	}
+
+	/**
+	 * Converts this state to the Statistics of the whole cluster, resolving exception types through
+	 * the given class loader. Types that cannot be resolved to an exception class are reported
+	 * through {@link ErrorStatistics#getCountOfUnresolvedExceptionTypes()}.
+	 *
+	 * @param classLoader
+	 * 		The class loader to resolve exception types through.
+	 *
+	 * @return A non-null Statistics object of the totals of every node.
+	 */
+	public Statistics toStatistics(final ClassLoader classLoader) {
+		long unattributed = 0L;
+		for (final NodeCounters counters : mNodes.values()) {
+			unattributed += counters.mUnattributedErrors;
+		}
+		final Map<Class<? extends Exception>, Long> resolved = new HashMap<>();
+		final Map<String, Long> unresolved = new HashMap<>();
+		for (final Map.Entry<String, Long> entry : getCountOfExceptionTypes().entrySet()) {
+			final Class<? extends Exception> type = resolve(entry.getKey(), classLoader);
+			if (type != null) {
+				resolved.put(type, entry.getValue());
+			} else {
+				unresolved.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return new Statistics(SuccessStatistics.forSuccessCount(getSuccessCount()),
+							  ErrorStatistics.forFailures(unattributed, resolved).withUntrackedTypes(unresolved, 0L))
+				.withOutcomeCounts(getOutcomeCount(OutcomeCategory.TIMED_OUT), getOutcomeCount(OutcomeCategory.CANCELLED),
+								   getOutcomeCount(OutcomeCategory.REJECTED), getOutcomeCount(OutcomeCategory.INTERRUPTED));
+	}
+
+	private static Class<? extends Exception> resolve(final String name, final ClassLoader classLoader) {
+		try {
+			final Class<?> type = Class.forName(name, false, classLoader);
+			return Exception.class.isAssignableFrom(type) ? type.asSubclass(Exception.class) : null;
+		} catch (final ClassNotFoundException | LinkageError exp) {
+			return null;
+		}
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) return true;
+		if (!(o instanceof ReplicatedStatistics)) return false;
+		final ReplicatedStatistics that = (ReplicatedStatistics) o;
+		return Objects.equals(mNodes, that.mNodes);
+	}
+
+	@Override
+	public int hashCode() {
+		return mNodes.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "ReplicatedStatistics(" + mNodes + ")";
+	}
+
+	/**
+	 * The grow-only counters owned by a single node.
+	 */
+	private static final class NodeCounters {
+
+		private final long mSuccesses;
+		private final long mUnattributedErrors;
+		private final /*Immutable*/ Map<String, Long> mTypeCounts;
+		//Indexed by the ordinal of each OutcomeCategory, never modified
+		private final long[] mOutcomes;
+
+		private NodeCounters(final long successes, final long unattributedErrors, final Map<String, Long> typeCounts,
+							 final long[] outcomes) {
+			mSuccesses = successes;
+			mUnattributedErrors = unattributedErrors;
+			mTypeCounts = Collections.unmodifiableMap(typeCounts);
+			mOutcomes = outcomes;
+		}
+
+		private long getErrorCount() {
+			long total = mUnattributedErrors;
+			for (final Long count : mTypeCounts.values()) {
+				total += count;
+			}
+			return total;
+		}
+
+		private NodeCounters mergeWith(final NodeCounters other) {
+			final Map<String, Long> typeCounts = new HashMap<>(mTypeCounts);
+			for (final Map.Entry<String, Long> entry : other.mTypeCounts.entrySet()) {
+				final Long mine = typeCounts.get(entry.getKey());
+				if (mine == null || mine < entry.getValue()) {
+					typeCounts.put(entry.getKey(), entry.getValue());
+				}
+			}
+			final long[] outcomes = new long[mOutcomes.length];
+			for (int index = 0; index < outcomes.length; index++) {
+				outcomes[index] = Math.max(mOutcomes[index], other.mOutcomes[index]);
+			}
+			return new NodeCounters(Math.max(mSuccesses, other.mSuccesses),
+									Math.max(mUnattributedErrors, other.mUnattributedErrors),
+									typeCounts, outcomes);
+		}
+
+		/**
+		 * Creates counters holding only the counters that grew since {@code before}, with the
+		 * others left at 0, or returns null if nothing grew.
+		 */
+		private NodeCounters deltaSince(final NodeCounters before) {
+			final Map<String, Long> typeCounts = new HashMap<>();
+			for (final Map.Entry<String, Long> entry : mTypeCounts.entrySet()) {
+				final Long previous = before.mTypeCounts.get(entry.getKey());
+				if (previous == null || previous < entry.getValue()) {
+					typeCounts.put(entry.getKey(), entry.getValue());
+				}
+			}
+			final long successes = mSuccesses > before.mSuccesses ? mSuccesses : 0L;
+			final long unattributedErrors = mUnattributedErrors > before.mUnattributedErrors ? mUnattributedErrors : 0L;
+			final long[] outcomes = new long[mOutcomes.length];
+			boolean outcomesGrew = false;
+			for (int index = 0; index < outcomes.length; index++) {
+				if (mOutcomes[index] > before.mOutcomes[index]) {
+					outcomes[index] = mOutcomes[index];
+					outcomesGrew = true;
+				}
+			}
+			if (successes == 0L && unattributedErrors == 0L && typeCounts.isEmpty() && !outcomesGrew) {
+				return null;
+			}
+			return new NodeCounters(successes, unattributedErrors, typeCounts, outcomes);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) return true;
+			if (!(o instanceof NodeCounters)) return false;
+			final NodeCounters that = (NodeCounters) o;
+			return mSuccesses == that.mSuccesses &&
+				   mUnattributedErrors == that.mUnattributedErrors &&
+				   Objects.equals(mTypeCounts, that.mTypeCounts) &&
+				   Arrays.equals(mOutcomes, that.mOutcomes);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(mSuccesses, mUnattributedErrors, mTypeCounts, Arrays.hashCode(mOutcomes));
+		}
+
+		@Override
+		public String toString() {
+			return "(successes=" + mSuccesses + ", unattributed=" + mUnattributedErrors + ", types=" + mTypeCounts
+				   + ", outcomes=" + Arrays.toString(mOutcomes) + ")";
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package com.paloski.statistics;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 /**
@@ -14,6 +16,10 @@ public final class Statistics {
 
 	private final ErrorStatistics mErrorStatistics;
 	private final SuccessStatistics mSuccessStatistics;
+	private final long mTimedOutCount;
+	private final long mCancelledCount;
+	private final long mRejectedCount;
+	private final long mInterruptedCount;
 
 	/**
 	 * Creates a new Statistics object from a non-null SuccessStatistics object and a non-null
@@ -25,13 +31,45 @@ public final class Statistics {
 	 * 		The statistics of errors that make up the success information of these overall statistics
 	 */
 	/* package */ Statistics(final SuccessStatistics successStatistics, final ErrorStatistics errorStatistics) {
+		this(successStatistics, errorStatistics, 0L, 0L, 0L, 0L);
+	}
+
+	private Statistics(final SuccessStatistics successStatistics, final ErrorStatistics errorStatistics,
+					   final long timedOutCount, final long cancelledCount,
+					   final long rejectedCount, final long interruptedCount) {
 		if (successStatistics == null) {
 			throw new NullPointerException("Null success stats parameter is not allowed");
 		} else if (errorStatistics == null) {
 			throw new NullPointerException("Null error stats parameter is not allowed");
+		} else if ((timedOutCount | cancelledCount | rejectedCount | interruptedCount) < 0L) {
+			throw new IllegalArgumentException("Outcome counts cannot be negative");
 		}
 		mErrorStatistics = errorStatistics;
 		mSuccessStatistics = successStatistics;
+		mTimedOutCount = timedOutCount;
+		mCancelledCount = cancelledCount;
+		mRejectedCount = rejectedCount;
+		mInterruptedCount = interruptedCount;
+	}
+
+	/**
+	 * Creates a copy of these Statistics with the given counts of the outcomes of each {@link
+	 * OutcomeCategory}.
+	 *
+	 * @param timedOutCount
+	 * 		The number of calls that timed out.
+	 * @param cancelledCount
+	 * 		The number of calls that were cancelled.
+	 * @param rejectedCount
+	 * 		The number of calls that were rejected.
+	 * @param interruptedCount
+	 * 		The number of calls that were interrupted.
+	 *
+	 * @return A new Statistics object with the given outcome counts.
+	 */
+	/* package */ Statistics withOutcomeCounts(final long timedOutCount, final long cancelledCount,
+											   final long rejectedCount, final long interruptedCount) {
+		return new Statistics(mSuccessStatistics, mErrorStatistics, timedOutCount, cancelledCount, rejectedCount, interruptedCount);
 	}
 
 	/**
@@ -46,7 +84,11 @@ public final class Statistics {
 	 */
 	public Statistics mergeWith(final Statistics other) {
 		return new Statistics(getSuccessStatistics().mergeWith(other.getSuccessStatistics()),
-							  getErrorStatistics().mergeWith(other.getErrorStatistics()));
+							  getErrorStatistics().mergeWith(other.getErrorStatistics()),
+							  mTimedOutCount + other.mTimedOutCount,
+							  mCancelledCount + other.mCancelledCount,
+							  mRejectedCount + other.mRejectedCount,
+							  mInterruptedCount + other.mInterruptedCount);
 	}
 
 	/**
@@ -116,6 +158,150 @@ public final class Statistics {
 		return mSuccessStatistics;
 	}
 
+	/**
+	 * Obtains the number of calls that did not complete within their deadline. These are not
+	 * counted as errors, nor as events.
+	 *
+	 * @return The number of timed out calls.
+	 */
+	public long getTimedOutCount() {
+		return mTimedOutCount;
+	}
+
+	/**
+	 * Obtains the number of calls that were cancelled before they completed. These are not counted
+	 * as errors, nor as events.
+	 *
+	 * @return The number of cancelled calls.
+	 */
+	public long getCancelledCount() {
+		return mCancelledCount;
+	}
+
+	/**
+	 * Obtains the number of calls that were refused before being run, such as by a saturated
+	 * executor. These are not counted as errors, nor as events.
+	 *
+	 * @return The number of rejected calls.
+	 */
+	public long getRejectedCount() {
+		return mRejectedCount;
+	}
+
+	/**
+	 * Obtains the number of calls whose thread was interrupted. These are not counted as errors,
+	 * nor as events.
+	 *
+	 * @return The number of interrupted calls.
+	 */
+	public long getInterruptedCount() {
+		return mInterruptedCount;
+	}
+
+	/**
+	 * Obtains the number of calls whose outcome was of the given category.
+	 *
+	 * @param category
+	 * 		The non-null category of outcome.
+	 *
+	 * @return The number of calls with an outcome of the given category.
+	 */
+	public long getOutcomeCount(final OutcomeCategory category) {
+		switch (category) {
+			case TIMED_OUT:
+				return mTimedOutCount;
+			case CANCELLED:
+				return mCancelledCount;
+			case REJECTED:
+				return mRejectedCount;
+			case INTERRUPTED:
+				return mInterruptedCount;
+			default:
+				throw new IllegalArgumentException("Unknown category " + category);
+		}
+	}
+
+	/**
+	 * Obtains the time that these statistics were recorded over, which is not considered by {@link
+	 * #equals(Object)}. Merged statistics cover the time of every merged statistics.
+	 *
+	 * @return The non-null time range, which is {@link TimeRange#isKnown() unknown} unless these
+	 * statistics came from a recorder.
+	 */
+	public TimeRange getTimeRange() {
+		return mSuccessStatistics.getTimeRange().mergeWith(mErrorStatistics.getTimeRange());
+	}
+
+	/**
+	 * Obtains the throughput of events (successes and errors) over the {@link #getTimeRange() time
+	 * range} they were recorded over.
+	 *
+	 * @return The number of events per second, or 0.0 if the time range is unknown.
+	 */
+	public double getEventsPerSecond() {
+		return getTimeRange().getRatePerSecond(getEventCount());
+	}
+
+	/**
+	 * Obtains the throughput of successes over the {@link #getTimeRange() time range} they were
+	 * recorded over.
+	 *
+	 * @return The number of successes per second, or 0.0 if the time range is unknown.
+	 */
+	public double getSuccessesPerSecond() {
+		return getTimeRange().getRatePerSecond(getSuccessCount());
+	}
+
+	/**
+	 * Obtains the rate of errors over the {@link #getTimeRange() time range} they were recorded
+	 * over.
+	 *
+	 * @return The number of errors per second, or 0.0 if the time range is unknown.
+	 */
+	public double getErrorsPerSecond() {
+		return getTimeRange().getRatePerSecond(getErrorCount());
+	}
+
+	/**
+	 * Estimates the number of distinct entities that had either a success or an error recorded
+	 * against them. Entities that had both are only counted once.
+	 *
+	 * @return The estimated number of distinct entities recorded, or 0 if distinct entity tracking
+	 * was not enabled.
+	 */
+	public long getDistinctEntityCount() {
+		return mSuccessStatistics.getDistinctEntities().mergeWith(mErrorStatistics.getDistinctEntities()).getEstimate();
+	}
+
+	/**
+	 * Obtains the number of bytes that {@link #writeTo(ByteBuffer)} writes.
+	 *
+	 * @return The length of the serialized form of these statistics, in bytes.
+	 */
+	public int getSerializedSize() {
+		return StatisticsView.sizeOf(this);
+	}
+
+	/**
+	 * Writes the counts, durations and time range of these statistics at the position of the given
+	 * buffer, in a form that may be read in place by a {@link StatisticsView}.
+	 *
+	 * @param buffer
+	 * 		The non-null, big endian, buffer to write to, which is advanced past the written
+	 * 		statistics.
+	 *
+	 * @throws BufferOverflowException
+	 * 		If the buffer has fewer than {@link #getSerializedSize()} bytes remaining.
+	 */
+	public void writeTo(final ByteBuffer buffer) {
+		if (buffer == null) {
+			throw new IllegalArgumentException("Buffer cannot be null");
+		} else if (buffer.remaining() < getSerializedSize()) {
+			throw new BufferOverflowException();
+		}
+		StatisticsView.write(this, buffer);
+	}
+
 	@Override
 	public String toString() {
 		return String.format("Total events: %d (%d (%.2f%%) Success %d (%.2f%%) Error)",
@@ -132,11 +318,16 @@ public final class Statistics {
 		if (!(o instanceof Statistics)) return false;
 		final Statistics that = (Statistics) o;
 		return Objects.equals(getErrorStatistics(), that.getErrorStatistics()) &&
-			   Objects.equals(getSuccessStatistics(), that.getSuccessStatistics());
+			   Objects.equals(getSuccessStatistics(), that.getSuccessStatistics()) &&
+			   mTimedOutCount == that.mTimedOutCount &&
+			   mCancelledCount == that.mCancelledCount &&
+			   mRejectedCount == that.mRejectedCount &&
+			   mInterruptedCount == that.mInterruptedCount;
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(getErrorStatistics(), getSuccessStatistics());
+		return Objects.hash(getErrorStatistics(), getSuccessStatistics(),
+							mTimedOutCount, mCancelledCount, mRejectedCount, mInterruptedCount);
 	}
 }
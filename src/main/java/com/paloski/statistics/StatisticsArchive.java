@@ -0,0 +1,338 @@
+package com.paloski.statistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in process archive of the history of a StatisticsRecorder, which answers questions such as
+ * "the error rate per minute over the last day" without an external time series database.
+ * <p/>
+ * Each {@link #capture()} takes a snapshot of the recorder and adds what was recorded since the
+ * previous capture to the current bucket of every resolution of the archive, so that each coarser
+ * resolution is downsampled from the same captures as it goes. By default the archive keeps a
+ * bucket per second for 10 minutes, per minute for a day and per hour for 30 days. Buckets are
+ * kept in preallocated ring buffers with a {@code long[]} per column, so an archive takes a fixed
+ * amount of memory, and a bucket is overwritten once it is older than its resolution retains.
+ * <p/>
+ * Only counts are archived: the successes, errors and {@link OutcomeCategory outcomes} of each
+ * bucket. Statistics returned by queries therefore carry no latency, exception types or entities,
+ * and their errors are all unattributed, though their {@link Statistics#getTimeRange() time range}
+ * is that of the query so that rates may be computed from them.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Adam
+ */
+public final class StatisticsArchive {
+
+	private final ReadWriteLock mLock = new ReentrantReadWriteLock();
+	private final StatisticsRecorder mRecorder;
+	//Ordered from the finest resolution to the coarsest
+	private final List<Resolution> mResolutions;
+	private final long[] mPrevious;
+	private long mLastCaptureMillis = Long.MIN_VALUE;
+
+	private StatisticsArchive(final Builder builder) {
+		mRecorder = builder.mRecorder;
+		final List<Resolution> resolutions = new ArrayList<>();
+		if (builder.mIntervals.isEmpty()) {
+			resolutions.add(new Resolution(TimeUnit.SECONDS.toMillis(1L), 600));
+			resolutions.add(new Resolution(TimeUnit.MINUTES.toMillis(1L), 1440));
+			resolutions.add(new Resolution(TimeUnit.HOURS.toMillis(1L), 720));
+		}
+		for (int index = 0; index < builder.mIntervals.size(); index++) {
+			resolutions.add(new Resolution(builder.mIntervals.get(index), builder.mBucketCounts.get(index)));
+		}
+		Collections.sort(resolutions, new Comparator<Resolution>() {
+			@Override
+			public int compare(final Resolution first, final Resolution second) {
+				return Long.compare(first.mIntervalMillis, second.mIntervalMillis);
+			}
+		});
+		mResolutions = resolutions;
+		//Only what is recorded once the archive exists is archived
+		mPrevious = CountColumns.of(mRecorder.takeSnapshot());
+	}
+
+	/**
+	 * Creates a new archive of the given recorder with the default resolutions.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to archive.
+	 *
+	 * @return A new, empty StatisticsArchive.
+	 */
+	public static StatisticsArchive forRecorder(final StatisticsRecorder recorder) {
+		return newBuilder(recorder).build();
+	}
+
+	/**
+	 * Creates a new Builder of an archive of the given recorder.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to archive.
+	 *
+	 * @return A new Builder.
+	 */
+	public static Builder newBuilder(final StatisticsRecorder recorder) {
+		if (recorder == null) {
+			throw new IllegalArgumentException("Recorder cannot be null");
+		}
+		return new Builder(recorder);
+	}
+
+	/**
+	 * Captures what was recorded since the previous capture into the current bucket of every
+	 * resolution. Captures should be taken at least as often as the finest resolution.
+	 */
+	public void capture() {
+		capture(System.currentTimeMillis());
+	}
+
+	/**
+	 * Captures what was recorded since the previous capture as of the given time.
+	 */
+	/* package */ void capture(final long nowMillis) {
+		final Lock writeLock = mLock.writeLock();
+		writeLock.lock();
+		try {
+			//Snapshots are taken in order, so that the deltas between them are never negative
+			final long[] current = CountColumns.of(mRecorder.takeSnapshot());
+			final long millis = CountColumns.captureMillis(nowMillis, mLastCaptureMillis);
+			final long[] deltas = new long[CountColumns.COUNT];
+			for (int column = 0; column < CountColumns.COUNT; column++) {
+				deltas[column] = current[column] - mPrevious[column];
+				mPrevious[column] = current[column];
+			}
+			for (final Resolution resolution : mResolutions) {
+				resolution.add(millis, deltas);
+			}
+			mLastCaptureMillis = millis;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Schedules {@link #capture()} to be run periodically on the given executor.
+	 *
+	 * @param executor
+	 * 		The non-null executor to capture upon.
+	 * @param period
+	 * 		The time between captures, which must be positive.
+	 * @param unit
+	 * 		The non-null unit of {@code period}.
+	 *
+	 * @return The future of the scheduled captures, which may be cancelled to stop capturing.
+	 */
+	public ScheduledFuture<?> scheduleCapture(final ScheduledExecutorService executor, final long period, final TimeUnit unit) {
+		if (executor == null) {
+			throw new IllegalArgumentException("Executor cannot be null");
+		} else if (unit == null) {
+			throw new IllegalArgumentException("Unit cannot be null");
+		} else if (period <= 0L) {
+			throw new IllegalArgumentException("Period (" + period + ") must be positive");
+		}
+		return executor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				capture();
+			}
+		}, period, period, unit);
+	}
+
+	/**
+	 * Obtains the merged statistics of every bucket that overlaps the given range of time, from the
+	 * finest resolution that still retains the start of the range, or the coarsest resolution if
+	 * none do.
+	 *
+	 * @param fromMillis
+	 * 		The start of the range, inclusive, in milliseconds since the epoch.
+	 * @param toMillis
+	 * 		The end of the range, exclusive, in milliseconds since the epoch.
+	 *
+	 * @return The non-null statistics of the range, which are empty, with an unknown time range, if
+	 * nothing was captured within it.
+	 */
+	public Statistics query(final long fromMillis, final long toMillis) {
+		if (toMillis <= fromMillis) {
+			throw new IllegalArgumentException("End (" + toMillis + ") must be after start (" + fromMillis + ")");
+		}
+		final Lock readLock = mLock.readLock();
+		readLock.lock();
+		try {
+			if (mLastCaptureMillis == Long.MIN_VALUE) {
+				return new Statistics(SuccessStatistics.empty(), ErrorStatistics.empty());
+			}
+			Resolution chosen = mResolutions.get(mResolutions.size() - 1);
+			for (final Resolution resolution : mResolutions) {
+				if (resolution.getOldestRetainedMillis() <= fromMillis) {
+					chosen = resolution;
+					break;
+				}
+			}
+			return chosen.sum(fromMillis, toMillis, mLastCaptureMillis);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Obtains the statistics of each step of the given range of time, e.g. of every minute of the
+	 * last day, as though {@link #query(long, long)} was invoked for each.
+	 *
+	 * @param fromMillis
+	 * 		The start of the range, inclusive, in milliseconds since the epoch.
+	 * @param toMillis
+	 * 		The end of the range, exclusive, in milliseconds since the epoch.
+	 * @param step
+	 * 		The length of each step, which must be positive.
+	 * @param unit
+	 * 		The non-null unit of {@code step}.
+	 *
+	 * @return A non-null list of the statistics of each step, in order, the last of which may be
+	 * shorter than a step.
+	 */
+	public List<Statistics> querySeries(final long fromMillis, final long toMillis, final long step, final TimeUnit unit) {
+		if (unit == null) {
+			throw new IllegalArgumentException("Unit cannot be null");
+		} else if (unit.toMillis(step) <= 0L) {
+			throw new IllegalArgumentException("Step (" + step + " " + unit + ") must be at least a millisecond");
+		} else if (toMillis <= fromMillis) {
+			throw new IllegalArgumentException("End (" + toMillis + ") must be after start (" + fromMillis + ")");
+		}
+		final long stepMillis = unit.toMillis(step);
+		final List<Statistics> series = new ArrayList<>();
+		for (long start = fromMillis; start < toMillis; start += stepMillis) {
+			series.add(query(start, Math.min(toMillis, start + stepMillis)));
+		}
+		return series;
+	}
+
+	/**
+	 * The buckets of a single resolution, held in a ring buffer per column. The slot of a bucket is
+	 * its number (the time of its start divided by the interval) modulo the number of buckets.
+	 */
+	private static final class Resolution {
+
+		private static final long NO_BUCKET = Long.MIN_VALUE;
+
+		private final long mIntervalMillis;
+		private final int mBucketCount;
+		private final long[] mBucketNumbers;
+		private final long[][] mColumns;
+		private long mLatestBucket = NO_BUCKET;
+
+		private Resolution(final long intervalMillis, final int bucketCount) {
+			mIntervalMillis = intervalMillis;
+			mBucketCount = bucketCount;
+			mBucketNumbers = new long[bucketCount];
+			Arrays.fill(mBucketNumbers, NO_BUCKET);
+			mColumns = new long[CountColumns.COUNT][bucketCount];
+		}
+
+		private void add(final long millis, final long[] deltas) {
+			final long bucket = Math.floorDiv(millis, mIntervalMillis);
+			final int slot = (int) Math.floorMod(bucket, (long) mBucketCount);
+			if (mBucketNumbers[slot] != bucket) {
+				mBucketNumbers[slot] = bucket;
+				for (final long[] column : mColumns) {
+					column[slot] = 0L;
+				}
+			}
+			for (int column = 0; column < CountColumns.COUNT; column++) {
+				mColumns[column][slot] += deltas[column];
+			}
+			mLatestBucket = bucket;
+		}
+
+		/**
+		 * Obtains the start of the oldest bucket this resolution retains.
+		 */
+		private long getOldestRetainedMillis() {
+			return (mLatestBucket - mBucketCount + 1) * mIntervalMillis;
+		}
+
+		private Statistics sum(final long fromMillis, final long toMillis, final long lastCaptureMillis) {
+			final long first = Math.max(Math.floorDiv(fromMillis, mIntervalMillis), mLatestBucket - mBucketCount + 1);
+			final long last = Math.floorDiv(toMillis - 1L, mIntervalMillis);
+			final long[] sums = new long[CountColumns.COUNT];
+			long earliest = NO_BUCKET;
+			for (int slot = 0; slot < mBucketCount; slot++) {
+				final long bucket = mBucketNumbers[slot];
+				if (bucket != NO_BUCKET && bucket >= first && bucket <= last) {
+					for (int column = 0; column < CountColumns.COUNT; column++) {
+						sums[column] += mColumns[column][slot];
+					}
+					earliest = earliest == NO_BUCKET ? bucket : Math.min(earliest, bucket);
+				}
+			}
+			if (earliest == NO_BUCKET) {
+				return new Statistics(SuccessStatistics.empty(), ErrorStatistics.empty());
+			}
+			final long startMillis = Math.max(fromMillis, earliest * mIntervalMillis);
+			final TimeRange timeRange = TimeRange.betweenMillis(startMillis, Math.max(startMillis, Math.min(toMillis, lastCaptureMillis)));
+			return CountColumns.toStatistics(sums, timeRange);
+		}
+	}
+
+	/**
+	 * A builder of StatisticsArchive objects.
+	 * <p/>
+	 * This class is not thread safe.
+	 */
+	public static final class Builder {
+
+		private final StatisticsRecorder mRecorder;
+		private final List<Long> mIntervals = new ArrayList<>();
+		private final List<Integer> mBucketCounts = new ArrayList<>();
+
+		private Builder(final StatisticsRecorder recorder) {
+			mRecorder = recorder;
+		}
+
+		/**
+		 * Adds a resolution to the archive, replacing the default resolutions.
+		 *
+		 * @param interval
+		 * 		The length of each bucket, which must be at least a millisecond.
+		 * @param unit
+		 * 		The non-null unit of {@code interval}.
+		 * @param bucketCount
+		 * 		The number of buckets retained, which must be positive.
+		 *
+		 * @return This builder
+		 */
+		public Builder withResolution(final long interval, final TimeUnit unit, final int bucketCount) {
+			if (unit == null) {
+				throw new IllegalArgumentException("Unit cannot be null");
+			} else if (unit.toMillis(interval) <= 0L) {
+				throw new IllegalArgumentException("Interval (" + interval + " " + unit + ") must be at least a millisecond");
+			} else if (bucketCount < 1) {
+				throw new IllegalArgumentException("Bucket count (" + bucketCount + ") must be positive");
+			}
+			mIntervals.add(unit.toMillis(interval));
+			mBucketCounts.add(bucketCount);
+			return this;
+		}
+
+		/**
+		 * Creates a new StatisticsArchive with the resolutions of this builder, or the default
+		 * resolutions if none were added.
+		 *
+		 * @return A new, empty StatisticsArchive.
+		 */
+		public StatisticsArchive build() {
+			return new StatisticsArchive(this);
+		}
+	}
+}
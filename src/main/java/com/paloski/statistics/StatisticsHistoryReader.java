@@ -0,0 +1,150 @@
+package com.paloski.statistics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the history files written by {@link StatisticsHistoryWriter}.
+ * <p/>
+ * The file is memory mapped, and each query scans its blocks sequentially, skipping those whose
+ * time lies outside of the query by their headers alone and decoding the others straight into
+ * sums of their counts, so that no record is materialized as an object. The file is mapped again
+ * when a query finds that it has grown, so a reader sees blocks flushed after it was opened. As a
+ * single mapping is used, files may be at most 2GB.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Adam
+ */
+public final class StatisticsHistoryReader implements Closeable {
+
+	private final FileChannel mChannel;
+	private MappedByteBuffer mMapped;
+
+	private StatisticsHistoryReader(final FileChannel channel, final MappedByteBuffer mapped) {
+		mChannel = channel;
+		mMapped = mapped;
+	}
+
+	/**
+	 * Opens the history file at the given path for reading.
+	 *
+	 * @param path
+	 * 		The non-null path of the history file.
+	 *
+	 * @return A new StatisticsHistoryReader.
+	 *
+	 * @throws IOException
+	 * 		If the file cannot be opened, or is not a history file.
+	 */
+	public static StatisticsHistoryReader open(final Path path) throws IOException {
+		if (path == null) {
+			throw new IllegalArgumentException("Path cannot be null");
+		}
+		final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+			if (mapped.limit() < HistoryFormat.FILE_HEADER_BYTES
+				|| mapped.getInt(0) != HistoryFormat.MAGIC || mapped.getInt(4) != HistoryFormat.VERSION) {
+				throw new IOException("Not a statistics history file");
+			}
+			return new StatisticsHistoryReader(channel, mapped);
+		} catch (final IOException | RuntimeException exp) {
+			channel.close();
+			throw exp;
+		}
+	}
+
+	/**
+	 * Obtains the merged statistics of every interval whose end lies within the given range of
+	 * time.
+	 *
+	 * @param fromMillis
+	 * 		The start of the range, inclusive, in milliseconds since the epoch.
+	 * @param toMillis
+	 * 		The end of the range, exclusive, in milliseconds since the epoch.
+	 *
+	 * @return The non-null statistics of the range, whose time range spans the intervals within
+	 * it, or which are empty, with an unknown time range, if no interval is.
+	 *
+	 * @throws IOException
+	 * 		If the file cannot be mapped.
+	 */
+	public Statistics query(final long fromMillis, final long toMillis) throws IOException {
+		if (toMillis <= fromMillis) {
+			throw new IllegalArgumentException("End (" + toMillis + ") must be after start (" + fromMillis + ")");
+		}
+		final ByteBuffer buffer = getMapping().duplicate();
+		final long[] sums = new long[CountColumns.COUNT];
+		final long[] deltas = new long[CountColumns.COUNT];
+		long earliest = Long.MAX_VALUE;
+		long latest = Long.MIN_VALUE;
+
+		int position = HistoryFormat.FILE_HEADER_BYTES;
+		while (position + HistoryFormat.BLOCK_HEADER_BYTES <= buffer.limit()) {
+			final int length = buffer.getInt(position);
+			final int recordCount = buffer.getInt(position + 4);
+			final long startMillis = buffer.getLong(position + 8);
+			final long endMillis = buffer.getLong(position + 16);
+			final int payload = position + HistoryFormat.BLOCK_HEADER_BYTES;
+			if (length < 0 || payload + length > buffer.limit()) {
+				//A block that is still being written
+				break;
+			}
+			position = payload + length;
+			if (endMillis < fromMillis || startMillis >= toMillis) {
+				continue;
+			}
+
+			buffer.limit(position).position(payload);
+			long millis = startMillis;
+			long interval = 0L;
+			for (int column = 0; column < CountColumns.COUNT; column++) {
+				deltas[column] = 0L;
+			}
+			for (int record = 0; record < recordCount; record++) {
+				interval += HistoryFormat.unZigZag(HistoryFormat.getVarint(buffer));
+				final long intervalStart = millis;
+				millis += interval;
+				final boolean within = millis >= fromMillis && millis < toMillis;
+				for (int column = 0; column < CountColumns.COUNT; column++) {
+					deltas[column] ^= HistoryFormat.getVarint(buffer);
+					if (within) {
+						sums[column] += deltas[column];
+					}
+				}
+				if (within) {
+					earliest = Math.min(earliest, intervalStart);
+					latest = Math.max(latest, millis);
+				}
+			}
+			buffer.limit(buffer.capacity());
+		}
+
+		if (latest == Long.MIN_VALUE) {
+			return new Statistics(SuccessStatistics.empty(), ErrorStatistics.empty());
+		}
+		return CountColumns.toStatistics(sums, TimeRange.betweenMillis(earliest, latest));
+	}
+
+	/**
+	 * Obtains the mapping of the whole file, mapping it again if it has grown.
+	 */
+	private synchronized MappedByteBuffer getMapping() throws IOException {
+		final long size = mChannel.size();
+		if (size > mMapped.capacity()) {
+			mMapped = mChannel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+		}
+		return mMapped;
+	}
+
+	@Override
+	public void close() throws IOException {
+		mChannel.close();
+	}
+}
@@ -0,0 +1,238 @@
+package com.paloski.statistics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends the history of a StatisticsRecorder to a compact, append only file, which may be read
+ * by {@link StatisticsHistoryReader}.
+ * <p/>
+ * Each {@link #capture()} takes a snapshot of the recorder and appends what was recorded since the
+ * previous capture, compressed in the manner of Facebook's Gorilla: timestamps as the delta of
+ * their deltas and counts as the XOR of consecutive counts, both as varints, so that the record
+ * of a regularly captured, steady process takes about a byte per field (see {@link
+ * HistoryFormat}). Records are buffered into blocks, which are written through a FileChannel
+ * when full, or by {@link #flush()}.
+ * <p/>
+ * Like {@link StatisticsArchive}, only the counts of successes, errors and outcomes are kept.
+ * Opening an existing file appends to it, after discarding any block that was only partially
+ * written.
+ * <p/>
+ * This class is not thread safe.
+ *
+ * @author Adam
+ */
+public final class StatisticsHistoryWriter implements Closeable {
+
+	private static final int BLOCK_PAYLOAD_BYTES = 4096;
+
+	private final StatisticsRecorder mRecorder;
+	private final FileChannel mChannel;
+	private final ByteBuffer mBlock = ByteBuffer.allocate(HistoryFormat.BLOCK_HEADER_BYTES + BLOCK_PAYLOAD_BYTES);
+	private final long[] mPrevious;
+	private final long[] mPreviousDeltas = new long[CountColumns.COUNT];
+	private long mPreviousMillis;
+	private long mPreviousInterval;
+	private long mBlockStartMillis;
+	private int mRecordCount;
+
+	private StatisticsHistoryWriter(final StatisticsRecorder recorder, final FileChannel channel, final long nowMillis) {
+		mRecorder = recorder;
+		mChannel = channel;
+		mPrevious = CountColumns.of(recorder.takeSnapshot());
+		mPreviousMillis = nowMillis;
+		mBlock.position(HistoryFormat.BLOCK_HEADER_BYTES);
+	}
+
+	/**
+	 * Opens the history file at the given path for appending the history of the given recorder,
+	 * creating it if it does not exist. Only what is recorded once the file is opened is appended.
+	 *
+	 * @param path
+	 * 		The non-null path of the history file.
+	 * @param recorder
+	 * 		The non-null recorder whose history is appended.
+	 *
+	 * @return A new StatisticsHistoryWriter.
+	 *
+	 * @throws IOException
+	 * 		If the file cannot be opened, or is not a history file.
+	 */
+	public static StatisticsHistoryWriter open(final Path path, final StatisticsRecorder recorder) throws IOException {
+		return open(path, recorder, System.currentTimeMillis());
+	}
+
+	/**
+	 * Opens the history file at the given path, as of the given time.
+	 */
+	/* package */ static StatisticsHistoryWriter open(final Path path, final StatisticsRecorder recorder, final long nowMillis) throws IOException {
+		if (path == null) {
+			throw new IllegalArgumentException("Path cannot be null");
+		} else if (recorder == null) {
+			throw new IllegalArgumentException("Recorder cannot be null");
+		}
+		final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (channel.size() == 0L) {
+				final ByteBuffer header = ByteBuffer.allocate(HistoryFormat.FILE_HEADER_BYTES);
+				header.putInt(HistoryFormat.MAGIC).putInt(HistoryFormat.VERSION).flip();
+				writeFully(channel, header, 0L);
+				channel.position(HistoryFormat.FILE_HEADER_BYTES);
+			} else {
+				channel.position(findEndOfBlocks(channel));
+				channel.truncate(channel.position());
+			}
+			return new StatisticsHistoryWriter(recorder, channel, nowMillis);
+		} catch (final IOException | RuntimeException exp) {
+			channel.close();
+			throw exp;
+		}
+	}
+
+	/**
+	 * Validates the header of the file and finds the end of its last complete block.
+	 */
+	private static long findEndOfBlocks(final FileChannel channel) throws IOException {
+		final ByteBuffer header = ByteBuffer.allocate(Math.max(HistoryFormat.FILE_HEADER_BYTES, HistoryFormat.BLOCK_HEADER_BYTES));
+		header.limit(HistoryFormat.FILE_HEADER_BYTES);
+		if (readFully(channel, header, 0L) < HistoryFormat.FILE_HEADER_BYTES
+			|| header.getInt(0) != HistoryFormat.MAGIC || header.getInt(4) != HistoryFormat.VERSION) {
+			throw new IOException("Not a statistics history file");
+		}
+		final long size = channel.size();
+		long position = HistoryFormat.FILE_HEADER_BYTES;
+		while (position + HistoryFormat.BLOCK_HEADER_BYTES <= size) {
+			header.clear().limit(HistoryFormat.BLOCK_HEADER_BYTES);
+			readFully(channel, header, position);
+			final long end = position + HistoryFormat.BLOCK_HEADER_BYTES + header.getInt(0);
+			if (header.getInt(0) < 0 || end > size) {
+				break;
+			}
+			position = end;
+		}
+		return position;
+	}
+
+	/**
+	 * Appends what was recorded since the previous capture. A full block that could not be written
+	 * stays buffered, and is retried by the next capture or flush.
+	 *
+	 * @throws IOException
+	 * 		If a full block cannot be written.
+	 */
+	public void capture() throws IOException {
+		capture(System.currentTimeMillis());
+	}
+
+	/**
+	 * Appends what was recorded since the previous capture as of the given time.
+	 */
+	/* package */ void capture(final long nowMillis) throws IOException {
+		if (mBlock.remaining() < HistoryFormat.MAX_RECORD_BYTES) {
+			//The block could not be written when it filled, so it is retried before anything is lost
+			writeBlock();
+		}
+		final long[] current = CountColumns.of(mRecorder.takeSnapshot());
+		final long millis = CountColumns.captureMillis(nowMillis, mPreviousMillis);
+		if (mRecordCount == 0) {
+			mBlockStartMillis = mPreviousMillis;
+			mPreviousInterval = 0L;
+			for (int column = 0; column < CountColumns.COUNT; column++) {
+				mPreviousDeltas[column] = 0L;
+			}
+		}
+		final long interval = millis - mPreviousMillis;
+		HistoryFormat.putVarint(mBlock, HistoryFormat.zigZag(interval - mPreviousInterval));
+		for (int column = 0; column < CountColumns.COUNT; column++) {
+			final long delta = current[column] - mPrevious[column];
+			HistoryFormat.putVarint(mBlock, delta ^ mPreviousDeltas[column]);
+			mPreviousDeltas[column] = delta;
+			mPrevious[column] = current[column];
+		}
+		mPreviousInterval = interval;
+		mPreviousMillis = millis;
+		mRecordCount++;
+		if (mBlock.remaining() < HistoryFormat.MAX_RECORD_BYTES) {
+			writeBlock();
+		}
+	}
+
+	/**
+	 * Writes the records captured since the last block was written as a block of their own, so
+	 * that they are visible to readers.
+	 *
+	 * @throws IOException
+	 * 		If the block cannot be written.
+	 */
+	public void flush() throws IOException {
+		if (mRecordCount != 0) {
+			writeBlock();
+		}
+	}
+
+	/**
+	 * Flushes the captured records and closes the file.
+	 *
+	 * @throws IOException
+	 * 		If the records cannot be written or the file cannot be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			mChannel.close();
+		}
+	}
+
+	/**
+	 * Writes the buffered records as a block. Should the write fail, the records stay buffered, and
+	 * the next write rewrites the whole block in place of whatever part of it was written.
+	 */
+	private void writeBlock() throws IOException {
+		final int end = mBlock.position();
+		mBlock.putInt(0, end - HistoryFormat.BLOCK_HEADER_BYTES);
+		mBlock.putInt(4, mRecordCount);
+		mBlock.putLong(8, mBlockStartMillis);
+		mBlock.putLong(16, mPreviousMillis);
+		mBlock.flip();
+		final long position = mChannel.position();
+		boolean written = false;
+		try {
+			writeFully(mChannel, mBlock, position);
+			mChannel.position(position + end);
+			written = true;
+		} finally {
+			mBlock.clear();
+			if (written) {
+				mBlock.position(HistoryFormat.BLOCK_HEADER_BYTES);
+				mRecordCount = 0;
+			} else {
+				mBlock.position(end);
+			}
+		}
+	}
+
+	private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+		long offset = position;
+		while (buffer.hasRemaining()) {
+			offset += channel.write(buffer, offset);
+		}
+	}
+
+	private static int readFully(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+		int read = 0;
+		while (buffer.hasRemaining()) {
+			final int count = channel.read(buffer, position + read);
+			if (count < 0) {
+				break;
+			}
+			read += count;
+		}
+		return read;
+	}
+}
@@ -0,0 +1,420 @@
+package com.paloski.statistics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Publishes periodic snapshots of a StatisticsRecorder, or of every recorder of the {@link
+ * RecorderRegistry}, to any number of subscribers, so that each {@link #publish()} takes a single
+ * snapshot however many consumers there are.
+ * <p/>
+ * Subscribers follow the protocol of Reactive Streams (and of java.util.concurrent.Flow, which
+ * their interfaces mirror, so adapting them is trivial): a subscriber is delivered snapshots only
+ * once it has {@link Subscription#request(long) requested} them. Rather than queueing snapshots
+ * for a subscriber without demand, each subscriber holds only the latest snapshot it has not been
+ * delivered, which replaces any older one, so a slow subscriber receives the most recent snapshot
+ * once it requests more and never falls behind. Each replaced snapshot is counted in {@link
+ * #getConflatedCount()}.
+ * <p/>
+ * Snapshots are never delivered to the same subscriber concurrently. A publisher created with an
+ * {@link Executor}, as by {@link #forRecorder(StatisticsRecorder, Executor)}, delivers them to each
+ * subscriber in a task of its own on that executor, in the manner of
+ * java.util.concurrent.SubmissionPublisher, so that a subscriber that is slow to consume a
+ * snapshot delays neither publishing nor the other subscribers. <b>A publisher created without one
+ * delivers snapshots synchronously</b>, on the thread that publishes them, or on the thread that
+ * requests them when one was pending, so its subscribers must hand any slow work off to another
+ * thread in {@link Subscriber#onNext(Object)}, or they stall publishing and every subscriber after
+ * them.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @param <T>
+ * 		The type of the published snapshots.
+ *
+ * @author Adam
+ */
+public final class StatisticsPublisher<T> implements AutoCloseable {
+
+	/**
+	 * A consumer of published snapshots, mirroring java.util.concurrent.Flow.Subscriber.
+	 *
+	 * @param <T>
+	 * 		The type of the published snapshots.
+	 */
+	public interface Subscriber<T> {
+
+		/**
+		 * Invoked once, before any other method, with the subscription through which snapshots are
+		 * requested.
+		 *
+		 * @param subscription
+		 * 		The non-null subscription of this subscriber.
+		 */
+		void onSubscribe(Subscription subscription);
+
+		/**
+		 * Invoked with a requested snapshot.
+		 *
+		 * @param snapshot
+		 * 		The non-null snapshot.
+		 */
+		void onNext(T snapshot);
+
+		/**
+		 * Invoked once the subscription failed, after which no other method is invoked.
+		 *
+		 * @param error
+		 * 		The non-null cause of the failure.
+		 */
+		void onError(Throwable error);
+
+		/**
+		 * Invoked once the publisher is closed, after which no other method is invoked.
+		 */
+		void onComplete();
+	}
+
+	/**
+	 * The link between the publisher and a subscriber, mirroring
+	 * java.util.concurrent.Flow.Subscription.
+	 */
+	public interface Subscription {
+
+		/**
+		 * Requests that up to the given number of further snapshots be delivered. Demand is
+		 * cumulative, and requesting {@link Long#MAX_VALUE} snapshots requests every snapshot.
+		 *
+		 * @param count
+		 * 		The positive number of snapshots requested. Requesting fewer than one fails the
+		 * 		subscription with an IllegalArgumentException.
+		 */
+		void request(long count);
+
+		/**
+		 * Stops delivering snapshots to the subscriber, though one that is already being delivered
+		 * may still arrive.
+		 */
+		void cancel();
+	}
+
+	//Runs each task in the thread that submits it
+	private static final Executor SYNCHRONOUS = Runnable::run;
+
+	private final Supplier<T> mSnapshots;
+	private final Executor mExecutor;
+	private final List<PublisherSubscription> mSubscriptions = new CopyOnWriteArrayList<>();
+	private final LongAdder mConflated = new LongAdder();
+	private volatile boolean mClosed;
+
+	private StatisticsPublisher(final Supplier<T> snapshots, final Executor executor) {
+		mSnapshots = snapshots;
+		mExecutor = executor;
+	}
+
+	/**
+	 * Creates a publisher of the snapshots of the given recorder, which delivers them synchronously.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder whose snapshots are published.
+	 *
+	 * @return A new StatisticsPublisher.
+	 */
+	public static StatisticsPublisher<Statistics> forRecorder(final StatisticsRecorder recorder) {
+		return forRecorder(recorder, SYNCHRONOUS);
+	}
+
+	/**
+	 * Creates a publisher of the snapshots of the given recorder, which delivers them to each
+	 * subscriber on the given executor.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder whose snapshots are published.
+	 * @param executor
+	 * 		The non-null executor that snapshots are delivered on.
+	 *
+	 * @return A new StatisticsPublisher.
+	 */
+	public static StatisticsPublisher<Statistics> forRecorder(final StatisticsRecorder recorder, final Executor executor) {
+		if (recorder == null) {
+			throw new IllegalArgumentException("Recorder cannot be null");
+		} else if (executor == null) {
+			throw new IllegalArgumentException("Executor cannot be null");
+		}
+		return new StatisticsPublisher<>(recorder::takeSnapshot, executor);
+	}
+
+	/**
+	 * Creates a publisher of the snapshots of every recorder registered with the {@link
+	 * RecorderRegistry} when each snapshot is published, which delivers them synchronously.
+	 *
+	 * @return A new StatisticsPublisher, whose snapshots are non-null, unmodifiable maps of the
+	 * snapshots of each recorder by name, sorted by name.
+	 */
+	public static StatisticsPublisher<Map<String, Statistics>> forRegistry() {
+		return forRegistry(SYNCHRONOUS);
+	}
+
+	/**
+	 * Creates a publisher of the snapshots of every recorder registered with the {@link
+	 * RecorderRegistry} when each snapshot is published, which delivers them to each subscriber on
+	 * the given executor.
+	 *
+	 * @param executor
+	 * 		The non-null executor that snapshots are delivered on.
+	 *
+	 * @return A new StatisticsPublisher, whose snapshots are non-null, unmodifiable maps of the
+	 * snapshots of each recorder by name, sorted by name.
+	 */
+	public static StatisticsPublisher<Map<String, Statistics>> forRegistry(final Executor executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("Executor cannot be null");
+		}
+		return new StatisticsPublisher<>(() -> {
+			final Map<String, Statistics> snapshots = new TreeMap<>();
+			for (final Map.Entry<String, StatisticsRecorder> entry : RecorderRegistry.getRecorders().entrySet()) {
+				snapshots.put(entry.getKey(), entry.getValue().takeSnapshot());
+			}
+			return Collections.unmodifiableMap(snapshots);
+		}, executor);
+	}
+
+	/**
+	 * Subscribes the given subscriber to the snapshots published after it subscribes, which is once
+	 * {@link Subscriber#onSubscribe(Subscription)} has returned, so that no snapshot is delivered
+	 * while it runs. A subscriber that subscribes to a closed publisher is completed immediately.
+	 *
+	 * @param subscriber
+	 * 		The non-null subscriber.
+	 */
+	public void subscribe(final Subscriber<? super T> subscriber) {
+		if (subscriber == null) {
+			throw new IllegalArgumentException("Subscriber cannot be null");
+		}
+		final PublisherSubscription subscription = new PublisherSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+		mSubscriptions.add(subscription);
+		if (subscription.mTerminated) {
+			//Cancelled by the subscriber, so undo the add if the cancel happened before it
+			mSubscriptions.remove(subscription);
+			return;
+		}
+		//Signals requested during onSubscribe are only delivered once it has returned
+		subscription.mSubscribed = true;
+		if (mClosed) {
+			subscription.complete();
+		} else {
+			subscription.drain();
+		}
+	}
+
+	/**
+	 * Takes a single snapshot and offers it to every subscriber, which is delivered it now if it
+	 * has outstanding demand, or once it next requests a snapshot, unless a later snapshot is
+	 * published first. No snapshot is taken while there are no subscribers.
+	 */
+	public void publish() {
+		if (mClosed || mSubscriptions.isEmpty()) {
+			return;
+		}
+		final T snapshot = mSnapshots.get();
+		for (final PublisherSubscription subscription : mSubscriptions) {
+			subscription.offer(snapshot);
+		}
+	}
+
+	/**
+	 * Schedules publishing on the given executor at a fixed rate.
+	 *
+	 * @param executor
+	 * 		The non-null executor to publish on.
+	 * @param period
+	 * 		The positive period between snapshots.
+	 * @param unit
+	 * 		The non-null unit of the period.
+	 *
+	 * @return The future of the scheduled publishing, which may be cancelled to stop publishing.
+	 */
+	public ScheduledFuture<?> schedulePublish(final ScheduledExecutorService executor, final long period, final TimeUnit unit) {
+		if (executor == null) {
+			throw new IllegalArgumentException("Executor cannot be null");
+		} else if (unit == null) {
+			throw new IllegalArgumentException("Unit cannot be null");
+		} else if (period <= 0L) {
+			throw new IllegalArgumentException("Period (" + period + ") must be positive");
+		}
+		return executor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				publish();
+			}
+		}, period, period, unit);
+	}
+
+	/**
+	 * Obtains the number of subscribers that have neither cancelled nor been completed.
+	 *
+	 * @return The number of subscribers.
+	 */
+	public int getSubscriberCount() {
+		return mSubscriptions.size();
+	}
+
+	/**
+	 * Obtains the number of snapshots that were replaced by a later snapshot before being
+	 * delivered, summed over every subscriber.
+	 *
+	 * @return The number of conflated snapshots.
+	 */
+	public long getConflatedCount() {
+		return mConflated.sum();
+	}
+
+	/**
+	 * Stops publishing and completes every subscriber, once it has been delivered its pending
+	 * snapshot if it has demand for it.
+	 */
+	@Override
+	public void close() {
+		mClosed = true;
+		for (final PublisherSubscription subscription : mSubscriptions) {
+			subscription.complete();
+		}
+	}
+
+	/**
+	 * The subscription of a single subscriber, holding its demand and its latest undelivered
+	 * snapshot. Signals are serialized by whichever thread first increments the work in progress
+	 * count, which submits a task to the executor of the publisher that keeps delivering until no
+	 * thread added work while it was.
+	 */
+	private final class PublisherSubscription implements Subscription {
+
+		private final Subscriber<? super T> mSubscriber;
+		private final AtomicLong mRequested = new AtomicLong();
+		private final AtomicReference<T> mLatest = new AtomicReference<>();
+		private final AtomicInteger mWorkInProgress = new AtomicInteger();
+		private final Runnable mDrainTask = this::drainLoop;
+		private volatile boolean mSubscribed;
+		private volatile boolean mDone;
+		private volatile boolean mTerminated;
+		private volatile Throwable mError;
+
+		private PublisherSubscription(final Subscriber<? super T> subscriber) {
+			mSubscriber = subscriber;
+		}
+
+		@Override
+		public void request(final long count) {
+			if (count <= 0L) {
+				mError = new IllegalArgumentException("Requested count (" + count + ") must be positive");
+			} else {
+				long requested;
+				long sum;
+				do {
+					requested = mRequested.get();
+					//Demand that overflows is unbounded
+					sum = requested + count < 0L ? Long.MAX_VALUE : requested + count;
+				} while (!mRequested.compareAndSet(requested, sum));
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			terminate();
+		}
+
+		private void offer(final T snapshot) {
+			if (mTerminated) {
+				return;
+			}
+			if (mLatest.getAndSet(snapshot) != null) {
+				mConflated.increment();
+			}
+			drain();
+		}
+
+		private void complete() {
+			mDone = true;
+			drain();
+		}
+
+		private void drain() {
+			if (!mSubscribed || mWorkInProgress.getAndIncrement() != 0) {
+				return;
+			}
+			try {
+				mExecutor.execute(mDrainTask);
+			} catch (final RejectedExecutionException exp) {
+				//The work in progress is never released, so nothing else is delivered
+				terminate();
+				mSubscriber.onError(exp);
+			}
+		}
+
+		private void drainLoop() {
+			int missed = 1;
+			do {
+				while (!mTerminated) {
+					final Throwable error = mError;
+					if (error != null) {
+						terminate();
+						mSubscriber.onError(error);
+						break;
+					}
+					if (mRequested.get() > 0L) {
+						final T snapshot = mLatest.getAndSet(null);
+						if (snapshot != null) {
+							if (mRequested.get() != Long.MAX_VALUE) {
+								mRequested.decrementAndGet();
+							}
+							if (deliver(snapshot)) {
+								continue;
+							}
+							break;
+						}
+					}
+					if (mDone) {
+						terminate();
+						mSubscriber.onComplete();
+					}
+					break;
+				}
+				missed = mWorkInProgress.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		/**
+		 * Delivers the given snapshot, cancelling the subscription if the subscriber throws, as it
+		 * has broken the protocol, so that it cannot stop the delivery to other subscribers.
+		 */
+		private boolean deliver(final T snapshot) {
+			try {
+				mSubscriber.onNext(snapshot);
+				return true;
+			} catch (final RuntimeException exp) {
+				terminate();
+				return false;
+			}
+		}
+
+		private void terminate() {
+			mTerminated = true;
+			mLatest.set(null);
+			mSubscriptions.remove(this);
+		}
+	}
+}
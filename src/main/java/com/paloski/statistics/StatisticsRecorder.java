@@ -1,10 +1,18 @@
 package com.paloski.statistics;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * A thread safe class that allows for recording of statistics about a running process.
@@ -12,19 +20,105 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * Successes of a procedural run can be recorded by invoking the {@link #recordSuccess()},
  * conversely {@link #recordError(Exception)} can be used to record an error in processing of a
  * procedural run.
+ * <p/>
+ * Batches may record many events at once through {@link #recordSuccesses(long)} and {@link
+ * #recordErrors(Class, long)}, or fill a {@link StatisticsTally} without locking and commit it in
+ * one step.
+ * <p/>
+ * Recorders may form a tree through {@link #newChildRecorder()}, for example with a recorder per
+ * operation below a recorder per service. Recording only ever touches the recorder it is invoked
+ * upon, while {@link #takeSnapshot()} rolls up the statistics of the whole subtree when it is
+ * taken. Parents that are read often may instead keep a {@link #getCachedRollup() cached rollup}
+ * that is refreshed periodically. Short lived children, such as those of tenants, should be
+ * {@link #detachChild(StatisticsRecorder, boolean) detached} once they are no longer used.
+ * <p/>
+ * Recording takes a short, exclusive lock, other than recording valued successes, which is lock
+ * free, while snapshots are taken optimistically in the manner of a seqlock, and are retried
+ * rather than blocking recording threads.
  */
 public final class StatisticsRecorder {
 
-	private final ReadWriteLock mLock = new ReentrantReadWriteLock();
+	//The number of times a snapshot that raced with recording is retried at once, before backing off
+	private static final int SNAPSHOT_SPINS = 8;
+	//The longest that a snapshot that keeps racing with recording parks for between attempts
+	private static final long MAX_SNAPSHOT_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+	private final StampedLock mLock = new StampedLock();
 
 	private long mSuccessCount;
+	private final QuantileSketch.Accumulator mLatency;
+	private final ValueStatistics.Accumulator mValues = new ValueStatistics.Accumulator();
+	private final ValueStatistics mSeedValues;
 	private long mUnattributedFailures;
-	private Map<Class<? extends Exception>, Long> mExceptionTypeMap = new HashMap<>();
+	private long mTimedOutCount;
+	private long mCancelledCount;
+	private long mRejectedCount;
+	private long mInterruptedCount;
+	private final ExceptionTypeCounter mExceptionTypes;
+	//Null unless a classifier is configured
+	private final ExceptionClassifier mClassifier;
+	private final long[] mCategoryCounts;
+	private final Map<String, Long> mSeedCategoryCounts;
+	private final HeavyHitters.Accumulator mErrorKeys;
+	//Null unless distinct entity tracking is enabled
+	private final HyperLogLog.Accumulator mSuccessEntities;
+	private final HyperLogLog.Accumulator mErrorEntities;
+	//Null unless exemplars are enabled
+	private final ExemplarReservoir.Accumulator mExemplars;
 
-	private StatisticsRecorder(final long startingSuccess,
-							   final long startingFailure) {
-		mSuccessCount = startingSuccess;
-		mUnattributedFailures = startingFailure;
+	private final Builder mConfiguration;
+	private final long mStartNanos = System.nanoTime();
+	private final long mStartMillis = System.currentTimeMillis();
+	private final TimeRange mSeedTimeRange;
+	private final List<StatisticsRecorder> mChildren = new CopyOnWriteArrayList<>();
+	//Guards the detachment of children against snapshots of the tree
+	private final ReadWriteLock mTreeLock = new ReentrantReadWriteLock();
+	//Null unless a child was detached while retaining its statistics
+	private Statistics mDetachedRollup;
+	private volatile Statistics mCachedRollup;
+
+	private StatisticsRecorder(final Builder builder) {
+		mConfiguration = builder.copyConfiguration();
+		mLatency = new QuantileSketch.Accumulator(builder.mLatencyAccuracy, builder.mMaxLatencyBins);
+		mErrorKeys = new HeavyHitters.Accumulator(builder.mErrorKeyCapacity);
+		mExceptionTypes = new ExceptionTypeCounter(builder.mWeakExceptionTypes, builder.mMaxExceptionTypes);
+		mClassifier = builder.mClassifier;
+		mCategoryCounts = mClassifier != null ? new long[mClassifier.getCategories().size()] : null;
+		mSeedCategoryCounts = builder.mSeed != null
+							  ? builder.mSeed.getErrorStatistics().getCountOfErrorCategories()
+							  : Collections.<String, Long>emptyMap();
+		if (builder.mEntityPrecision != 0) {
+			mSuccessEntities = new HyperLogLog.Accumulator(builder.mEntityPrecision);
+			mErrorEntities = new HyperLogLog.Accumulator(builder.mEntityPrecision);
+		} else {
+			mSuccessEntities = null;
+			mErrorEntities = null;
+		}
+		mExemplars = builder.mExemplarsPerType != 0
+					 ? new ExemplarReservoir.Accumulator(builder.mExemplarsPerType, builder.mMaxExceptionTypes, builder.mWeakExceptionTypes)
+					 : null;
+		mSeedTimeRange = builder.mSeed != null ? builder.mSeed.getTimeRange() : TimeRange.unknown();
+		mSeedValues = builder.mSeed != null ? builder.mSeed.getSuccessStatistics().getValueStatistics() : ValueStatistics.empty();
+		if (builder.mSeed != null) {
+			mSuccessCount = builder.mSeed.getSuccessCount();
+			mLatency.addAll(builder.mSeed.getSuccessStatistics().getLatencySketch());
+			mUnattributedFailures = builder.mSeed.getErrorCount();
+			mTimedOutCount = builder.mSeed.getTimedOutCount();
+			mCancelledCount = builder.mSeed.getCancelledCount();
+			mRejectedCount = builder.mSeed.getRejectedCount();
+			mInterruptedCount = builder.mSeed.getInterruptedCount();
+			mErrorKeys.addAll(builder.mSeed.getErrorStatistics().getErrorKeys());
+			if (mSuccessEntities != null) {
+				mSuccessEntities.addAll(builder.mSeed.getSuccessStatistics().getDistinctEntities());
+				mErrorEntities.addAll(builder.mSeed.getErrorStatistics().getDistinctEntities());
+			}
+			if (mExemplars != null) {
+				mExemplars.addAll(builder.mSeed.getErrorStatistics().getExemplars());
+			}
+		}
+		if (builder.mParent != null) {
+			builder.mParent.mChildren.add(this);
+		}
 	}
 
 	/**
@@ -34,7 +128,17 @@ public final class StatisticsRecorder {
 	 * @return A new, empty StatisticsRecorder
 	 */
 	public static StatisticsRecorder newRecorder() {
-		return new StatisticsRecorder(0L, 0L);
+		return newBuilder().build();
+	}
+
+	/**
+	 * Creates a new Builder that can be used to configure a StatisticsRecorder before creating
+	 * it.
+	 *
+	 * @return A new Builder with the default configuration.
+	 */
+	public static Builder newBuilder() {
+		return new Builder();
 	}
 
 	/**
@@ -54,19 +158,96 @@ public final class StatisticsRecorder {
 	 * the seed object.
 	 */
 	public static StatisticsRecorder newSeededRecorder(final Statistics seed) {
-		return new StatisticsRecorder(seed.getSuccessCount(), seed.getErrorCount());
+		final QuantileSketch latency = seed.getSuccessStatistics().getLatencySketch();
+		final Builder builder = newBuilder().withLatencyAccuracy(latency.getRelativeAccuracy(), latency.getMaxBins())
+											.withErrorKeyCapacity(seed.getErrorStatistics().getErrorKeys().getCapacity());
+		final int entityPrecision = minimumNonZero(seed.getSuccessStatistics().getDistinctEntities().getPrecision(),
+												   seed.getErrorStatistics().getDistinctEntities().getPrecision());
+		if (entityPrecision != 0) {
+			builder.withDistinctEntityTracking(entityPrecision);
+		}
+		final int exemplarsPerType = seed.getErrorStatistics().getExemplars().getCapacityPerType();
+		if (exemplarsPerType != 0) {
+			builder.withExemplarsPerType(exemplarsPerType);
+		}
+		return builder.seededWith(seed).build();
+	}
+
+	private static int minimumNonZero(final int first, final int second) {
+		if (first == 0) {
+			return second;
+		} else if (second == 0) {
+			return first;
+		}
+		return Math.min(first, second);
 	}
 
 	/**
 	 * Records that the process ran successfully and succeed.
 	 */
 	public void recordSuccess() {
-		final Lock writeLock = mLock.writeLock();
-		writeLock.lock();
+		final long stamp = mLock.writeLock();
 		try {
 			mSuccessCount++;
 		} finally {
-			writeLock.unlock();
+			mLock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Records that the process ran successfully for the given entity, such as a user or request ID.
+	 * When distinct entity tracking is enabled through {@link Builder#withDistinctEntityTracking(int)}
+	 * the entity is fed into a sketch that estimates how many distinct entities succeeded,
+	 * otherwise this is equivalent to {@link #recordSuccess()}.
+	 *
+	 * @param entityId
+	 * 		The non-null ID of the entity the process succeeded for.
+	 */
+	public void recordSuccess(final String entityId) {
+		if (entityId == null) {
+			throw new IllegalArgumentException("Entity ID cannot be null");
+		}
+		final long stamp = mLock.writeLock();
+		try {
+			mSuccessCount++;
+			if (mSuccessEntities != null) {
+				mSuccessEntities.add(entityId);
+			}
+		} finally {
+			mLock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Records that the process ran successfully, producing a measurement such as the number of
+	 * bytes processed or rows written. The count, sum, minimum, maximum and variance of the values
+	 * are available through {@link SuccessStatistics#getValueStatistics()}.
+	 * <p/>
+	 * Values are recorded without taking the lock of this recorder, so that threads recording them
+	 * do not contend with one another.
+	 *
+	 * @param value
+	 * 		The value measured by the successful run.
+	 */
+	public void recordSuccess(final long value) {
+		mValues.add(value);
+	}
+
+	/**
+	 * Records that the process ran successfully, taking the given amount of time to do so.
+	 *
+	 * @param durationNanos
+	 * 		The time the successful run took, in nanoseconds. Negative durations, which can only be
+	 * 		the result of a faulty clock, are recorded as 0.
+	 */
+	public void recordTimedSuccess(final long durationNanos) {
+		final long duration = Math.max(0L, durationNanos);
+		final long stamp = mLock.writeLock();
+		try {
+			mSuccessCount++;
+			mLatency.add(duration);
+		} finally {
+			mLock.unlockWrite(stamp);
 		}
 	}
 
@@ -75,19 +256,58 @@ public final class StatisticsRecorder {
 	 * about.
 	 *
 	 * @param exp
-	 * 		The exception that occurred. Currently unused.
+	 * 		The exception that occurred, which is sampled as an {@link ErrorExemplar} when exemplars
+	 * 		are enabled through {@link Builder#withExemplarsPerType(int)}.
 	 */
 	public void recordError(final Exception exp) {
-		final Lock writeLock = mLock.writeLock();
-		writeLock.lock();
+		final int category = categoryOf(exp.getClass());
+		final long stamp = mLock.writeLock();
 		try {
-			Long currCount = mExceptionTypeMap.get(exp.getClass());
-			if(null == currCount) {
-				currCount = 0L;
+			mExceptionTypes.increment(exp.getClass());
+			if (category >= 0) {
+				mCategoryCounts[category]++;
+			}
+			if (mExemplars != null) {
+				mExemplars.add(exp);
 			}
-			mExceptionTypeMap.put(exp.getClass(), currCount + 1);
 		} finally {
-			writeLock.unlock();
+			mLock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Records that an error occurred while processing the given key, such as a customer ID, URL or
+	 * shard key. The error is counted against the type of the exception just like {@link
+	 * #recordError(Exception)}, and the key is fed into a fixed size summary of the most frequently
+	 * failing keys, available through {@link ErrorStatistics#getTopErrorKeys(int)}. When distinct
+	 * entity tracking is enabled the key is also counted towards {@link
+	 * ErrorStatistics#getDistinctEntityCount()}.
+	 *
+	 * @param exp
+	 * 		The exception that occurred.
+	 * @param key
+	 * 		The non-null key that the error occurred for.
+	 */
+	public void recordError(final Exception exp, final String key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key cannot be null");
+		}
+		final int category = categoryOf(exp.getClass());
+		final long stamp = mLock.writeLock();
+		try {
+			mExceptionTypes.increment(exp.getClass());
+			if (category >= 0) {
+				mCategoryCounts[category]++;
+			}
+			if (mExemplars != null) {
+				mExemplars.add(exp);
+			}
+			mErrorKeys.add(key, 1L);
+			if (mErrorEntities != null) {
+				mErrorEntities.add(key);
+			}
+		} finally {
+			mLock.unlockWrite(stamp);
 		}
 	}
 
@@ -97,30 +317,626 @@ public final class StatisticsRecorder {
 	 * process.
 	 */
 	public void recordError() {
-		final Lock writeLock = mLock.writeLock();
-		writeLock.lock();
+		final long stamp = mLock.writeLock();
 		try {
 			mUnattributedFailures++;
+		} finally {
+			mLock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Records that a call ended with an outcome of the given category, rather than succeeding or
+	 * failing. Such outcomes are counted separately from errors, so that e.g. a shutdown that
+	 * interrupts every in flight call does not show up as a spike in the error rate.
+	 *
+	 * @param category
+	 * 		The non-null category of the outcome.
+	 */
+	public void recordOutcome(final OutcomeCategory category) {
+		if (category == null) {
+			throw new IllegalArgumentException("Category cannot be null");
+		}
+		final long stamp = mLock.writeLock();
+		try {
+			addOutcomes(category, 1L);
+		} finally {
+			mLock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Adds to the count of outcomes of the given category, which must be called while holding the
+	 * write lock.
+	 */
+	private void addOutcomes(final OutcomeCategory category, final long count) {
+		switch (category) {
+			case TIMED_OUT:
+				mTimedOutCount += count;
+				break;
+			case CANCELLED:
+				mCancelledCount += count;
+				break;
+			case REJECTED:
+				mRejectedCount += count;
+				break;
+			case INTERRUPTED:
+				mInterruptedCount += count;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown category " + category);
+		}
+	}
+
+	/**
+	 * Records that a call ended by throwing the given exception. If the exception is of an {@link
+	 * OutcomeCategory}, such as a {@link java.util.concurrent.TimeoutException}, the outcome is
+	 * recorded through {@link #recordOutcome(OutcomeCategory)}, otherwise it is recorded as an
+	 * error through {@link #recordError(Exception)}.
+	 *
+	 * @param exp
+	 * 		The non-null exception that ended the call.
+	 */
+	public void recordFailure(final Exception exp) {
+		final OutcomeCategory category = OutcomeCategory.classify(exp);
+		if (category != null) {
+			recordOutcome(category);
+		} else {
+			recordError(exp);
+		}
+	}
+
+	/**
+	 * Records that the process ran successfully the given number of times, at the cost of recording
+	 * a single success.
+	 *
+	 * @param count
+	 * 		The non-negative number of successes.
+	 */
+	public void recordSuccesses(final long count) {
+		checkCount(count);
+		final long stamp = mLock.writeLock();
+		try {
+			mSuccessCount += count;
+		} finally {
+			mLock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Records the given number of errors of the given exception type, at the cost of recording a
+	 * single error. As no exception instances are given, no exemplars are sampled.
+	 *
+	 * @param type
+	 * 		The non-null exception type of the errors.
+	 * @param count
+	 * 		The non-negative number of errors.
+	 */
+	public void recordErrors(final Class<? extends Exception> type, final long count) {
+		if (type == null) {
+			throw new IllegalArgumentException("Type cannot be null");
+		}
+		checkCount(count);
+		if (count == 0L) {
+			return;
+		}
+		final int category = categoryOf(type);
+		final long stamp = mLock.writeLock();
+		try {
+			mExceptionTypes.add(type, count);
+			if (category >= 0) {
+				mCategoryCounts[category] += count;
+			}
+		} finally {
+			mLock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Obtains the index of the category of the given type, or -1 if there is no classifier.
+	 */
+	private int categoryOf(final Class<? extends Exception> type) {
+		return mClassifier != null ? mClassifier.indexOf(type) : -1;
+	}
+
+	/**
+	 * Records the given number of unattributed errors, at the cost of recording a single error.
+	 *
+	 * @param count
+	 * 		The non-negative number of errors.
+	 *
+	 * @see #recordError()
+	 */
+	public void recordUnattributedErrors(final long count) {
+		checkCount(count);
+		final long stamp = mLock.writeLock();
+		try {
+			mUnattributedFailures += count;
+		} finally {
+			mLock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Records everything in the given tally while holding the write lock once, so that no snapshot
+	 * sees only part of it.
+	 *
+	 * @see StatisticsTally#commitTo(StatisticsRecorder)
+	 */
+	/* package */ void recordTally(final StatisticsTally tally) {
+		final long stamp = mLock.writeLock();
+		try {
+			mSuccessCount += tally.getSuccessCount();
+			mUnattributedFailures += tally.getUnattributedErrorCount();
+			for (final OutcomeCategory category : OutcomeCategory.values()) {
+				addOutcomes(category, tally.getOutcomeCount(category));
+			}
+			tally.forEachTypeCount((type, count) -> {
+				mExceptionTypes.add(type, count);
+				final int category = categoryOf(type);
+				if (category >= 0) {
+					mCategoryCounts[category] += count;
+				}
+			});
+		} finally {
+			mLock.unlockWrite(stamp);
+		}
+	}
+
+	private static void checkCount(final long count) {
+		if (count < 0L) {
+			throw new IllegalArgumentException("Count (" + count + ") cannot be negative");
+		}
+	}
+
+	/**
+	 * Creates a new recorder that is a child of this one, with the same configuration as this
+	 * recorder. Anything recorded by the child, or by its own children, is included in the
+	 * snapshots of this recorder, without this recorder doing any work when it is recorded.
+	 * <p/>
+	 * A child remains part of the tree until it is {@link #detachChild(StatisticsRecorder,
+	 * boolean) detached}.
+	 *
+	 * @return A new, empty StatisticsRecorder that is a child of this one.
+	 */
+	public StatisticsRecorder newChildRecorder() {
+		return mConfiguration.copyConfiguration().childOf(this).build();
+	}
+
+	/**
+	 * Removes the given child from the tree of this recorder, so that it may be garbage collected
+	 * once it is no longer used. Anything recorded into the child after it is detached is not
+	 * seen by this recorder.
+	 *
+	 * @param child
+	 * 		The non-null child to detach.
+	 * @param retainStatistics
+	 * 		If the final statistics of the child and its descendants should remain part of the
+	 * 		snapshots of this recorder, keeping them from moving backwards, or be discarded.
+	 *
+	 * @return True if the child was detached, false if it was not a child of this recorder.
+	 */
+	public boolean detachChild(final StatisticsRecorder child, final boolean retainStatistics) {
+		if (child == null) {
+			throw new IllegalArgumentException("Child cannot be null");
+		}
+		final Lock writeLock = mTreeLock.writeLock();
+		writeLock.lock();
+		try {
+			if (!mChildren.remove(child)) {
+				return false;
+			}
+			if (retainStatistics) {
+				final Statistics rollup = child.takeSnapshot();
+				mDetachedRollup = mDetachedRollup != null ? mDetachedRollup.mergeWith(rollup) : rollup;
+			}
+			return true;
 		} finally {
 			writeLock.unlock();
 		}
 	}
 
 	/**
-	 * Takes a snapshot of the Statistics being recorded by this object at the current point, saving
-	 * it into an immutable Statistics object.
+	 * Obtains the direct children of this recorder.
 	 *
-	 * @return A non-null Statistics object representing the current state of this recorder.
+	 * @return A non-null, unmodifiable list of the children of this recorder, in the order they
+	 * were created.
+	 */
+	public List<StatisticsRecorder> getChildren() {
+		return Collections.unmodifiableList(mChildren);
+	}
+
+	/**
+	 * Takes a snapshot of the Statistics being recorded by this object and all of its descendants
+	 * at the current point, saving it into an immutable Statistics object.
+	 * <p/>
+	 * Each recorder of the subtree is snapshotted separately, so the result is not an atomic view
+	 * across recorders that are being recorded into concurrently. The statistics retained from
+	 * detached children are included, and a child being detached is included exactly once.
+	 *
+	 * @return A non-null Statistics object representing the current state of this recorder and
+	 * its descendants.
 	 */
 	public Statistics takeSnapshot() {
-		final Lock readLock = mLock.readLock();
+		Statistics snapshot = takeLocalSnapshot();
+		final Lock readLock = mTreeLock.readLock();
 		readLock.lock();
 		try {
-			return new Statistics(SuccessStatistics.forSuccessCount(mSuccessCount),
-								  ErrorStatistics.forFailures(mUnattributedFailures, mExceptionTypeMap));
+			if (mDetachedRollup != null) {
+				snapshot = snapshot.mergeWith(mDetachedRollup);
+			}
+			for (final StatisticsRecorder child : mChildren) {
+				snapshot = snapshot.mergeWith(child.takeSnapshot());
+			}
 		} finally {
 			readLock.unlock();
 		}
+		return snapshot;
+	}
+
+	/**
+	 * Obtains the rollup of this recorder and its descendants as of the last time it was
+	 * refreshed, through {@link #refreshCachedRollup()} or the schedule of {@link
+	 * #scheduleRollupRefresh(ScheduledExecutorService, long, TimeUnit)}. If the rollup has never
+	 * been refreshed it is refreshed first.
+	 *
+	 * @return A non-null, possibly stale, Statistics object of this recorder and its descendants.
+	 */
+	public Statistics getCachedRollup() {
+		final Statistics rollup = mCachedRollup;
+		return rollup != null ? rollup : refreshCachedRollup();
+	}
+
+	/**
+	 * Refreshes the rollup returned by {@link #getCachedRollup()} by taking a new snapshot of this
+	 * recorder and its descendants.
+	 *
+	 * @return The new, non-null rollup.
+	 */
+	public Statistics refreshCachedRollup() {
+		final Statistics rollup = takeSnapshot();
+		mCachedRollup = rollup;
+		return rollup;
+	}
+
+	/**
+	 * Schedules the rollup returned by {@link #getCachedRollup()} to be refreshed periodically on
+	 * the given executor, so that reading the statistics of a deep tree costs no more than a
+	 * volatile read.
+	 *
+	 * @param executor
+	 * 		The non-null executor to refresh the rollup on.
+	 * @param period
+	 * 		The time between refreshes, which must be positive.
+	 * @param unit
+	 * 		The non-null unit of {@code period}.
+	 *
+	 * @return The future of the scheduled refreshes, which may be cancelled to stop refreshing.
+	 */
+	public ScheduledFuture<?> scheduleRollupRefresh(final ScheduledExecutorService executor, final long period, final TimeUnit unit) {
+		if (executor == null) {
+			throw new IllegalArgumentException("Executor cannot be null");
+		} else if (unit == null) {
+			throw new IllegalArgumentException("Unit cannot be null");
+		} else if (period <= 0L) {
+			throw new IllegalArgumentException("Period (" + period + ") must be positive");
+		}
+		return executor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				refreshCachedRollup();
+			}
+		}, 0L, period, unit);
+	}
+
+	/**
+	 * Takes a snapshot of the Statistics recorded directly by this object at the current point,
+	 * excluding anything recorded by its descendants, saving it into an immutable Statistics
+	 * object.
+	 * <p/>
+	 * The snapshot covers the {@link Statistics#getTimeRange() time} from the creation of this
+	 * recorder until now, along with the time range of the seed of this recorder, if any.
+	 * <p/>
+	 * The state of the recorder is copied optimistically, without taking the lock, and the copy is
+	 * discarded and taken again if anything was recorded while it was being taken, so that taking
+	 * a snapshot never stalls threads that are recording. A snapshot that keeps racing with
+	 * recording backs off, yielding and then parking for increasingly long between attempts, until
+	 * it finds a moment without writes. As all of the other state of a recorder is written under
+	 * its lock, every snapshot of it is of a single instant, in which e.g. the successes and errors
+	 * of a committed {@link StatisticsTally} are either both present or both absent. Valued
+	 * successes are recorded without the lock, into the cells of a contention free accumulator, so
+	 * a snapshot includes the count and value of each of them either both or neither, but not
+	 * necessarily as of the same instant as the rest.
+	 *
+	 * @return A non-null Statistics object representing the current state of this recorder alone.
+	 */
+	public Statistics takeLocalSnapshot() {
+		for (int failures = 0; ; failures++) {
+			//A stamp of 0 means that a writer holds the lock, so there is nothing to copy yet
+			final long stamp = mLock.tryOptimisticRead();
+			if (stamp != 0L) {
+				try {
+					final Statistics snapshot = copyState();
+					if (mLock.validate(stamp)) {
+						return snapshot;
+					}
+				} catch (final RuntimeException exp) {
+					//A copy torn by a concurrent write may fail in any manner, so only failures of a
+					//valid copy are rethrown
+					if (mLock.validate(stamp)) {
+						throw exp;
+					}
+				}
+			}
+			backOff(failures);
+		}
+	}
+
+	/**
+	 * Waits before the next attempt of a snapshot that has failed the given number of times, by
+	 * yielding for the first few failures, then parking for twice as long after each failure.
+	 */
+	private static void backOff(final int failures) {
+		if (failures < SNAPSHOT_SPINS) {
+			Thread.yield();
+		} else {
+			final int doublings = Math.min(failures - SNAPSHOT_SPINS, 20);
+			LockSupport.parkNanos(Math.min(MAX_SNAPSHOT_BACKOFF_NANOS, 1000L << doublings));
+		}
+	}
+
+	/**
+	 * Copies the state of this recorder into a new Statistics object, which must either be called
+	 * while holding the read lock, or be validated against an optimistic read afterwards.
+	 */
+	private Statistics copyState() {
+		final HyperLogLog successEntities = mSuccessEntities != null ? mSuccessEntities.snapshot() : HyperLogLog.empty();
+		final HyperLogLog errorEntities = mErrorEntities != null ? mErrorEntities.snapshot() : HyperLogLog.empty();
+		final TimeRange timeRange = mSeedTimeRange.mergeWith(TimeRange.since(mStartNanos, mStartMillis));
+		final ValueStatistics values = mValues.snapshot();
+		return new Statistics(SuccessStatistics.forSuccesses(mSuccessCount + values.getCount(), mLatency.snapshot(), successEntities)
+											   .withValues(mSeedValues.mergeWith(values))
+											   .withTimeRange(timeRange),
+							  ErrorStatistics.forFailures(mUnattributedFailures, mExceptionTypes.getTypeCounts(), mErrorKeys.snapshot(), errorEntities)
+											  .withExemplars(mExemplars != null ? mExemplars.snapshot() : ExemplarReservoir.empty())
+											  .withUntrackedTypes(mExceptionTypes.getUnresolvedCounts(), mExceptionTypes.getOverflowCount())
+											  .withCategoryCounts(getCategoryCounts())
+											  .withTimeRange(timeRange))
+				.withOutcomeCounts(mTimedOutCount, mCancelledCount, mRejectedCount, mInterruptedCount);
+	}
+
+	/**
+	 * Creates a map of the count of each error category, including those of the seed, which must be
+	 * called as part of {@link #copyState()}.
+	 */
+	private Map<String, Long> getCategoryCounts() {
+		if (mCategoryCounts == null) {
+			return mSeedCategoryCounts;
+		}
+		final Map<String, Long> counts = new HashMap<>(mSeedCategoryCounts);
+		final List<String> categories = mClassifier.getCategories();
+		for (int index = 0; index < mCategoryCounts.length; index++) {
+			if (mCategoryCounts[index] != 0L) {
+				final Long seeded = counts.get(categories.get(index));
+				counts.put(categories.get(index), seeded != null ? seeded + mCategoryCounts[index] : mCategoryCounts[index]);
+			}
+		}
+		return counts;
 	}
 
+	/**
+	 * A builder of StatisticsRecorder objects, for recorders that need something other than the
+	 * default configuration of {@link #newRecorder()}.
+	 * <p/>
+	 * This class is not thread safe.
+	 */
+	public static final class Builder {
+
+		private double mLatencyAccuracy = QuantileSketch.DEFAULT_RELATIVE_ACCURACY;
+		private int mMaxLatencyBins = QuantileSketch.DEFAULT_MAX_BINS;
+		private int mErrorKeyCapacity = HeavyHitters.DEFAULT_CAPACITY;
+		private int mEntityPrecision;
+		private int mExemplarsPerType;
+		private boolean mWeakExceptionTypes;
+		private int mMaxExceptionTypes = Integer.MAX_VALUE;
+		private ExceptionClassifier mClassifier;
+		private Statistics mSeed;
+		private StatisticsRecorder mParent;
+
+		private Builder() {
+		}
+
+		/**
+		 * Creates a copy of the configuration of this builder, without its seed or parent.
+		 */
+		private Builder copyConfiguration() {
+			final Builder copy = new Builder();
+			copy.mLatencyAccuracy = mLatencyAccuracy;
+			copy.mMaxLatencyBins = mMaxLatencyBins;
+			copy.mErrorKeyCapacity = mErrorKeyCapacity;
+			copy.mEntityPrecision = mEntityPrecision;
+			copy.mExemplarsPerType = mExemplarsPerType;
+			copy.mWeakExceptionTypes = mWeakExceptionTypes;
+			copy.mMaxExceptionTypes = mMaxExceptionTypes;
+			copy.mClassifier = mClassifier;
+			return copy;
+		}
+
+		/**
+		 * Configures the accuracy of the latency sketch kept for timed successes.
+		 *
+		 * @param relativeAccuracy
+		 * 		The relative accuracy of latency quantiles, between 0 and 1 exclusive (e.g. 0.01 for
+		 * 		1%).
+		 * @param maxBins
+		 * 		The maximum number of bins the sketch may use, which bounds its memory to about 8
+		 * 		bytes per bin.
+		 *
+		 * @return This builder
+		 */
+		public Builder withLatencyAccuracy(final double relativeAccuracy, final int maxBins) {
+			if (!(relativeAccuracy > 0.0 && relativeAccuracy < 1.0)) {
+				throw new IllegalArgumentException("Relative accuracy (" + relativeAccuracy + ") must be between 0 and 1 exclusive");
+			} else if (maxBins < 1) {
+				throw new IllegalArgumentException("Max bins (" + maxBins + ") must be positive");
+			}
+			mLatencyAccuracy = relativeAccuracy;
+			mMaxLatencyBins = maxBins;
+			return this;
+		}
+
+		/**
+		 * Configures the number of error keys tracked by the summary fed by {@link
+		 * #recordError(Exception, String)}. Memory use is proportional to the capacity, and any key
+		 * that accounts for more than 1/capacity of the keyed errors is guaranteed to be tracked.
+		 *
+		 * @param capacity
+		 * 		The maximum number of tracked error keys, which must be positive.
+		 *
+		 * @return This builder
+		 */
+		public Builder withErrorKeyCapacity(final int capacity) {
+			if (capacity < 1) {
+				throw new IllegalArgumentException("Capacity (" + capacity + ") must be positive");
+			}
+			mErrorKeyCapacity = capacity;
+			return this;
+		}
+
+		/**
+		 * Enables estimating the number of distinct entities fed to {@link #recordSuccess(String)}
+		 * and {@link #recordError(Exception, String)}, which is disabled by default. Each of the two
+		 * sketches uses {@code 2^precision} bytes, with a standard error of {@code 1.04 /
+		 * sqrt(2^precision)}; {@link HyperLogLog#DEFAULT_PRECISION} uses 4KB for about 1.6%.
+		 *
+		 * @param precision
+		 * 		The precision of the sketches, between {@link HyperLogLog#MIN_PRECISION} and {@link
+		 * 		HyperLogLog#MAX_PRECISION} inclusive.
+		 *
+		 * @return This builder
+		 */
+		public Builder withDistinctEntityTracking(final int precision) {
+			if (precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION) {
+				throw new IllegalArgumentException("Precision (" + precision + ") must be between " + HyperLogLog.MIN_PRECISION + " and " + HyperLogLog.MAX_PRECISION);
+			}
+			mEntityPrecision = precision;
+			return this;
+		}
+
+		/**
+		 * Enables keeping a uniformly random sample of up to {@code exemplarsPerType} of the
+		 * exceptions recorded for each exception type, available through {@link
+		 * ErrorStatistics#getExemplars(Class)}. Exemplars are disabled by default; once the sample
+		 * of a type is full, recording an exception of that type costs one random draw.
+		 *
+		 * @param exemplarsPerType
+		 * 		The maximum number of exceptions kept per type, which must be positive.
+		 *
+		 * @return This builder
+		 */
+		public Builder withExemplarsPerType(final int exemplarsPerType) {
+			if (exemplarsPerType < 1) {
+				throw new IllegalArgumentException("Exemplars per type (" + exemplarsPerType + ") must be positive");
+			}
+			mExemplarsPerType = exemplarsPerType;
+			return this;
+		}
+
+		/**
+		 * Holds the exception types of recorded errors weakly, so that recording an error does not
+		 * prevent the class of its exception, or the class loader of that class, from being
+		 * unloaded. Once a type is unloaded its count moves to {@link
+		 * ErrorStatistics#getCountOfUnresolvedExceptionTypes()}, keyed by the name of the type.
+		 * <p/>
+		 * Exemplars kept through {@link #withExemplarsPerType(int)} hold their exceptions weakly as
+		 * well, rendering their stack traces when they are sampled instead, and the exemplars of a
+		 * type are discarded once it is unloaded.
+		 *
+		 * @return This builder
+		 */
+		public Builder withWeakExceptionTypes() {
+			mWeakExceptionTypes = true;
+			return this;
+		}
+
+		/**
+		 * Caps the number of exception types counted individually, which is unbounded by default.
+		 * Errors of any type recorded once the cap is reached are counted by {@link
+		 * ErrorStatistics#getOverflowErrorCount()} instead, and exemplars are only kept for the
+		 * first types up to the cap, keeping the memory of the recorder bounded no matter how many
+		 * distinct exception types are recorded.
+		 *
+		 * @param maxTypes
+		 * 		The maximum number of exception types to track, which must be positive.
+		 *
+		 * @return This builder
+		 */
+		public Builder withMaxExceptionTypes(final int maxTypes) {
+			if (maxTypes < 1) {
+				throw new IllegalArgumentException("Max exception types (" + maxTypes + ") must be positive");
+			}
+			mMaxExceptionTypes = maxTypes;
+			return this;
+		}
+
+		/**
+		 * Classifies every error of an exception type into a category as it is recorded, counting
+		 * the errors of each category as reported by {@link ErrorStatistics#getCountOfErrorCategories()}.
+		 *
+		 * @param classifier
+		 * 		The non-null classifier of exception types.
+		 *
+		 * @return This builder
+		 */
+		public Builder withExceptionClassifier(final ExceptionClassifier classifier) {
+			if (classifier == null) {
+				throw new IllegalArgumentException("Classifier cannot be null");
+			}
+			mClassifier = classifier;
+			return this;
+		}
+
+		/**
+		 * Seeds the recorder with the given statistics, as described by {@link
+		 * #newSeededRecorder(Statistics)}.
+		 *
+		 * @param seed
+		 * 		The non-null seed Statistics object.
+		 *
+		 * @return This builder
+		 */
+		public Builder seededWith(final Statistics seed) {
+			if (seed == null) {
+				throw new IllegalArgumentException("Seed cannot be null");
+			}
+			mSeed = seed;
+			return this;
+		}
+
+		/**
+		 * Makes the recorder a child of the given recorder, as described by {@link
+		 * #newChildRecorder()}, but with the configuration of this builder.
+		 *
+		 * @param parent
+		 * 		The non-null parent of the recorder.
+		 *
+		 * @return This builder
+		 */
+		public Builder childOf(final StatisticsRecorder parent) {
+			if (parent == null) {
+				throw new IllegalArgumentException("Parent cannot be null");
+			}
+			mParent = parent;
+			return this;
+		}
+
+		/**
+		 * Creates a new StatisticsRecorder with the configuration of this builder.
+		 *
+		 * @return A new StatisticsRecorder
+		 */
+		public StatisticsRecorder build() {
+			return new StatisticsRecorder(this);
+		}
+	}
 }
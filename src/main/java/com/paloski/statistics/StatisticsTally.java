@@ -0,0 +1,223 @@
+package com.paloski.statistics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A mutable, local tally of successes, errors and outcomes that is filled in by a single thread,
+ * such as a stage of a batch pipeline, and then committed to a {@link StatisticsRecorder} in a
+ * single atomic step.
+ * <p/>
+ * Recording into a tally takes no locks, and committing it takes the lock of the recorder once, at
+ * a cost proportional to the number of distinct exception types rather than the number of records.
+ * Committing leaves the tally empty but keeps the exception types it has seen, so reusing a tally
+ * across batches does not allocate once it has seen every type.
+ * <p/>
+ * Only counts are tallied: exceptions are neither sampled as exemplars nor attributed to keys or
+ * entities, and successes carry no latency.
+ * <p/>
+ * This class is not thread safe.
+ *
+ * @author Adam
+ */
+public final class StatisticsTally {
+
+	private long mSuccessCount;
+	private long mUnattributedErrors;
+	private final long[] mOutcomeCounts = new long[OutcomeCategory.values().length];
+	private final Map<Class<? extends Exception>, Count> mTypeCounts = new HashMap<>();
+
+	/**
+	 * Creates a new, empty tally.
+	 */
+	public StatisticsTally() {
+	}
+
+	/**
+	 * Tallies a success.
+	 */
+	public void recordSuccess() {
+		mSuccessCount++;
+	}
+
+	/**
+	 * Tallies the given number of successes.
+	 *
+	 * @param count
+	 * 		The non-negative number of successes.
+	 */
+	public void recordSuccesses(final long count) {
+		mSuccessCount += checkCount(count);
+	}
+
+	/**
+	 * Tallies an error of the type of the given exception.
+	 *
+	 * @param exp
+	 * 		The non-null exception that occurred.
+	 */
+	public void recordError(final Exception exp) {
+		countOf(exp.getClass()).mValue++;
+	}
+
+	/**
+	 * Tallies the given number of errors of the given exception type.
+	 *
+	 * @param type
+	 * 		The non-null exception type of the errors.
+	 * @param count
+	 * 		The non-negative number of errors.
+	 */
+	public void recordErrors(final Class<? extends Exception> type, final long count) {
+		if (type == null) {
+			throw new IllegalArgumentException("Type cannot be null");
+		}
+		countOf(type).mValue += checkCount(count);
+	}
+
+	/**
+	 * Tallies an unattributed error.
+	 */
+	public void recordError() {
+		mUnattributedErrors++;
+	}
+
+	/**
+	 * Tallies the given number of unattributed errors.
+	 *
+	 * @param count
+	 * 		The non-negative number of errors.
+	 */
+	public void recordUnattributedErrors(final long count) {
+		mUnattributedErrors += checkCount(count);
+	}
+
+	/**
+	 * Tallies an outcome of the given category.
+	 *
+	 * @param category
+	 * 		The non-null category of the outcome.
+	 */
+	public void recordOutcome(final OutcomeCategory category) {
+		if (category == null) {
+			throw new IllegalArgumentException("Category cannot be null");
+		}
+		mOutcomeCounts[category.ordinal()]++;
+	}
+
+	/**
+	 * Tallies a call that ended by throwing the given exception, as an outcome if it is of an
+	 * {@link OutcomeCategory} or as an error otherwise, like {@link
+	 * StatisticsRecorder#recordFailure(Exception)}.
+	 *
+	 * @param exp
+	 * 		The non-null exception that ended the call.
+	 */
+	public void recordFailure(final Exception exp) {
+		final OutcomeCategory category = OutcomeCategory.classify(exp);
+		if (category != null) {
+			mOutcomeCounts[category.ordinal()]++;
+		} else {
+			recordError(exp);
+		}
+	}
+
+	/**
+	 * Determines if nothing has been tallied since this tally was created, committed or cleared.
+	 *
+	 * @return True if this tally is empty.
+	 */
+	public boolean isEmpty() {
+		if (mSuccessCount != 0L || mUnattributedErrors != 0L) {
+			return false;
+		}
+		for (final long count : mOutcomeCounts) {
+			if (count != 0L) {
+				return false;
+			}
+		}
+		for (final Count count : mTypeCounts.values()) {
+			if (count.mValue != 0L) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records everything in this tally into the given recorder atomically, such that no snapshot of
+	 * the recorder sees only part of it, then clears this tally.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to commit to.
+	 */
+	public void commitTo(final StatisticsRecorder recorder) {
+		if (recorder == null) {
+			throw new IllegalArgumentException("Recorder cannot be null");
+		}
+		recorder.recordTally(this);
+		clear();
+	}
+
+	/**
+	 * Discards everything in this tally.
+	 */
+	public void clear() {
+		mSuccessCount = 0L;
+		mUnattributedErrors = 0L;
+		for (int index = 0; index < mOutcomeCounts.length; index++) {
+			mOutcomeCounts[index] = 0L;
+		}
+		for (final Count count : mTypeCounts.values()) {
+			count.mValue = 0L;
+		}
+	}
+
+	/* package */ long getSuccessCount() {
+		return mSuccessCount;
+	}
+
+	/* package */ long getUnattributedErrorCount() {
+		return mUnattributedErrors;
+	}
+
+	/* package */ long getOutcomeCount(final OutcomeCategory category) {
+		return mOutcomeCounts[category.ordinal()];
+	}
+
+	/**
+	 * Passes every tallied exception type with a non-zero count, along with its count, to the given
+	 * consumer.
+	 */
+	/* package */ void forEachTypeCount(final ObjLongConsumer<Class<? extends Exception>> consumer) {
+		for (final Map.Entry<Class<? extends Exception>, Count> entry : mTypeCounts.entrySet()) {
+			if (entry.getValue().mValue != 0L) {
+				consumer.accept(entry.getKey(), entry.getValue().mValue);
+			}
+		}
+	}
+
+	private Count countOf(final Class<? extends Exception> type) {
+		Count count = mTypeCounts.get(type);
+		if (count == null) {
+			count = new Count();
+			mTypeCounts.put(type, count);
+		}
+		return count;
+	}
+
+	private static long checkCount(final long count) {
+		if (count < 0L) {
+			throw new IllegalArgumentException("Count (" + count + ") cannot be negative");
+		}
+		return count;
+	}
+
+	/**
+	 * A mutable count, so that tallying an error of a known type does not allocate.
+	 */
+	private static final class Count {
+		private long mValue;
+	}
+}
@@ -0,0 +1,457 @@
+package com.paloski.statistics;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * A flyweight view of Statistics serialized by {@link Statistics#writeTo(ByteBuffer)}, which reads
+ * their counts in place rather than materializing Statistics objects, e.g. to scan thousands of
+ * snapshots within a memory mapped file.
+ * <p/>
+ * A single view may be {@link #wrap(ByteBuffer, int) wrapped} around each serialized record in
+ * turn, and neither wrapping nor any getter allocates, so scanning costs no more than reading the
+ * fields that are needed. The getters match those of {@link Statistics}, {@link SuccessStatistics}
+ * and {@link ErrorStatistics}, though only counts, durations and the time range are serialized,
+ * and exception types are identified by their {@link Class#getName() name}. Latency quantiles,
+ * valued successes, error keys, distinct entities and exemplars are not serialized.
+ * <p/>
+ * The serialized form is a fixed layout header followed by a table of the count of each
+ * exception type, then a table of the count of each error category, all in big endian byte
+ * order:
+ * <pre>
+ * 0    int   magic and version
+ * 4    int   length of the record, in bytes
+ * 8    long  success count
+ * 16   long  timed success count
+ * 24   long  total duration of timed successes, in nanoseconds
+ * 32   long  maximum duration of timed successes, in nanoseconds
+ * 40   long  total error count
+ * 48   long  uncategorized error count
+ * 56   long  overflow error count
+ * 64   long  timed out, cancelled, rejected and interrupted counts
+ * 96   long  start and end of the time range, in milliseconds, and its active nanoseconds
+ * 120  int   number of exception types, each a long count, a short name length and UTF-8 name
+ * 124  int   number of error categories, each a long count, a short name length and UTF-8 name
+ * </pre>
+ * <p/>
+ * This class is not thread safe.
+ *
+ * @author Adam
+ */
+public final class StatisticsView {
+
+	private static final int MAGIC = 0x53545632;
+
+	private static final int LENGTH = 4;
+	private static final int SUCCESS_COUNT = 8;
+	private static final int TIMED_SUCCESS_COUNT = 16;
+	private static final int TOTAL_DURATION = 24;
+	private static final int MAX_DURATION = 32;
+	private static final int ERROR_COUNT = 40;
+	private static final int UNCATEGORIZED_ERROR_COUNT = 48;
+	private static final int OVERFLOW_ERROR_COUNT = 56;
+	private static final int TIMED_OUT_COUNT = 64;
+	private static final int CANCELLED_COUNT = 72;
+	private static final int REJECTED_COUNT = 80;
+	private static final int INTERRUPTED_COUNT = 88;
+	private static final int START_MILLIS = 96;
+	private static final int END_MILLIS = 104;
+	private static final int ACTIVE_NANOS = 112;
+	private static final int TYPE_COUNT = 120;
+	private static final int CATEGORY_COUNT = 124;
+	private static final int HEADER_BYTES = 128;
+	//The count and name length of each exception type or error category
+	private static final int ENTRY_HEADER_BYTES = 10;
+
+	private ByteBuffer mBuffer;
+	private int mOffset;
+
+	/**
+	 * Creates a new view, which must be {@link #wrap(ByteBuffer, int) wrapped} around a serialized
+	 * record before it is read.
+	 */
+	public StatisticsView() {
+	}
+
+	/**
+	 * Points this view at the serialized record at the given offset of the given buffer. The
+	 * record is read in place, so changes to the buffer are visible through this view.
+	 *
+	 * @param buffer
+	 * 		The non-null, big endian, buffer containing the record.
+	 * @param offset
+	 * 		The absolute offset of the record within the buffer.
+	 *
+	 * @return This view.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If there is no complete record at the offset.
+	 */
+	public StatisticsView wrap(final ByteBuffer buffer, final int offset) {
+		if (buffer == null) {
+			throw new IllegalArgumentException("Buffer cannot be null");
+		} else if (buffer.order() != ByteOrder.BIG_ENDIAN) {
+			throw new IllegalArgumentException("Buffer must be big endian");
+		} else if (offset < 0 || offset > buffer.limit() - HEADER_BYTES) {
+			throw new IllegalArgumentException("No record header at offset " + offset);
+		} else if (buffer.getInt(offset) != MAGIC) {
+			throw new IllegalArgumentException("No serialized statistics at offset " + offset);
+		}
+		final int length = buffer.getInt(offset + LENGTH);
+		if (length < HEADER_BYTES || length > buffer.limit() - offset) {
+			throw new IllegalArgumentException("Record at offset " + offset + " of length " + length + " is incomplete");
+		}
+		mBuffer = buffer;
+		mOffset = offset;
+		return this;
+	}
+
+	/**
+	 * Obtains the length of the record this view is wrapped around, which is the offset of the
+	 * following record when records are written one after another.
+	 *
+	 * @return The length of the record, in bytes.
+	 */
+	public int getLength() {
+		return getInt(LENGTH);
+	}
+
+	/**
+	 * @see Statistics#getSuccessCount()
+	 */
+	public long getSuccessCount() {
+		return getLong(SUCCESS_COUNT);
+	}
+
+	/**
+	 * @see Statistics#getErrorCount()
+	 */
+	public long getErrorCount() {
+		return getLong(ERROR_COUNT);
+	}
+
+	/**
+	 * @see Statistics#getEventCount()
+	 */
+	public long getEventCount() {
+		return getSuccessCount() + getErrorCount();
+	}
+
+	/**
+	 * @see Statistics#getSuccessPercent()
+	 */
+	public float getSuccessPercent() {
+		return ((float) getSuccessCount()) / ((float) getEventCount());
+	}
+
+	/**
+	 * @see Statistics#getErrorPercent()
+	 */
+	public float getErrorPercent() {
+		return ((float) getErrorCount()) / ((float) getEventCount());
+	}
+
+	/**
+	 * @see Statistics#getOutcomeCount(OutcomeCategory)
+	 */
+	public long getOutcomeCount(final OutcomeCategory category) {
+		switch (category) {
+			case TIMED_OUT:
+				return getLong(TIMED_OUT_COUNT);
+			case CANCELLED:
+				return getLong(CANCELLED_COUNT);
+			case REJECTED:
+				return getLong(REJECTED_COUNT);
+			case INTERRUPTED:
+				return getLong(INTERRUPTED_COUNT);
+			default:
+				throw new IllegalArgumentException("Unknown category " + category);
+		}
+	}
+
+	/**
+	 * @see SuccessStatistics#getTimedSuccessCount()
+	 */
+	public long getTimedSuccessCount() {
+		return getLong(TIMED_SUCCESS_COUNT);
+	}
+
+	/**
+	 * @see SuccessStatistics#getTotalDurationNanos()
+	 */
+	public long getTotalDurationNanos() {
+		return getLong(TOTAL_DURATION);
+	}
+
+	/**
+	 * @see SuccessStatistics#getMaxDurationNanos()
+	 */
+	public long getMaxDurationNanos() {
+		return getLong(MAX_DURATION);
+	}
+
+	/**
+	 * @see SuccessStatistics#getMeanDurationNanos()
+	 */
+	public double getMeanDurationNanos() {
+		final long timed = getTimedSuccessCount();
+		return timed == 0L ? 0.0 : ((double) getTotalDurationNanos()) / timed;
+	}
+
+	/**
+	 * @see ErrorStatistics#getUncategorizedErrorCount()
+	 */
+	public long getUncategorizedErrorCount() {
+		return getLong(UNCATEGORIZED_ERROR_COUNT);
+	}
+
+	/**
+	 * @see ErrorStatistics#getOverflowErrorCount()
+	 */
+	public long getOverflowErrorCount() {
+		return getLong(OVERFLOW_ERROR_COUNT);
+	}
+
+	/**
+	 * Obtains the number of exception types with a count, including those whose classes had been
+	 * unloaded.
+	 *
+	 * @return The number of exception types.
+	 */
+	public int getExceptionTypeCount() {
+		return getInt(TYPE_COUNT);
+	}
+
+	/**
+	 * Obtains the number of errors of the given exception type.
+	 *
+	 * @param type
+	 * 		The non-null exception type.
+	 *
+	 * @return The count of errors of exactly the given type, or 0 if there were none.
+	 */
+	public long getErrorCountForType(final Class<? extends Exception> type) {
+		return getErrorCountForType(type.getName());
+	}
+
+	/**
+	 * Obtains the number of errors of the exception type of the given name, whether or not its
+	 * class was unloaded when the statistics were serialized.
+	 *
+	 * @param typeName
+	 * 		The non-null {@link Class#getName() name} of the exception type.
+	 *
+	 * @return The count of errors of the type, or 0 if there were none.
+	 */
+	public long getErrorCountForType(final String typeName) {
+		return sumEntries(mOffset + HEADER_BYTES, getExceptionTypeCount(), typeName);
+	}
+
+	/**
+	 * @see ErrorStatistics#getErrorCategoryCount(String)
+	 */
+	public long getErrorCategoryCount(final String category) {
+		int position = mOffset + HEADER_BYTES;
+		for (int type = getExceptionTypeCount(); type > 0; type--) {
+			position += ENTRY_HEADER_BYTES + getNameLength(position);
+		}
+		return sumEntries(position, getInt(CATEGORY_COUNT), category);
+	}
+
+	/**
+	 * @see TimeRange#getStartMillis()
+	 */
+	public long getStartMillis() {
+		return getLong(START_MILLIS);
+	}
+
+	/**
+	 * @see TimeRange#getEndMillis()
+	 */
+	public long getEndMillis() {
+		return getLong(END_MILLIS);
+	}
+
+	/**
+	 * @see Statistics#getEventsPerSecond()
+	 */
+	public double getEventsPerSecond() {
+		return getRatePerSecond(getEventCount());
+	}
+
+	/**
+	 * @see Statistics#getSuccessesPerSecond()
+	 */
+	public double getSuccessesPerSecond() {
+		return getRatePerSecond(getSuccessCount());
+	}
+
+	/**
+	 * @see Statistics#getErrorsPerSecond()
+	 */
+	public double getErrorsPerSecond() {
+		return getRatePerSecond(getErrorCount());
+	}
+
+	private double getRatePerSecond(final long count) {
+		final long activeNanos = getLong(ACTIVE_NANOS);
+		return activeNanos == 0L ? 0.0 : count * 1e9 / activeNanos;
+	}
+
+	private long getLong(final int field) {
+		return mBuffer.getLong(mOffset + field);
+	}
+
+	private int getInt(final int field) {
+		return mBuffer.getInt(mOffset + field);
+	}
+
+	private int getNameLength(final int entry) {
+		return mBuffer.getShort(entry + 8) & 0xFFFF;
+	}
+
+	/**
+	 * Sums the counts of the given number of entries from the given position whose name is the
+	 * given name.
+	 */
+	private long sumEntries(final int position, final int entries, final String name) {
+		long count = 0L;
+		int entry = position;
+		for (int remaining = entries; remaining > 0; remaining--) {
+			final int nameLength = getNameLength(entry);
+			if (nameEquals(entry + ENTRY_HEADER_BYTES, nameLength, name)) {
+				count += mBuffer.getLong(entry);
+			}
+			entry += ENTRY_HEADER_BYTES + nameLength;
+		}
+		return count;
+	}
+
+	/**
+	 * Compares the UTF-8 name at the given position to the given name, encoding the name as it is
+	 * compared rather than decoding the serialized name, so that neither allocates.
+	 */
+	private boolean nameEquals(final int position, final int length, final String name) {
+		int offset = 0;
+		for (int index = 0; index < name.length(); index++) {
+			final char character = name.charAt(index);
+			final int codePoint;
+			if (Character.isHighSurrogate(character) && index + 1 < name.length()
+				&& Character.isLowSurrogate(name.charAt(index + 1))) {
+				codePoint = Character.toCodePoint(character, name.charAt(++index));
+			} else if (Character.isSurrogate(character)) {
+				//Unpaired surrogates are encoded as '?', as by String#getBytes
+				codePoint = '?';
+			} else {
+				codePoint = character;
+			}
+			if (codePoint < 0x80) {
+				if (offset + 1 > length || mBuffer.get(position + offset) != (byte) codePoint) {
+					return false;
+				}
+				offset += 1;
+			} else if (codePoint < 0x800) {
+				if (offset + 2 > length
+					|| mBuffer.get(position + offset) != (byte) (0xC0 | codePoint >> 6)
+					|| mBuffer.get(position + offset + 1) != (byte) (0x80 | codePoint & 0x3F)) {
+					return false;
+				}
+				offset += 2;
+			} else if (codePoint < 0x10000) {
+				if (offset + 3 > length
+					|| mBuffer.get(position + offset) != (byte) (0xE0 | codePoint >> 12)
+					|| mBuffer.get(position + offset + 1) != (byte) (0x80 | codePoint >> 6 & 0x3F)
+					|| mBuffer.get(position + offset + 2) != (byte) (0x80 | codePoint & 0x3F)) {
+					return false;
+				}
+				offset += 3;
+			} else {
+				if (offset + 4 > length
+					|| mBuffer.get(position + offset) != (byte) (0xF0 | codePoint >> 18)
+					|| mBuffer.get(position + offset + 1) != (byte) (0x80 | codePoint >> 12 & 0x3F)
+					|| mBuffer.get(position + offset + 2) != (byte) (0x80 | codePoint >> 6 & 0x3F)
+					|| mBuffer.get(position + offset + 3) != (byte) (0x80 | codePoint & 0x3F)) {
+					return false;
+				}
+				offset += 4;
+			}
+		}
+		return offset == length;
+	}
+
+	/**
+	 * Obtains the length of the serialized form of the given statistics.
+	 */
+	/* package */ static int sizeOf(final Statistics statistics) {
+		final ErrorStatistics errors = statistics.getErrorStatistics();
+		int size = HEADER_BYTES;
+		for (final Class<? extends Exception> type : errors.getCountOfExceptionTypes().keySet()) {
+			size += ENTRY_HEADER_BYTES + encodeName(type.getName()).length;
+		}
+		for (final String name : errors.getCountOfUnresolvedExceptionTypes().keySet()) {
+			size += ENTRY_HEADER_BYTES + encodeName(name).length;
+		}
+		for (final String category : errors.getCountOfErrorCategories().keySet()) {
+			size += ENTRY_HEADER_BYTES + encodeName(category).length;
+		}
+		return size;
+	}
+
+	/**
+	 * Writes the serialized form of the given statistics at the position of the given buffer,
+	 * advancing it past the record.
+	 */
+	/* package */ static void write(final Statistics statistics, final ByteBuffer buffer) {
+		if (buffer.order() != ByteOrder.BIG_ENDIAN) {
+			throw new IllegalArgumentException("Buffer must be big endian");
+		}
+		final SuccessStatistics successes = statistics.getSuccessStatistics();
+		final ErrorStatistics errors = statistics.getErrorStatistics();
+		final TimeRange timeRange = statistics.getTimeRange();
+		final Map<Class<? extends Exception>, Long> typeCounts = errors.getCountOfExceptionTypes();
+		final Map<String, Long> unresolvedCounts = errors.getCountOfUnresolvedExceptionTypes();
+		final Map<String, Long> categoryCounts = errors.getCountOfErrorCategories();
+		buffer.putInt(MAGIC)
+			  .putInt(sizeOf(statistics))
+			  .putLong(successes.getSuccessCount())
+			  .putLong(successes.getTimedSuccessCount())
+			  .putLong(successes.getTotalDurationNanos())
+			  .putLong(successes.getMaxDurationNanos())
+			  .putLong(errors.getTotalErrorCount())
+			  .putLong(errors.getUncategorizedErrorCount())
+			  .putLong(errors.getOverflowErrorCount())
+			  .putLong(statistics.getTimedOutCount())
+			  .putLong(statistics.getCancelledCount())
+			  .putLong(statistics.getRejectedCount())
+			  .putLong(statistics.getInterruptedCount())
+			  .putLong(timeRange.getStartMillis())
+			  .putLong(timeRange.getEndMillis())
+			  .putLong(timeRange.getActiveNanos())
+			  .putInt(typeCounts.size() + unresolvedCounts.size())
+			  .putInt(categoryCounts.size());
+		for (final Map.Entry<Class<? extends Exception>, Long> entry : typeCounts.entrySet()) {
+			putEntry(buffer, entry.getKey().getName(), entry.getValue());
+		}
+		for (final Map.Entry<String, Long> entry : unresolvedCounts.entrySet()) {
+			putEntry(buffer, entry.getKey(), entry.getValue());
+		}
+		for (final Map.Entry<String, Long> entry : categoryCounts.entrySet()) {
+			putEntry(buffer, entry.getKey(), entry.getValue());
+		}
+	}
+
+	private static void putEntry(final ByteBuffer buffer, final String name, final long count) {
+		final byte[] encoded = encodeName(name);
+		buffer.putLong(count).putShort((short) encoded.length).put(encoded);
+	}
+
+	private static byte[] encodeName(final String name) {
+		final byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+		if (encoded.length > 0xFFFF) {
+			throw new IllegalArgumentException("Exception type name of " + encoded.length + " bytes is too long");
+		}
+		return encoded;
+	}
+}
@@ -5,15 +5,25 @@ import java.util.Objects;
 /**
  * A class representing the statistics related to success recorded by a {@link StatisticsRecorder}.
  * <p/>
+ * Along with the number of successes, the durations of successes recorded through {@link
+ * StatisticsRecorder#recordTimedSuccess(long)} are kept in a {@link QuantileSketch}, which allows
+ * latency quantiles to be computed from statistics merged across any number of recorders. Values
+ * recorded through {@link StatisticsRecorder#recordSuccess(long)} are summarized by {@link
+ * ValueStatistics}.
+ * <p/>
  * This class is immutable and (therefore) thread safe.
  *
  * @author Adam
  */
 public final class SuccessStatistics {
 
-	private static final SuccessStatistics EMPTY = new SuccessStatistics(0L);
+	private static final SuccessStatistics EMPTY = new SuccessStatistics(0L, QuantileSketch.empty(), HyperLogLog.empty(), ValueStatistics.empty(), TimeRange.unknown());
 
 	private final long mSuccessCount;
+	private final QuantileSketch mLatency;
+	private final HyperLogLog mDistinctEntities;
+	private final ValueStatistics mValues;
+	private final TimeRange mTimeRange;
 
 	/**
 	 * Creates a new SuccessStatistics object that stored the number of successes that is passed
@@ -21,13 +31,34 @@ public final class SuccessStatistics {
 	 *
 	 * @param successCount
 	 * 		The number of successes encountered. Must not be less than 0L.
+	 * @param latency
+	 * 		A sketch of the durations of those successes that were timed, in nanoseconds.
+	 * @param distinctEntities
+	 * 		A sketch of the distinct entities that successes were recorded for.
+	 * @param values
+	 * 		The statistics of the values recorded along with successes.
+	 * @param timeRange
+	 * 		The time the successes were recorded over.
 	 */
 	/* package */
-	private SuccessStatistics(final long successCount) {
+	private SuccessStatistics(final long successCount, final QuantileSketch latency, final HyperLogLog distinctEntities,
+							  final ValueStatistics values, final TimeRange timeRange) {
 		if (successCount < 0L) {
 			throw new IllegalArgumentException("Success Count (" + successCount + ") cannot be negative");
+		} else if (latency == null) {
+			throw new NullPointerException("Null latency sketch is not allowed");
+		} else if (distinctEntities == null) {
+			throw new NullPointerException("Null distinct entity sketch is not allowed");
+		} else if (latency.getCount() > successCount) {
+			throw new IllegalArgumentException("Timed success count (" + latency.getCount() + ") cannot exceed the success count");
+		} else if (values.getCount() > successCount) {
+			throw new IllegalArgumentException("Valued success count (" + values.getCount() + ") cannot exceed the success count");
 		}
 		mSuccessCount = successCount;
+		mLatency = latency;
+		mDistinctEntities = distinctEntities;
+		mValues = values;
+		mTimeRange = timeRange;
 	}
 
 	/**
@@ -40,7 +71,72 @@ public final class SuccessStatistics {
 	 * @return A non-null SuccessStatistics object containing the given success count.
 	 */
 	/* package */ static SuccessStatistics forSuccessCount(final long successCount) {
-		return new SuccessStatistics(successCount);
+		return new SuccessStatistics(successCount, QuantileSketch.empty(), HyperLogLog.empty(), ValueStatistics.empty(), TimeRange.unknown());
+	}
+
+	/**
+	 * A factory method that returns a SuccessStatistics object for a number of successes, some of
+	 * which were recorded along with the time they took.
+	 *
+	 * @param successCount
+	 * 		the number of successes encountered.
+	 * @param latency
+	 * 		a sketch of the durations of the timed successes, in nanoseconds.
+	 *
+	 * @return A non-null SuccessStatistics object containing the given count and durations.
+	 */
+	/* package */ static SuccessStatistics forSuccesses(final long successCount, final QuantileSketch latency) {
+		return new SuccessStatistics(successCount, latency, HyperLogLog.empty(), ValueStatistics.empty(), TimeRange.unknown());
+	}
+
+	/**
+	 * A factory method that returns a SuccessStatistics object for a number of successes, along
+	 * with their durations and the distinct entities they were recorded for.
+	 *
+	 * @param successCount
+	 * 		the number of successes encountered.
+	 * @param latency
+	 * 		a sketch of the durations of the timed successes, in nanoseconds.
+	 * @param distinctEntities
+	 * 		a sketch of the distinct entities that successes were recorded for.
+	 *
+	 * @return A non-null SuccessStatistics object containing the given information.
+	 */
+	/* package */ static SuccessStatistics forSuccesses(final long successCount,
+														final QuantileSketch latency,
+														final HyperLogLog distinctEntities) {
+		return new SuccessStatistics(successCount, latency, distinctEntities, ValueStatistics.empty(), TimeRange.unknown());
+	}
+
+	/**
+	 * Creates a copy of this SuccessStatistics that was recorded over the given time.
+	 *
+	 * @param timeRange
+	 * 		The non-null time the successes were recorded over.
+	 *
+	 * @return A new SuccessStatistics with the given time range.
+	 */
+	/* package */ SuccessStatistics withTimeRange(final TimeRange timeRange) {
+		if (timeRange == null) {
+			throw new IllegalArgumentException("Cannot handle null time range, use unknown instead");
+		}
+		return new SuccessStatistics(mSuccessCount, mLatency, mDistinctEntities, mValues, timeRange);
+	}
+
+	/**
+	 * Creates a copy of this SuccessStatistics that carries the statistics of the values recorded
+	 * along with successes.
+	 *
+	 * @param values
+	 * 		The non-null statistics of the values, of no more values than there are successes.
+	 *
+	 * @return A new SuccessStatistics with the given values.
+	 */
+	/* package */ SuccessStatistics withValues(final ValueStatistics values) {
+		if (values == null) {
+			throw new NullPointerException("Null value statistics are not allowed");
+		}
+		return new SuccessStatistics(mSuccessCount, mLatency, mDistinctEntities, values, mTimeRange);
 	}
 
 	/**
@@ -65,7 +161,11 @@ public final class SuccessStatistics {
 	 * {@code other}
 	 */
 	public SuccessStatistics mergeWith(final SuccessStatistics other) {
-		return forSuccessCount(mSuccessCount + other.getSuccessCount());
+		return new SuccessStatistics(mSuccessCount + other.getSuccessCount(),
+									 mLatency.mergeWith(other.getLatencySketch()),
+									 mDistinctEntities.mergeWith(other.getDistinctEntities()),
+									 mValues.mergeWith(other.getValueStatistics()),
+									 mTimeRange.mergeWith(other.getTimeRange()));
 	}
 
 	/**
@@ -77,17 +177,131 @@ public final class SuccessStatistics {
 		return mSuccessCount;
 	}
 
+	/**
+	 * Obtains the number of successes that were recorded along with their duration, such as those
+	 * recorded through {@link StatisticsRecorder#recordTimedSuccess(long)}.
+	 *
+	 * @return The number of timed successes, never more than {@link #getSuccessCount()}.
+	 */
+	public long getTimedSuccessCount() {
+		return mLatency.getCount();
+	}
+
+	/**
+	 * Obtains the sum of the durations of all timed successes.
+	 *
+	 * @return The total duration of the timed successes, in nanoseconds.
+	 */
+	public long getTotalDurationNanos() {
+		return mLatency.getSum();
+	}
+
+	/**
+	 * Obtains the longest duration of any timed success.
+	 *
+	 * @return The maximum duration in nanoseconds, or 0L if no timed successes were recorded.
+	 */
+	public long getMaxDurationNanos() {
+		return mLatency.getMax();
+	}
+
+	/**
+	 * Obtains the mean duration of the timed successes.
+	 *
+	 * @return The mean duration in nanoseconds, or 0.0 if no timed successes were recorded.
+	 */
+	public double getMeanDurationNanos() {
+		return mLatency.getCount() == 0L ? 0.0 : ((double) mLatency.getSum()) / mLatency.getCount();
+	}
+
+	/**
+	 * Obtains the estimated duration of the timed successes at the given quantile, e.g. 0.99 for
+	 * the p99 latency.
+	 *
+	 * @param quantile
+	 * 		The quantile to query, between 0.0 and 1.0 inclusive.
+	 *
+	 * @return The estimated duration in nanoseconds, within the relative accuracy of {@link
+	 * #getLatencySketch()}, or 0.0 if no timed successes were recorded.
+	 */
+	public double getDurationQuantileNanos(final double quantile) {
+		return mLatency.getQuantile(quantile);
+	}
+
+	/**
+	 * Obtains the sketch of the durations of the timed successes, which may be serialized and
+	 * merged independently of these statistics.
+	 *
+	 * @return The non-null latency sketch, in nanoseconds.
+	 */
+	public QuantileSketch getLatencySketch() {
+		return mLatency;
+	}
+
+	/**
+	 * Obtains the sketch of the distinct entities (e.g. users or requests) that successes were
+	 * recorded for through {@link StatisticsRecorder#recordSuccess(String)}. The sketch is empty
+	 * unless the recorder was built with distinct entity tracking enabled.
+	 *
+	 * @return The non-null distinct entity sketch.
+	 */
+	public HyperLogLog getDistinctEntities() {
+		return mDistinctEntities;
+	}
+
+	/**
+	 * Estimates the number of distinct entities that successes were recorded for.
+	 *
+	 * @return The estimated number of distinct entities with a success.
+	 */
+	public long getDistinctEntityCount() {
+		return mDistinctEntities.getEstimate();
+	}
+
+	/**
+	 * Obtains the statistics of the values, such as bytes processed or rows written, that were
+	 * recorded along with successes through {@link StatisticsRecorder#recordSuccess(long)}.
+	 *
+	 * @return The non-null value statistics, which are empty if no values were recorded.
+	 */
+	public ValueStatistics getValueStatistics() {
+		return mValues;
+	}
+
+	/**
+	 * Obtains the time that these successes were recorded over. The time range is not considered
+	 * by {@link #equals(Object)}.
+	 *
+	 * @return The non-null time range, which is {@link TimeRange#isKnown() unknown} unless these
+	 * statistics came from a recorder.
+	 */
+	public TimeRange getTimeRange() {
+		return mTimeRange;
+	}
+
+	/**
+	 * Obtains the throughput of successes over the {@link #getTimeRange() time range} they were
+	 * recorded over.
+	 *
+	 * @return The number of successes per second, or 0.0 if the time range is unknown.
+	 */
+	public double getSuccessesPerSecond() {
+		return mTimeRange.getRatePerSecond(mSuccessCount);
+	}
 
 	@Override
 	public boolean equals(final Object o) {
 		if (this == o) return true;
 		if (!(o instanceof SuccessStatistics)) return false;
 		final SuccessStatistics that = (SuccessStatistics) o;
-		return getSuccessCount() == that.getSuccessCount();
+		return getSuccessCount() == that.getSuccessCount() &&
+			   Objects.equals(getLatencySketch(), that.getLatencySketch()) &&
+			   Objects.equals(getDistinctEntities(), that.getDistinctEntities()) &&
+			   Objects.equals(getValueStatistics(), that.getValueStatistics());
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(getSuccessCount());
+		return Objects.hash(getSuccessCount(), getLatencySketch(), getDistinctEntities(), getValueStatistics());
 	}
 }
@@ -0,0 +1,585 @@
+package com.paloski.statistics;
+
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A cache of a StatisticsRecorder per tenant, such as a customer or an API key, that evicts the
+ * recorders of tenants that have gone idle, so that memory tracks the tenants that are active
+ * rather than every tenant ever seen.
+ * <p/>
+ * Recorders are evicted when the cache holds more than its {@link Builder#withMaximumSize(int)
+ * maximum size}, approximately least recently used first, and when they have not been looked up
+ * for longer than the {@link Builder#withIdleTimeout(long, TimeUnit) idle timeout}, the latter by
+ * {@link #evictIdle()}. The least recently used recorder is chosen by the second chance (CLOCK)
+ * algorithm: recorders are queued in the order they were created, and a recorder at the head of
+ * the queue that was looked up since it was last queued is queued again rather than evicted, so
+ * that choosing a recorder to evict takes amortized constant time. When a recorder is evicted a
+ * final snapshot of it is taken, which is passed to the {@link EvictionListener} of the cache and
+ * merged into {@link #getEvictedStatistics()}, so that totals across every tenant survive
+ * eviction. A tenant that is looked up after its recorder was evicted is given a new, empty,
+ * recorder.
+ * <p/>
+ * Looking a recorder up does not lock, and records the time it was used. Recording into a recorder
+ * returned by {@link #getRecorder(Object)} after it was evicted is not reflected in the final
+ * snapshot, which {@link #record(Object, Consumer)} prevents. Recorders that are being recorded
+ * into through it are neither evicted for size, being queued again instead, nor as idle, so the
+ * cache may briefly hold more than its maximum size. A recorder evicted by {@link #evict(Object)}
+ * while it is being recorded into has its final snapshot taken once the last of those recordings
+ * finishes, and recordings that find their recorder evicted retry upon a new one. Eviction never
+ * waits for recordings, so they may look up and record into other tenants freely.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @param <K>
+ * 		The type of the keys of tenants.
+ *
+ * @author Adam
+ */
+public final class TenantRecorderCache<K> {
+
+	/**
+	 * A listener that is informed of the final statistics of each evicted recorder, e.g. to flush
+	 * them into a store of historical statistics.
+	 * <p/>
+	 * Listeners are invoked by the thread that evicts the recorder, or by the thread that finishes
+	 * the last recording into it through {@link #record(Object, Consumer)}, while no other recorder
+	 * of the cache is being evicted.
+	 *
+	 * @param <K>
+	 * 		The type of the keys of tenants.
+	 */
+	public interface EvictionListener<K> {
+
+		/**
+		 * Invoked once a recorder was evicted from the cache.
+		 *
+		 * @param tenant
+		 * 		The non-null tenant of the evicted recorder.
+		 * @param statistics
+		 * 		The non-null final snapshot of the evicted recorder.
+		 */
+		void onEviction(K tenant, Statistics statistics);
+	}
+
+	private final ConcurrentMap<K, Entry<K>> mRecorders = new ConcurrentHashMap<>();
+	//The entries in the order they were created or given a second chance, which may include evicted
+	//entries, and which is only kept when the size of the cache is bounded
+	private final Queue<Entry<K>> mClock = new ConcurrentLinkedQueue<>();
+	private final Lock mEvictionLock = new ReentrantLock();
+	//Guarded by mEvictionLock
+	private int mEvictedInClock;
+	private final AtomicReference<Statistics> mEvicted =
+			new AtomicReference<>(new Statistics(SuccessStatistics.empty(), ErrorStatistics.empty()));
+
+	private final Supplier<StatisticsRecorder> mRecorderFactory;
+	private final int mMaximumSize;
+	private final long mIdleTimeoutNanos;
+	private final EvictionListener<? super K> mListener;
+
+	private TenantRecorderCache(final Builder<K> builder) {
+		mRecorderFactory = builder.mRecorderFactory;
+		mMaximumSize = builder.mMaximumSize;
+		mIdleTimeoutNanos = builder.mIdleTimeoutNanos;
+		mListener = builder.mListener;
+	}
+
+	/**
+	 * Creates a new Builder of a TenantRecorderCache, which by default holds an unbounded number of
+	 * default recorders that are never idle.
+	 *
+	 * @param <K>
+	 * 		The type of the keys of tenants.
+	 *
+	 * @return A new Builder.
+	 */
+	public static <K> Builder<K> newBuilder() {
+		return new Builder<>();
+	}
+
+	/**
+	 * Obtains the recorder of the given tenant, creating one if the tenant has none, and marks it
+	 * as used.
+	 *
+	 * @param tenant
+	 * 		The non-null tenant.
+	 *
+	 * @return The non-null recorder of the tenant.
+	 */
+	public StatisticsRecorder getRecorder(final K tenant) {
+		if (tenant == null) {
+			throw new IllegalArgumentException("Tenant cannot be null");
+		}
+		return lookUp(tenant).mRecorder;
+	}
+
+	/**
+	 * Records into the recorder of the given tenant, creating one if the tenant has none, and marks
+	 * it as used. Unlike recording into the recorder returned by {@link #getRecorder(Object)},
+	 * everything recorded by the given action is reflected in the final snapshot of the recorder
+	 * should it be evicted, as eviction waits for the action to return.
+	 *
+	 * @param tenant
+	 * 		The non-null tenant.
+	 * @param action
+	 * 		The non-null action that records into the recorder of the tenant, which should be short,
+	 * 		as it delays the eviction of the recorder.
+	 */
+	public void record(final K tenant, final Consumer<? super StatisticsRecorder> action) {
+		if (tenant == null) {
+			throw new IllegalArgumentException("Tenant cannot be null");
+		} else if (action == null) {
+			throw new IllegalArgumentException("Action cannot be null");
+		}
+		while (true) {
+			final Entry<K> entry = lookUp(tenant);
+			if (entry.pin()) {
+				try {
+					action.accept(entry.mRecorder);
+				} finally {
+					if (entry.unpin()) {
+						//The entry was evicted while this was recording, and left to be flushed
+						flushLocked(entry);
+					}
+				}
+				return;
+			}
+			//The entry was evicted after it was looked up, so the next look up finds its replacement
+		}
+	}
+
+	/**
+	 * Obtains the recorder of the given tenant without creating one, nor marking it as used.
+	 *
+	 * @param tenant
+	 * 		The non-null tenant.
+	 *
+	 * @return The recorder of the tenant, or null if the tenant has none.
+	 */
+	public StatisticsRecorder getIfPresent(final K tenant) {
+		if (tenant == null) {
+			throw new IllegalArgumentException("Tenant cannot be null");
+		}
+		final Entry<K> entry = mRecorders.get(tenant);
+		return entry != null ? entry.mRecorder : null;
+	}
+
+	/**
+	 * Obtains the tenants that currently have a recorder.
+	 *
+	 * @return A non-null, unmodifiable view of the tenants with a recorder.
+	 */
+	public Set<K> getTenants() {
+		return Collections.unmodifiableSet(mRecorders.keySet());
+	}
+
+	/**
+	 * Obtains the number of tenants that currently have a recorder.
+	 *
+	 * @return The number of recorders in the cache.
+	 */
+	public int size() {
+		return mRecorders.size();
+	}
+
+	/**
+	 * Evicts the recorder of the given tenant, if it has one. If it is being recorded into through
+	 * {@link #record(Object, Consumer)}, its final snapshot is taken once those recordings finish.
+	 *
+	 * @param tenant
+	 * 		The non-null tenant.
+	 *
+	 * @return True if the tenant had a recorder.
+	 */
+	public boolean evict(final K tenant) {
+		if (tenant == null) {
+			throw new IllegalArgumentException("Tenant cannot be null");
+		}
+		mEvictionLock.lock();
+		try {
+			final Entry<K> entry = mRecorders.get(tenant);
+			return entry != null && evict(entry, true, true);
+		} finally {
+			mEvictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Evicts the recorder of every tenant that has not been looked up for longer than the idle
+	 * timeout.
+	 *
+	 * @return The number of recorders evicted.
+	 */
+	public int evictIdle() {
+		return evictIdle(System.nanoTime());
+	}
+
+	/**
+	 * Evicts the recorder of every tenant that has been idle for longer than the idle timeout as of
+	 * the given time.
+	 */
+	/* package */ int evictIdle(final long nowNanos) {
+		if (mIdleTimeoutNanos == Long.MAX_VALUE) {
+			return 0;
+		}
+		int evicted = 0;
+		mEvictionLock.lock();
+		try {
+			for (final Entry<K> entry : mRecorders.values()) {
+				if (nowNanos - entry.mLastAccessNanos > mIdleTimeoutNanos && evict(entry, true, false)) {
+					evicted++;
+				}
+			}
+		} finally {
+			mEvictionLock.unlock();
+		}
+		return evicted;
+	}
+
+	/**
+	 * Schedules {@link #evictIdle()} to be run periodically on the given executor.
+	 *
+	 * @param executor
+	 * 		The non-null executor to evict idle recorders upon.
+	 * @param period
+	 * 		The time between evictions, which must be positive.
+	 * @param unit
+	 * 		The non-null unit of {@code period}.
+	 *
+	 * @return The future of the scheduled evictions, which may be cancelled to stop evicting.
+	 */
+	public ScheduledFuture<?> scheduleIdleEviction(final ScheduledExecutorService executor, final long period, final TimeUnit unit) {
+		if (executor == null) {
+			throw new IllegalArgumentException("Executor cannot be null");
+		} else if (unit == null) {
+			throw new IllegalArgumentException("Unit cannot be null");
+		} else if (period <= 0L) {
+			throw new IllegalArgumentException("Period (" + period + ") must be positive");
+		}
+		return executor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				evictIdle();
+			}
+		}, period, period, unit);
+	}
+
+	/**
+	 * Obtains the merged final statistics of every recorder that has been evicted.
+	 *
+	 * @return The non-null statistics of the evicted recorders, which are empty if none were.
+	 */
+	public Statistics getEvictedStatistics() {
+		return mEvicted.get();
+	}
+
+	/**
+	 * Takes a snapshot of the statistics of every tenant, both of those whose recorders are in the
+	 * cache and of those whose recorders were evicted.
+	 *
+	 * @return A non-null Statistics object of every tenant.
+	 */
+	public Statistics takeSnapshot() {
+		Statistics statistics = mEvicted.get();
+		for (final Entry<K> entry : mRecorders.values()) {
+			statistics = statistics.mergeWith(entry.mRecorder.takeSnapshot());
+		}
+		return statistics;
+	}
+
+	/**
+	 * Obtains the entry of the given tenant, creating one if the tenant has none, and marks it as
+	 * used.
+	 */
+	private Entry<K> lookUp(final K tenant) {
+		final long now = System.nanoTime();
+		Entry<K> entry = mRecorders.get(tenant);
+		if (entry == null) {
+			final Entry<K> created = new Entry<>(tenant, mRecorderFactory.get(), now);
+			entry = mRecorders.putIfAbsent(tenant, created);
+			if (entry == null) {
+				if (mMaximumSize != Integer.MAX_VALUE) {
+					mClock.offer(created);
+					if (mRecorders.size() > mMaximumSize) {
+						evictLeastRecentlyUsed(created);
+					}
+				}
+				return created;
+			}
+		}
+		entry.mLastAccessNanos = now;
+		if (!entry.mReferenced) {
+			entry.mReferenced = true;
+		}
+		return entry;
+	}
+
+	/**
+	 * Evicts the least recently used recorders, other than the one just created, until the cache is
+	 * within its maximum size, giving each recorder that was used since it was last queued a second
+	 * chance.
+	 */
+	private void evictLeastRecentlyUsed(final Entry<K> created) {
+		mEvictionLock.lock();
+		try {
+			boolean passedCreated = false;
+			while (mRecorders.size() > mMaximumSize) {
+				final Entry<K> eldest = mClock.poll();
+				if (eldest == null) {
+					return;
+				}
+				if (eldest.isRetired()) {
+					mEvictedInClock--;
+				} else if (eldest == created) {
+					mClock.offer(eldest);
+					if (passedCreated) {
+						//Every other entry is yet to be queued by the thread that created it
+						return;
+					}
+					passedCreated = true;
+				} else if (eldest.mReferenced) {
+					eldest.mReferenced = false;
+					mClock.offer(eldest);
+				} else if (!evict(eldest, false, false)) {
+					//Being recorded into, so it is in use
+					mClock.offer(eldest);
+				}
+			}
+		} finally {
+			mEvictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the given entry and flushes its final statistics, which must be called while holding
+	 * the eviction lock. An entry that is being recorded into is only evicted if {@code force} is
+	 * true, in which case its statistics are flushed by the last recording once it finishes.
+	 * Evicted entries that are still queued stay so until they are polled, unless they outnumber
+	 * the entries of the cache.
+	 */
+	private boolean evict(final Entry<K> entry, final boolean queued, final boolean force) {
+		if (mRecorders.get(entry.mTenant) != entry) {
+			return false;
+		}
+		final boolean unpinned;
+		if (force) {
+			unpinned = entry.retire();
+		} else if (entry.tryRetire()) {
+			unpinned = true;
+		} else {
+			return false;
+		}
+		mRecorders.remove(entry.mTenant, entry);
+		if (queued && mMaximumSize != Integer.MAX_VALUE && ++mEvictedInClock > mRecorders.size()) {
+			mClock.removeIf(Entry::isRetired);
+			mEvictedInClock = 0;
+		}
+		if (unpinned) {
+			flush(entry);
+		}
+		return true;
+	}
+
+	private void flushLocked(final Entry<K> entry) {
+		mEvictionLock.lock();
+		try {
+			flush(entry);
+		} finally {
+			mEvictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Flushes the final statistics of the given evicted entry, which must be called while holding
+	 * the eviction lock.
+	 */
+	private void flush(final Entry<K> entry) {
+		final Statistics statistics = entry.mRecorder.takeSnapshot();
+		mEvicted.accumulateAndGet(statistics, Statistics::mergeWith);
+		if (mListener != null) {
+			mListener.onEviction(entry.mTenant, statistics);
+		}
+	}
+
+	/**
+	 * The recorder of a tenant, along with when it was last used and the number of recordings into
+	 * it that are running, whose sign bit is set once the entry is retired by eviction.
+	 */
+	private static final class Entry<K> {
+
+		private static final int RETIRED = Integer.MIN_VALUE;
+
+		private final K mTenant;
+		private final StatisticsRecorder mRecorder;
+		private final AtomicInteger mPins = new AtomicInteger();
+		private volatile long mLastAccessNanos;
+		//If the entry was used since it was last queued
+		private volatile boolean mReferenced;
+
+		private Entry(final K tenant, final StatisticsRecorder recorder, final long lastAccessNanos) {
+			mTenant = tenant;
+			mRecorder = recorder;
+			mLastAccessNanos = lastAccessNanos;
+		}
+
+		private boolean pin() {
+			int pins;
+			do {
+				pins = mPins.get();
+				if (pins < 0) {
+					return false;
+				}
+			} while (!mPins.compareAndSet(pins, pins + 1));
+			return true;
+		}
+
+		/**
+		 * Releases a pin of the entry.
+		 *
+		 * @return True if this was the last pin of an entry that was retired while pinned, which
+		 * must then be flushed.
+		 */
+		private boolean unpin() {
+			return mPins.decrementAndGet() == RETIRED;
+		}
+
+		/**
+		 * Retires the entry if nothing is recording into it.
+		 *
+		 * @return True if the entry was retired.
+		 */
+		private boolean tryRetire() {
+			return mPins.compareAndSet(0, RETIRED);
+		}
+
+		/**
+		 * Prevents the entry from being pinned, without waiting for the recordings that have.
+		 *
+		 * @return True if nothing was recording into the entry, so that it may be flushed now.
+		 */
+		private boolean retire() {
+			int pins;
+			do {
+				pins = mPins.get();
+			} while (!mPins.compareAndSet(pins, pins | RETIRED));
+			return pins == 0;
+		}
+
+		private boolean isRetired() {
+			return mPins.get() < 0;
+		}
+	}
+
+	/**
+	 * A builder of TenantRecorderCache objects.
+	 * <p/>
+	 * This class is not thread safe.
+	 *
+	 * @param <K>
+	 * 		The type of the keys of tenants.
+	 */
+	public static final class Builder<K> {
+
+		private Supplier<StatisticsRecorder> mRecorderFactory = StatisticsRecorder::newRecorder;
+		private int mMaximumSize = Integer.MAX_VALUE;
+		private long mIdleTimeoutNanos = Long.MAX_VALUE;
+		private EvictionListener<? super K> mListener;
+
+		private Builder() {
+		}
+
+		/**
+		 * Configures the factory of the recorder of each tenant, e.g. to configure them through
+		 * {@link StatisticsRecorder.Builder}.
+		 *
+		 * @param recorderFactory
+		 * 		The non-null factory of new recorders.
+		 *
+		 * @return This builder
+		 */
+		public Builder<K> withRecorderFactory(final Supplier<StatisticsRecorder> recorderFactory) {
+			if (recorderFactory == null) {
+				throw new IllegalArgumentException("Recorder factory cannot be null");
+			}
+			mRecorderFactory = recorderFactory;
+			return this;
+		}
+
+		/**
+		 * Configures the largest number of recorders that the cache holds, beyond which the least
+		 * recently used recorder is evicted.
+		 *
+		 * @param maximumSize
+		 * 		The maximum number of recorders, which must be positive.
+		 *
+		 * @return This builder
+		 */
+		public Builder<K> withMaximumSize(final int maximumSize) {
+			if (maximumSize < 1) {
+				throw new IllegalArgumentException("Maximum size (" + maximumSize + ") must be positive");
+			}
+			mMaximumSize = maximumSize;
+			return this;
+		}
+
+		/**
+		 * Configures how long a recorder may go without being looked up before {@link
+		 * #evictIdle()} evicts it.
+		 *
+		 * @param timeout
+		 * 		The idle timeout, which must be positive.
+		 * @param unit
+		 * 		The non-null unit of {@code timeout}.
+		 *
+		 * @return This builder
+		 */
+		public Builder<K> withIdleTimeout(final long timeout, final TimeUnit unit) {
+			if (unit == null) {
+				throw new IllegalArgumentException("Unit cannot be null");
+			} else if (timeout <= 0L) {
+				throw new IllegalArgumentException("Timeout (" + timeout + ") must be positive");
+			}
+			mIdleTimeoutNanos = unit.toNanos(timeout);
+			return this;
+		}
+
+		/**
+		 * Configures the listener that is informed of the final statistics of each evicted
+		 * recorder.
+		 *
+		 * @param listener
+		 * 		The non-null eviction listener.
+		 *
+		 * @return This builder
+		 */
+		public Builder<K> withEvictionListener(final EvictionListener<? super K> listener) {
+			if (listener == null) {
+				throw new IllegalArgumentException("Listener cannot be null");
+			}
+			mListener = listener;
+			return this;
+		}
+
+		/**
+		 * Creates a new TenantRecorderCache with the configuration of this builder.
+		 *
+		 * @return A new, empty, TenantRecorderCache.
+		 */
+		public TenantRecorderCache<K> build() {
+			return new TenantRecorderCache<>(this);
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package com.paloski.statistics;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The span of time that a set of statistics was recorded over, which allows counts to be turned
+ * into rates such as events per second.
+ * <p/>
+ * A range is stamped with both the monotonic ({@link System#nanoTime()}) and the wall clock
+ * ({@link System#currentTimeMillis()}) times of its start and end. Durations are measured on the
+ * monotonic clock, which is unaffected by the wall clock being adjusted, as long as both ranges
+ * being merged were recorded by the same JVM; otherwise the wall clock is used.
+ * <p/>
+ * Merging ranges takes the span from the earliest start to the latest end, while also tracking the
+ * {@link #getActiveNanos() active} time that is covered by at least one of the ranges. Merging the
+ * statistics of adjacent intervals therefore covers both intervals, merging the statistics of
+ * shards that ran concurrently covers the time they ran, and gaps between disjoint intervals are not
+ * counted towards rates.
+ * <p/>
+ * This class is immutable and (therefore) thread safe.
+ *
+ * @author Adam
+ */
+public final class TimeRange {
+
+	/**
+	 * Identifies the monotonic clock of this JVM, as values of {@link System#nanoTime()} are not
+	 * comparable between JVMs.
+	 */
+	private static final long CLOCK_ORIGIN = ThreadLocalRandom.current().nextLong() | 1L;
+
+	/**
+	 * The origin of ranges measured in nanoseconds of the wall clock.
+	 */
+	private static final long WALL_CLOCK_ORIGIN = 0L;
+
+	private static final TimeRange UNKNOWN = new TimeRange(WALL_CLOCK_ORIGIN, 0L, 0L, 0L, 0L, 0L);
+
+	private final long mOrigin;
+	private final long mStartNanos;
+	private final long mEndNanos;
+	private final long mStartMillis;
+	private final long mEndMillis;
+	private final long mActiveNanos;
+
+	private TimeRange(final long origin, final long startNanos, final long endNanos,
+					  final long startMillis, final long endMillis, final long activeNanos) {
+		mOrigin = origin;
+		mStartNanos = startNanos;
+		mEndNanos = endNanos;
+		mStartMillis = startMillis;
+		mEndMillis = endMillis;
+		mActiveNanos = activeNanos;
+	}
+
+	/**
+	 * Obtains the range of statistics whose time of recording is unknown, such as those that were
+	 * not created by a recorder.
+	 *
+	 * @return The non-null unknown range.
+	 */
+	/* package */
+	static TimeRange unknown() {
+		return UNKNOWN;
+	}
+
+	/**
+	 * Creates a range recorded by this JVM.
+	 *
+	 * @param startNanos
+	 * 		The value of {@link System#nanoTime()} at the start of the range.
+	 * @param startMillis
+	 * 		The value of {@link System#currentTimeMillis()} at the start of the range.
+	 * @param endNanos
+	 * 		The value of {@link System#nanoTime()} at the end of the range.
+	 * @param endMillis
+	 * 		The value of {@link System#currentTimeMillis()} at the end of the range.
+	 *
+	 * @return A new TimeRange.
+	 */
+	/* package */
+	static TimeRange between(final long startNanos, final long startMillis, final long endNanos, final long endMillis) {
+		if (endNanos - startNanos < 0L) {
+			throw new IllegalArgumentException("End (" + endNanos + ") cannot be before start (" + startNanos + ")");
+		}
+		return new TimeRange(CLOCK_ORIGIN, startNanos, endNanos, startMillis, endMillis, endNanos - startNanos);
+	}
+
+	/**
+	 * Creates a range starting at the given time and ending now.
+	 *
+	 * @param startNanos
+	 * 		The value of {@link System#nanoTime()} at the start of the range.
+	 * @param startMillis
+	 * 		The value of {@link System#currentTimeMillis()} at the start of the range.
+	 *
+	 * @return A new TimeRange ending at the current time.
+	 */
+	/* package */
+	static TimeRange since(final long startNanos, final long startMillis) {
+		return between(startNanos, startMillis, System.nanoTime(), System.currentTimeMillis());
+	}
+
+	/**
+	 * Creates a range measured only on the wall clock, such as that of statistics restored from an
+	 * archive.
+	 *
+	 * @param startMillis
+	 * 		The start of the range, in milliseconds since the epoch.
+	 * @param endMillis
+	 * 		The end of the range, in milliseconds since the epoch.
+	 *
+	 * @return A new TimeRange.
+	 */
+	/* package */
+	static TimeRange betweenMillis(final long startMillis, final long endMillis) {
+		if (endMillis < startMillis) {
+			throw new IllegalArgumentException("End (" + endMillis + ") cannot be before start (" + startMillis + ")");
+		}
+		final long startNanos = TimeUnit.MILLISECONDS.toNanos(startMillis);
+		final long endNanos = TimeUnit.MILLISECONDS.toNanos(endMillis);
+		return new TimeRange(WALL_CLOCK_ORIGIN, startNanos, endNanos, startMillis, endMillis, endNanos - startNanos);
+	}
+
+	/**
+	 * Determines if the time these statistics were recorded over is known.
+	 *
+	 * @return True if this range is known, false if it is {@link #unknown()}.
+	 */
+	public boolean isKnown() {
+		return this != UNKNOWN;
+	}
+
+	/**
+	 * Obtains the wall clock time of the start of this range.
+	 *
+	 * @return The start of this range, in milliseconds since the epoch.
+	 */
+	public long getStartMillis() {
+		return mStartMillis;
+	}
+
+	/**
+	 * Obtains the wall clock time of the end of this range.
+	 *
+	 * @return The end of this range, in milliseconds since the epoch.
+	 */
+	public long getEndMillis() {
+		return mEndMillis;
+	}
+
+	/**
+	 * Obtains the time from the start to the end of this range.
+	 *
+	 * @return The duration of this range, in nanoseconds.
+	 */
+	public long getDurationNanos() {
+		return mEndNanos - mStartNanos;
+	}
+
+	/**
+	 * Obtains the time within this range that statistics were being recorded, which excludes any
+	 * gaps between the ranges that were merged to create this one.
+	 *
+	 * @return The active time of this range, in nanoseconds.
+	 */
+	public long getActiveNanos() {
+		return mActiveNanos;
+	}
+
+	/**
+	 * Computes the rate at which the given number of events occurred over the active time of this
+	 * range.
+	 *
+	 * @param count
+	 * 		The number of events that occurred within this range.
+	 *
+	 * @return The number of events per second, or 0.0 if this range has no active time.
+	 */
+	public double getRatePerSecond(final long count) {
+		return mActiveNanos == 0L ? 0.0 : count * ((double) TimeUnit.SECONDS.toNanos(1L)) / mActiveNanos;
+	}
+
+	/**
+	 * Merges this range with another, creating a range spanning both.
+	 *
+	 * @param other
+	 * 		Another non-null TimeRange.
+	 *
+	 * @return A new TimeRange from the earliest start to the latest end of both ranges.
+	 */
+	public TimeRange mergeWith(final TimeRange other) {
+		if (!other.isKnown() || other.equals(this)) {
+			return this;
+		} else if (!isKnown()) {
+			return other;
+		}
+		final TimeRange first;
+		final TimeRange second;
+		if (mOrigin == other.mOrigin) {
+			first = this;
+			second = other;
+		} else {
+			first = onWallClock();
+			second = other.onWallClock();
+		}
+
+		final long start = first.mStartNanos - second.mStartNanos <= 0L ? first.mStartNanos : second.mStartNanos;
+		final long end = first.mEndNanos - second.mEndNanos >= 0L ? first.mEndNanos : second.mEndNanos;
+		final long overlapStart = first.mStartNanos - second.mStartNanos >= 0L ? first.mStartNanos : second.mStartNanos;
+		final long overlapEnd = first.mEndNanos - second.mEndNanos <= 0L ? first.mEndNanos : second.mEndNanos;
+		final long overlap = Math.max(0L, overlapEnd - overlapStart);
+		final long active = Math.min(end - start, first.mActiveNanos + second.mActiveNanos - overlap);
+		return new TimeRange(first.mOrigin, start, end,
+							 Math.min(mStartMillis, other.mStartMillis), Math.max(mEndMillis, other.mEndMillis),
+							 active);
+	}
+
+	/**
+	 * Converts this range to one measured on the wall clock.
+	 */
+	private TimeRange onWallClock() {
+		if (mOrigin == WALL_CLOCK_ORIGIN) {
+			return this;
+		}
+		final long startNanos = TimeUnit.MILLISECONDS.toNanos(mStartMillis);
+		final long endNanos = Math.max(startNanos, TimeUnit.MILLISECONDS.toNanos(mEndMillis));
+		return new TimeRange(WALL_CLOCK_ORIGIN, startNanos, endNanos, mStartMillis, mEndMillis,
+							 Math.min(mActiveNanos, endNanos - startNanos));
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) return true;
+		if (!(o instanceof TimeRange)) return false;
+		final TimeRange that = (TimeRange) o;
+		return mOrigin == that.mOrigin &&
+			   mStartNanos == that.mStartNanos &&
+			   mEndNanos == that.mEndNanos &&
+			   mStartMillis == that.mStartMillis &&
+			   mEndMillis == that.mEndMillis &&
+			   mActiveNanos == that.mActiveNanos;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(mOrigin, mStartNanos, mEndNanos, mStartMillis, mEndMillis, mActiveNanos);
+	}
+
+	@Override
+	public String toString() {
+		return isKnown() ? "TimeRange(" + mStartMillis + " - " + mEndMillis + ", active " + mActiveNanos + "ns)" : "TimeRange(unknown)";
+	}
+}
@@ -0,0 +1,275 @@
+package com.paloski.statistics;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Aggregate statistics of a numeric measurement recorded along with each success, such as the
+ * number of bytes processed or rows written, recorded through {@link
+ * StatisticsRecorder#recordSuccess(long)}.
+ * <p/>
+ * Along with the count, sum, minimum and maximum of the values, the sum of squared differences
+ * from the mean is kept so that the variance can be computed. Recorders accumulate it by Welford's
+ * online algorithm, and merging combines it by the parallel form of Chan et al, so the variance of
+ * merged statistics is as accurate as if every value had been recorded into a single recorder.
+ * <p/>
+ * This class is immutable and (therefore) thread safe.
+ *
+ * @author Adam
+ */
+public final class ValueStatistics {
+
+	private static final ValueStatistics EMPTY = new ValueStatistics(0L, 0L, 0L, 0L, 0.0);
+
+	private final long mCount;
+	private final long mSum;
+	private final long mMin;
+	private final long mMax;
+	//The sum of squared differences from the mean
+	private final double mSquaredDeviations;
+
+	private ValueStatistics(final long count, final long sum, final long min, final long max, final double squaredDeviations) {
+		mCount = count;
+		mSum = sum;
+		mMin = min;
+		mMax = max;
+		mSquaredDeviations = squaredDeviations;
+	}
+
+	/**
+	 * Obtains the statistics of no values.
+	 *
+	 * @return The non-null, empty ValueStatistics.
+	 */
+	public static ValueStatistics empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Obtains the number of values recorded.
+	 *
+	 * @return The count of values.
+	 */
+	public long getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Obtains the sum of the values recorded. Numeric overflow is not handled.
+	 *
+	 * @return The sum of the values.
+	 */
+	public long getSum() {
+		return mSum;
+	}
+
+	/**
+	 * Obtains the smallest value recorded.
+	 *
+	 * @return The minimum value, or 0 if no values were recorded.
+	 */
+	public long getMin() {
+		return mMin;
+	}
+
+	/**
+	 * Obtains the largest value recorded.
+	 *
+	 * @return The maximum value, or 0 if no values were recorded.
+	 */
+	public long getMax() {
+		return mMax;
+	}
+
+	/**
+	 * Obtains the mean of the values recorded.
+	 *
+	 * @return The mean value, or 0.0 if no values were recorded.
+	 */
+	public double getMean() {
+		return mCount == 0L ? 0.0 : ((double) mSum) / mCount;
+	}
+
+	/**
+	 * Obtains the population variance of the values recorded.
+	 *
+	 * @return The variance, or 0.0 if no values were recorded.
+	 */
+	public double getVariance() {
+		return mCount == 0L ? 0.0 : mSquaredDeviations / mCount;
+	}
+
+	/**
+	 * Obtains the population standard deviation of the values recorded.
+	 *
+	 * @return The standard deviation, or 0.0 if no values were recorded.
+	 */
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * Merges these statistics with another, creating the statistics of the values of both.
+	 *
+	 * @param other
+	 * 		Other non-null ValueStatistics.
+	 *
+	 * @return A new ValueStatistics of the values of both, or either if the other is empty.
+	 */
+	public ValueStatistics mergeWith(final ValueStatistics other) {
+		if (other.mCount == 0L) {
+			return this;
+		} else if (mCount == 0L) {
+			return other;
+		}
+		final long count = mCount + other.mCount;
+		final double delta = other.getMean() - getMean();
+		final double squaredDeviations = mSquaredDeviations + other.mSquaredDeviations
+										 + delta * delta * (((double) mCount) * other.mCount / count);
+		return new ValueStatistics(count, mSum + other.mSum, Math.min(mMin, other.mMin), Math.max(mMax, other.mMax),
+								   squaredDeviations);
+	}
+
+	/**
+	 * Equality considers the count, sum, minimum and maximum, but not the variance, as rounding
+	 * makes it depend upon the order that statistics were merged in.
+	 */
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) return true;
+		if (!(o instanceof ValueStatistics)) return false;
+		final ValueStatistics that = (ValueStatistics) o;
+		return mCount == that.mCount &&
+			   mSum == that.mSum &&
+			   mMin == that.mMin &&
+			   mMax == that.mMax;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(mCount, mSum, mMin, mMax);
+	}
+
+	@Override
+	public String toString() {
+		return "ValueStatistics(count=" + mCount + ", sum=" + mSum + ", min=" + mMin + ", max=" + mMax
+			   + ", mean=" + getMean() + ", stddev=" + getStandardDeviation() + ")";
+	}
+
+	/**
+	 * A lock free accumulator of values, which spreads concurrent updates across cells in the manner
+	 * of {@link java.util.concurrent.atomic.LongAdder} so that recording from many threads does not
+	 * contend.
+	 * <p/>
+	 * Each cell accumulates its values by Welford's online algorithm, and is guarded by its own
+	 * {@link StampedLock}: a thread that finds the cell it hashes to busy moves on to another cell
+	 * rather than waiting, adding cells up to the number of processors. A snapshot copies each cell
+	 * optimistically and merges the copies as in {@link ValueStatistics#mergeWith(ValueStatistics)}, so it includes
+	 * every value either entirely or not at all, though the cells are not copied at a single instant.
+	 * <p/>
+	 * This class is thread safe.
+	 */
+	/* package */ static final class Accumulator {
+
+		private static final int MAX_CELLS = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+		private final AtomicReference<Cell[]> mCells = new AtomicReference<>(new Cell[]{new Cell()});
+
+		/**
+		 * Records a value.
+		 *
+		 * @param value
+		 * 		The value to record.
+		 */
+		/* package */ void add(final long value) {
+			//Mix the thread ID so that threads created one after another hash to different cells
+			int index = (int) (Thread.currentThread().getId() * 0x9E3779B97F4A7C15L >>> 32);
+			Cell[] cells = mCells.get();
+			while (!cells[index & (cells.length - 1)].tryAdd(value)) {
+				if (cells.length < MAX_CELLS) {
+					final Cell[] grown = Arrays.copyOf(cells, cells.length * 2);
+					for (int cell = cells.length; cell < grown.length; cell++) {
+						grown[cell] = new Cell();
+					}
+					mCells.compareAndSet(cells, grown);
+				} else {
+					index++;
+				}
+				cells = mCells.get();
+			}
+		}
+
+		/**
+		 * Takes a snapshot of the values recorded so far.
+		 *
+		 * @return A non-null ValueStatistics of the recorded values.
+		 */
+		/* package */ ValueStatistics snapshot() {
+			ValueStatistics statistics = EMPTY;
+			for (final Cell cell : mCells.get()) {
+				statistics = statistics.mergeWith(cell.snapshot());
+			}
+			return statistics;
+		}
+	}
+
+	/**
+	 * The values recorded into a single cell of an {@link Accumulator}, whose fields are only
+	 * written while holding the write lock of the cell.
+	 */
+	private static final class Cell {
+
+		private final StampedLock mLock = new StampedLock();
+		private long mCount;
+		private long mSum;
+		private long mMin = Long.MAX_VALUE;
+		private long mMax = Long.MIN_VALUE;
+		private double mMean;
+		private double mSquaredDeviations;
+
+		/**
+		 * Records a value unless another thread is recording into this cell.
+		 *
+		 * @return True if the value was recorded.
+		 */
+		private boolean tryAdd(final long value) {
+			final long stamp = mLock.tryWriteLock();
+			if (stamp == 0L) {
+				return false;
+			}
+			try {
+				final long count = mCount + 1L;
+				final double delta = value - mMean;
+				mMean += delta / count;
+				mSquaredDeviations += delta * (value - mMean);
+				mSum += value;
+				mMin = Math.min(mMin, value);
+				mMax = Math.max(mMax, value);
+				mCount = count;
+			} finally {
+				mLock.unlockWrite(stamp);
+			}
+			return true;
+		}
+
+		private ValueStatistics snapshot() {
+			while (true) {
+				final long stamp = mLock.tryOptimisticRead();
+				if (stamp != 0L) {
+					final long count = mCount;
+					final long sum = mSum;
+					final long min = mMin;
+					final long max = mMax;
+					final double squaredDeviations = mSquaredDeviations;
+					if (mLock.validate(stamp)) {
+						return count == 0L ? EMPTY : new ValueStatistics(count, sum, min, max, squaredDeviations);
+					}
+				}
+				//A value is being recorded, which takes a handful of instructions
+				Thread.yield();
+			}
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.paloski.statistics.agent;
+
+import com.paloski.statistics.StatisticsRecorder;
+
+/**
+ * The entry points of the code woven into {@link com.paloski.annotation.Recorded} methods by
+ * {@link RecordingTransformer}, which must be public to be callable from any class. These are not
+ * intended to be invoked directly.
+ *
+ * @author Adam
+ */
+public final class RecordedMethods {
+
+	private RecordedMethods() {
+		throw new AssertionError("No instances");
+	}
+
+	/**
+	 * Records that a woven method returned after starting at the given time.
+	 *
+	 * @param recorder
+	 * 		The recorder of the method.
+	 * @param startNanos
+	 * 		The value of {@link System#nanoTime()} when the method started.
+	 */
+	public static void returned(final StatisticsRecorder recorder, final long startNanos) {
+		recorder.recordTimedSuccess(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Records that a woven method threw the given throwable. Only {@link Exception}s are recorded,
+	 * as {@link Error}s are not failures of the method.
+	 *
+	 * @param thrown
+	 * 		The throwable that the method threw.
+	 * @param recorder
+	 * 		The recorder of the method.
+	 */
+	public static void threw(final Throwable thrown, final StatisticsRecorder recorder) {
+		if (thrown instanceof Exception) {
+			recorder.recordFailure((Exception) thrown);
+		}
+	}
+}
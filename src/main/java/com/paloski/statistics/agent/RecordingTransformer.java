@@ -0,0 +1,338 @@
+package com.paloski.statistics.agent;
+
+import com.paloski.statistics.RecorderRegistry;
+import com.paloski.statistics.StatisticsRecorder;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.AdviceAdapter;
+import org.objectweb.asm.commons.Method;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A ClassFileTransformer that rewrites the bytecode of {@link com.paloski.annotation.Recorded}
+ * methods to record their outcome and latency into the named recorder of the {@link
+ * RecorderRegistry}.
+ * <p/>
+ * The recorder of each name used by a class is looked up once, when the class is initialized, and
+ * held in a synthetic static final field, so that a woven method does no more work than one
+ * instrumented by hand: it reads {@link System#nanoTime()} on entry, and on exit invokes one of
+ * the small static methods of {@link RecordedMethods}, which the JIT inlines. The body of the
+ * method is wrapped in a handler of {@link Throwable} that records the failure and rethrows it,
+ * which is placed after every handler of the method itself so that exceptions the method catches
+ * are not recorded. The handler does not cover the recording of a return, so that a failure to
+ * record a success is never recorded as a failure of the method as well.
+ * <p/>
+ * Classes without recorded methods, interfaces and classes that are being redefined are left
+ * unchanged.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Adam
+ */
+public final class RecordingTransformer implements ClassFileTransformer {
+
+	private static final String RECORDED_DESCRIPTOR = "Lcom/paloski/annotation/Recorded;";
+	private static final Type RECORDER_TYPE = Type.getType(StatisticsRecorder.class);
+	private static final Type REGISTRY_TYPE = Type.getType(RecorderRegistry.class);
+	private static final Type RECORDED_METHODS_TYPE = Type.getType(RecordedMethods.class);
+	private static final String OBJECT = "java/lang/Object";
+
+	@Override
+	public byte[] transform(final ClassLoader loader, final String className, final Class<?> classBeingRedefined,
+							final ProtectionDomain protectionDomain, final byte[] classfileBuffer) {
+		if (classBeingRedefined != null) {
+			//Redefinition may not add the fields that woven methods use
+			return null;
+		}
+		try {
+			return weave(loader, classfileBuffer);
+		} catch (final RuntimeException exp) {
+			//The JVM ignores exceptions thrown by transformers, leaving the class unchanged
+			return null;
+		}
+	}
+
+	/**
+	 * Weaves recording into every recorded method of the given class.
+	 *
+	 * @param loader
+	 * 		The class loader that the class is being loaded by, used to resolve the types of the
+	 * 		class when computing stack map frames, or null for the bootstrap class loader.
+	 * @param classfile
+	 * 		The non-null bytes of the class file.
+	 *
+	 * @return The bytes of the woven class file, or null if the class has no recorded methods.
+	 */
+	public byte[] weave(final ClassLoader loader, final byte[] classfile) {
+		final ClassReader reader = new ClassReader(classfile);
+		if ((reader.getAccess() & Opcodes.ACC_INTERFACE) != 0) {
+			return null;
+		}
+		final Map<String, String> recordedMethods = findRecordedMethods(reader);
+		if (recordedMethods.isEmpty()) {
+			return null;
+		}
+
+		final Map<String, String> recorderFields = new LinkedHashMap<>();
+		for (final String recorderName : recordedMethods.values()) {
+			if (!recorderFields.containsKey(recorderName)) {
+				recorderFields.put(recorderName, "$recorder$" + recorderFields.size());
+			}
+		}
+		final ClassWriter writer = new ResourceClassWriter(reader, loader);
+		reader.accept(new WeavingVisitor(writer, reader.getClassName(), recordedMethods, recorderFields), ClassReader.EXPAND_FRAMES);
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Finds the concrete methods of the class that are recorded.
+	 *
+	 * @return A map of method name and descriptor -> the name of its recorder.
+	 */
+	private static Map<String, String> findRecordedMethods(final ClassReader reader) {
+		final Map<String, String> recordedMethods = new HashMap<>();
+		reader.accept(new ClassVisitor(Opcodes.ASM9) {
+			@Override
+			public MethodVisitor visitMethod(final int access, final String name, final String descriptor,
+											 final String signature, final String[] exceptions) {
+				if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0 || name.startsWith("<")) {
+					return null;
+				}
+				return new MethodVisitor(Opcodes.ASM9) {
+					@Override
+					public AnnotationVisitor visitAnnotation(final String annotationDescriptor, final boolean visible) {
+						if (!RECORDED_DESCRIPTOR.equals(annotationDescriptor)) {
+							return null;
+						}
+						return new AnnotationVisitor(Opcodes.ASM9) {
+							@Override
+							public void visit(final String attribute, final Object value) {
+								if ("value".equals(attribute)) {
+									recordedMethods.put(name + descriptor, (String) value);
+								}
+							}
+						};
+					}
+				};
+			}
+		}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		return recordedMethods;
+	}
+
+	/**
+	 * Adds a field for each recorder used by the class, initializes them in the static initializer
+	 * and weaves recording into the recorded methods.
+	 */
+	private static final class WeavingVisitor extends ClassVisitor {
+
+		private final String mOwner;
+		private final Map<String, String> mRecordedMethods;
+		private final Map<String, String> mRecorderFields;
+		private boolean mHasStaticInitializer;
+
+		private WeavingVisitor(final ClassVisitor next, final String owner,
+							   final Map<String, String> recordedMethods, final Map<String, String> recorderFields) {
+			super(Opcodes.ASM9, next);
+			mOwner = owner;
+			mRecordedMethods = recordedMethods;
+			mRecorderFields = recorderFields;
+		}
+
+		@Override
+		public MethodVisitor visitMethod(final int access, final String name, final String descriptor,
+										 final String signature, final String[] exceptions) {
+			final MethodVisitor next = super.visitMethod(access, name, descriptor, signature, exceptions);
+			if ("<clinit>".equals(name)) {
+				mHasStaticInitializer = true;
+				return new MethodVisitor(Opcodes.ASM9, next) {
+					@Override
+					public void visitCode() {
+						super.visitCode();
+						initializeRecorderFields(this);
+					}
+				};
+			}
+			final String recorderName = mRecordedMethods.get(name + descriptor);
+			if (recorderName == null) {
+				return next;
+			}
+			return new RecordingMethodAdapter(next, access, name, descriptor, mOwner, mRecorderFields.get(recorderName));
+		}
+
+		@Override
+		public void visitEnd() {
+			for (final String field : mRecorderFields.values()) {
+				super.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC,
+								 field, RECORDER_TYPE.getDescriptor(), null, null).visitEnd();
+			}
+			if (!mHasStaticInitializer) {
+				final MethodVisitor initializer = super.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+				initializer.visitCode();
+				initializeRecorderFields(initializer);
+				initializer.visitInsn(Opcodes.RETURN);
+				initializer.visitMaxs(0, 0);
+				initializer.visitEnd();
+			}
+			super.visitEnd();
+		}
+
+		private void initializeRecorderFields(final MethodVisitor method) {
+			for (final Map.Entry<String, String> entry : mRecorderFields.entrySet()) {
+				method.visitLdcInsn(entry.getKey());
+				method.visitMethodInsn(Opcodes.INVOKESTATIC, REGISTRY_TYPE.getInternalName(), "getRecorder",
+									   Type.getMethodDescriptor(RECORDER_TYPE, Type.getType(String.class)), false);
+				method.visitFieldInsn(Opcodes.PUTSTATIC, mOwner, entry.getValue(), RECORDER_TYPE.getDescriptor());
+			}
+		}
+	}
+
+	/**
+	 * Weaves recording into a single method.
+	 */
+	private static final class RecordingMethodAdapter extends AdviceAdapter {
+
+		private final String mOwner;
+		private final String mRecorderField;
+		//The start and end labels of each range covered by the handler, in pairs
+		private final List<Label> mRanges = new ArrayList<>();
+		private Label mStart;
+		private int mStartNanos;
+
+		private RecordingMethodAdapter(final MethodVisitor next, final int access, final String name, final String descriptor,
+									   final String owner, final String recorderField) {
+			super(Opcodes.ASM9, next, access, name, descriptor);
+			mOwner = owner;
+			mRecorderField = recorderField;
+		}
+
+		@Override
+		protected void onMethodEnter() {
+			invokeStatic(Type.getType(System.class), new Method("nanoTime", "()J"));
+			mStartNanos = newLocal(Type.LONG_TYPE);
+			storeLocal(mStartNanos);
+			startRange();
+		}
+
+		@Override
+		protected void onMethodExit(final int opcode) {
+			if (opcode != ATHROW) {
+				endRange(new Label());
+				getStatic(Type.getObjectType(mOwner), mRecorderField, RECORDER_TYPE);
+				loadLocal(mStartNanos);
+				invokeStatic(RECORDED_METHODS_TYPE, new Method("returned", Type.VOID_TYPE,
+																						  new Type[]{RECORDER_TYPE, Type.LONG_TYPE}));
+			}
+		}
+
+		@Override
+		public void visitInsn(final int opcode) {
+			super.visitInsn(opcode);
+			if (opcode >= IRETURN && opcode <= RETURN) {
+				startRange();
+			}
+		}
+
+		@Override
+		public void visitMaxs(final int maxStack, final int maxLocals) {
+			final Label handler = new Label();
+			endRange(handler);
+			//Visited after every handler of the method, so that they take precedence over this one
+			for (int i = 0; i < mRanges.size(); i += 2) {
+				final Label start = mRanges.get(i);
+				final Label end = mRanges.get(i + 1);
+				//A range without code, such as the one after the last return, is not a valid handler range
+				if (start.getOffset() != end.getOffset()) {
+					visitTryCatchBlock(start, end, handler, "java/lang/Throwable");
+				}
+			}
+			dup();
+			getStatic(Type.getObjectType(mOwner), mRecorderField, RECORDER_TYPE);
+			invokeStatic(RECORDED_METHODS_TYPE, new Method("threw", Type.VOID_TYPE,
+																					  new Type[]{Type.getType(Throwable.class), RECORDER_TYPE}));
+			throwException();
+			super.visitMaxs(maxStack, maxLocals);
+		}
+
+		private void startRange() {
+			mStart = new Label();
+			visitLabel(mStart);
+		}
+
+		private void endRange(final Label end) {
+			visitLabel(end);
+			mRanges.add(mStart);
+			mRanges.add(end);
+		}
+	}
+
+	/**
+	 * A ClassWriter that computes the common super classes needed by stack map frames by reading
+	 * class files through the class loader, rather than by loading classes, which is not safe
+	 * while a class is being transformed.
+	 */
+	private static final class ResourceClassWriter extends ClassWriter {
+
+		private final ClassReader mReader;
+		private final ClassLoader mLoader;
+
+		private ResourceClassWriter(final ClassReader reader, final ClassLoader loader) {
+			super(reader, ClassWriter.COMPUTE_FRAMES);
+			mReader = reader;
+			mLoader = loader;
+		}
+
+		@Override
+		protected String getCommonSuperClass(final String first, final String second) {
+			final Set<String> ancestors = new HashSet<>();
+			for (String type = first; type != null; type = getSuperClass(type)) {
+				ancestors.add(type);
+			}
+			for (String type = second; type != null; type = getSuperClass(type)) {
+				if (ancestors.contains(type)) {
+					return type;
+				}
+			}
+			return OBJECT;
+		}
+
+		/**
+		 * Obtains the super class of the given type, or null if it is Object, an interface or
+		 * cannot be read.
+		 */
+		private String getSuperClass(final String type) {
+			if (OBJECT.equals(type)) {
+				return null;
+			} else if (type.equals(mReader.getClassName())) {
+				return mReader.getSuperName();
+			}
+			final String resource = type + ".class";
+			try (final InputStream in = mLoader != null ? mLoader.getResourceAsStream(resource) : ClassLoader.getSystemResourceAsStream(resource)) {
+				if (in == null) {
+					return null;
+				}
+				final ClassReader reader = new ClassReader(in);
+				return (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0 ? null : reader.getSuperName();
+			} catch (final IOException exp) {
+				return null;
+			}
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package com.paloski.statistics.agent;
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * A Java agent that weaves statistics recording into every {@link com.paloski.annotation.Recorded}
+ * method as its class is loaded, through a {@link RecordingTransformer}.
+ * <p/>
+ * The agent is installed by passing {@code -javaagent:} the jar of this library, which names this
+ * class as its {@code Premain-Class}, or attached to a running JVM as its {@code Agent-Class}.
+ * Classes that were loaded before the agent was attached are not rewritten. ASM must be on the
+ * class path of the agent.
+ *
+ * @author Adam
+ */
+public final class StatisticsAgent {
+
+	private StatisticsAgent() {
+		throw new AssertionError("No instances");
+	}
+
+	/**
+	 * Installs the agent before the main method of the application is invoked.
+	 *
+	 * @param arguments
+	 * 		The unused arguments of the agent.
+	 * @param instrumentation
+	 * 		The instrumentation to register the transformer with.
+	 */
+	public static void premain(final String arguments, final Instrumentation instrumentation) {
+		instrumentation.addTransformer(new RecordingTransformer());
+	}
+
+	/**
+	 * Installs the agent into a running JVM.
+	 *
+	 * @param arguments
+	 * 		The unused arguments of the agent.
+	 * @param instrumentation
+	 * 		The instrumentation to register the transformer with.
+	 */
+	public static void agentmain(final String arguments, final Instrumentation instrumentation) {
+		premain(arguments, instrumentation);
+	}
+}
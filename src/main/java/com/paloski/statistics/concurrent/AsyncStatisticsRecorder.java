@@ -0,0 +1,407 @@
+package com.paloski.statistics.concurrent;
+
+import com.paloski.statistics.OutcomeCategory;
+import com.paloski.statistics.StatisticsRecorder;
+import com.paloski.statistics.StatisticsTally;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A front end of a StatisticsRecorder for latency critical threads, which hands each event off to
+ * a single aggregator thread rather than updating the counters of the recorder itself.
+ * <p/>
+ * Events are published into a preallocated, lock free ring buffer that any number of threads may
+ * publish into, in the manner of Vyukov's bounded queue: a publisher claims a slot with a single
+ * compare and set, writes the event into it and marks it published. Publishing neither allocates
+ * nor locks, so it costs the same however many events have been published. The aggregator drains
+ * the buffer in batches, committing the counts of each batch to the recorder at once through a
+ * {@link StatisticsTally}. Timed successes and errors of an exception type are not batched, but
+ * recorded into the recorder one by one, as a tally carries neither latencies nor exemplars.
+ * <p/>
+ * An event that the recorder fails to record, such as by an {@link
+ * com.paloski.statistics.ExceptionClassifier} that throws, is counted in {@link
+ * #getFailedCount()} and the aggregator keeps draining, so that publishers spinning upon a full
+ * buffer are never stranded.
+ * <p/>
+ * When the buffer is full an event is either dropped and counted in {@link #getDroppedCount()}, or
+ * the publisher spins until the aggregator frees a slot, as configured by the {@link
+ * OverflowPolicy}. Events only appear in snapshots of the recorder once they are drained, which
+ * {@link #close()} ensures for every event published before it. Once closed, events are either
+ * dropped, under {@link OverflowPolicy#DROP}, or drained by the thread that published them, under
+ * {@link OverflowPolicy#SPIN}, so that no event is lost without being counted.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Adam
+ */
+public final class AsyncStatisticsRecorder implements AutoCloseable {
+
+	/**
+	 * What publishing an event does when the ring buffer is full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * The event is discarded and counted in {@link #getDroppedCount()}, so that publishing never
+		 * waits.
+		 */
+		DROP,
+		/**
+		 * The publisher spins until the aggregator frees a slot, so that no event is lost.
+		 */
+		SPIN
+	}
+
+	private static final byte SUCCESS = 0;
+	private static final byte TIMED_SUCCESS = 1;
+	private static final byte ERROR = 2;
+	private static final byte UNATTRIBUTED_ERROR = 3;
+	private static final byte OUTCOME = 4;
+
+	//How long the aggregator parks for when it finds the buffer empty
+	private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100L);
+	private static final OutcomeCategory[] OUTCOMES = OutcomeCategory.values();
+
+	private final StatisticsRecorder mRecorder;
+	private final OverflowPolicy mPolicy;
+	private final int mMask;
+
+	//The sequence of each slot, which is its position when free and its position + 1 when published
+	private final AtomicLongArray mSequences;
+	private final byte[] mKinds;
+	private final long[] mValues;
+	private final Exception[] mExceptions;
+	private final AtomicLong mTail = new AtomicLong();
+	//Guarded by mDrainLock, which is only contended once the recorder is closed
+	private final Lock mDrainLock = new ReentrantLock();
+	private long mHead;
+	private final StatisticsTally mTally = new StatisticsTally();
+
+	private final LongAdder mDropped = new LongAdder();
+	private final LongAdder mFailed = new LongAdder();
+	private final Thread mAggregator;
+	private volatile boolean mClosed;
+
+	/**
+	 * Creates a new AsyncStatisticsRecorder that records into the given recorder, and starts its
+	 * aggregator thread, which is a daemon thread.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder that events are aggregated into.
+	 * @param capacity
+	 * 		The number of events the ring buffer holds, which must be positive, and is rounded up to
+	 * 		a power of two.
+	 * @param policy
+	 * 		The non-null policy of publishing into a full buffer.
+	 *
+	 * @return A new, running AsyncStatisticsRecorder.
+	 */
+	public static AsyncStatisticsRecorder start(final StatisticsRecorder recorder, final int capacity, final OverflowPolicy policy) {
+		final AsyncStatisticsRecorder async = new AsyncStatisticsRecorder(recorder, capacity, policy, true);
+		async.mAggregator.start();
+		return async;
+	}
+
+	/**
+	 * Creates a new AsyncStatisticsRecorder, with an aggregator thread that is not yet started if
+	 * {@code aggregate} is true, or without one, in which case events are only drained by {@link
+	 * #drain()}.
+	 */
+	/* package */ AsyncStatisticsRecorder(final StatisticsRecorder recorder, final int capacity,
+										  final OverflowPolicy policy, final boolean aggregate) {
+		if (recorder == null) {
+			throw new IllegalArgumentException("Recorder cannot be null");
+		} else if (policy == null) {
+			throw new IllegalArgumentException("Policy cannot be null");
+		} else if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Capacity (" + capacity + ") must be between 1 and 2^30");
+		}
+		final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+		mRecorder = recorder;
+		mPolicy = policy;
+		mMask = size - 1;
+		mSequences = new AtomicLongArray(size);
+		for (int slot = 0; slot < size; slot++) {
+			mSequences.set(slot, slot);
+		}
+		mKinds = new byte[size];
+		mValues = new long[size];
+		mExceptions = new Exception[size];
+		if (aggregate) {
+			mAggregator = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					aggregate();
+				}
+			}, "statistics-aggregator");
+			mAggregator.setDaemon(true);
+		} else {
+			mAggregator = null;
+		}
+	}
+
+	/**
+	 * Publishes a success.
+	 *
+	 * @see StatisticsRecorder#recordSuccess()
+	 */
+	public void recordSuccess() {
+		publish(SUCCESS, 0L, null);
+	}
+
+	/**
+	 * Publishes a success that took the given amount of time.
+	 *
+	 * @param durationNanos
+	 * 		The time the successful run took, in nanoseconds.
+	 *
+	 * @see StatisticsRecorder#recordTimedSuccess(long)
+	 */
+	public void recordTimedSuccess(final long durationNanos) {
+		publish(TIMED_SUCCESS, durationNanos, null);
+	}
+
+	/**
+	 * Publishes an error.
+	 *
+	 * @param exp
+	 * 		The non-null exception that occurred.
+	 *
+	 * @see StatisticsRecorder#recordError(Exception)
+	 */
+	public void recordError(final Exception exp) {
+		if (exp == null) {
+			throw new IllegalArgumentException("Exception cannot be null");
+		}
+		publish(ERROR, 0L, exp);
+	}
+
+	/**
+	 * Publishes an unattributed error.
+	 *
+	 * @see StatisticsRecorder#recordError()
+	 */
+	public void recordError() {
+		publish(UNATTRIBUTED_ERROR, 0L, null);
+	}
+
+	/**
+	 * Publishes an outcome of the given category.
+	 *
+	 * @param category
+	 * 		The non-null category of the outcome.
+	 *
+	 * @see StatisticsRecorder#recordOutcome(OutcomeCategory)
+	 */
+	public void recordOutcome(final OutcomeCategory category) {
+		if (category == null) {
+			throw new IllegalArgumentException("Category cannot be null");
+		}
+		publish(OUTCOME, category.ordinal(), null);
+	}
+
+	/**
+	 * Publishes a call that ended by throwing the given exception, as an outcome if it is of an
+	 * {@link OutcomeCategory} or as an error otherwise.
+	 *
+	 * @param exp
+	 * 		The non-null exception that ended the call.
+	 *
+	 * @see StatisticsRecorder#recordFailure(Exception)
+	 */
+	public void recordFailure(final Exception exp) {
+		final OutcomeCategory category = OutcomeCategory.classify(exp);
+		if (category != null) {
+			publish(OUTCOME, category.ordinal(), null);
+		} else {
+			recordError(exp);
+		}
+	}
+
+	/**
+	 * Obtains the recorder that events are aggregated into.
+	 *
+	 * @return The non-null recorder.
+	 */
+	public StatisticsRecorder getRecorder() {
+		return mRecorder;
+	}
+
+	/**
+	 * Obtains the number of events that were dropped because the ring buffer was full or because
+	 * they were published after {@link #close()}, which is always 0 under {@link
+	 * OverflowPolicy#SPIN}.
+	 *
+	 * @return The number of dropped events.
+	 */
+	public long getDroppedCount() {
+		return mDropped.sum();
+	}
+
+	/**
+	 * Obtains the number of events that were drained but could not be recorded, because the
+	 * recorder threw while recording them.
+	 *
+	 * @return The number of failed events.
+	 */
+	public long getFailedCount() {
+		return mFailed.sum();
+	}
+
+	/**
+	 * Stops the aggregator thread, once it has drained every event published before this was
+	 * invoked. Events published afterwards are counted as dropped under {@link
+	 * OverflowPolicy#DROP}, and are recorded by the thread that publishes them under {@link
+	 * OverflowPolicy#SPIN}. An event whose publishing raced with closing is recorded by its
+	 * publisher if the aggregator had already stopped.
+	 */
+	@Override
+	public void close() {
+		mClosed = true;
+		if (mAggregator != null) {
+			LockSupport.unpark(mAggregator);
+			boolean interrupted = false;
+			while (mAggregator.isAlive()) {
+				try {
+					mAggregator.join();
+				} catch (final InterruptedException exp) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		} else {
+			drainAll();
+		}
+	}
+
+	private void publish(final byte kind, final long value, final Exception exp) {
+		if (mClosed && mPolicy == OverflowPolicy.DROP) {
+			mDropped.increment();
+			return;
+		}
+		long position = mTail.get();
+		while (true) {
+			final int slot = (int) position & mMask;
+			final long difference = mSequences.get(slot) - position;
+			if (difference == 0L) {
+				if (mTail.compareAndSet(position, position + 1L)) {
+					mKinds[slot] = kind;
+					mValues[slot] = value;
+					mExceptions[slot] = exp;
+					//A volatile write, so that either the read of mClosed sees the close, or the final
+					//drain of the aggregator sees this event
+					mSequences.set(slot, position + 1L);
+					if (mClosed) {
+						drainAll();
+					}
+					return;
+				}
+				position = mTail.get();
+			} else if (difference < 0L) {
+				//The slot still holds the event published a lap ago, so the buffer is full
+				if (mPolicy == OverflowPolicy.DROP) {
+					mDropped.increment();
+					return;
+				} else if (mClosed) {
+					//There may be no aggregator left to free a slot
+					drainAll();
+				} else {
+					Thread.yield();
+				}
+				position = mTail.get();
+			} else {
+				//Another publisher claimed this position first
+				position = mTail.get();
+			}
+		}
+	}
+
+	/**
+	 * Drains the published events from the ring buffer into the recorder, which is done by the
+	 * aggregator thread if there is one, and by publishers once the recorder is closed.
+	 *
+	 * @return The number of events drained, at most the capacity of the buffer.
+	 */
+	/* package */ int drain() {
+		mDrainLock.lock();
+		try {
+			return drainLocked();
+		} finally {
+			mDrainLock.unlock();
+		}
+	}
+
+	private int drainLocked() {
+		int drained = 0;
+		while (drained <= mMask) {
+			final int slot = (int) mHead & mMask;
+			if (mSequences.get(slot) != mHead + 1L) {
+				break;
+			}
+			try {
+				record(mKinds[slot], mValues[slot], mExceptions[slot]);
+			} catch (final Throwable exp) {
+				//The slot is freed regardless, as the aggregator stalling would strand spinning publishers
+				mFailed.increment();
+			}
+			mExceptions[slot] = null;
+			mSequences.lazySet(slot, mHead + mMask + 1L);
+			mHead++;
+			drained++;
+		}
+		if (!mTally.isEmpty()) {
+			try {
+				mTally.commitTo(mRecorder);
+			} catch (final Throwable exp) {
+				mTally.clear();
+				mFailed.increment();
+			}
+		}
+		return drained;
+	}
+
+	private void record(final byte kind, final long value, final Exception exp) {
+		switch (kind) {
+			case SUCCESS:
+				mTally.recordSuccess();
+				break;
+			case TIMED_SUCCESS:
+				mRecorder.recordTimedSuccess(value);
+				break;
+			case ERROR:
+				mRecorder.recordError(exp);
+				break;
+			case UNATTRIBUTED_ERROR:
+				mTally.recordError();
+				break;
+			case OUTCOME:
+				mTally.recordOutcome(OUTCOMES[(int) value]);
+				break;
+			default:
+				throw new IllegalStateException("Unknown event kind " + kind);
+		}
+	}
+
+	private void drainAll() {
+		int drained;
+		do {
+			drained = drain();
+		} while (drained != 0);
+	}
+
+	private void aggregate() {
+		while (!mClosed) {
+			if (drain() == 0) {
+				LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+			}
+		}
+		drainAll();
+	}
+}
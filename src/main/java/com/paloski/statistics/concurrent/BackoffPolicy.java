@@ -0,0 +1,119 @@
+package com.paloski.statistics.concurrent;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Determines how long a {@link RetryingCallable} waits before retrying a failed attempt.
+ * <p/>
+ * Implementations must be thread safe.
+ *
+ * @author Adam
+ */
+public abstract class BackoffPolicy {
+
+	/**
+	 * Obtains the delay before the given retry.
+	 *
+	 * @param retry
+	 * 		The number of the retry about to be made, starting at 1 for the retry after the first
+	 * 		attempt.
+	 *
+	 * @return The delay before the retry, in nanoseconds, which must not be negative.
+	 */
+	public abstract long getDelayNanos(int retry);
+
+	/**
+	 * Obtains a policy that retries immediately.
+	 *
+	 * @return A non-null BackoffPolicy without any delay.
+	 */
+	public static BackoffPolicy none() {
+		return fixed(0L, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Obtains a policy that waits the same amount of time before every retry.
+	 *
+	 * @param delay
+	 * 		The delay before each retry, which must not be negative.
+	 * @param unit
+	 * 		The non-null unit of {@code delay}.
+	 *
+	 * @return A non-null BackoffPolicy with a fixed delay.
+	 */
+	public static BackoffPolicy fixed(final long delay, final TimeUnit unit) {
+		final long delayNanos = toNanos(delay, unit, "Delay");
+		return new BackoffPolicy() {
+			@Override
+			public long getDelayNanos(final int retry) {
+				return delayNanos;
+			}
+		};
+	}
+
+	/**
+	 * Obtains a policy that doubles the delay before each retry, starting at {@code initialDelay}
+	 * and never exceeding {@code maxDelay}.
+	 *
+	 * @param initialDelay
+	 * 		The delay before the first retry, which must not be negative.
+	 * @param maxDelay
+	 * 		The largest delay before any retry, which must not be less than {@code initialDelay}.
+	 * @param unit
+	 * 		The non-null unit of both delays.
+	 *
+	 * @return A non-null, exponential BackoffPolicy.
+	 */
+	public static BackoffPolicy exponential(final long initialDelay, final long maxDelay, final TimeUnit unit) {
+		final long initialNanos = toNanos(initialDelay, unit, "Initial delay");
+		final long maxNanos = toNanos(maxDelay, unit, "Max delay");
+		if (maxNanos < initialNanos) {
+			throw new IllegalArgumentException("Max delay (" + maxDelay + ") cannot be less than the initial delay (" + initialDelay + ")");
+		}
+		return new BackoffPolicy() {
+			@Override
+			public long getDelayNanos(final int retry) {
+				final int doublings = Math.max(0, retry - 1);
+				if (initialNanos == 0L || doublings >= Long.numberOfLeadingZeros(initialNanos) - 1) {
+					return doublings == 0 ? initialNanos : maxNanos;
+				}
+				return Math.min(maxNanos, initialNanos << doublings);
+			}
+		};
+	}
+
+	/**
+	 * Obtains a policy that waits a uniformly random time between 0 and the delay of {@link
+	 * #exponential(long, long, TimeUnit)} before each retry, which spreads out the retries of
+	 * callers that failed at the same time.
+	 *
+	 * @param initialDelay
+	 * 		The largest delay before the first retry, which must not be negative.
+	 * @param maxDelay
+	 * 		The largest delay before any retry, which must not be less than {@code initialDelay}.
+	 * @param unit
+	 * 		The non-null unit of both delays.
+	 *
+	 * @return A non-null, exponential BackoffPolicy with full jitter.
+	 */
+	public static BackoffPolicy exponentialWithJitter(final long initialDelay, final long maxDelay, final TimeUnit unit) {
+		final BackoffPolicy exponential = exponential(initialDelay, maxDelay, unit);
+		return new BackoffPolicy() {
+			@Override
+			public long getDelayNanos(final int retry) {
+				final long bound = exponential.getDelayNanos(retry);
+				return bound == 0L ? 0L : (long) (ThreadLocalRandom.current().nextDouble() * bound);
+			}
+		};
+	}
+
+	private static long toNanos(final long delay, final TimeUnit unit, final String name) {
+		if (unit == null) {
+			throw new IllegalArgumentException("Unit cannot be null");
+		} else if (delay < 0L) {
+			throw new IllegalArgumentException(name + " (" + delay + ") cannot be negative");
+		}
+		return unit.toNanos(delay);
+	}
+}
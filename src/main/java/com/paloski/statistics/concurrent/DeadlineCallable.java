@@ -0,0 +1,128 @@
+package com.paloski.statistics.concurrent;
+
+import com.paloski.statistics.OutcomeCategory;
+import com.paloski.statistics.StatisticsRecorder;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A Callable wrapper that enforces a deadline upon the underlying callable, recording the outcome
+ * of each call into a StatisticsRecorder.
+ * <p/>
+ * The underlying callable is run on an executor while the calling thread waits for up to the
+ * budget of the call. A call that completes within its budget is recorded as a timed success or
+ * as an error, like {@link StatsRecordingCallable}. A call that exceeds its budget is cancelled,
+ * interrupting it, and recorded as {@link OutcomeCategory#TIMED_OUT}, after which {@link #call()}
+ * throws a {@link TimeoutException}. Calls that the executor rejects, or whose caller is
+ * interrupted while waiting, are recorded as {@link OutcomeCategory#REJECTED} and {@link
+ * OutcomeCategory#INTERRUPTED} respectively.
+ * <p/>
+ * This class is thread safe if the underlying callable is.
+ *
+ * @author Adam
+ */
+public final class DeadlineCallable<V> implements Callable<V> {
+
+	private final StatisticsRecorder mRecorder;
+	private final Callable<V> mTarget;
+	private final ExecutorService mExecutor;
+	private final long mBudgetNanos;
+
+	/**
+	 * Creates a new DeadlineCallable that will run the given Callable on the executor when it is
+	 * called, waiting at most the given budget for it to complete.
+	 *
+	 * @param recorder
+	 * 		A StatisticsRecorder object to be informed of the result of invoking {@link #call()}
+	 * @param callable
+	 * 		The underlying callable to be invoked when {@link #call()} is invoked
+	 * @param executor
+	 * 		The executor to run the underlying callable on.
+	 * @param budget
+	 * 		The longest time each call may take, which must be positive.
+	 * @param unit
+	 * 		The unit of {@code budget}.
+	 * @param <V>
+	 * 		The type of the result of invoking {@code call}
+	 *
+	 * @return A new, non-null DeadlineCallable.
+	 */
+	public static <V> DeadlineCallable<V> forCallable(final StatisticsRecorder recorder,
+													  final Callable<V> callable,
+													  final ExecutorService executor,
+													  final long budget,
+													  final TimeUnit unit) {
+		if (recorder == null) {
+			throw new IllegalArgumentException("Recorder cannot be null");
+		} else if (callable == null) {
+			throw new IllegalArgumentException("Callable target cannot be null");
+		} else if (executor == null) {
+			throw new IllegalArgumentException("Executor cannot be null");
+		} else if (unit == null) {
+			throw new IllegalArgumentException("Unit cannot be null");
+		} else if (budget <= 0L) {
+			throw new IllegalArgumentException("Budget (" + budget + ") must be positive");
+		}
+		return new DeadlineCallable<>(recorder, callable, executor, unit.toNanos(budget));
+	}
+
+	private DeadlineCallable(final StatisticsRecorder recorder, final Callable<V> target,
+							 final ExecutorService executor, final long budgetNanos) {
+		mRecorder = recorder;
+		mTarget = target;
+		mExecutor = executor;
+		mBudgetNanos = budgetNanos;
+	}
+
+	/**
+	 * Obtains the longest time that each call may take.
+	 *
+	 * @param unit
+	 * 		The unit to obtain the budget in.
+	 *
+	 * @return The budget of each call.
+	 */
+	public long getBudget(final TimeUnit unit) {
+		return unit.convert(mBudgetNanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public V call() throws Exception {
+		final long start = System.nanoTime();
+		final Future<V> future;
+		try {
+			future = mExecutor.submit(mTarget);
+		} catch (final RejectedExecutionException exp) {
+			mRecorder.recordOutcome(OutcomeCategory.REJECTED);
+			throw exp;
+		}
+
+		try {
+			final V result = future.get(mBudgetNanos, TimeUnit.NANOSECONDS);
+			mRecorder.recordTimedSuccess(System.nanoTime() - start);
+			return result;
+		} catch (final TimeoutException exp) {
+			future.cancel(true);
+			mRecorder.recordOutcome(OutcomeCategory.TIMED_OUT);
+			throw exp;
+		} catch (final InterruptedException exp) {
+			future.cancel(true);
+			mRecorder.recordOutcome(OutcomeCategory.INTERRUPTED);
+			throw exp;
+		} catch (final ExecutionException exp) {
+			final Throwable cause = exp.getCause();
+			if (cause instanceof Exception) {
+				mRecorder.recordFailure((Exception) cause);
+				throw (Exception) cause;
+			}
+			mRecorder.recordError();
+			throw exp;
+		}
+	}
+}
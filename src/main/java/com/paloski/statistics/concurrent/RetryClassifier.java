@@ -0,0 +1,72 @@
+package com.paloski.statistics.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Determines which exceptions thrown by an attempt of a {@link RetryingCallable} are worth
+ * retrying, such as timeouts, as opposed to those that will fail again, such as invalid input.
+ * <p/>
+ * Implementations must be thread safe.
+ *
+ * @author Adam
+ */
+public abstract class RetryClassifier {
+
+	/**
+	 * Determines if the attempt that threw the given exception should be retried.
+	 *
+	 * @param exp
+	 * 		The non-null exception thrown by the attempt.
+	 *
+	 * @return True if the attempt should be retried, false if the call should fail.
+	 */
+	public abstract boolean isRetryable(Exception exp);
+
+	/**
+	 * Obtains a classifier that retries every exception.
+	 *
+	 * @return A non-null RetryClassifier.
+	 */
+	public static RetryClassifier always() {
+		return new RetryClassifier() {
+			@Override
+			public boolean isRetryable(final Exception exp) {
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Obtains a classifier that retries exceptions that are instances of any of the given types.
+	 *
+	 * @param types
+	 * 		The non-null types of exception to retry, including their subtypes.
+	 *
+	 * @return A non-null RetryClassifier.
+	 */
+	@SafeVarargs
+	public static RetryClassifier retryOn(final Class<? extends Exception>... types) {
+		if (types == null) {
+			throw new IllegalArgumentException("Types cannot be null");
+		}
+		final List<Class<? extends Exception>> retryable = new ArrayList<>(types.length);
+		for (final Class<? extends Exception> type : types) {
+			if (type == null) {
+				throw new IllegalArgumentException("Types cannot be null");
+			}
+			retryable.add(type);
+		}
+		return new RetryClassifier() {
+			@Override
+			public boolean isRetryable(final Exception exp) {
+				for (final Class<? extends Exception> type : retryable) {
+					if (type.isInstance(exp)) {
+						return true;
+					}
+				}
+				return false;
+			}
+		};
+	}
+}
@@ -0,0 +1,373 @@
+package com.paloski.statistics.concurrent;
+
+import com.paloski.statistics.OutcomeCategory;
+import com.paloski.statistics.StatisticsRecorder;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Callable wrapper that retries the underlying callable when it fails, recording statistics
+ * about both the individual attempts and the outcome that the caller experienced.
+ * <p/>
+ * Each attempt is recorded, along with its duration, into the attempt recorder, so that the
+ * attempt recorder reflects the load and failures seen by the callable. Each call is recorded once
+ * into the outcome recorder, as a success taking the time of all attempts and backoffs, or as the
+ * error that the call finally failed with. The number of retries that each call took is kept as a
+ * distribution available through {@link #getRetriesPerCall()}.
+ * <p/>
+ * Failed attempts are retried if the {@link RetryClassifier} deems them retryable and the maximum
+ * number of attempts has not been reached, after waiting the delay of the {@link BackoffPolicy}.
+ * {@link #call()} waits by sleeping the calling thread, whereas {@link
+ * #callAsync(ScheduledExecutorService)} schedules each attempt on an executor so that no thread
+ * is blocked while waiting. {@link InterruptedException}s are never retried.
+ * <p/>
+ * Timeouts, cancellations, rejections and interruptions are recorded as their {@link
+ * OutcomeCategory} rather than as errors, in both recorders.
+ * <p/>
+ * This class is thread safe if the underlying callable is.
+ *
+ * @author Adam
+ */
+public final class RetryingCallable<V> implements Callable<V> {
+
+	private final Callable<V> mTarget;
+	private final StatisticsRecorder mAttemptRecorder;
+	private final StatisticsRecorder mOutcomeRecorder;
+	private final BackoffPolicy mBackoff;
+	private final RetryClassifier mClassifier;
+	private final int mMaxAttempts;
+	private final AtomicLongArray mRetriesPerCall;
+
+	private RetryingCallable(final Builder<V> builder) {
+		mTarget = builder.mTarget;
+		mAttemptRecorder = builder.mAttemptRecorder;
+		mOutcomeRecorder = builder.mOutcomeRecorder;
+		mBackoff = builder.mBackoff;
+		mClassifier = builder.mClassifier;
+		mMaxAttempts = builder.mMaxAttempts;
+		mRetriesPerCall = new AtomicLongArray(builder.mMaxAttempts);
+	}
+
+	/**
+	 * Creates a new Builder of a RetryingCallable that invokes the given callable.
+	 *
+	 * @param callable
+	 * 		The non-null callable to invoke and retry.
+	 * @param <V>
+	 * 		The type of the result of invoking {@code call}
+	 *
+	 * @return A new Builder, which by default makes up to 3 attempts, retries every exception
+	 * without delay and records nothing.
+	 */
+	public static <V> Builder<V> newBuilder(final Callable<V> callable) {
+		if (callable == null) {
+			throw new IllegalArgumentException("Callable target cannot be null");
+		}
+		return new Builder<>(callable);
+	}
+
+	/**
+	 * Invokes the underlying callable until it succeeds, throws an exception that is not retryable
+	 * or has been attempted the maximum number of times, sleeping the calling thread between
+	 * attempts.
+	 *
+	 * @return The result of the successful attempt.
+	 *
+	 * @throws Exception
+	 * 		The exception thrown by the last attempt, if no attempt succeeded.
+	 */
+	@Override
+	public V call() throws Exception {
+		final long start = System.nanoTime();
+		for (int attempt = 1; ; attempt++) {
+			final Outcome<V> outcome = attempt();
+			if (outcome.mException == null) {
+				recordSuccess(attempt, start);
+				return outcome.mResult;
+			} else if (!shouldRetry(outcome.mException, attempt)) {
+				recordFailure(attempt, outcome.mException);
+				throw outcome.mException;
+			}
+
+			try {
+				TimeUnit.NANOSECONDS.sleep(mBackoff.getDelayNanos(attempt));
+			} catch (final InterruptedException exp) {
+				Thread.currentThread().interrupt();
+				recordFailure(attempt, exp);
+				throw exp;
+			}
+		}
+	}
+
+	/**
+	 * Invokes the underlying callable on the given executor, scheduling each retry after the delay
+	 * of the backoff policy rather than blocking a thread while waiting.
+	 * <p/>
+	 * Cancelling the returned future prevents any further attempts from being made.
+	 *
+	 * @param executor
+	 * 		The non-null executor to make each attempt on.
+	 *
+	 * @return A non-null Future of the result of the successful attempt, or of the exception thrown
+	 * by the last attempt.
+	 */
+	public Future<V> callAsync(final ScheduledExecutorService executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("Executor cannot be null");
+		}
+		final AsyncCall call = new AsyncCall(executor);
+		call.schedule(0L);
+		return call;
+	}
+
+	/**
+	 * Obtains the distribution of the number of retries that completed calls took, where index
+	 * {@code i} of the returned array is the number of calls that completed after {@code i}
+	 * retries.
+	 *
+	 * @return A new array with an element for each possible number of retries.
+	 */
+	public long[] getRetriesPerCall() {
+		final long[] distribution = new long[mRetriesPerCall.length()];
+		for (int retries = 0; retries < distribution.length; retries++) {
+			distribution[retries] = mRetriesPerCall.get(retries);
+		}
+		return distribution;
+	}
+
+	/**
+	 * Makes a single attempt, recording it into the attempt recorder.
+	 */
+	private Outcome<V> attempt() {
+		final long start = System.nanoTime();
+		try {
+			final V result = mTarget.call();
+			if (mAttemptRecorder != null) {
+				mAttemptRecorder.recordTimedSuccess(System.nanoTime() - start);
+			}
+			return new Outcome<>(result, null);
+		} catch (final Exception exp) {
+			if (mAttemptRecorder != null) {
+				mAttemptRecorder.recordFailure(exp);
+			}
+			return new Outcome<>(null, exp);
+		}
+	}
+
+	private boolean shouldRetry(final Exception exp, final int attempt) {
+		return attempt < mMaxAttempts && !(exp instanceof InterruptedException) && mClassifier.isRetryable(exp);
+	}
+
+	private void recordSuccess(final int attempts, final long startNanos) {
+		mRetriesPerCall.incrementAndGet(attempts - 1);
+		if (mOutcomeRecorder != null) {
+			mOutcomeRecorder.recordTimedSuccess(System.nanoTime() - startNanos);
+		}
+	}
+
+	private void recordFailure(final int attempts, final Exception exp) {
+		mRetriesPerCall.incrementAndGet(attempts - 1);
+		if (mOutcomeRecorder != null) {
+			mOutcomeRecorder.recordFailure(exp);
+		}
+	}
+
+	/**
+	 * The result or exception of a single attempt.
+	 */
+	private static final class Outcome<V> {
+		private final V mResult;
+		private final Exception mException;
+
+		private Outcome(final V result, final Exception exception) {
+			mResult = result;
+			mException = exception;
+		}
+	}
+
+	/**
+	 * A call made through {@link #callAsync(ScheduledExecutorService)}, which is completed by the
+	 * last attempt that it schedules. Completing and cancelling the call first claim it, so that
+	 * each call is recorded exactly once, and is recorded before any waiter sees it complete.
+	 */
+	private final class AsyncCall extends CompletableFuture<V> {
+
+		private final ScheduledExecutorService mExecutor;
+		private final long mStartNanos = System.nanoTime();
+		private final AtomicBoolean mClaimed = new AtomicBoolean();
+		private int mAttempt;
+		private volatile ScheduledFuture<?> mScheduled;
+
+		private AsyncCall(final ScheduledExecutorService executor) {
+			mExecutor = executor;
+		}
+
+		private void schedule(final long delayNanos) {
+			try {
+				mScheduled = mExecutor.schedule(new Runnable() {
+					@Override
+					public void run() {
+						attemptAsync();
+					}
+				}, delayNanos, TimeUnit.NANOSECONDS);
+			} catch (final RejectedExecutionException exp) {
+				if (mClaimed.compareAndSet(false, true)) {
+					recordFailure(Math.max(1, mAttempt), exp);
+					completeExceptionally(exp);
+				}
+			}
+		}
+
+		private void attemptAsync() {
+			if (mClaimed.get()) {
+				return;
+			}
+			final int attempt = ++mAttempt;
+			final Outcome<V> outcome = attempt();
+			if (outcome.mException == null) {
+				if (mClaimed.compareAndSet(false, true)) {
+					recordSuccess(attempt, mStartNanos);
+					complete(outcome.mResult);
+				}
+			} else if (!shouldRetry(outcome.mException, attempt)) {
+				if (mClaimed.compareAndSet(false, true)) {
+					recordFailure(attempt, outcome.mException);
+					completeExceptionally(outcome.mException);
+				}
+			} else if (!mClaimed.get()) {
+				schedule(mBackoff.getDelayNanos(attempt));
+			}
+		}
+
+		@Override
+		public boolean cancel(final boolean mayInterruptIfRunning) {
+			if (!mClaimed.compareAndSet(false, true)) {
+				return isCancelled();
+			}
+			final ScheduledFuture<?> scheduled = mScheduled;
+			if (scheduled != null) {
+				scheduled.cancel(mayInterruptIfRunning);
+			}
+			if (mOutcomeRecorder != null) {
+				mOutcomeRecorder.recordOutcome(OutcomeCategory.CANCELLED);
+			}
+			return super.cancel(mayInterruptIfRunning);
+		}
+	}
+
+	/**
+	 * A builder of RetryingCallable objects.
+	 * <p/>
+	 * This class is not thread safe.
+	 */
+	public static final class Builder<V> {
+
+		private final Callable<V> mTarget;
+		private StatisticsRecorder mAttemptRecorder;
+		private StatisticsRecorder mOutcomeRecorder;
+		private BackoffPolicy mBackoff = BackoffPolicy.none();
+		private RetryClassifier mClassifier = RetryClassifier.always();
+		private int mMaxAttempts = 3;
+
+		private Builder(final Callable<V> target) {
+			mTarget = target;
+		}
+
+		/**
+		 * Records every attempt into the given recorder.
+		 *
+		 * @param recorder
+		 * 		The non-null recorder of attempts.
+		 *
+		 * @return This builder
+		 */
+		public Builder<V> recordingAttemptsInto(final StatisticsRecorder recorder) {
+			if (recorder == null) {
+				throw new IllegalArgumentException("Recorder cannot be null");
+			}
+			mAttemptRecorder = recorder;
+			return this;
+		}
+
+		/**
+		 * Records the outcome of every call, after any retries, into the given recorder.
+		 *
+		 * @param recorder
+		 * 		The non-null recorder of outcomes.
+		 *
+		 * @return This builder
+		 */
+		public Builder<V> recordingOutcomesInto(final StatisticsRecorder recorder) {
+			if (recorder == null) {
+				throw new IllegalArgumentException("Recorder cannot be null");
+			}
+			mOutcomeRecorder = recorder;
+			return this;
+		}
+
+		/**
+		 * Configures the delay between attempts.
+		 *
+		 * @param backoff
+		 * 		The non-null backoff policy.
+		 *
+		 * @return This builder
+		 */
+		public Builder<V> withBackoff(final BackoffPolicy backoff) {
+			if (backoff == null) {
+				throw new IllegalArgumentException("Backoff cannot be null");
+			}
+			mBackoff = backoff;
+			return this;
+		}
+
+		/**
+		 * Configures which exceptions are retried.
+		 *
+		 * @param classifier
+		 * 		The non-null classifier of retryable exceptions.
+		 *
+		 * @return This builder
+		 */
+		public Builder<V> withClassifier(final RetryClassifier classifier) {
+			if (classifier == null) {
+				throw new IllegalArgumentException("Classifier cannot be null");
+			}
+			mClassifier = classifier;
+			return this;
+		}
+
+		/**
+		 * Configures the maximum number of attempts of each call, including the first.
+		 *
+		 * @param maxAttempts
+		 * 		The maximum number of attempts, which must be positive.
+		 *
+		 * @return This builder
+		 */
+		public Builder<V> withMaxAttempts(final int maxAttempts) {
+			if (maxAttempts < 1) {
+				throw new IllegalArgumentException("Max attempts (" + maxAttempts + ") must be positive");
+			}
+			mMaxAttempts = maxAttempts;
+			return this;
+		}
+
+		/**
+		 * Creates a new RetryingCallable with the configuration of this builder.
+		 *
+		 * @return A new RetryingCallable
+		 */
+		public RetryingCallable<V> build() {
+			return new RetryingCallable<>(this);
+		}
+	}
+}
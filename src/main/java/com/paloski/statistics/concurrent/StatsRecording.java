@@ -0,0 +1,318 @@
+package com.paloski.statistics.concurrent;
+
+import com.paloski.statistics.StatisticsRecorder;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Static helpers that invoke a functional interface in place, recording a success into a
+ * StatisticsRecorder if it completes or the failure if it throws, as {@link
+ * StatsRecordingCallable} does.
+ * <p/>
+ * Unlike the wrappers of this package, these helpers create no object per task or per call, and
+ * the primitive specializations do not box their arguments or results. Each helper is small enough
+ * to be inlined into its caller, so that a lambda created at the call site does not escape and
+ * need not be allocated either. Recording a failure may allocate, as is the case for {@link
+ * StatisticsRecorder#recordFailure(Exception)}.
+ * <p/>
+ * Exceptions are recorded through {@link StatisticsRecorder#recordFailure(Exception)} and then
+ * rethrown. As none of these interfaces may throw checked exceptions, only {@link
+ * RuntimeException}s are recorded; {@link Error}s propagate without being recorded.
+ *
+ * @author Adam
+ */
+public final class StatsRecording {
+
+	private StatsRecording() {
+		throw new AssertionError("No instances");
+	}
+
+	/**
+	 * Runs the given task, recording its outcome.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to record into.
+	 * @param task
+	 * 		The non-null task to run.
+	 */
+	public static void run(final StatisticsRecorder recorder, final Runnable task) {
+		try {
+			task.run();
+		} catch (final RuntimeException exp) {
+			recorder.recordFailure(exp);
+			throw exp;
+		}
+		recorder.recordSuccess();
+	}
+
+	/**
+	 * Obtains a result from the given supplier, recording its outcome.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to record into.
+	 * @param supplier
+	 * 		The non-null supplier to invoke.
+	 * @param <T>
+	 * 		The type of the result
+	 *
+	 * @return The result of the supplier.
+	 */
+	public static <T> T get(final StatisticsRecorder recorder, final Supplier<T> supplier) {
+		final T result;
+		try {
+			result = supplier.get();
+		} catch (final RuntimeException exp) {
+			recorder.recordFailure(exp);
+			throw exp;
+		}
+		recorder.recordSuccess();
+		return result;
+	}
+
+	/**
+	 * Applies the given function to the given argument, recording its outcome.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to record into.
+	 * @param function
+	 * 		The non-null function to apply.
+	 * @param argument
+	 * 		The argument to apply the function to.
+	 * @param <T>
+	 * 		The type of the argument
+	 * @param <R>
+	 * 		The type of the result
+	 *
+	 * @return The result of the function.
+	 */
+	public static <T, R> R apply(final StatisticsRecorder recorder, final Function<? super T, ? extends R> function, final T argument) {
+		final R result;
+		try {
+			result = function.apply(argument);
+		} catch (final RuntimeException exp) {
+			recorder.recordFailure(exp);
+			throw exp;
+		}
+		recorder.recordSuccess();
+		return result;
+	}
+
+	/**
+	 * Passes the given argument to the given consumer, recording its outcome.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to record into.
+	 * @param consumer
+	 * 		The non-null consumer to invoke.
+	 * @param argument
+	 * 		The argument to pass to the consumer.
+	 * @param <T>
+	 * 		The type of the argument
+	 */
+	public static <T> void accept(final StatisticsRecorder recorder, final Consumer<? super T> consumer, final T argument) {
+		try {
+			consumer.accept(argument);
+		} catch (final RuntimeException exp) {
+			recorder.recordFailure(exp);
+			throw exp;
+		}
+		recorder.recordSuccess();
+	}
+
+	/**
+	 * Tests the given argument against the given predicate, recording its outcome. A predicate that
+	 * returns false has still completed successfully.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to record into.
+	 * @param predicate
+	 * 		The non-null predicate to test.
+	 * @param argument
+	 * 		The argument to test.
+	 * @param <T>
+	 * 		The type of the argument
+	 *
+	 * @return The result of the predicate.
+	 */
+	public static <T> boolean test(final StatisticsRecorder recorder, final Predicate<? super T> predicate, final T argument) {
+		final boolean result;
+		try {
+			result = predicate.test(argument);
+		} catch (final RuntimeException exp) {
+			recorder.recordFailure(exp);
+			throw exp;
+		}
+		recorder.recordSuccess();
+		return result;
+	}
+
+	/**
+	 * Obtains a result from the given supplier, recording its outcome.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to record into.
+	 * @param supplier
+	 * 		The non-null supplier to invoke.
+	 *
+	 * @return The result of the supplier.
+	 */
+	public static boolean getAsBoolean(final StatisticsRecorder recorder, final BooleanSupplier supplier) {
+		final boolean result;
+		try {
+			result = supplier.getAsBoolean();
+		} catch (final RuntimeException exp) {
+			recorder.recordFailure(exp);
+			throw exp;
+		}
+		recorder.recordSuccess();
+		return result;
+	}
+
+	/**
+	 * Obtains a result from the given supplier, recording its outcome.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to record into.
+	 * @param supplier
+	 * 		The non-null supplier to invoke.
+	 *
+	 * @return The result of the supplier.
+	 */
+	public static int getAsInt(final StatisticsRecorder recorder, final IntSupplier supplier) {
+		final int result;
+		try {
+			result = supplier.getAsInt();
+		} catch (final RuntimeException exp) {
+			recorder.recordFailure(exp);
+			throw exp;
+		}
+		recorder.recordSuccess();
+		return result;
+	}
+
+	/**
+	 * Obtains a result from the given supplier, recording its outcome.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to record into.
+	 * @param supplier
+	 * 		The non-null supplier to invoke.
+	 *
+	 * @return The result of the supplier.
+	 */
+	public static long getAsLong(final StatisticsRecorder recorder, final LongSupplier supplier) {
+		final long result;
+		try {
+			result = supplier.getAsLong();
+		} catch (final RuntimeException exp) {
+			recorder.recordFailure(exp);
+			throw exp;
+		}
+		recorder.recordSuccess();
+		return result;
+	}
+
+	/**
+	 * Obtains a result from the given supplier, recording its outcome.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to record into.
+	 * @param supplier
+	 * 		The non-null supplier to invoke.
+	 *
+	 * @return The result of the supplier.
+	 */
+	public static double getAsDouble(final StatisticsRecorder recorder, final DoubleSupplier supplier) {
+		final double result;
+		try {
+			result = supplier.getAsDouble();
+		} catch (final RuntimeException exp) {
+			recorder.recordFailure(exp);
+			throw exp;
+		}
+		recorder.recordSuccess();
+		return result;
+	}
+
+	/**
+	 * Applies the given operator to the given operand, recording its outcome.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to record into.
+	 * @param operator
+	 * 		The non-null operator to apply.
+	 * @param operand
+	 * 		The operand to apply the operator to.
+	 *
+	 * @return The result of the operator.
+	 */
+	public static int applyAsInt(final StatisticsRecorder recorder, final IntUnaryOperator operator, final int operand) {
+		final int result;
+		try {
+			result = operator.applyAsInt(operand);
+		} catch (final RuntimeException exp) {
+			recorder.recordFailure(exp);
+			throw exp;
+		}
+		recorder.recordSuccess();
+		return result;
+	}
+
+	/**
+	 * Applies the given operator to the given operand, recording its outcome.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to record into.
+	 * @param operator
+	 * 		The non-null operator to apply.
+	 * @param operand
+	 * 		The operand to apply the operator to.
+	 *
+	 * @return The result of the operator.
+	 */
+	public static long applyAsLong(final StatisticsRecorder recorder, final LongUnaryOperator operator, final long operand) {
+		final long result;
+		try {
+			result = operator.applyAsLong(operand);
+		} catch (final RuntimeException exp) {
+			recorder.recordFailure(exp);
+			throw exp;
+		}
+		recorder.recordSuccess();
+		return result;
+	}
+
+	/**
+	 * Applies the given operator to the given operand, recording its outcome.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to record into.
+	 * @param operator
+	 * 		The non-null operator to apply.
+	 * @param operand
+	 * 		The operand to apply the operator to.
+	 *
+	 * @return The result of the operator.
+	 */
+	public static double applyAsDouble(final StatisticsRecorder recorder, final DoubleUnaryOperator operator, final double operand) {
+		final double result;
+		try {
+			result = operator.applyAsDouble(operand);
+		} catch (final RuntimeException exp) {
+			recorder.recordFailure(exp);
+			throw exp;
+		}
+		recorder.recordSuccess();
+		return result;
+	}
+}
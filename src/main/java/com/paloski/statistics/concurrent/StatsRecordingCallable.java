@@ -3,18 +3,24 @@ package com.paloski.statistics.concurrent;
 import com.paloski.statistics.StatisticsRecorder;
 
 import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
 
 /**
  * A simple Callable wrapper that records statistics about the results of the underlying callable
  * invocation into a given StatisticsRecorder object
+ * <p/>
+ * Exceptions that describe the circumstances of the call rather than a failure of it, such as an
+ * {@link InterruptedException} or a {@link java.util.concurrent.TimeoutException}, are recorded as
+ * their {@link com.paloski.statistics.OutcomeCategory} instead of as errors.
  *
  * @author Adam
  */
 public final class StatsRecordingCallable<V> implements Callable<V> {
 
 	private final StatisticsRecorder mRecorder;
+	//Exactly one of the callable or runnable targets is non-null
 	private final Callable<V> mTarget;
+	private final Runnable mTask;
+	private final V mResult;
 
 	/**
 	 * Creates a new StatsRecordingCallable that will invoke the given Callable when it is called,
@@ -33,7 +39,10 @@ public final class StatsRecordingCallable<V> implements Callable<V> {
 	 */
 	public static <V> StatsRecordingCallable<V> forCallable(final StatisticsRecorder recorder,
 															final Callable<V> callable) {
-		return new StatsRecordingCallable<>(recorder, callable);
+		if (callable == null) {
+			throw new IllegalArgumentException("Callable target cannot be null");
+		}
+		return new StatsRecordingCallable<>(recorder, callable, null, null);
 	}
 
 	/**
@@ -60,7 +69,7 @@ public final class StatsRecordingCallable<V> implements Callable<V> {
 		if (task == null) {
 			throw new IllegalArgumentException("Runnable task cannot be null");
 		}
-		return forCallable(recorder, Executors.callable(task, result));
+		return new StatsRecordingCallable<>(recorder, null, task, result);
 	}
 
 	/**
@@ -81,27 +90,34 @@ public final class StatsRecordingCallable<V> implements Callable<V> {
 		if (task == null) {
 			throw new IllegalArgumentException("Runnable task cannot be null");
 		}
-		return forCallable(recorder, Executors.callable(task));
+		return new StatsRecordingCallable<>(recorder, null, task, null);
 	}
 
-	private StatsRecordingCallable(final StatisticsRecorder recorder, final Callable<V> target) {
+	private StatsRecordingCallable(final StatisticsRecorder recorder, final Callable<V> target,
+								   final Runnable task, final V result) {
 		if (recorder == null) {
 			throw new IllegalArgumentException("Recorder cannot be null");
-		} else if (target == null) {
-			throw new IllegalArgumentException("Callable target cannot be null");
 		}
 		mRecorder = recorder;
 		mTarget = target;
+		mTask = task;
+		mResult = result;
 	}
 
 	@Override
 	public V call() throws Exception {
 		try {
-			final V result = mTarget.call();
+			final V result;
+			if (mTarget != null) {
+				result = mTarget.call();
+			} else {
+				mTask.run();
+				result = mResult;
+			}
 			mRecorder.recordSuccess();
 			return result;
 		} catch (final Exception exp) {
-			mRecorder.recordError(exp);
+			mRecorder.recordFailure(exp);
 			throw exp;
 		}
 	}
@@ -0,0 +1,252 @@
+package com.paloski.statistics.concurrent;
+
+import com.paloski.statistics.Statistics;
+import com.paloski.statistics.StatisticsRecorder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A dynamic proxy for an interface that records the outcome of every method invocation into a
+ * {@link StatisticsRecorder} dedicated to that method, much like wrapping each individual call in
+ * a {@link StatsRecordingCallable}.
+ * <p/>
+ * Successful calls are recorded through {@link StatisticsRecorder#recordTimedSuccess(long)} along
+ * with the time they took, and calls that throw an {@link Exception} are recorded through {@link
+ * StatisticsRecorder#recordFailure(Exception)} before the exception is rethrown to the caller. The
+ * {@link Object} methods {@code equals}, {@code hashCode} and {@code toString} are forwarded to
+ * the target without being recorded.
+ * <p/>
+ * Every interface method is bound to its target up front as a {@link MethodHandle} that accepts
+ * the proxy argument array directly. The handle and the recorder for a method are looked up in an
+ * identity keyed cache of the {@link Method} instances handed out by the proxy class, so the steady
+ * state cost of a call is an identity hash probe and a direct handle invocation, rather than a
+ * {@link Method#equals(Object)} based map lookup and {@link Method#invoke(Object, Object...)}.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @param <T>
+ * 		The interface type being proxied
+ *
+ * @author Adam
+ */
+public final class StatsRecordingProxy<T> {
+
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+	private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+	private final T mProxy;
+	private final Map<Method, MethodEntry> mEntries;
+
+	/**
+	 * Creates a new StatsRecordingProxy that implements {@code iface} by invoking the matching
+	 * method of {@code target}, recording the results of each method into its own recorder.
+	 *
+	 * @param iface
+	 * 		The interface to proxy. Must be an interface.
+	 * @param target
+	 * 		The implementation that calls are forwarded to.
+	 * @param <T>
+	 * 		The interface type being proxied
+	 *
+	 * @return A new, non-null StatsRecordingProxy whose {@link #getProxy()} forwards to target.
+	 */
+	public static <T> StatsRecordingProxy<T> forInterface(final Class<T> iface, final T target) {
+		if (iface == null) {
+			throw new IllegalArgumentException("Interface cannot be null");
+		} else if (!iface.isInterface()) {
+			throw new IllegalArgumentException(iface.getName() + " is not an interface");
+		} else if (target == null) {
+			throw new IllegalArgumentException("Target cannot be null");
+		}
+		return new StatsRecordingProxy<>(iface, target);
+	}
+
+	private StatsRecordingProxy(final Class<T> iface, final T target) {
+		final MethodHandles.Lookup lookup = MethodHandles.lookup();
+		final Map<Method, MethodEntry> entries = new LinkedHashMap<>();
+		for (final Method method : iface.getMethods()) {
+			if (Modifier.isStatic(method.getModifiers()) || isDuplicate(entries, method)) {
+				continue;
+			}
+			entries.put(method, new MethodEntry(bind(lookup, method, target), StatisticsRecorder.newRecorder()));
+		}
+		for (final Method method : Object.class.getMethods()) {
+			if (isForwardedObjectMethod(method)) {
+				entries.put(method, new MethodEntry(bind(lookup, method, target), null));
+			}
+		}
+		mEntries = Collections.unmodifiableMap(entries);
+		mProxy = iface.cast(Proxy.newProxyInstance(iface.getClassLoader(),
+												   new Class<?>[]{iface},
+												   new RecordingHandler(mEntries)));
+	}
+
+	/**
+	 * Obtains the proxy instance, which implements the proxied interface.
+	 *
+	 * @return The non-null proxy instance
+	 */
+	public T getProxy() {
+		return mProxy;
+	}
+
+	/**
+	 * Obtains the recorder that the given interface method records into.
+	 *
+	 * @param method
+	 * 		A method of the proxied interface
+	 *
+	 * @return The non-null recorder for {@code method}
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If the method is not recorded by this proxy.
+	 */
+	public StatisticsRecorder getRecorder(final Method method) {
+		final MethodEntry entry = mEntries.get(method);
+		if (entry == null || entry.mRecorder == null) {
+			throw new IllegalArgumentException(method + " is not recorded by this proxy");
+		}
+		return entry.mRecorder;
+	}
+
+	/**
+	 * Takes a snapshot of the statistics of every recorded method.
+	 *
+	 * @return A non-null, unmodifiable map from each interface method to a snapshot of its
+	 * statistics.
+	 */
+	public Map<Method, Statistics> takeSnapshots() {
+		final Map<Method, Statistics> snapshots = new LinkedHashMap<>();
+		for (final Map.Entry<Method, MethodEntry> entry : mEntries.entrySet()) {
+			if (entry.getValue().mRecorder != null) {
+				snapshots.put(entry.getKey(), entry.getValue().mRecorder.takeSnapshot());
+			}
+		}
+		return Collections.unmodifiableMap(snapshots);
+	}
+
+	private static boolean isDuplicate(final Map<Method, MethodEntry> entries, final Method method) {
+		for (final Method existing : entries.keySet()) {
+			if (sameSignature(existing, method)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean sameSignature(final Method first, final Method second) {
+		return first.getName().equals(second.getName()) &&
+			   Arrays.equals(first.getParameterTypes(), second.getParameterTypes());
+	}
+
+	private static boolean isForwardedObjectMethod(final Method method) {
+		switch (method.getName()) {
+			case "equals":
+				return method.getParameterTypes().length == 1;
+			case "hashCode":
+			case "toString":
+				return method.getParameterTypes().length == 0;
+			default:
+				return false;
+		}
+	}
+
+	private static MethodHandle bind(final MethodHandles.Lookup lookup, final Method method, final Object target) {
+		try {
+			if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+				method.setAccessible(true);
+			}
+			return lookup.unreflect(method)
+						 .bindTo(target)
+						 .asSpreader(Object[].class, method.getParameterTypes().length)
+						 .asType(SPREAD_TYPE);
+		} catch (final IllegalAccessException exp) {
+			throw new IllegalArgumentException("Unable to access " + method, exp);
+		}
+	}
+
+	/**
+	 * The pre-bound handle and recorder of a single method.
+	 */
+	private static final class MethodEntry {
+
+		private final MethodHandle mHandle;
+		private final StatisticsRecorder mRecorder;
+
+		private MethodEntry(final MethodHandle handle, final StatisticsRecorder recorder) {
+			mHandle = handle;
+			mRecorder = recorder;
+		}
+	}
+
+	/**
+	 * The InvocationHandler backing the proxy. The proxy class hands out the same Method instances
+	 * on every call, so after the first call of each method its entry is found through an identity
+	 * lookup in an immutable, copy on write cache.
+	 */
+	private static final class RecordingHandler implements InvocationHandler {
+
+		private final Map<Method, MethodEntry> mEntries;
+		private volatile Map<Method, MethodEntry> mIdentityCache = new IdentityHashMap<>();
+
+		private RecordingHandler(final Map<Method, MethodEntry> entries) {
+			mEntries = entries;
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+			MethodEntry entry = mIdentityCache.get(method);
+			if (entry == null) {
+				entry = cache(method);
+			}
+
+			final Object[] arguments = args == null ? NO_ARGUMENTS : args;
+			final StatisticsRecorder recorder = entry.mRecorder;
+			if (recorder == null) {
+				return entry.mHandle.invokeExact(arguments);
+			}
+
+			final long start = System.nanoTime();
+			try {
+				final Object result = entry.mHandle.invokeExact(arguments);
+				recorder.recordTimedSuccess(System.nanoTime() - start);
+				return result;
+			} catch (final Exception exp) {
+				recorder.recordFailure(exp);
+				throw exp;
+			}
+		}
+
+		private MethodEntry cache(final Method method) {
+			MethodEntry entry = mEntries.get(method);
+			if (entry == null) {
+				// Methods inherited from several interfaces may be reported through any declaration
+				entry = findBySignature(method);
+			}
+			final Map<Method, MethodEntry> updated = new IdentityHashMap<>(mIdentityCache);
+			updated.put(method, entry);
+			mIdentityCache = updated;
+			return entry;
+		}
+
+		private MethodEntry findBySignature(final Method method) {
+			for (final Map.Entry<Method, MethodEntry> entry : mEntries.entrySet()) {
+				if (sameSignature(entry.getKey(), method)) {
+					return entry.getValue();
+				}
+			}
+			throw new IllegalStateException("No entry for " + method);
+		}
+	}
+}
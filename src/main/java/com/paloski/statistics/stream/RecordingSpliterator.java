@@ -0,0 +1,160 @@
+package com.paloski.statistics.stream;
+
+import com.paloski.statistics.StatisticsRecorder;
+import com.paloski.statistics.StatisticsTally;
+
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A Spliterator that maps the elements of an underlying spliterator through a function, recording
+ * the success or failure of each element into a StatisticsRecorder.
+ * <p/>
+ * Each split keeps its own {@link StatisticsTally}, which is committed to the recorder once the
+ * split has been traversed, so that a parallel stream takes the lock of the recorder once per
+ * fork/join leaf rather than once per element. Splits that are abandoned before being traversed
+ * completely, as by a short-circuiting operation such as {@link java.util.stream.Stream#findFirst()},
+ * are committed by {@link #commitRemaining()}, which streams created through {@link
+ * RecordingStreams} invoke when they are closed.
+ * <p/>
+ * Elements for which the function throws a {@link RuntimeException} are recorded through {@link
+ * StatisticsTally#recordFailure(Exception)} and omitted from this spliterator, so the
+ * characteristics of this spliterator never include {@link #SIZED}.
+ * <p/>
+ * Like all Spliterators, this class is not thread safe, though its splits may be traversed
+ * concurrently.
+ *
+ * @author Adam
+ */
+public final class RecordingSpliterator<T, R> implements Spliterator<R> {
+
+	private static final int DROPPED_CHARACTERISTICS = SIZED | SUBSIZED | SORTED | DISTINCT | NONNULL;
+
+	private final Spliterator<T> mSource;
+	private final Function<? super T, ? extends R> mMapper;
+	private final StatisticsRecorder mRecorder;
+	private final Queue<StatisticsTally> mTallies;
+	private final StatisticsTally mTally = new StatisticsTally();
+	//The result of the last element mapped, as null is a valid result of the mapper
+	private R mCurrent;
+	private boolean mHasCurrent;
+
+	private RecordingSpliterator(final Spliterator<T> source, final Function<? super T, ? extends R> mapper,
+								 final StatisticsRecorder recorder, final Queue<StatisticsTally> tallies) {
+		mSource = source;
+		mMapper = mapper;
+		mRecorder = recorder;
+		mTallies = tallies;
+		tallies.add(mTally);
+	}
+
+	/**
+	 * Creates a new RecordingSpliterator over the elements of the given spliterator.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to commit the statistics of each split into.
+	 * @param source
+	 * 		The non-null spliterator of the elements to map.
+	 * @param mapper
+	 * 		The non-null function to map each element through, whose exceptions are recorded as
+	 * 		failures.
+	 * @param <T>
+	 * 		The type of the elements of {@code source}
+	 * @param <R>
+	 * 		The type of the mapped elements
+	 *
+	 * @return A new RecordingSpliterator.
+	 */
+	public static <T, R> RecordingSpliterator<T, R> forSpliterator(final StatisticsRecorder recorder,
+																   final Spliterator<T> source,
+																   final Function<? super T, ? extends R> mapper) {
+		if (recorder == null) {
+			throw new IllegalArgumentException("Recorder cannot be null");
+		} else if (source == null) {
+			throw new IllegalArgumentException("Source cannot be null");
+		} else if (mapper == null) {
+			throw new IllegalArgumentException("Mapper cannot be null");
+		}
+		return new RecordingSpliterator<>(source, mapper, recorder, new ConcurrentLinkedQueue<>());
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super R> action) {
+		while (mSource.tryAdvance(this::map)) {
+			if (mHasCurrent) {
+				final R current = mCurrent;
+				mCurrent = null;
+				mHasCurrent = false;
+				action.accept(current);
+				return true;
+			}
+		}
+		commit();
+		return false;
+	}
+
+	@Override
+	public void forEachRemaining(final Consumer<? super R> action) {
+		mSource.forEachRemaining(element -> {
+			map(element);
+			if (mHasCurrent) {
+				final R current = mCurrent;
+				mCurrent = null;
+				mHasCurrent = false;
+				action.accept(current);
+			}
+		});
+		commit();
+	}
+
+	/**
+	 * Maps the given element into {@link #mCurrent}, tallying the outcome.
+	 */
+	private void map(final T element) {
+		try {
+			mCurrent = mMapper.apply(element);
+			mHasCurrent = true;
+			mTally.recordSuccess();
+		} catch (final RuntimeException exp) {
+			mTally.recordFailure(exp);
+		}
+	}
+
+	@Override
+	public Spliterator<R> trySplit() {
+		final Spliterator<T> split = mSource.trySplit();
+		return split != null ? new RecordingSpliterator<>(split, mMapper, mRecorder, mTallies) : null;
+	}
+
+	@Override
+	public long estimateSize() {
+		return mSource.estimateSize();
+	}
+
+	@Override
+	public int characteristics() {
+		return mSource.characteristics() & ~DROPPED_CHARACTERISTICS;
+	}
+
+	/**
+	 * Commits the tallies of this spliterator and every split of it that have not yet been
+	 * committed, which is only the case for splits that were not traversed completely. This must
+	 * only be invoked once traversal of every split has stopped.
+	 */
+	public void commitRemaining() {
+		for (final StatisticsTally tally : mTallies) {
+			if (!tally.isEmpty()) {
+				tally.commitTo(mRecorder);
+			}
+		}
+	}
+
+	private void commit() {
+		if (!mTally.isEmpty()) {
+			mTally.commitTo(mRecorder);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package com.paloski.statistics.stream;
+
+import com.paloski.statistics.StatisticsRecorder;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Adapters of {@link Stream}s that record the success or failure of processing each element into
+ * a StatisticsRecorder, through a {@link RecordingSpliterator}.
+ * <p/>
+ * Statistics are tallied locally by each split of the stream and committed to the recorder as
+ * each split finishes, so processing a parallel stream takes the lock of the recorder once per
+ * fork/join leaf rather than once per element. Streams that may not be consumed completely, such
+ * as those ending in a short-circuiting operation, should be closed (e.g. by try-with-resources)
+ * to commit the statistics of the splits that were abandoned.
+ *
+ * @author Adam
+ */
+public final class RecordingStreams {
+
+	private RecordingStreams() {
+		throw new AssertionError("No instances");
+	}
+
+	/**
+	 * Creates a stream of the elements of the given stream mapped through the given function,
+	 * recording a success for each element that was mapped and a failure for each element whose
+	 * mapping threw a {@link RuntimeException}. Elements that failed are omitted from the returned
+	 * stream.
+	 * <p/>
+	 * The returned stream is parallel if the given stream is, and closing it closes the given
+	 * stream.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to record into.
+	 * @param stream
+	 * 		The non-null stream of the elements to map.
+	 * @param mapper
+	 * 		The non-null function to map each element through.
+	 * @param <T>
+	 * 		The type of the elements of {@code stream}
+	 * @param <R>
+	 * 		The type of the mapped elements
+	 *
+	 * @return A new stream of the successfully mapped elements.
+	 */
+	public static <T, R> Stream<R> map(final StatisticsRecorder recorder,
+									   final Stream<T> stream,
+									   final Function<? super T, ? extends R> mapper) {
+		if (stream == null) {
+			throw new IllegalArgumentException("Stream cannot be null");
+		}
+		final RecordingSpliterator<T, R> spliterator = RecordingSpliterator.forSpliterator(recorder, stream.spliterator(), mapper);
+		return StreamSupport.stream(spliterator, stream.isParallel())
+							.onClose(stream::close)
+							.onClose(spliterator::commitRemaining);
+	}
+
+	/**
+	 * Performs the given action for each element of the given stream, recording a success for each
+	 * element the action completed for and a failure for each element it threw a {@link
+	 * RuntimeException} for, which does not stop the remaining elements from being processed.
+	 * <p/>
+	 * The given stream is closed once every element has been processed.
+	 *
+	 * @param recorder
+	 * 		The non-null recorder to record into.
+	 * @param stream
+	 * 		The non-null stream of the elements to process.
+	 * @param action
+	 * 		The non-null action to perform for each element.
+	 * @param <T>
+	 * 		The type of the elements of {@code stream}
+	 */
+	public static <T> void forEach(final StatisticsRecorder recorder,
+								   final Stream<T> stream,
+								   final Consumer<? super T> action) {
+		if (action == null) {
+			throw new IllegalArgumentException("Action cannot be null");
+		}
+		try (final Stream<Void> processed = map(recorder, stream, element -> {
+			action.accept(element);
+			return null;
+		})) {
+			processed.forEach(ignored -> {
+			});
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package com.paloski.annotation.processor;
+
+import com.paloski.statistics.Statistics;
+
+import org.junit.Rule;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+@RunWith(Theories.class)
+public final class ProxyInterfaceProcessorTest {
+
+	private static final String SERVICE_SOURCE =
+			"package demo;\n" +
+			"@com.paloski.annotation.ProxyInterface(Object.class)\n" +
+			"public interface Service {\n" +
+			"	String echo(String value) throws java.io.IOException;\n" +
+			"	void fail();\n" +
+			"	int sum(int... values);\n" +
+			"}\n";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Theory
+	public void process_generatesCompilableStaticProxy() throws Exception {
+		final File output = compile(SERVICE_SOURCE);
+		assertThat(new File(output, "demo/ServiceStaticProxy.java")).exists();
+		assertThat(new File(output, "demo/ServiceStaticProxy.class")).exists();
+	}
+
+	@Theory
+	public void generatedProxy_forwardsCallsToDelegate() throws Exception {
+		final File output = compile(SERVICE_SOURCE);
+		try (final URLClassLoader loader = new URLClassLoader(new URL[]{output.toURI().toURL()}, getClass().getClassLoader())) {
+			final Class<?> service = loader.loadClass("demo.Service");
+			final Object proxy = loader.loadClass("demo.ServiceStaticProxy")
+									   .getConstructor(service)
+									   .newInstance(newDelegate(service));
+
+			assertThat(service.getMethod("echo", String.class).invoke(proxy, "value")).isEqualTo("value");
+			assertThat(service.getMethod("sum", int[].class).invoke(proxy, new Object[]{new int[]{1, 2, 3}})).isEqualTo(6);
+			assertThat(snapshots(proxy)).isEmpty();
+		}
+	}
+
+	@Theory
+	public void generatedProxy_recordsPerMethodStatistics() throws Exception {
+		final File output = compile(SERVICE_SOURCE);
+		try (final URLClassLoader loader = new URLClassLoader(new URL[]{output.toURI().toURL()}, getClass().getClassLoader())) {
+			final Class<?> service = loader.loadClass("demo.Service");
+			final Object proxy = loader.loadClass("demo.ServiceStaticProxy")
+									   .getConstructor(service, boolean.class)
+									   .newInstance(newDelegate(service), true);
+
+			service.getMethod("echo", String.class).invoke(proxy, "value");
+			service.getMethod("echo", String.class).invoke(proxy, "value");
+			try {
+				service.getMethod("fail").invoke(proxy);
+				fail("Expected exception not encountered");
+			} catch (final InvocationTargetException exp) {
+				assertThat(exp.getCause()).isInstanceOf(IllegalStateException.class);
+			}
+
+			final Map<String, Statistics> snapshots = snapshots(proxy);
+			assertThat(snapshots.get("echo(java.lang.String)").getSuccessCount()).isEqualTo(2L);
+			assertThat(snapshots.get("fail()").getErrorStatistics().getCountOfExceptionTypes().get(IllegalStateException.class)).isEqualTo(1L);
+			assertThat(snapshots.get("sum(int[])").getEventCount()).isEqualTo(0L);
+		}
+	}
+
+	@Theory
+	public void process_reportsErrorForAnnotatedClass() throws Exception {
+		final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		final boolean compiled = tryCompile("package demo;\n" +
+											"@com.paloski.annotation.ProxyInterface(Object.class)\n" +
+											"public class Service {}\n",
+											temporaryFolder.newFolder(),
+											diagnostics);
+		assertThat(compiled).isFalse();
+		boolean found = false;
+		for (final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+			found |= diagnostic.getKind() == Diagnostic.Kind.ERROR && diagnostic.getMessage(null).contains("interfaces");
+		}
+		assertThat(found).isTrue();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Statistics> snapshots(final Object proxy) throws Exception {
+		return (Map<String, Statistics>) proxy.getClass().getMethod(ProxyInterfaceProcessor.SNAPSHOT_METHOD_NAME).invoke(proxy);
+	}
+
+	private static Object newDelegate(final Class<?> service) {
+		return Proxy.newProxyInstance(service.getClassLoader(), new Class<?>[]{service}, new InvocationHandler() {
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+				switch (method.getName()) {
+					case "echo":
+						return args[0];
+					case "sum":
+						int sum = 0;
+						for (final int value : (int[]) args[0]) {
+							sum += value;
+						}
+						return sum;
+					default:
+						throw new IllegalStateException();
+				}
+			}
+		});
+	}
+
+	private File compile(final String source) throws IOException {
+		final File output = temporaryFolder.newFolder();
+		final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		assertThat(tryCompile(source, output, diagnostics)).as(diagnostics.getDiagnostics().toString()).isTrue();
+		return output;
+	}
+
+	private boolean tryCompile(final String source,
+							   final File output,
+							   final DiagnosticCollector<JavaFileObject> diagnostics) throws IOException {
+		final File sourceFile = new File(temporaryFolder.newFolder(), "Service.java");
+		Files.write(sourceFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+
+		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		try (final StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+			final JavaCompiler.CompilationTask task = compiler.getTask(null,
+																	   fileManager,
+																	   diagnostics,
+																	   Arrays.asList("-d", output.getPath(),
+																					 "-s", output.getPath(),
+																					 "-classpath", System.getProperty("java.class.path")),
+																	   null,
+																	   fileManager.getJavaFileObjects(sourceFile));
+			task.setProcessors(Collections.singletonList(new ProxyInterfaceProcessor()));
+			return task.call();
+		}
+	}
+}
@@ -219,4 +219,10 @@ public final class ErrorStatisticsTest {
 			assertThat(stats.toString()).contains(cls.getSimpleName());
 		}
 	}
-}
\ No newline at end of file
+
+	@Theory
+	public void withTimeRange_nullThrowsIllegalArgumentException() {
+		expected.expect(IllegalArgumentException.class);
+		ErrorStatistics.empty().withTimeRange(null);
+	}
+}
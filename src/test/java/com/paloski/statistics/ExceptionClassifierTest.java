@@ -0,0 +1,140 @@
+package com.paloski.statistics;
+
+import org.junit.Rule;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.FromDataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(Theories.class)
+public final class ExceptionClassifierTest {
+
+	public static final String DATA_POINTS__COUNTS = "Data-Points::counts";
+
+	private static final String CLIENT = "client";
+	private static final String SERVER = "server";
+	private static final String RETRYABLE = "retryable";
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	@DataPoints(DATA_POINTS__COUNTS)
+	public static List<Long> getCounts() {
+		return Arrays.asList(1L, 3L, 1000L);
+	}
+
+	private static ExceptionClassifier newClassifier() {
+		return ExceptionClassifier.newBuilder()
+								  .classifyType(SocketTimeoutException.class, RETRYABLE)
+								  .classifyType(IllegalArgumentException.class, CLIENT)
+								  .classifyPackage("java.sql", RETRYABLE)
+								  .classifyType(IOException.class, SERVER)
+								  .withDefaultCategory(SERVER)
+								  .build();
+	}
+
+	@Theory
+	public void classify_firstMatchingRuleWins() {
+		final ExceptionClassifier classifier = newClassifier();
+
+		assertThat(classifier.classify(SocketTimeoutException.class)).isEqualTo(RETRYABLE);
+		assertThat(classifier.classify(FileNotFoundException.class)).isEqualTo(SERVER);
+		assertThat(classifier.classify(NumberFormatException.class)).isEqualTo(CLIENT);
+		assertThat(classifier.classify(SQLTransientConnectionException.class)).isEqualTo(RETRYABLE);
+		assertThat(classifier.classify(IllegalStateException.class)).isEqualTo(SERVER);
+		assertThat(classifier.getCategories()).containsExactly(RETRYABLE, CLIENT, SERVER);
+	}
+
+	@Theory
+	public void classify_defaultsToUncategorized() {
+		final ExceptionClassifier classifier = ExceptionClassifier.newBuilder().build();
+
+		assertThat(classifier.classify(IOException.class)).isEqualTo(ExceptionClassifier.DEFAULT_CATEGORY);
+		assertThat(classifier.getCategories()).containsExactly(ExceptionClassifier.DEFAULT_CATEGORY);
+	}
+
+	@Theory
+	public void classify_evaluatesPredicatesOncePerType() {
+		final AtomicInteger evaluations = new AtomicInteger();
+		final ExceptionClassifier classifier = ExceptionClassifier.newBuilder()
+																  .classifyMatching(type -> evaluations.incrementAndGet() > 0 && type.getSimpleName().startsWith("SQL"), RETRYABLE)
+																  .build();
+
+		for (int x = 0; x < 10; x++) {
+			assertThat(classifier.classify(SQLException.class)).isEqualTo(RETRYABLE);
+			assertThat(classifier.classify(IOException.class)).isEqualTo(ExceptionClassifier.DEFAULT_CATEGORY);
+		}
+		assertThat(evaluations.get()).isEqualTo(2);
+	}
+
+	@Theory
+	public void recorder_countsCategoriesAsErrorsAreRecorded(@FromDataPoints(DATA_POINTS__COUNTS) final Long count) {
+		final StatisticsRecorder recorder = StatisticsRecorder.newBuilder()
+															  .withExceptionClassifier(newClassifier())
+															  .withMaxExceptionTypes(1)
+															  .build();
+		for (long x = 0; x < count; x++) {
+			recorder.recordError(new IllegalArgumentException());
+			recorder.recordError(new SocketTimeoutException(), "key");
+		}
+		recorder.recordErrors(FileNotFoundException.class, count);
+		final StatisticsTally tally = new StatisticsTally();
+		tally.recordErrors(SQLException.class, count);
+		tally.recordError();
+		tally.commitTo(recorder);
+
+		final ErrorStatistics errors = recorder.takeSnapshot().getErrorStatistics();
+		assertThat(errors.getErrorCategoryCount(CLIENT)).isEqualTo(count);
+		assertThat(errors.getErrorCategoryCount(RETRYABLE)).isEqualTo(2L * count);
+		assertThat(errors.getErrorCategoryCount(SERVER)).isEqualTo(count);
+		assertThat(errors.getOverflowErrorCount()).isEqualTo(3L * count);
+	}
+
+	@Theory
+	public void categoryCounts_surviveMergingAndSeeding(@FromDataPoints(DATA_POINTS__COUNTS) final Long count) {
+		final StatisticsRecorder first = StatisticsRecorder.newBuilder().withExceptionClassifier(newClassifier()).build();
+		final StatisticsRecorder second = StatisticsRecorder.newBuilder().withExceptionClassifier(newClassifier()).build();
+		first.recordErrors(IllegalArgumentException.class, count);
+		second.recordErrors(IllegalArgumentException.class, count);
+		second.recordErrors(IOException.class, count);
+
+		final Statistics merged = first.takeSnapshot().mergeWith(second.takeSnapshot());
+		assertThat(merged.getErrorStatistics().getCountOfErrorCategories()).containsEntry(CLIENT, 2L * count)
+																		   .containsEntry(SERVER, count)
+																		   .doesNotContainKey(RETRYABLE);
+
+		final StatisticsRecorder seeded = StatisticsRecorder.newBuilder()
+															.withExceptionClassifier(newClassifier())
+															.seededWith(merged)
+															.build();
+		seeded.recordErrors(IOException.class, 1L);
+		assertThat(seeded.takeSnapshot().getErrorStatistics().getErrorCategoryCount(SERVER)).isEqualTo(count + 1L);
+	}
+
+	@Theory
+	public void recorder_withoutClassifierHasNoCategories() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		recorder.recordError(new IOException());
+
+		assertThat(recorder.takeSnapshot().getErrorStatistics().getCountOfErrorCategories()).isEmpty();
+	}
+
+	@Theory
+	public void classifyType_nullCategoryThrows() {
+		expected.expect(IllegalArgumentException.class);
+		ExceptionClassifier.newBuilder().classifyType(IOException.class, null);
+	}
+}
@@ -0,0 +1,210 @@
+package com.paloski.statistics;
+
+import org.junit.Rule;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.FromDataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(Theories.class)
+public final class ExceptionTypeCounterTest {
+
+	public static final String DATA_POINTS__WEAK = "Data-Points::weak";
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	@DataPoints(DATA_POINTS__WEAK)
+	public static List<Boolean> getWeak() {
+		return Arrays.asList(true, false);
+	}
+
+	@Theory
+	public void increment_countsEachType(@FromDataPoints(DATA_POINTS__WEAK) final Boolean weak) {
+		final ExceptionTypeCounter sut = new ExceptionTypeCounter(weak, Integer.MAX_VALUE);
+		for (int count = 0; count < 3; count++) {
+			sut.increment(IOException.class);
+		}
+		sut.increment(IllegalStateException.class);
+
+		assertThat(sut.getTypeCounts()).containsEntry(IOException.class, 3L)
+									   .containsEntry(IllegalStateException.class, 1L)
+									   .hasSize(2);
+		assertThat(sut.getUnresolvedCounts()).isEmpty();
+		assertThat(sut.getOverflowCount()).isEqualTo(0L);
+	}
+
+	@Theory
+	public void increment_typesBeyondMaxAreCountedAsOverflow(@FromDataPoints(DATA_POINTS__WEAK) final Boolean weak) {
+		final ExceptionTypeCounter sut = new ExceptionTypeCounter(weak, 1);
+		sut.increment(IOException.class);
+		sut.increment(IllegalStateException.class);
+		sut.increment(IllegalArgumentException.class);
+		sut.increment(IOException.class);
+
+		assertThat(sut.getTypeCounts()).isEqualTo(Collections.<Class<? extends Exception>, Long>singletonMap(IOException.class, 2L));
+		assertThat(sut.getOverflowCount()).isEqualTo(2L);
+	}
+
+	@Theory
+	public void increment_manyTypesAreAllTracked(@FromDataPoints(DATA_POINTS__WEAK) final Boolean weak) throws Exception {
+		final ExceptionTypeCounter sut = new ExceptionTypeCounter(weak, Integer.MAX_VALUE);
+		final List<Class<? extends Exception>> types = Arrays.asList(IOException.class, IllegalStateException.class,
+																	 IllegalArgumentException.class, NullPointerException.class,
+																	 UnsupportedOperationException.class, ArithmeticException.class,
+																	 ClassCastException.class, IndexOutOfBoundsException.class,
+																	 InterruptedException.class, ReflectiveOperationException.class,
+																	 SecurityException.class, ArrayStoreException.class,
+																	 NegativeArraySizeException.class, CloneNotSupportedException.class);
+		for (final Class<? extends Exception> type : types) {
+			sut.increment(type);
+			sut.increment(type);
+		}
+
+		assertThat(sut.getTypeCounts()).hasSize(types.size()).containsValues(2L).doesNotContainValue(1L);
+	}
+
+	@Theory
+	public void increment_weakTypesAreFoldedByNameWhenUnloaded() throws Exception {
+		final ExceptionTypeCounter sut = new ExceptionTypeCounter(true, Integer.MAX_VALUE);
+		final WeakReference<Class<?>> unloadable = recordUnloadableException(sut);
+		for (int attempt = 0; attempt < 50 && unloadable.get() != null; attempt++) {
+			System.gc();
+			Thread.sleep(10L);
+		}
+		assertThat(unloadable.get()).isNull();
+
+		// Recording expunges the unloaded type, which must not change the resulting counts
+		assertThat(sut.getUnresolvedCounts()).containsEntry(UnloadableException.class.getName(), 2L);
+		sut.increment(IOException.class);
+		assertThat(sut.getUnresolvedCounts()).containsEntry(UnloadableException.class.getName(), 2L);
+		assertThat(sut.getTypeCounts()).containsOnlyKeys(IOException.class);
+	}
+
+	@Theory
+	public void increment_namesOfUnloadedTypesCountAgainstMax() throws Exception {
+		final ExceptionTypeCounter sut = new ExceptionTypeCounter(true, 2);
+		for (int type = 0; type < 5; type++) {
+			final WeakReference<Class<?>> unloadable = recordGeneratedException(sut, "Generated" + type + "Exception");
+			for (int attempt = 0; attempt < 50 && unloadable.get() != null; attempt++) {
+				System.gc();
+				Thread.sleep(10L);
+			}
+			assertThat(unloadable.get()).isNull();
+		}
+		sut.increment(IOException.class);
+
+		assertThat(sut.getUnresolvedCounts()).containsOnlyKeys("Generated0Exception", "Generated1Exception");
+		assertThat(sut.getTypeCounts()).isEmpty();
+		assertThat(sut.getOverflowCount()).isEqualTo(3L * 2L + 1L);
+	}
+
+	@Theory
+	public void constructor_nonPositiveMaxThrowsIllegalArgumentException() {
+		expected.expect(IllegalArgumentException.class);
+		new ExceptionTypeCounter(true, 0);
+	}
+
+	/**
+	 * Loads a copy of {@link UnloadableException} in its own class loader and records it twice,
+	 * returning a weak reference to the copy.
+	 */
+	@SuppressWarnings("unchecked")
+	private static WeakReference<Class<?>> recordUnloadableException(final ExceptionTypeCounter counter) throws Exception {
+		final Class<?> type = new IsolatingClassLoader().loadClass(UnloadableException.class.getName());
+		assertThat(type).isNotEqualTo(UnloadableException.class);
+		counter.increment((Class<? extends Exception>) type);
+		counter.increment((Class<? extends Exception>) type);
+		return new WeakReference<Class<?>>(type);
+	}
+
+	/**
+	 * Generates an exception type of the given name in its own class loader and records it twice,
+	 * returning a weak reference to the type.
+	 */
+	private static WeakReference<Class<?>> recordGeneratedException(final ExceptionTypeCounter counter, final String name) {
+		final Class<? extends Exception> type = generateExceptionType(name);
+		counter.increment(type);
+		counter.increment(type);
+		return new WeakReference<Class<?>>(type);
+	}
+
+	/**
+	 * Generates an exception type of the given name, with a public no argument constructor, in its
+	 * own class loader, so that it may be unloaded once it is unreachable.
+	 */
+	@SuppressWarnings("unchecked")
+	/* package */ static Class<? extends Exception> generateExceptionType(final String name) {
+		final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Exception", null);
+		final MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		constructor.visitCode();
+		constructor.visitVarInsn(Opcodes.ALOAD, 0);
+		constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Exception", "<init>", "()V", false);
+		constructor.visitInsn(Opcodes.RETURN);
+		constructor.visitMaxs(0, 0);
+		constructor.visitEnd();
+		writer.visitEnd();
+		return (Class<? extends Exception>) new GeneratingClassLoader().define(name, writer.toByteArray());
+	}
+
+	public static final class UnloadableException extends Exception {
+	}
+
+	/**
+	 * A class loader that defines its own copy of {@link UnloadableException}.
+	 */
+	private static final class IsolatingClassLoader extends ClassLoader {
+
+		private IsolatingClassLoader() {
+			super(ExceptionTypeCounterTest.class.getClassLoader());
+		}
+
+		@Override
+		protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+			if (!name.equals(UnloadableException.class.getName())) {
+				return super.loadClass(name, resolve);
+			}
+			try (InputStream input = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+				final ByteArrayOutputStream output = new ByteArrayOutputStream();
+				final byte[] buffer = new byte[4096];
+				for (int read; (read = input.read(buffer)) != -1; ) {
+					output.write(buffer, 0, read);
+				}
+				final byte[] bytes = output.toByteArray();
+				return defineClass(name, bytes, 0, bytes.length);
+			} catch (final IOException exp) {
+				throw new ClassNotFoundException(name, exp);
+			}
+		}
+	}
+
+	/**
+	 * A class loader that defines classes from their bytes.
+	 */
+	private static final class GeneratingClassLoader extends ClassLoader {
+
+		private GeneratingClassLoader() {
+			super(ExceptionTypeCounterTest.class.getClassLoader());
+		}
+
+		private Class<?> define(final String name, final byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
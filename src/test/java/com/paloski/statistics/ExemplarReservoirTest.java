@@ -0,0 +1,156 @@
+package com.paloski.statistics;
+
+import org.junit.Rule;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.FromDataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(Theories.class)
+public final class ExemplarReservoirTest {
+
+	public static final String DATA_POINTS__CAPACITIES = "Data-Points::capacities";
+	public static final String DATA_POINTS__ERROR_COUNTS = "Data-Points::error-counts";
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	@DataPoints(DATA_POINTS__CAPACITIES)
+	public static List<Integer> getCapacities() {
+		return Arrays.asList(1, 4, 16);
+	}
+
+	@DataPoints(DATA_POINTS__ERROR_COUNTS)
+	public static List<Integer> getErrorCounts() {
+		return Arrays.asList(1, 10, 1000);
+	}
+
+	@Theory
+	public void add_keepsAtMostCapacityExemplarsPerType(@FromDataPoints(DATA_POINTS__CAPACITIES) final Integer capacity,
+														@FromDataPoints(DATA_POINTS__ERROR_COUNTS) final Integer errorCount) {
+		final ExemplarReservoir.Accumulator accumulator = new ExemplarReservoir.Accumulator(capacity);
+		for (int count = 0; count < errorCount; count++) {
+			accumulator.add(new IOException("io-" + count));
+			accumulator.add(new IllegalStateException("state-" + count));
+		}
+
+		final ExemplarReservoir reservoir = accumulator.snapshot();
+		assertThat(reservoir.getExemplars(IOException.class)).hasSize(Math.min(capacity, errorCount));
+		assertThat(reservoir.getExemplars(IllegalStateException.class)).hasSize(Math.min(capacity, errorCount));
+		assertThat(reservoir.getExemplars(IllegalArgumentException.class)).isEmpty();
+		for (final ErrorExemplar exemplar : reservoir.getExemplars(IOException.class)) {
+			assertThat(exemplar.getExceptionType()).isEqualTo(IOException.class);
+		}
+	}
+
+	@Theory
+	public void add_samplesUniformly() {
+		// Every exception should be kept with probability capacity / count, so the first and second
+		// halves should be kept roughly equally often over many trials
+		int keptFromFirstHalf = 0;
+		for (int trial = 0; trial < 2000; trial++) {
+			final ExemplarReservoir.Accumulator accumulator = new ExemplarReservoir.Accumulator(1);
+			for (int count = 0; count < 100; count++) {
+				accumulator.add(new IOException(Integer.toString(count)));
+			}
+			if (Integer.parseInt(accumulator.snapshot().getExemplars(IOException.class).get(0).getException().getMessage()) < 50) {
+				keptFromFirstHalf++;
+			}
+		}
+		assertThat(keptFromFirstHalf).isBetween(850, 1150);
+	}
+
+	@Theory
+	public void mergeWith_keepsCapacityAndTypesOfBoth(@FromDataPoints(DATA_POINTS__CAPACITIES) final Integer capacity) {
+		final ExemplarReservoir.Accumulator first = new ExemplarReservoir.Accumulator(capacity);
+		final ExemplarReservoir.Accumulator second = new ExemplarReservoir.Accumulator(capacity);
+		for (int count = 0; count < 20; count++) {
+			first.add(new IOException());
+			second.add(new IOException());
+		}
+		second.add(new IllegalStateException());
+
+		final ExemplarReservoir merged = first.snapshot().mergeWith(second.snapshot());
+		assertThat(merged.getCapacityPerType()).isEqualTo(capacity);
+		assertThat(merged.getExemplars(IOException.class)).hasSize(capacity);
+		assertThat(merged.getExemplars(IllegalStateException.class)).hasSize(1);
+	}
+
+	@Theory
+	public void mergeWith_emptyReservoirIsIdentity(@FromDataPoints(DATA_POINTS__CAPACITIES) final Integer capacity) {
+		final ExemplarReservoir.Accumulator accumulator = new ExemplarReservoir.Accumulator(capacity);
+		accumulator.add(new IOException());
+		final ExemplarReservoir reservoir = accumulator.snapshot();
+		assertThat(reservoir.mergeWith(ExemplarReservoir.empty())).isSameAs(reservoir);
+		assertThat(ExemplarReservoir.empty().mergeWith(reservoir)).isSameAs(reservoir);
+	}
+
+	@Theory
+	public void getStackTrace_rendersTheException() {
+		final IOException exception = new IOException("rendered");
+		final ErrorExemplar exemplar = new ErrorExemplar(exception, 42L);
+		assertThat(exemplar.getStackTrace()).startsWith("java.io.IOException: rendered")
+											.contains("ExemplarReservoirTest");
+		assertThat(exemplar.getStackTrace()).isSameAs(exemplar.getStackTrace());
+		assertThat(exemplar.getTimestampMillis()).isEqualTo(42L);
+	}
+
+	@Theory
+	public void add_typesBeyondMaxAreNotSampled() {
+		final ExemplarReservoir.Accumulator accumulator = new ExemplarReservoir.Accumulator(4, 1, false);
+		accumulator.add(new IOException());
+		accumulator.add(new IllegalStateException());
+		accumulator.add(new IOException());
+
+		final ExemplarReservoir reservoir = accumulator.snapshot();
+		assertThat(reservoir.getExemplarsByType()).containsOnlyKeys(IOException.class);
+		assertThat(reservoir.getExemplars(IOException.class)).hasSize(2);
+	}
+
+	@Theory
+	public void add_weakTypesAreNotPinnedByTheirExemplars() throws Exception {
+		final ExemplarReservoir.Accumulator accumulator = new ExemplarReservoir.Accumulator(4, Integer.MAX_VALUE, true);
+		final WeakReference<Class<?>> unloadable = addGeneratedException(accumulator);
+		for (int attempt = 0; attempt < 50 && unloadable.get() != null; attempt++) {
+			System.gc();
+			Thread.sleep(10L);
+		}
+
+		assertThat(unloadable.get()).isNull();
+		assertThat(accumulator.snapshot().getExemplarsByType()).isEmpty();
+	}
+
+	@Theory
+	public void add_weakTypesKeepDetachedExemplars() {
+		final ExemplarReservoir.Accumulator accumulator = new ExemplarReservoir.Accumulator(4, Integer.MAX_VALUE, true);
+		final IOException exception = new IOException("detached");
+		accumulator.add(exception);
+
+		final ErrorExemplar exemplar = accumulator.snapshot().getExemplars(IOException.class).get(0);
+		assertThat(exemplar.getException()).isSameAs(exception);
+		assertThat(exemplar.getExceptionTypeName()).isEqualTo(IOException.class.getName());
+		assertThat(exemplar.getStackTrace()).contains("detached");
+	}
+
+	@Theory
+	public void accumulator_nonPositiveCapacityThrowsIllegalArgumentException() {
+		expected.expect(IllegalArgumentException.class);
+		new ExemplarReservoir.Accumulator(0);
+	}
+
+	private static WeakReference<Class<?>> addGeneratedException(final ExemplarReservoir.Accumulator accumulator) throws Exception {
+		final Class<? extends Exception> type = ExceptionTypeCounterTest.generateExceptionType("GeneratedExemplarException");
+		accumulator.add(type.newInstance());
+		assertThat(accumulator.snapshot().getExemplarsByType()).containsOnlyKeys(type);
+		return new WeakReference<Class<?>>(type);
+	}
+}
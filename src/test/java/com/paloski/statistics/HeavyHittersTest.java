@@ -0,0 +1,118 @@
+package com.paloski.statistics;
+
+import org.junit.Rule;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(Theories.class)
+public final class HeavyHittersTest {
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	@DataPoints
+	public static List<Integer> getCapacities() {
+		return Arrays.asList(1, 4, 16, 64);
+	}
+
+	@Theory
+	public void add_countsAreExactWhileUnderCapacity(final Integer capacity) {
+		final HeavyHitters.Accumulator accumulator = new HeavyHitters.Accumulator(capacity);
+		for (int key = 0; key < capacity; key++) {
+			accumulator.add("key-" + key, key + 1);
+		}
+
+		final HeavyHitters snapshot = accumulator.snapshot();
+		assertThat(snapshot.getEntries()).hasSize(capacity);
+		for (final HeavyHitters.Entry entry : snapshot.getEntries()) {
+			assertThat(entry.getError()).isEqualTo(0L);
+			assertThat(entry.getCount()).isEqualTo(Long.parseLong(entry.getKey().substring(4)) + 1);
+		}
+		assertThat(snapshot.getTopKeys(1).get(0).getKey()).isEqualTo("key-" + (capacity - 1));
+	}
+
+	@Theory
+	public void add_frequentKeysAreTrackedWithinBounds(final Integer capacity) {
+		final Map<String, Long> exact = new HashMap<>();
+		final HeavyHitters.Accumulator accumulator = new HeavyHitters.Accumulator(capacity);
+		final Random random = new Random(capacity);
+		for (int event = 0; event < 20000; event++) {
+			// Half of all events go to a single hot key, the rest are spread over many keys
+			final String key = random.nextBoolean() ? "hot" : "cold-" + random.nextInt(5000);
+			accumulator.add(key, 1L);
+			final Long count = exact.get(key);
+			exact.put(key, count == null ? 1L : count + 1);
+		}
+
+		final HeavyHitters snapshot = accumulator.snapshot();
+		assertThat(snapshot.getTotalCount()).isEqualTo(20000L);
+		assertThat(snapshot.getEntries().size()).isLessThanOrEqualTo(capacity);
+		if (capacity > 2) {
+			// Only keys occurring in more than 1/capacity of events are guaranteed to be tracked
+			assertThat(snapshot.getTopKeys(1).get(0).getKey()).isEqualTo("hot");
+		}
+		for (final HeavyHitters.Entry entry : snapshot.getEntries()) {
+			assertThat(entry.getCount()).isGreaterThanOrEqualTo(exact.get(entry.getKey()));
+			assertThat(entry.getGuaranteedCount()).isLessThanOrEqualTo(exact.get(entry.getKey()));
+		}
+	}
+
+	@Theory
+	public void mergeWith_boundsHoldAcrossMerges(final Integer capacity) {
+		final Map<String, Long> exact = new HashMap<>();
+		final HeavyHitters.Accumulator first = new HeavyHitters.Accumulator(capacity);
+		final HeavyHitters.Accumulator second = new HeavyHitters.Accumulator(capacity);
+		final Random random = new Random(31L * capacity);
+		for (int event = 0; event < 10000; event++) {
+			final String key = random.nextInt(3) == 0 ? "hot" : "cold-" + random.nextInt(1000);
+			(event % 2 == 0 ? first : second).add(key, 1L);
+			final Long count = exact.get(key);
+			exact.put(key, count == null ? 1L : count + 1);
+		}
+
+		final HeavyHitters merged = first.snapshot().mergeWith(second.snapshot());
+		assertThat(merged.getTotalCount()).isEqualTo(10000L);
+		assertThat(merged.getEntries().size()).isLessThanOrEqualTo(capacity);
+		if (capacity > 3) {
+			assertThat(merged.getTopKeys(1).get(0).getKey()).isEqualTo("hot");
+		}
+		for (final HeavyHitters.Entry entry : merged.getEntries()) {
+			assertThat(entry.getCount()).isGreaterThanOrEqualTo(exact.get(entry.getKey()));
+			assertThat(entry.getGuaranteedCount()).isLessThanOrEqualTo(exact.get(entry.getKey()));
+		}
+	}
+
+	@Theory
+	public void mergeWith_isCommutative(final Integer capacity) {
+		final HeavyHitters.Accumulator first = new HeavyHitters.Accumulator(capacity);
+		final HeavyHitters.Accumulator second = new HeavyHitters.Accumulator(capacity);
+		for (int event = 0; event < 100; event++) {
+			first.add("a-" + (event % 7), 1L);
+			second.add("b-" + (event % 5), 1L);
+		}
+		assertThat(first.snapshot().mergeWith(second.snapshot())).isEqualTo(second.snapshot().mergeWith(first.snapshot()));
+	}
+
+	@Theory
+	public void getTopKeys_negativeLimitThrowsIllegalArgumentException() {
+		expected.expect(IllegalArgumentException.class);
+		HeavyHitters.empty().getTopKeys(-1);
+	}
+
+	@Theory
+	public void accumulator_nonPositiveCapacityThrowsIllegalArgumentException() {
+		expected.expect(IllegalArgumentException.class);
+		new HeavyHitters.Accumulator(0);
+	}
+}
@@ -0,0 +1,102 @@
+package com.paloski.statistics;
+
+import org.junit.Rule;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.FromDataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@RunWith(Theories.class)
+public final class HyperLogLogTest {
+
+	public static final String DATA_POINTS__PRECISIONS = "Data-Points::precisions";
+	public static final String DATA_POINTS__CARDINALITIES = "Data-Points::cardinalities";
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	@DataPoints(DATA_POINTS__PRECISIONS)
+	public static List<Integer> getPrecisions() {
+		return Arrays.asList(HyperLogLog.MIN_PRECISION, 10, HyperLogLog.DEFAULT_PRECISION, 14);
+	}
+
+	@DataPoints(DATA_POINTS__CARDINALITIES)
+	public static List<Integer> getCardinalities() {
+		return Arrays.asList(1, 100, 5000, 100000);
+	}
+
+	@Theory
+	public void getEstimate_isWithinStandardError(@FromDataPoints(DATA_POINTS__PRECISIONS) final Integer precision,
+												  @FromDataPoints(DATA_POINTS__CARDINALITIES) final Integer cardinality) {
+		final HyperLogLog.Accumulator accumulator = new HyperLogLog.Accumulator(precision);
+		for (int value = 0; value < cardinality; value++) {
+			// Recording duplicates must not change the estimate
+			accumulator.add("entity-" + value);
+			accumulator.add("entity-" + value);
+		}
+
+		final double standardError = 1.04 / Math.sqrt(1 << precision);
+		assertThat((double) accumulator.snapshot().getEstimate()).isCloseTo(cardinality, within(cardinality * standardError * 3 + 1));
+	}
+
+	@Theory
+	public void mergeWith_isEquivalentToRecordingAllValues(@FromDataPoints(DATA_POINTS__PRECISIONS) final Integer precision) {
+		final HyperLogLog.Accumulator all = new HyperLogLog.Accumulator(precision);
+		final HyperLogLog.Accumulator first = new HyperLogLog.Accumulator(precision);
+		final HyperLogLog.Accumulator second = new HyperLogLog.Accumulator(precision);
+		for (int value = 0; value < 10000; value++) {
+			all.add("entity-" + value);
+			(value < 6000 ? first : second).add("entity-" + value);
+			if (value > 4000 && value < 6000) {
+				// Overlapping values are only counted once
+				second.add("entity-" + value);
+			}
+		}
+
+		assertThat(first.snapshot().mergeWith(second.snapshot())).isEqualTo(all.snapshot());
+	}
+
+	@Theory
+	public void mergeWith_differentPrecisionsFoldToLowerPrecision(@FromDataPoints(DATA_POINTS__PRECISIONS) final Integer precision) {
+		final HyperLogLog.Accumulator precise = new HyperLogLog.Accumulator(HyperLogLog.MAX_PRECISION);
+		final HyperLogLog.Accumulator coarse = new HyperLogLog.Accumulator(precision);
+		final HyperLogLog.Accumulator all = new HyperLogLog.Accumulator(precision);
+		for (int value = 0; value < 20000; value++) {
+			(value % 2 == 0 ? precise : coarse).add("entity-" + value);
+			all.add("entity-" + value);
+		}
+
+		final HyperLogLog merged = precise.snapshot().mergeWith(coarse.snapshot());
+		assertThat(merged.getPrecision()).isEqualTo(precision);
+		assertThat(merged).isEqualTo(all.snapshot());
+	}
+
+	@Theory
+	public void mergeWith_emptySketchIsIdentity(@FromDataPoints(DATA_POINTS__PRECISIONS) final Integer precision) {
+		final HyperLogLog.Accumulator accumulator = new HyperLogLog.Accumulator(precision);
+		accumulator.add("entity");
+		final HyperLogLog sketch = accumulator.snapshot();
+		assertThat(sketch.mergeWith(HyperLogLog.empty())).isEqualTo(sketch);
+		assertThat(HyperLogLog.empty().mergeWith(sketch)).isEqualTo(sketch);
+	}
+
+	@Theory
+	public void getEstimate_emptySketchReturnsZero(@FromDataPoints(DATA_POINTS__PRECISIONS) final Integer precision) {
+		assertThat(HyperLogLog.empty().getEstimate()).isEqualTo(0L);
+		assertThat(new HyperLogLog.Accumulator(precision).snapshot()).isEqualTo(HyperLogLog.empty());
+	}
+
+	@Theory
+	public void accumulator_invalidPrecisionThrowsIllegalArgumentException() {
+		expected.expect(IllegalArgumentException.class);
+		new HyperLogLog.Accumulator(HyperLogLog.MAX_PRECISION + 1);
+	}
+}
@@ -0,0 +1,88 @@
+package com.paloski.statistics;
+
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(Theories.class)
+public final class OutcomeCategoryTest {
+
+	@DataPoints
+	public static List<OutcomeCategory> getCategories() {
+		return Arrays.asList(OutcomeCategory.values());
+	}
+
+	@Theory
+	public void classify_mapsExceptionsToTheirCategory() {
+		assertThat(OutcomeCategory.classify(new TimeoutException())).isEqualTo(OutcomeCategory.TIMED_OUT);
+		assertThat(OutcomeCategory.classify(new CancellationException())).isEqualTo(OutcomeCategory.CANCELLED);
+		assertThat(OutcomeCategory.classify(new RejectedExecutionException())).isEqualTo(OutcomeCategory.REJECTED);
+		assertThat(OutcomeCategory.classify(new InterruptedException())).isEqualTo(OutcomeCategory.INTERRUPTED);
+		assertThat(OutcomeCategory.classify(new ClosedByInterruptException())).isEqualTo(OutcomeCategory.INTERRUPTED);
+		assertThat(OutcomeCategory.classify(new IOException())).isNull();
+		assertThat(OutcomeCategory.classify(new IllegalStateException())).isNull();
+	}
+
+	@Theory
+	public void recordOutcome_isCountedSeparatelyFromEvents(final OutcomeCategory category) {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		recorder.recordSuccess();
+		recorder.recordOutcome(category);
+		recorder.recordOutcome(category);
+
+		final Statistics stats = recorder.takeSnapshot();
+		assertThat(stats.getOutcomeCount(category)).isEqualTo(2L);
+		assertThat(stats.getEventCount()).isEqualTo(1L);
+		assertThat(stats.getErrorCount()).isEqualTo(0L);
+		for (final OutcomeCategory other : OutcomeCategory.values()) {
+			if (other != category) {
+				assertThat(stats.getOutcomeCount(other)).isEqualTo(0L);
+			}
+		}
+	}
+
+	@Theory
+	public void recordFailure_recordsClassifiedExceptionsAsOutcomes() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		recorder.recordFailure(new TimeoutException());
+		recorder.recordFailure(new CancellationException());
+		recorder.recordFailure(new RejectedExecutionException());
+		recorder.recordFailure(new InterruptedException());
+		recorder.recordFailure(new IOException());
+
+		final Statistics stats = recorder.takeSnapshot();
+		assertThat(stats.getTimedOutCount()).isEqualTo(1L);
+		assertThat(stats.getCancelledCount()).isEqualTo(1L);
+		assertThat(stats.getRejectedCount()).isEqualTo(1L);
+		assertThat(stats.getInterruptedCount()).isEqualTo(1L);
+		assertThat(stats.getErrorCount()).isEqualTo(1L);
+		assertThat(stats.getErrorStatistics().getCountOfExceptionTypes()).containsOnlyKeys(IOException.class);
+	}
+
+	@Theory
+	public void outcomeCounts_surviveMergingAndSeeding(final OutcomeCategory category) {
+		final StatisticsRecorder first = StatisticsRecorder.newRecorder();
+		final StatisticsRecorder second = StatisticsRecorder.newRecorder();
+		first.recordOutcome(category);
+		second.recordOutcome(category);
+		second.recordOutcome(category);
+
+		final Statistics merged = first.takeSnapshot().mergeWith(second.takeSnapshot());
+		assertThat(merged.getOutcomeCount(category)).isEqualTo(3L);
+
+		final StatisticsRecorder seeded = StatisticsRecorder.newSeededRecorder(merged);
+		seeded.recordOutcome(category);
+		assertThat(seeded.takeSnapshot().getOutcomeCount(category)).isEqualTo(4L);
+	}
+}
@@ -0,0 +1,132 @@
+package com.paloski.statistics;
+
+import org.junit.Rule;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.FromDataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@RunWith(Theories.class)
+public final class QuantileSketchTest {
+
+	public static final String DATA_POINTS__ACCURACIES = "Data-Points::accuracies";
+	public static final String DATA_POINTS__QUANTILES = "Data-Points::quantiles";
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	@DataPoints(DATA_POINTS__ACCURACIES)
+	public static List<Double> getRelativeAccuracies() {
+		return Arrays.asList(0.005, 0.01, 0.05);
+	}
+
+	@DataPoints(DATA_POINTS__QUANTILES)
+	public static List<Double> getQuantiles() {
+		return Arrays.asList(0.0, 0.1, 0.5, 0.9, 0.99, 0.999, 1.0);
+	}
+
+	@Theory
+	public void getQuantile_isWithinRelativeAccuracy(@FromDataPoints(DATA_POINTS__ACCURACIES) final Double accuracy,
+													@FromDataPoints(DATA_POINTS__QUANTILES) final Double quantile) {
+		final long[] values = randomValues(20000, 7L);
+		final QuantileSketch.Accumulator accumulator = new QuantileSketch.Accumulator(accuracy, QuantileSketch.DEFAULT_MAX_BINS);
+		for (final long value : values) {
+			accumulator.add(value);
+		}
+		Arrays.sort(values);
+
+		final long expectedValue = values[(int) (quantile * (values.length - 1))];
+		assertThat(accumulator.snapshot().getQuantile(quantile)).isCloseTo(expectedValue, within(expectedValue * accuracy + 1));
+	}
+
+	@Theory
+	public void mergeWith_isEquivalentToRecordingAllValues(@FromDataPoints(DATA_POINTS__ACCURACIES) final Double accuracy) {
+		final long[] values = randomValues(10000, 11L);
+		final QuantileSketch.Accumulator all = new QuantileSketch.Accumulator(accuracy, QuantileSketch.DEFAULT_MAX_BINS);
+		final QuantileSketch.Accumulator even = new QuantileSketch.Accumulator(accuracy, QuantileSketch.DEFAULT_MAX_BINS);
+		final QuantileSketch.Accumulator odd = new QuantileSketch.Accumulator(accuracy, QuantileSketch.DEFAULT_MAX_BINS);
+		for (int index = 0; index < values.length; index++) {
+			all.add(values[index]);
+			(index % 2 == 0 ? even : odd).add(values[index]);
+		}
+
+		final QuantileSketch merged = even.snapshot().mergeWith(odd.snapshot());
+		assertThat(merged).isEqualTo(all.snapshot());
+		assertThat(merged.getCount()).isEqualTo(values.length);
+	}
+
+	@Theory
+	public void mergeWith_emptySketchIsIdentity(@FromDataPoints(DATA_POINTS__ACCURACIES) final Double accuracy) {
+		final QuantileSketch.Accumulator accumulator = new QuantileSketch.Accumulator(accuracy, QuantileSketch.DEFAULT_MAX_BINS);
+		accumulator.add(100L);
+		final QuantileSketch sketch = accumulator.snapshot();
+		assertThat(sketch.mergeWith(QuantileSketch.empty())).isEqualTo(sketch);
+		assertThat(QuantileSketch.empty().mergeWith(sketch)).isEqualTo(sketch);
+	}
+
+	@Theory
+	public void toByteArray_roundTripsThroughFromByteArray(@FromDataPoints(DATA_POINTS__ACCURACIES) final Double accuracy) {
+		final QuantileSketch.Accumulator accumulator = new QuantileSketch.Accumulator(accuracy, QuantileSketch.DEFAULT_MAX_BINS);
+		for (final long value : randomValues(1000, 3L)) {
+			accumulator.add(value);
+		}
+		accumulator.add(0L);
+
+		final QuantileSketch sketch = accumulator.snapshot();
+		final QuantileSketch read = QuantileSketch.fromByteArray(sketch.toByteArray());
+		assertThat(read).isEqualTo(sketch);
+		assertThat(read.getQuantile(0.99)).isEqualTo(sketch.getQuantile(0.99));
+	}
+
+	@Theory
+	public void maxBins_boundsMemoryAndKeepsHighQuantilesAccurate() {
+		final long[] values = randomValues(10000, 5L);
+		final QuantileSketch.Accumulator accumulator = new QuantileSketch.Accumulator(0.01, 64);
+		for (final long value : values) {
+			accumulator.add(value);
+		}
+		Arrays.sort(values);
+
+		final QuantileSketch sketch = accumulator.snapshot();
+		final long p99 = values[(int) (0.99 * (values.length - 1))];
+		assertThat(sketch.getCount()).isEqualTo(values.length);
+		assertThat(sketch.getQuantile(0.99)).isCloseTo(p99, within(p99 * 0.01 + 1));
+		assertThat(sketch.toByteArray().length).isLessThan(64 * 4 + 64);
+	}
+
+	@Theory
+	public void getQuantile_emptySketchReturnsZero() {
+		assertThat(QuantileSketch.empty().getQuantile(0.5)).isEqualTo(0.0);
+	}
+
+	@Theory
+	public void getQuantile_outOfRangeThrowsIllegalArgumentException() {
+		expected.expect(IllegalArgumentException.class);
+		QuantileSketch.empty().getQuantile(1.5);
+	}
+
+	@Theory
+	public void fromByteArray_malformedInputThrowsIllegalArgumentException() {
+		expected.expect(IllegalArgumentException.class);
+		QuantileSketch.fromByteArray(new byte[]{1, 2, 3});
+	}
+
+	private static long[] randomValues(final int count, final long seed) {
+		final Random random = new Random(seed);
+		final long[] values = new long[count];
+		for (int index = 0; index < count; index++) {
+			// Spread the values over many orders of magnitude, like latencies in nanoseconds
+			values[index] = (long) Math.exp(random.nextDouble() * 20.0);
+		}
+		return values;
+	}
+}
@@ -0,0 +1,154 @@
+package com.paloski.statistics;
+
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.FromDataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(Theories.class)
+public final class ReplicatedStatisticsTest {
+
+	public static final String DATA_POINTS__NODE_COUNT = "Data-Points::node-count";
+
+	@DataPoints(DATA_POINTS__NODE_COUNT)
+	public static List<Integer> getNodeCounts() {
+		return Arrays.asList(1, 3, 7);
+	}
+
+	@Theory
+	public void mergeWith_isCommutativeAssociativeAndIdempotent() {
+		final ReplicatedStatistics first = ReplicatedStatistics.forNode("a", statistics(3, 1, 2));
+		final ReplicatedStatistics second = ReplicatedStatistics.forNode("b", statistics(5, 0, 1));
+		final ReplicatedStatistics newerFirst = ReplicatedStatistics.forNode("a", statistics(4, 1, 3));
+
+		assertThat(first.mergeWith(second)).isEqualTo(second.mergeWith(first));
+		assertThat(first.mergeWith(second).mergeWith(newerFirst)).isEqualTo(first.mergeWith(second.mergeWith(newerFirst)));
+		assertThat(first.mergeWith(second).mergeWith(second).mergeWith(first)).isEqualTo(first.mergeWith(second));
+		// Older states of a node never replace newer ones
+		assertThat(newerFirst.mergeWith(first)).isEqualTo(newerFirst);
+		assertThat(first.mergeWith(second).getSuccessCount()).isEqualTo(8L);
+		assertThat(first.mergeWith(second).getErrorCount()).isEqualTo(4L);
+	}
+
+	@Theory
+	public void exportDelta_nodesConvergeDespiteDuplicatesAndReordering(@FromDataPoints(DATA_POINTS__NODE_COUNT) final Integer nodeCount) {
+		final Random random = new Random(nodeCount);
+		final List<ReplicatedRecorder> nodes = new ArrayList<>();
+		for (int node = 0; node < nodeCount; node++) {
+			nodes.add(ReplicatedRecorder.forNode("node-" + node));
+		}
+
+		long successes = 0L;
+		long errors = 0L;
+		final List<ReplicatedStatistics> inFlight = new ArrayList<>();
+		for (int round = 0; round < 20; round++) {
+			for (final ReplicatedRecorder node : nodes) {
+				final int roundSuccesses = random.nextInt(5);
+				for (int count = 0; count < roundSuccesses; count++) {
+					node.getLocalRecorder().recordSuccess();
+				}
+				if (random.nextBoolean()) {
+					node.getLocalRecorder().recordError(new IOException());
+					errors++;
+				}
+				successes += roundSuccesses;
+				final ReplicatedStatistics delta = node.exportDelta();
+				// Every delta is delivered twice, as if it was retried
+				inFlight.add(delta);
+				inFlight.add(delta);
+			}
+			Collections.shuffle(inFlight, random);
+			for (final ReplicatedStatistics delta : inFlight) {
+				for (final ReplicatedRecorder node : nodes) {
+					node.merge(delta);
+				}
+			}
+			inFlight.clear();
+		}
+
+		for (final ReplicatedRecorder node : nodes) {
+			final Statistics snapshot = node.takeSnapshot();
+			assertThat(snapshot.getSuccessCount()).isEqualTo(successes);
+			assertThat(snapshot.getErrorCount()).isEqualTo(errors);
+			assertThat(node.getState()).isEqualTo(nodes.get(0).getState());
+		}
+	}
+
+	@Theory
+	public void exportDelta_onlyContainsChanges() {
+		final ReplicatedRecorder node = ReplicatedRecorder.forNode("a");
+		node.getLocalRecorder().recordSuccess();
+		node.getLocalRecorder().recordError(new IOException());
+		assertThat(node.exportDelta().getErrorCount()).isEqualTo(1L);
+
+		node.getLocalRecorder().recordSuccess();
+		final ReplicatedStatistics delta = node.exportDelta();
+		assertThat(delta.getSuccessCount()).isEqualTo(2L);
+		assertThat(delta.getErrorCount()).isEqualTo(0L);
+		assertThat(node.exportDelta()).isEqualTo(ReplicatedStatistics.empty());
+	}
+
+	@Theory
+	public void exportDelta_outcomesAreReplicated() {
+		final ReplicatedRecorder first = ReplicatedRecorder.forNode("a");
+		final ReplicatedRecorder second = ReplicatedRecorder.forNode("b");
+		first.getLocalRecorder().recordOutcome(OutcomeCategory.TIMED_OUT);
+		second.getLocalRecorder().recordOutcome(OutcomeCategory.TIMED_OUT);
+		second.getLocalRecorder().recordOutcome(OutcomeCategory.REJECTED);
+		first.merge(second.exportDelta());
+
+		second.getLocalRecorder().recordOutcome(OutcomeCategory.INTERRUPTED);
+		final ReplicatedStatistics delta = second.exportDelta();
+		assertThat(delta.getOutcomeCount(OutcomeCategory.INTERRUPTED)).isEqualTo(1L);
+		assertThat(delta.getOutcomeCount(OutcomeCategory.REJECTED)).isEqualTo(0L);
+		first.merge(delta);
+		first.merge(delta);
+
+		final Statistics snapshot = first.takeSnapshot();
+		assertThat(snapshot.getTimedOutCount()).isEqualTo(2L);
+		assertThat(snapshot.getRejectedCount()).isEqualTo(1L);
+		assertThat(snapshot.getInterruptedCount()).isEqualTo(1L);
+		assertThat(snapshot.getCancelledCount()).isEqualTo(0L);
+	}
+
+	@Theory
+	public void toStatistics_unknownTypesAreUnresolved() {
+		final ReplicatedStatistics state = ReplicatedStatistics.forNode("a", statistics(0, 0, 2));
+		final ErrorStatistics resolved = state.toStatistics().getErrorStatistics();
+		assertThat(resolved.getCountOfExceptionTypes()).containsEntry(IOException.class, 2L);
+
+		final ErrorStatistics unresolved = state.toStatistics(new ClassLoader(null) {
+			@Override
+			protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+				throw new ClassNotFoundException(name);
+			}
+		}).getErrorStatistics();
+		assertThat(unresolved.getCountOfExceptionTypes()).isEmpty();
+		assertThat(unresolved.getCountOfUnresolvedExceptionTypes()).containsEntry(IOException.class.getName(), 2L);
+		assertThat(unresolved.getTotalErrorCount()).isEqualTo(2L);
+	}
+
+	private static Statistics statistics(final long successes, final long unattributed, final long ioErrors) {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		for (int count = 0; count < successes; count++) {
+			recorder.recordSuccess();
+		}
+		for (int count = 0; count < unattributed; count++) {
+			recorder.recordError();
+		}
+		for (int count = 0; count < ioErrors; count++) {
+			recorder.recordError(new IOException());
+		}
+		return recorder.takeSnapshot();
+	}
+}
@@ -0,0 +1,102 @@
+package com.paloski.statistics;
+
+import org.junit.Rule;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@RunWith(Theories.class)
+public final class StatisticsArchiveTest {
+
+	private static final long START = TimeUnit.DAYS.toMillis(1000L);
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	@Theory
+	public void query_returnsWhatWasRecordedBetweenCaptures() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		recorder.recordSuccess();
+		final StatisticsArchive sut = StatisticsArchive.forRecorder(recorder);
+		recorder.recordSuccesses(3L);
+		recorder.recordError(new IOException());
+		sut.capture(START + 500L);
+		recorder.recordSuccesses(2L);
+		recorder.recordOutcome(OutcomeCategory.TIMED_OUT);
+		sut.capture(START + 1500L);
+
+		final Statistics first = sut.query(START, START + 1000L);
+		assertThat(first.getSuccessCount()).isEqualTo(3L);
+		assertThat(first.getErrorCount()).isEqualTo(1L);
+		assertThat(first.getTimedOutCount()).isEqualTo(0L);
+
+		final Statistics both = sut.query(START, START + 2000L);
+		assertThat(both.getSuccessCount()).isEqualTo(5L);
+		assertThat(both.getTimedOutCount()).isEqualTo(1L);
+		assertThat(both.getTimeRange().getStartMillis()).isEqualTo(START);
+		assertThat(both.getTimeRange().getEndMillis()).isEqualTo(START + 1500L);
+		assertThat(both.getErrorsPerSecond()).isCloseTo(1.0 / 1.5, within(1e-9));
+	}
+
+	@Theory
+	public void query_fallsBackToCoarserResolutionBeyondRetention() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final StatisticsArchive sut = StatisticsArchive.newBuilder(recorder)
+				.withResolution(1L, TimeUnit.MINUTES, 60)
+				.withResolution(1L, TimeUnit.SECONDS, 10)
+				.build();
+		recorder.recordSuccess();
+		sut.capture(START + 500L);
+		recorder.recordSuccess();
+		sut.capture(START + 30000L);
+
+		assertThat(sut.query(START + 25000L, START + 31000L).getSuccessCount()).isEqualTo(1L);
+		assertThat(sut.query(START, START + 60000L).getSuccessCount()).isEqualTo(2L);
+	}
+
+	@Theory
+	public void capture_overwritesBucketsBeyondRetention() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final StatisticsArchive sut = StatisticsArchive.newBuilder(recorder)
+				.withResolution(1L, TimeUnit.SECONDS, 2)
+				.build();
+		for (long second = 0L; second < 3L; second++) {
+			recorder.recordSuccess();
+			sut.capture(START + TimeUnit.SECONDS.toMillis(second));
+		}
+
+		assertThat(sut.query(START, START + 3000L).getSuccessCount()).isEqualTo(2L);
+	}
+
+	@Theory
+	public void querySeries_returnsStatisticsOfEachStep() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final StatisticsArchive sut = StatisticsArchive.forRecorder(recorder);
+		for (long minute = 0L; minute < 3L; minute++) {
+			recorder.recordUnattributedErrors(minute + 1L);
+			sut.capture(START + TimeUnit.MINUTES.toMillis(minute));
+		}
+
+		final List<Statistics> series = sut.querySeries(START, START + TimeUnit.MINUTES.toMillis(4L), 1L, TimeUnit.MINUTES);
+		assertThat(series).hasSize(4);
+		assertThat(series.get(0).getErrorCount()).isEqualTo(1L);
+		assertThat(series.get(1).getErrorCount()).isEqualTo(2L);
+		assertThat(series.get(2).getErrorCount()).isEqualTo(3L);
+		assertThat(series.get(3).getErrorCount()).isEqualTo(0L);
+		assertThat(series.get(3).getTimeRange().isKnown()).isFalse();
+	}
+
+	@Theory
+	public void query_emptyRangeIsRejected() {
+		expected.expect(IllegalArgumentException.class);
+		StatisticsArchive.forRecorder(StatisticsRecorder.newRecorder()).query(START, START);
+	}
+}
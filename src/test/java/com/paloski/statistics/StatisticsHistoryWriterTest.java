@@ -0,0 +1,145 @@
+package com.paloski.statistics;
+
+import org.junit.Rule;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(Theories.class)
+public final class StatisticsHistoryWriterTest {
+
+	private static final long START = TimeUnit.DAYS.toMillis(1000L);
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Theory
+	public void query_returnsWhatWasCapturedWithinRange() throws IOException {
+		final Path path = temporaryFolder.newFolder().toPath().resolve("history");
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		recorder.recordSuccess();
+		try (final StatisticsHistoryWriter sut = StatisticsHistoryWriter.open(path, recorder, START)) {
+			recorder.recordSuccesses(3L);
+			recorder.recordError(new IOException());
+			sut.capture(START + 1000L);
+			recorder.recordSuccesses(2L);
+			recorder.recordOutcome(OutcomeCategory.REJECTED);
+			sut.capture(START + 2000L);
+			sut.capture(START + 3000L);
+		}
+
+		try (final StatisticsHistoryReader reader = StatisticsHistoryReader.open(path)) {
+			final Statistics first = reader.query(START, START + 1500L);
+			assertThat(first.getSuccessCount()).isEqualTo(3L);
+			assertThat(first.getErrorCount()).isEqualTo(1L);
+			assertThat(first.getTimeRange().getStartMillis()).isEqualTo(START);
+			assertThat(first.getTimeRange().getEndMillis()).isEqualTo(START + 1000L);
+
+			final Statistics all = reader.query(START, START + 5000L);
+			assertThat(all.getSuccessCount()).isEqualTo(5L);
+			assertThat(all.getRejectedCount()).isEqualTo(1L);
+			assertThat(all.getTimeRange().getEndMillis()).isEqualTo(START + 3000L);
+
+			assertThat(reader.query(START + 5000L, START + 6000L).getTimeRange().isKnown()).isFalse();
+		}
+	}
+
+	@Theory
+	public void capture_steadyRecordsSpanningBlocksAreCompact() throws IOException {
+		final Path path = temporaryFolder.newFolder().toPath().resolve("history");
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final int captures = 5000;
+		try (final StatisticsHistoryWriter sut = StatisticsHistoryWriter.open(path, recorder, START)) {
+			for (int second = 1; second <= captures; second++) {
+				recorder.recordSuccesses(100L);
+				recorder.recordUnattributedErrors(second % 2);
+				sut.capture(START + TimeUnit.SECONDS.toMillis(second));
+			}
+		}
+
+		assertThat(Files.size(path)).isLessThan(captures * 10L);
+		try (final StatisticsHistoryReader reader = StatisticsHistoryReader.open(path)) {
+			final Statistics all = reader.query(START, START + TimeUnit.SECONDS.toMillis(captures + 1));
+			assertThat(all.getSuccessCount()).isEqualTo(100L * captures);
+			assertThat(all.getErrorCount()).isEqualTo(captures / 2);
+
+			final Statistics minute = reader.query(START + TimeUnit.SECONDS.toMillis(4000L), START + TimeUnit.SECONDS.toMillis(4060L));
+			assertThat(minute.getSuccessCount()).isEqualTo(6000L);
+			assertThat(minute.getErrorCount()).isEqualTo(30L);
+		}
+	}
+
+	@Theory
+	public void capture_failedBlockWritesLeaveTheBufferIntact() throws IOException {
+		final Path path = temporaryFolder.newFolder().toPath().resolve("history");
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final StatisticsHistoryWriter sut = StatisticsHistoryWriter.open(path, recorder, START);
+		sut.close();
+
+		int failures = 0;
+		for (int capture = 1; capture <= 10000; capture++) {
+			recorder.recordSuccesses(capture);
+			try {
+				sut.capture(START + capture * 1000L);
+			} catch (final IOException exp) {
+				failures++;
+			}
+		}
+		//Once the block is full every capture retries writing it, rather than overflowing it
+		assertThat(failures).isGreaterThan(1);
+	}
+
+	@Theory
+	public void open_appendsAfterDiscardingPartialBlock() throws IOException {
+		final Path path = temporaryFolder.newFolder().toPath().resolve("history");
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		try (final StatisticsHistoryWriter sut = StatisticsHistoryWriter.open(path, recorder, START)) {
+			recorder.recordSuccess();
+			sut.capture(START + 1000L);
+		}
+		Files.write(path, new byte[]{0, 0, 1, 0, 0, 0}, StandardOpenOption.APPEND);
+
+		try (final StatisticsHistoryReader reader = StatisticsHistoryReader.open(path)) {
+			try (final StatisticsHistoryWriter sut = StatisticsHistoryWriter.open(path, recorder, START + 2000L)) {
+				recorder.recordSuccesses(2L);
+				sut.capture(START + 3000L);
+				sut.flush();
+				assertThat(reader.query(START, START + 4000L).getSuccessCount()).isEqualTo(3L);
+			}
+		}
+	}
+
+	@Theory
+	public void open_otherFilesAreRejected() throws IOException {
+		final Path path = temporaryFolder.newFile().toPath();
+		Files.write(path, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+		expected.expect(IOException.class);
+		StatisticsHistoryWriter.open(path, StatisticsRecorder.newRecorder());
+	}
+
+	@Theory
+	public void zigZag_roundTripsThroughVarints() {
+		final ByteBuffer buffer = ByteBuffer.allocate(HistoryFormat.MAX_RECORD_BYTES);
+		for (final long value : new long[]{0L, 1L, -1L, 63L, -64L, 1L << 40, Long.MAX_VALUE, Long.MIN_VALUE}) {
+			buffer.clear();
+			HistoryFormat.putVarint(buffer, HistoryFormat.zigZag(value));
+			buffer.flip();
+			assertThat(HistoryFormat.unZigZag(HistoryFormat.getVarint(buffer))).isEqualTo(value);
+		}
+	}
+}
@@ -0,0 +1,273 @@
+package com.paloski.statistics;
+
+import org.junit.Rule;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(Theories.class)
+public final class StatisticsPublisherTest {
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	@Theory
+	public void publish_deliversOnlyRequestedSnapshots() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final StatisticsPublisher<Statistics> sut = StatisticsPublisher.forRecorder(recorder);
+		final CollectingSubscriber<Statistics> subscriber = new CollectingSubscriber<>();
+		sut.subscribe(subscriber);
+
+		recorder.recordSuccess();
+		sut.publish();
+		assertThat(subscriber.mSnapshots).isEmpty();
+
+		subscriber.mSubscription.request(2L);
+		assertThat(subscriber.mSnapshots).hasSize(1);
+		assertThat(subscriber.mSnapshots.get(0).getSuccessCount()).isEqualTo(1L);
+
+		recorder.recordSuccess();
+		sut.publish();
+		sut.publish();
+		assertThat(subscriber.mSnapshots).hasSize(2);
+		assertThat(subscriber.mSnapshots.get(1).getSuccessCount()).isEqualTo(2L);
+	}
+
+	@Theory
+	public void publish_conflatesSnapshotsForSlowSubscribers() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final StatisticsPublisher<Statistics> sut = StatisticsPublisher.forRecorder(recorder);
+		final CollectingSubscriber<Statistics> slow = new CollectingSubscriber<>();
+		final CollectingSubscriber<Statistics> fast = new CollectingSubscriber<>();
+		sut.subscribe(slow);
+		sut.subscribe(fast);
+		fast.mSubscription.request(Long.MAX_VALUE);
+
+		for (int tick = 0; tick < 5; tick++) {
+			recorder.recordSuccess();
+			sut.publish();
+		}
+		assertThat(fast.mSnapshots).hasSize(5);
+		assertThat(sut.getConflatedCount()).isEqualTo(4L);
+
+		slow.mSubscription.request(1L);
+		assertThat(slow.mSnapshots).hasSize(1);
+		assertThat(slow.mSnapshots.get(0).getSuccessCount()).isEqualTo(5L);
+		//The snapshot delivered to each subscriber is the same snapshot
+		assertThat(slow.mSnapshots.get(0)).isSameAs(fast.mSnapshots.get(4));
+	}
+
+	@Theory
+	public void close_completesSubscribersAfterPendingSnapshot() {
+		final StatisticsPublisher<Statistics> sut = StatisticsPublisher.forRecorder(StatisticsRecorder.newRecorder());
+		final CollectingSubscriber<Statistics> subscriber = new CollectingSubscriber<>();
+		sut.subscribe(subscriber);
+		subscriber.mSubscription.request(1L);
+		subscriber.mSubscription.request(1L);
+		sut.publish();
+		sut.publish();
+		sut.publish();
+		assertThat(subscriber.mSnapshots).hasSize(2);
+
+		sut.close();
+		assertThat(subscriber.mCompleted).isTrue();
+		assertThat(sut.getSubscriberCount()).isEqualTo(0);
+
+		final CollectingSubscriber<Statistics> late = new CollectingSubscriber<>();
+		sut.subscribe(late);
+		assertThat(late.mCompleted).isTrue();
+	}
+
+	@Theory
+	public void cancel_stopsDelivery() {
+		final StatisticsPublisher<Statistics> sut = StatisticsPublisher.forRecorder(StatisticsRecorder.newRecorder());
+		final CollectingSubscriber<Statistics> subscriber = new CollectingSubscriber<>();
+		sut.subscribe(subscriber);
+		subscriber.mSubscription.request(Long.MAX_VALUE);
+		sut.publish();
+		subscriber.mSubscription.cancel();
+		sut.publish();
+
+		assertThat(subscriber.mSnapshots).hasSize(1);
+		assertThat(sut.getSubscriberCount()).isEqualTo(0);
+	}
+
+	@Theory
+	public void request_nonPositiveCountFailsTheSubscription() {
+		final StatisticsPublisher<Statistics> sut = StatisticsPublisher.forRecorder(StatisticsRecorder.newRecorder());
+		final CollectingSubscriber<Statistics> subscriber = new CollectingSubscriber<>();
+		sut.subscribe(subscriber);
+		subscriber.mSubscription.request(0L);
+
+		assertThat(subscriber.mError).isInstanceOf(IllegalArgumentException.class);
+		assertThat(sut.getSubscriberCount()).isEqualTo(0);
+	}
+
+	@Theory
+	public void forRegistry_publishesEveryRegisteredRecorder() {
+		RecorderRegistry.getRecorder(StatisticsPublisherTest.class.getName()).recordSuccess();
+		final StatisticsPublisher<Map<String, Statistics>> sut = StatisticsPublisher.forRegistry();
+		final CollectingSubscriber<Map<String, Statistics>> subscriber = new CollectingSubscriber<>();
+		sut.subscribe(subscriber);
+		subscriber.mSubscription.request(1L);
+		sut.publish();
+
+		assertThat(subscriber.mSnapshots).hasSize(1);
+		assertThat(subscriber.mSnapshots.get(0)).containsKey(StatisticsPublisherTest.class.getName());
+	}
+
+	@Theory
+	public void subscribe_deliversNothingBeforeOnSubscribeReturns() throws Exception {
+		final StatisticsPublisher<Statistics> sut = StatisticsPublisher.forRecorder(StatisticsRecorder.newRecorder());
+		final CountDownLatch subscribing = new CountDownLatch(1);
+		final CountDownLatch published = new CountDownLatch(1);
+		final AtomicBoolean onSubscribeReturned = new AtomicBoolean();
+		final CollectingSubscriber<Statistics> subscriber = new CollectingSubscriber<Statistics>() {
+			@Override
+			public void onSubscribe(final StatisticsPublisher.Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+				subscribing.countDown();
+				try {
+					published.await();
+				} catch (final InterruptedException exp) {
+					throw new IllegalStateException(exp);
+				}
+				super.onSubscribe(subscription);
+				onSubscribeReturned.set(true);
+			}
+
+			@Override
+			public void onNext(final Statistics snapshot) {
+				assertThat(onSubscribeReturned.get()).isTrue();
+				super.onNext(snapshot);
+			}
+		};
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<?> subscribed = executor.submit(() -> sut.subscribe(subscriber));
+			subscribing.await();
+			sut.publish();
+			published.countDown();
+			subscribed.get();
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(subscriber.mSnapshots).isEmpty();
+
+		sut.publish();
+		assertThat(subscriber.mSnapshots).hasSize(1);
+	}
+
+	@Theory
+	public void subscribe_cancellingInOnSubscribeDoesNotSubscribe() {
+		final StatisticsPublisher<Statistics> sut = StatisticsPublisher.forRecorder(StatisticsRecorder.newRecorder());
+		final CollectingSubscriber<Statistics> subscriber = new CollectingSubscriber<Statistics>() {
+			@Override
+			public void onSubscribe(final StatisticsPublisher.Subscription subscription) {
+				super.onSubscribe(subscription);
+				subscription.request(Long.MAX_VALUE);
+				subscription.cancel();
+			}
+		};
+		sut.subscribe(subscriber);
+		sut.publish();
+
+		assertThat(sut.getSubscriberCount()).isEqualTo(0);
+		assertThat(subscriber.mSnapshots).isEmpty();
+	}
+
+	@Theory
+	public void publish_slowSubscriberDoesNotDelayOthersOnAnExecutor() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			final StatisticsPublisher<Statistics> sut = StatisticsPublisher.forRecorder(StatisticsRecorder.newRecorder(), executor);
+			final CountDownLatch slowReceived = new CountDownLatch(1);
+			final CountDownLatch slowReleased = new CountDownLatch(1);
+			final Semaphore fastReceived = new Semaphore(0);
+			sut.subscribe(new CollectingSubscriber<Statistics>() {
+				@Override
+				public void onSubscribe(final StatisticsPublisher.Subscription subscription) {
+					subscription.request(Long.MAX_VALUE);
+				}
+
+				@Override
+				public void onNext(final Statistics snapshot) {
+					slowReceived.countDown();
+					try {
+						slowReleased.await();
+					} catch (final InterruptedException exp) {
+						throw new IllegalStateException(exp);
+					}
+				}
+			});
+			sut.subscribe(new CollectingSubscriber<Statistics>() {
+				@Override
+				public void onSubscribe(final StatisticsPublisher.Subscription subscription) {
+					subscription.request(Long.MAX_VALUE);
+				}
+
+				@Override
+				public void onNext(final Statistics snapshot) {
+					fastReceived.release();
+				}
+			});
+
+			sut.publish();
+			assertThat(slowReceived.await(10L, TimeUnit.SECONDS)).isTrue();
+			assertThat(fastReceived.tryAcquire(10L, TimeUnit.SECONDS)).isTrue();
+			sut.publish();
+			assertThat(fastReceived.tryAcquire(10L, TimeUnit.SECONDS)).isTrue();
+			slowReleased.countDown();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Theory
+	public void subscribe_nullSubscriberIsRejected() {
+		expected.expect(IllegalArgumentException.class);
+		StatisticsPublisher.forRecorder(StatisticsRecorder.newRecorder()).subscribe(null);
+	}
+
+	private static class CollectingSubscriber<T> implements StatisticsPublisher.Subscriber<T> {
+
+		private final List<T> mSnapshots = new ArrayList<>();
+		private StatisticsPublisher.Subscription mSubscription;
+		private Throwable mError;
+		private boolean mCompleted;
+
+		@Override
+		public void onSubscribe(final StatisticsPublisher.Subscription subscription) {
+			mSubscription = subscription;
+		}
+
+		@Override
+		public void onNext(final T snapshot) {
+			mSnapshots.add(snapshot);
+		}
+
+		@Override
+		public void onError(final Throwable error) {
+			mError = error;
+		}
+
+		@Override
+		public void onComplete() {
+			mCompleted = true;
+		}
+	}
+}
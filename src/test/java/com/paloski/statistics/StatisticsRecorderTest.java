@@ -8,13 +8,17 @@ import org.junit.experimental.theories.Theory;
 import org.junit.runner.RunWith;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 
 @RunWith(Theories.class)
@@ -183,6 +187,265 @@ public final class StatisticsRecorderTest {
 		assertThat(secondarySnapshot.getErrorCount()).isEqualTo(firstRunErrorCount + secondRunErrorCount);
 	}
 
+	@Theory
+	public void recordTimedSuccess_durationsAreReflectedInSnapshot(@FromDataPoints(DATA_POINTS__SUCCESS_COUNT) final long successCount) {
+		final StatisticsRecorder sut = StatisticsRecorder.newRecorder();
+		sut.recordSuccess();
+		for (int count = 1; count <= successCount; count++) {
+			sut.recordTimedSuccess(count * 10L);
+		}
+
+		final SuccessStatistics snapshot = sut.takeSnapshot().getSuccessStatistics();
+		assertThat(snapshot.getSuccessCount()).isEqualTo(successCount + 1);
+		assertThat(snapshot.getTimedSuccessCount()).isEqualTo(successCount);
+		assertThat(snapshot.getTotalDurationNanos()).isEqualTo(5L * successCount * (successCount + 1));
+		assertThat(snapshot.getMaxDurationNanos()).isEqualTo(successCount * 10L);
+	}
+
+	@Theory
+	public void newBuilder_latencyAccuracyIsUsedBySnapshots() {
+		final StatisticsRecorder sut = StatisticsRecorder.newBuilder().withLatencyAccuracy(0.05, 128).build();
+		for (long duration = 1; duration <= 100; duration++) {
+			sut.recordTimedSuccess(duration * 1000L);
+		}
+
+		final SuccessStatistics snapshot = sut.takeSnapshot().getSuccessStatistics();
+		assertThat(snapshot.getLatencySketch().getRelativeAccuracy()).isEqualTo(0.05);
+		assertThat(snapshot.getDurationQuantileNanos(0.99)).isBetween(99000.0 * 0.95, 99000.0 * 1.05);
+	}
+
+	@Theory
+	public void recordErrorWithKey_keysAreSummarizedInSnapshot(@FromDataPoints(DATA_POINTS__ERROR_COUNT) final long errorCount) {
+		final StatisticsRecorder sut = StatisticsRecorder.newBuilder().withErrorKeyCapacity(2).build();
+		for (int count = 0; count < errorCount; count++) {
+			sut.recordError(new IOException(), "customer-1");
+		}
+		sut.recordError(new IOException(), "customer-2");
+
+		final ErrorStatistics snapshot = sut.takeSnapshot().getErrorStatistics();
+		assertThat(snapshot.getCountOfExceptionTypes().get(IOException.class)).isEqualTo(errorCount + 1);
+		assertThat(snapshot.getErrorKeys().getEstimatedCount("customer-2")).isEqualTo(1L);
+		assertThat(snapshot.getTopErrorKeys(2)).hasSize(errorCount == 0L ? 1 : 2);
+		if (errorCount > 1L) {
+			assertThat(snapshot.getTopErrorKeys(1).get(0).getKey()).isEqualTo("customer-1");
+		}
+	}
+
+	@Theory
+	public void newSeededRecorder_errorKeyCapacityIsKeptWhenNoKeysWereRecorded() {
+		final Statistics snapshot = StatisticsRecorder.newBuilder().withErrorKeyCapacity(2).build().takeSnapshot();
+		assertThat(snapshot.getErrorStatistics().getErrorKeys().getCapacity()).isEqualTo(2);
+
+		final StatisticsRecorder seeded = StatisticsRecorder.newSeededRecorder(snapshot);
+		for (int key = 0; key < 3; key++) {
+			seeded.recordError(new IOException(), "customer-" + key);
+		}
+		assertThat(seeded.takeSnapshot().getErrorStatistics().getErrorKeys().getEntries()).hasSize(2);
+	}
+
+	@Theory
+	public void withDistinctEntityTracking_distinctEntitiesAreEstimated(@FromDataPoints(DATA_POINTS__SUCCESS_COUNT) final long successCount) {
+		final StatisticsRecorder sut = StatisticsRecorder.newBuilder().withDistinctEntityTracking(HyperLogLog.DEFAULT_PRECISION).build();
+		for (int user = 0; user < 100; user++) {
+			for (int count = 0; count < successCount; count++) {
+				sut.recordSuccess("user-" + user);
+			}
+		}
+		for (int user = 90; user < 110; user++) {
+			sut.recordError(new IOException(), "user-" + user);
+		}
+
+		final Statistics snapshot = sut.takeSnapshot();
+		assertThat(snapshot.getSuccessCount()).isEqualTo(100L * successCount);
+		// Small cardinalities are estimated through linear counting, so are nearly exact
+		assertThat(snapshot.getSuccessStatistics().getDistinctEntityCount()).isCloseTo(successCount == 0L ? 0L : 100L, within(2L));
+		assertThat(snapshot.getErrorStatistics().getDistinctEntityCount()).isCloseTo(20L, within(2L));
+		assertThat(snapshot.getDistinctEntityCount()).isCloseTo(successCount == 0L ? 20L : 110L, within(2L));
+		assertThat(StatisticsRecorder.newSeededRecorder(snapshot).takeSnapshot().getDistinctEntityCount()).isEqualTo(snapshot.getDistinctEntityCount());
+	}
+
+	@Theory
+	public void recordSuccessWithEntity_withoutTrackingOnlyCountsSuccesses() {
+		final StatisticsRecorder sut = StatisticsRecorder.newRecorder();
+		sut.recordSuccess("user-1");
+
+		final Statistics snapshot = sut.takeSnapshot();
+		assertThat(snapshot.getSuccessCount()).isEqualTo(1L);
+		assertThat(snapshot.getDistinctEntityCount()).isEqualTo(0L);
+	}
+
+	@Theory
+	public void withExemplarsPerType_exemplarsAreSampledInSnapshot(@FromDataPoints(DATA_POINTS__ERROR_COUNT) final long errorCount) {
+		final StatisticsRecorder sut = StatisticsRecorder.newBuilder().withExemplarsPerType(1).build();
+		final IOException exception = new IOException();
+		for (int count = 0; count < errorCount; count++) {
+			sut.recordError(exception);
+		}
+
+		final ErrorStatistics snapshot = sut.takeSnapshot().getErrorStatistics();
+		assertThat(snapshot.getExemplars(IOException.class)).hasSize(errorCount == 0L ? 0 : 1);
+		if (errorCount != 0L) {
+			assertThat(snapshot.getExemplars(IOException.class).get(0).getException()).isSameAs(exception);
+		}
+		// Exemplars are a random sample, so they do not affect equality
+		assertThat(snapshot).isEqualTo(ErrorStatistics.forFailures(0L, snapshot.getCountOfExceptionTypes()));
+	}
+
+	@Theory
+	public void withMaxExceptionTypes_extraTypesAreCountedAsOverflow(@FromDataPoints(DATA_POINTS__ERROR_COUNT) final long errorCount) {
+		final StatisticsRecorder sut = StatisticsRecorder.newBuilder().withWeakExceptionTypes().withMaxExceptionTypes(1).build();
+		sut.recordError(new IOException());
+		for (int count = 0; count < errorCount; count++) {
+			sut.recordError(new IllegalStateException());
+		}
+
+		final ErrorStatistics snapshot = sut.takeSnapshot().getErrorStatistics();
+		assertThat(snapshot.getCountOfExceptionTypes()).containsOnlyKeys(IOException.class);
+		assertThat(snapshot.getOverflowErrorCount()).isEqualTo(errorCount);
+		assertThat(snapshot.getTotalErrorCount()).isEqualTo(errorCount + 1);
+		assertThat(snapshot.mergeWith(snapshot).getOverflowErrorCount()).isEqualTo(errorCount * 2);
+	}
+
+	@Theory
+	public void newChildRecorder_parentSnapshotRollsUpSubtree(@FromDataPoints(DATA_POINTS__SUCCESS_COUNT) final long successCount,
+															  @FromDataPoints(DATA_POINTS__ERROR_COUNT) final long errorCount) {
+		final StatisticsRecorder process = StatisticsRecorder.newRecorder();
+		final StatisticsRecorder service = process.newChildRecorder();
+		final StatisticsRecorder operation = service.newChildRecorder();
+		for (int count = 0; count < successCount; count++) {
+			operation.recordSuccess();
+		}
+		for (int count = 0; count < errorCount; count++) {
+			service.recordError(new IOException());
+		}
+		process.recordError();
+
+		assertThat(operation.takeSnapshot().getSuccessCount()).isEqualTo(successCount);
+		assertThat(service.takeLocalSnapshot().getSuccessCount()).isEqualTo(0L);
+		assertThat(service.takeSnapshot().getSuccessCount()).isEqualTo(successCount);
+		assertThat(service.takeSnapshot().getErrorCount()).isEqualTo(errorCount);
+		assertThat(process.takeSnapshot().getSuccessCount()).isEqualTo(successCount);
+		assertThat(process.takeSnapshot().getErrorCount()).isEqualTo(errorCount + 1);
+		assertThat(process.takeLocalSnapshot().getErrorCount()).isEqualTo(1L);
+		assertThat(process.getChildren()).containsExactly(service);
+	}
+
+	@Theory
+	public void takeLocalSnapshot_isConsistentWhileRecording(@FromDataPoints(DATA_POINTS__THREADING__THREAD_COUNT) final int threadCount) throws Exception {
+		final StatisticsRecorder sut = StatisticsRecorder.newRecorder();
+		final List<Class<? extends Exception>> types = Arrays.<Class<? extends Exception>>asList(
+				IOException.class, IllegalStateException.class, IllegalArgumentException.class, UnsupportedOperationException.class);
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int thread = 0; thread < threadCount; thread++) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						final StatisticsTally tally = new StatisticsTally();
+						for (int count = 0; count < 2000; count++) {
+							tally.recordSuccess();
+							tally.recordErrors(types.get(count % types.size()), 1L);
+							tally.commitTo(sut);
+						}
+					}
+				}));
+			}
+			for (int snapshot = 0; snapshot < 200; snapshot++) {
+				final Statistics statistics = sut.takeLocalSnapshot();
+				assertThat(statistics.getErrorCount()).isEqualTo(statistics.getSuccessCount());
+			}
+			for (final Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(sut.takeLocalSnapshot().getErrorCount()).isEqualTo(threadCount * 2000L);
+	}
+
+	@Theory
+	public void takeLocalSnapshot_valuesAreConsistentWhileRecording(@FromDataPoints(DATA_POINTS__THREADING__THREAD_COUNT) final int threadCount) throws Exception {
+		final StatisticsRecorder sut = StatisticsRecorder.newRecorder();
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int thread = 0; thread < threadCount; thread++) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						for (int count = 0; count < 2000; count++) {
+							sut.recordSuccess(1L);
+						}
+					}
+				}));
+			}
+			for (int snapshot = 0; snapshot < 200; snapshot++) {
+				final Statistics statistics = sut.takeLocalSnapshot();
+				final ValueStatistics values = statistics.getSuccessStatistics().getValueStatistics();
+				assertThat(values.getSum()).isEqualTo(values.getCount());
+				assertThat(values.getCount()).isEqualTo(statistics.getSuccessCount());
+			}
+			for (final Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(sut.takeLocalSnapshot().getSuccessCount()).isEqualTo(threadCount * 2000L);
+	}
+
+	@Theory
+	public void getCachedRollup_isOnlyUpdatedWhenRefreshed() throws Exception {
+		final StatisticsRecorder parent = StatisticsRecorder.newRecorder();
+		final StatisticsRecorder child = parent.newChildRecorder();
+		child.recordSuccess();
+		assertThat(parent.getCachedRollup().getSuccessCount()).isEqualTo(1L);
+
+		child.recordSuccess();
+		assertThat(parent.getCachedRollup().getSuccessCount()).isEqualTo(1L);
+		assertThat(parent.refreshCachedRollup().getSuccessCount()).isEqualTo(2L);
+
+		final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		try {
+			child.recordSuccess();
+			parent.scheduleRollupRefresh(executor, 1L, TimeUnit.MILLISECONDS);
+			for (int attempt = 0; attempt < 1000 && parent.getCachedRollup().getSuccessCount() != 3L; attempt++) {
+				Thread.sleep(1L);
+			}
+			assertThat(parent.getCachedRollup().getSuccessCount()).isEqualTo(3L);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Theory
+	public void detachChild_removesChildFromTheTree() {
+		final StatisticsRecorder parent = StatisticsRecorder.newRecorder();
+		final StatisticsRecorder retained = parent.newChildRecorder();
+		final StatisticsRecorder discarded = parent.newChildRecorder();
+		retained.recordSuccess();
+		discarded.recordSuccess();
+		parent.recordSuccess();
+
+		assertThat(parent.detachChild(retained, true)).isTrue();
+		assertThat(parent.detachChild(discarded, false)).isTrue();
+		assertThat(parent.detachChild(discarded, false)).isFalse();
+		retained.recordSuccess();
+
+		assertThat(parent.getChildren()).isEmpty();
+		assertThat(parent.takeSnapshot().getSuccessCount()).isEqualTo(2L);
+		assertThat(parent.takeLocalSnapshot().getSuccessCount()).isEqualTo(1L);
+	}
+
+	@Theory
+	public void newChildRecorder_childUsesParentConfiguration() {
+		final StatisticsRecorder parent = StatisticsRecorder.newBuilder().withLatencyAccuracy(0.05, 128).build();
+		final StatisticsRecorder child = parent.newChildRecorder();
+		child.recordTimedSuccess(1000L);
+		assertThat(child.takeSnapshot().getSuccessStatistics().getLatencySketch().getRelativeAccuracy()).isEqualTo(0.05);
+	}
+
 	@Theory
 	public void newRecorder_newRecorderStartsEmpty() {
 		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
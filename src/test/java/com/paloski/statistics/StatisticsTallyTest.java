@@ -0,0 +1,120 @@
+package com.paloski.statistics;
+
+import org.junit.Rule;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.FromDataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(Theories.class)
+public final class StatisticsTallyTest {
+
+	public static final String DATA_POINTS__COUNTS = "Data-Points::counts";
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	@DataPoints(DATA_POINTS__COUNTS)
+	public static List<Long> getCounts() {
+		return Arrays.asList(0L, 1L, 7L, 1000000L);
+	}
+
+	@Theory
+	public void bulkRecording_isEquivalentToRecordingIndividually(@FromDataPoints(DATA_POINTS__COUNTS) final Long count) {
+		final StatisticsRecorder bulk = StatisticsRecorder.newRecorder();
+		bulk.recordSuccesses(count);
+		bulk.recordErrors(IOException.class, count);
+		bulk.recordUnattributedErrors(count);
+
+		final Statistics stats = bulk.takeSnapshot();
+		assertThat(stats.getSuccessCount()).isEqualTo(count);
+		assertThat(stats.getErrorCount()).isEqualTo(2L * count);
+		assertThat(stats.getErrorStatistics().getUncategorizedErrorCount()).isEqualTo(count);
+		if (count != 0L) {
+			assertThat(stats.getErrorStatistics().getCountOfExceptionTypes()).containsEntry(IOException.class, count);
+		} else {
+			assertThat(stats.getErrorStatistics().getCountOfExceptionTypes()).isEmpty();
+		}
+	}
+
+	@Theory
+	public void recordErrors_respectsMaxExceptionTypes(@FromDataPoints(DATA_POINTS__COUNTS) final Long count) {
+		final StatisticsRecorder recorder = StatisticsRecorder.newBuilder().withMaxExceptionTypes(1).build();
+		recorder.recordErrors(IOException.class, 1L);
+		recorder.recordErrors(IllegalStateException.class, count);
+
+		assertThat(recorder.takeSnapshot().getErrorStatistics().getOverflowErrorCount()).isEqualTo(count);
+	}
+
+	@Theory
+	public void commitTo_recordsTallyIntoRecorder(@FromDataPoints(DATA_POINTS__COUNTS) final Long count) {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final StatisticsTally tally = new StatisticsTally();
+		for (long x = 0; x < Math.min(count, 1000L); x++) {
+			tally.recordSuccess();
+			tally.recordError(new IOException());
+			tally.recordFailure(new TimeoutException());
+			tally.recordError();
+		}
+		tally.recordSuccesses(count);
+		tally.commitTo(recorder);
+
+		final long individually = Math.min(count, 1000L);
+		final Statistics stats = recorder.takeSnapshot();
+		assertThat(stats.getSuccessCount()).isEqualTo(individually + count);
+		assertThat(stats.getErrorStatistics().getUncategorizedErrorCount()).isEqualTo(individually);
+		assertThat(stats.getTimedOutCount()).isEqualTo(individually);
+		assertThat(stats.getErrorCount()).isEqualTo(2L * individually);
+		assertThat(tally.isEmpty()).isTrue();
+	}
+
+	@Theory
+	public void commitTo_reusedTallyOnlyCommitsNewRecords(@FromDataPoints(DATA_POINTS__COUNTS) final Long count) {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final StatisticsTally tally = new StatisticsTally();
+		tally.recordErrors(IOException.class, count);
+		tally.commitTo(recorder);
+		tally.recordErrors(IllegalStateException.class, count);
+		tally.commitTo(recorder);
+
+		final Statistics stats = recorder.takeSnapshot();
+		assertThat(stats.getErrorCount()).isEqualTo(2L * count);
+		if (count != 0L) {
+			assertThat(stats.getErrorStatistics().getCountOfExceptionTypes()).containsEntry(IOException.class, count)
+																			 .containsEntry(IllegalStateException.class, count);
+		}
+	}
+
+	@Theory
+	public void clear_discardsTally() {
+		final StatisticsTally tally = new StatisticsTally();
+		tally.recordSuccess();
+		tally.recordError(new IOException());
+		tally.recordOutcome(OutcomeCategory.CANCELLED);
+		assertThat(tally.isEmpty()).isFalse();
+
+		tally.clear();
+		assertThat(tally.isEmpty()).isTrue();
+	}
+
+	@Theory
+	public void recordSuccesses_negativeCountThrows() {
+		expected.expect(IllegalArgumentException.class);
+		StatisticsRecorder.newRecorder().recordSuccesses(-1L);
+	}
+
+	@Theory
+	public void recordErrors_negativeCountThrows() {
+		expected.expect(IllegalArgumentException.class);
+		new StatisticsTally().recordErrors(IOException.class, -1L);
+	}
+}
@@ -0,0 +1,117 @@
+package com.paloski.statistics;
+
+import org.junit.Rule;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(Theories.class)
+public final class StatisticsViewTest {
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	@Theory
+	public void wrap_readsTheWrittenStatisticsInPlace() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		recorder.recordSuccesses(6L);
+		recorder.recordTimedSuccess(TimeUnit.MILLISECONDS.toNanos(30L));
+		recorder.recordTimedSuccess(TimeUnit.MILLISECONDS.toNanos(10L));
+		recorder.recordError(new IOException());
+		recorder.recordError(new IOException());
+		recorder.recordError(new IllegalStateException());
+		recorder.recordUnattributedErrors(1L);
+		recorder.recordOutcome(OutcomeCategory.REJECTED);
+		final Statistics statistics = recorder.takeSnapshot();
+
+		final ByteBuffer buffer = ByteBuffer.allocate(statistics.getSerializedSize());
+		statistics.writeTo(buffer);
+		assertThat(buffer.hasRemaining()).isFalse();
+
+		final StatisticsView sut = new StatisticsView().wrap(buffer, 0);
+		assertThat(sut.getLength()).isEqualTo(statistics.getSerializedSize());
+		assertThat(sut.getSuccessCount()).isEqualTo(statistics.getSuccessCount());
+		assertThat(sut.getErrorCount()).isEqualTo(statistics.getErrorCount());
+		assertThat(sut.getEventCount()).isEqualTo(statistics.getEventCount());
+		assertThat(sut.getErrorPercent()).isEqualTo(statistics.getErrorPercent());
+		assertThat(sut.getOutcomeCount(OutcomeCategory.REJECTED)).isEqualTo(1L);
+		assertThat(sut.getTimedSuccessCount()).isEqualTo(2L);
+		assertThat(sut.getMaxDurationNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(30L));
+		assertThat(sut.getMeanDurationNanos()).isEqualTo(statistics.getSuccessStatistics().getMeanDurationNanos());
+		assertThat(sut.getUncategorizedErrorCount()).isEqualTo(1L);
+		assertThat(sut.getExceptionTypeCount()).isEqualTo(2);
+		assertThat(sut.getErrorCountForType(IOException.class)).isEqualTo(2L);
+		assertThat(sut.getErrorCountForType(IllegalStateException.class)).isEqualTo(1L);
+		assertThat(sut.getErrorCountForType(IllegalArgumentException.class)).isEqualTo(0L);
+		assertThat(sut.getErrorCountForType("java.io.IOExceptio")).isEqualTo(0L);
+		assertThat(sut.getStartMillis()).isEqualTo(statistics.getTimeRange().getStartMillis());
+		assertThat(sut.getEventsPerSecond()).isEqualTo(statistics.getEventsPerSecond());
+	}
+
+	@Theory
+	public void wrap_stepsThroughConsecutiveRecords() {
+		final ByteBuffer buffer = ByteBuffer.allocate(4096);
+		for (long successes = 1L; successes <= 5L; successes++) {
+			final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+			recorder.recordSuccesses(successes);
+			for (long error = 0L; error < successes; error++) {
+				recorder.recordError(new IOException());
+			}
+			recorder.takeSnapshot().writeTo(buffer);
+		}
+
+		final StatisticsView sut = new StatisticsView();
+		long totalErrors = 0L;
+		int offset = 0;
+		for (int record = 0; record < 5; record++) {
+			sut.wrap(buffer, offset);
+			assertThat(sut.getSuccessCount()).isEqualTo(record + 1L);
+			totalErrors += sut.getErrorCountForType(IOException.class);
+			offset += sut.getLength();
+		}
+		assertThat(offset).isEqualTo(buffer.position());
+		assertThat(totalErrors).isEqualTo(15L);
+	}
+
+	@Theory
+	public void wrap_readsErrorCategoriesWithNamesOutsideOfAscii() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newBuilder()
+				.withExceptionClassifier(ExceptionClassifier.newBuilder()
+						.classifyType(IOException.class, "entr\u00E9e/sortie")
+						.classifyType(IllegalStateException.class, "\uD83D\uDD25 \u00E9tat")
+						.build())
+				.build();
+		recorder.recordError(new IOException());
+		recorder.recordError(new IOException());
+		recorder.recordError(new IllegalStateException());
+		final Statistics statistics = recorder.takeSnapshot();
+		final ByteBuffer buffer = ByteBuffer.allocate(statistics.getSerializedSize());
+		statistics.writeTo(buffer);
+
+		final StatisticsView sut = new StatisticsView().wrap(buffer, 0);
+		assertThat(sut.getErrorCountForType(IOException.class)).isEqualTo(2L);
+		assertThat(sut.getErrorCategoryCount("entr\u00E9e/sortie")).isEqualTo(2L);
+		assertThat(sut.getErrorCategoryCount("\uD83D\uDD25 \u00E9tat")).isEqualTo(1L);
+		assertThat(sut.getErrorCategoryCount("entr\u00E9e")).isEqualTo(0L);
+		assertThat(sut.getErrorCategoryCount("entr\u00E9e/sortie/")).isEqualTo(0L);
+		assertThat(sut.getErrorCategoryCount("entree/sortie")).isEqualTo(0L);
+	}
+
+	@Theory
+	public void wrap_rejectsTruncatedRecords() {
+		final Statistics statistics = StatisticsRecorder.newRecorder().takeSnapshot();
+		final ByteBuffer buffer = ByteBuffer.allocate(statistics.getSerializedSize());
+		statistics.writeTo(buffer);
+		buffer.limit(buffer.limit() - 1);
+
+		expected.expect(IllegalArgumentException.class);
+		new StatisticsView().wrap(buffer, 0);
+	}
+}
@@ -50,6 +50,35 @@ public final class SuccessStatisticsTest {
 		assertThat(merged.getSuccessCount()).isEqualTo(firstStatsSuccessCount + secondStatsSuccessCount);
 	}
 
+	@Theory
+	public void mergeWith_mergingTimedStatsCombinesDurations() {
+		final QuantileSketch.Accumulator firstLatency = new QuantileSketch.Accumulator(0.01, 2048);
+		firstLatency.add(20L);
+		firstLatency.add(80L);
+		final QuantileSketch.Accumulator secondLatency = new QuantileSketch.Accumulator(0.01, 2048);
+		secondLatency.add(10L);
+		secondLatency.add(20L);
+		secondLatency.add(30L);
+		final SuccessStatistics first = SuccessStatistics.forSuccesses(5L, firstLatency.snapshot());
+		final SuccessStatistics second = SuccessStatistics.forSuccesses(3L, secondLatency.snapshot());
+
+		final SuccessStatistics merged = first.mergeWith(second);
+		assertThat(merged.getSuccessCount()).isEqualTo(8L);
+		assertThat(merged.getTimedSuccessCount()).isEqualTo(5L);
+		assertThat(merged.getTotalDurationNanos()).isEqualTo(160L);
+		assertThat(merged.getMaxDurationNanos()).isEqualTo(80L);
+		assertThat(merged.getMeanDurationNanos()).isEqualTo(32.0);
+	}
+
+	@Theory
+	public void forSuccesses_moreTimedThanTotalThrowsIllegalArgumentException() {
+		final QuantileSketch.Accumulator latency = new QuantileSketch.Accumulator(0.01, 2048);
+		latency.add(1L);
+		latency.add(2L);
+		expected.expect(IllegalArgumentException.class);
+		SuccessStatistics.forSuccesses(1L, latency.snapshot());
+	}
+
 	@Theory
 	public void constructor_negativeValueThrowsIllegalArgumentException(@FromDataPoints(DATA_POINTS__INVALID_VALUES) final long invalidSuccessCount) {
 		expected.expect(IllegalArgumentException.class);
@@ -81,4 +110,10 @@ public final class SuccessStatisticsTest {
 		assertThat(stats.getSuccessCount()).isEqualTo(0L);
 	}
 
-}
\ No newline at end of file
+
+	@Theory
+	public void withTimeRange_nullThrowsIllegalArgumentException() {
+		expected.expect(IllegalArgumentException.class);
+		SuccessStatistics.empty().withTimeRange(null);
+	}
+}
@@ -0,0 +1,142 @@
+package com.paloski.statistics;
+
+import org.junit.Rule;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(Theories.class)
+public final class TenantRecorderCacheTest {
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	@Theory
+	public void getRecorder_returnsSameRecorderForTenant() {
+		final TenantRecorderCache<String> sut = TenantRecorderCache.<String>newBuilder().build();
+		final StatisticsRecorder recorder = sut.getRecorder("tenant");
+
+		assertThat(sut.getRecorder("tenant")).isSameAs(recorder);
+		assertThat(sut.getIfPresent("tenant")).isSameAs(recorder);
+		assertThat(sut.getIfPresent("other")).isNull();
+		assertThat(sut.getTenants()).containsExactly("tenant");
+	}
+
+	@Theory
+	public void getRecorder_evictsLeastRecentlyUsedBeyondMaximumSize() {
+		final List<String> evicted = new ArrayList<>();
+		final TenantRecorderCache<String> sut = TenantRecorderCache.<String>newBuilder()
+				.withMaximumSize(2)
+				.withEvictionListener((tenant, statistics) -> evicted.add(tenant))
+				.build();
+		sut.getRecorder("first").recordSuccess();
+		sut.getRecorder("second").recordSuccess();
+		sut.getRecorder("first");
+		sut.getRecorder("third");
+
+		assertThat(evicted).containsExactly("second");
+		assertThat(sut.getTenants()).containsOnly("first", "third");
+		assertThat(sut.getRecorder("second").takeSnapshot().getSuccessCount()).isEqualTo(0L);
+	}
+
+	@Theory
+	public void getRecorder_keepsRecentlyUsedRecordersAsOthersAreEvicted() {
+		final TenantRecorderCache<Integer> sut = TenantRecorderCache.<Integer>newBuilder()
+				.withMaximumSize(3)
+				.build();
+		for (int tenant = 0; tenant < 100; tenant++) {
+			sut.getRecorder(-1).recordSuccess();
+			sut.getRecorder(tenant).recordSuccess();
+		}
+
+		assertThat(sut.size()).isEqualTo(3);
+		assertThat(sut.getTenants()).contains(-1, 99);
+		assertThat(sut.getRecorder(-1).takeSnapshot().getSuccessCount()).isEqualTo(100L);
+		assertThat(sut.takeSnapshot().getSuccessCount()).isEqualTo(200L);
+	}
+
+	@Theory
+	public void record_evictionFlushesOnceRunningRecordingsFinish() {
+		final List<Statistics> flushed = new ArrayList<>();
+		final TenantRecorderCache<String> sut = TenantRecorderCache.<String>newBuilder()
+				.withEvictionListener((tenant, statistics) -> flushed.add(statistics))
+				.build();
+		sut.record("tenant", recorder -> {
+			assertThat(sut.evict("tenant")).isTrue();
+			assertThat(flushed).isEmpty();
+			recorder.recordSuccess();
+		});
+
+		assertThat(flushed).hasSize(1);
+		assertThat(flushed.get(0).getSuccessCount()).isEqualTo(1L);
+		sut.record("tenant", StatisticsRecorder::recordSuccess);
+		assertThat(sut.getRecorder("tenant").takeSnapshot().getSuccessCount()).isEqualTo(1L);
+		assertThat(sut.takeSnapshot().getSuccessCount()).isEqualTo(2L);
+	}
+
+	@Theory
+	public void record_recordersBeingRecordedIntoAreNotEvictedForSize() {
+		final List<String> evicted = new ArrayList<>();
+		final TenantRecorderCache<String> sut = TenantRecorderCache.<String>newBuilder()
+				.withMaximumSize(1)
+				.withEvictionListener((tenant, statistics) -> evicted.add(tenant))
+				.build();
+		sut.record("first", recorder -> {
+			sut.getRecorder("second").recordSuccess();
+			recorder.recordSuccess();
+		});
+
+		assertThat(evicted).isEmpty();
+		assertThat(sut.size()).isEqualTo(2);
+		sut.getRecorder("third");
+		assertThat(sut.size()).isEqualTo(1);
+		assertThat(sut.takeSnapshot().getSuccessCount()).isEqualTo(2L);
+	}
+
+	@Theory
+	public void evictIdle_evictsOnlyIdleRecordersAndKeepsTheirStatistics() {
+		final TenantRecorderCache<String> sut = TenantRecorderCache.<String>newBuilder()
+				.withIdleTimeout(1L, TimeUnit.MINUTES)
+				.build();
+		sut.getRecorder("idle").recordError(new IOException());
+		final long later = System.nanoTime() + TimeUnit.MINUTES.toNanos(2L);
+
+		assertThat(sut.evictIdle()).isEqualTo(0);
+		assertThat(sut.evictIdle(later)).isEqualTo(1);
+		assertThat(sut.size()).isEqualTo(0);
+		assertThat(sut.getEvictedStatistics().getErrorStatistics().getCountOfExceptionTypes()).containsEntry(IOException.class, 1L);
+
+		sut.getRecorder("active").recordSuccess();
+		final Statistics total = sut.takeSnapshot();
+		assertThat(total.getSuccessCount()).isEqualTo(1L);
+		assertThat(total.getErrorCount()).isEqualTo(1L);
+	}
+
+	@Theory
+	public void evict_flushesFinalStatisticsToListener() {
+		final List<Statistics> flushed = new ArrayList<>();
+		final TenantRecorderCache<Integer> sut = TenantRecorderCache.<Integer>newBuilder()
+				.withEvictionListener((tenant, statistics) -> flushed.add(statistics))
+				.build();
+		sut.getRecorder(7).recordSuccesses(3L);
+
+		assertThat(sut.evict(7)).isTrue();
+		assertThat(sut.evict(7)).isFalse();
+		assertThat(flushed).hasSize(1);
+		assertThat(flushed.get(0).getSuccessCount()).isEqualTo(3L);
+	}
+
+	@Theory
+	public void newBuilder_nonPositiveMaximumSizeIsRejected() {
+		expected.expect(IllegalArgumentException.class);
+		TenantRecorderCache.newBuilder().withMaximumSize(0);
+	}
+}
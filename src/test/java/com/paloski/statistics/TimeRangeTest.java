@@ -0,0 +1,101 @@
+package com.paloski.statistics;
+
+import org.junit.Rule;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.FromDataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@RunWith(Theories.class)
+public final class TimeRangeTest {
+
+	public static final String DATA_POINTS__START_NANOS = "Data-Points::start-nanos";
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1L);
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	@DataPoints(DATA_POINTS__START_NANOS)
+	public static List<Long> getStartNanos() {
+		// Includes a start where the monotonic clock wraps around
+		return Arrays.asList(0L, 123456789L, Long.MAX_VALUE - SECOND);
+	}
+
+	@Theory
+	public void mergeWith_adjacentRangesCoverBoth(@FromDataPoints(DATA_POINTS__START_NANOS) final Long start) {
+		final TimeRange first = range(start, 0L, 10L);
+		final TimeRange second = range(start, 10L, 30L);
+
+		final TimeRange merged = first.mergeWith(second);
+		assertThat(merged.getDurationNanos()).isEqualTo(30L * SECOND);
+		assertThat(merged.getActiveNanos()).isEqualTo(30L * SECOND);
+		assertThat(merged.getStartMillis()).isEqualTo(0L);
+		assertThat(merged.getEndMillis()).isEqualTo(30000L);
+		assertThat(merged).isEqualTo(second.mergeWith(first));
+	}
+
+	@Theory
+	public void mergeWith_concurrentRangesCoverTheTimeTheyRan(@FromDataPoints(DATA_POINTS__START_NANOS) final Long start) {
+		final TimeRange first = range(start, 0L, 10L);
+		final TimeRange second = range(start, 5L, 12L);
+
+		final TimeRange merged = first.mergeWith(second);
+		assertThat(merged.getActiveNanos()).isEqualTo(12L * SECOND);
+		// Two shards each recording 100 events over the same 10 seconds record 20 events a second
+		assertThat(first.mergeWith(range(start, 0L, 10L)).getRatePerSecond(200L)).isCloseTo(20.0, within(1e-9));
+	}
+
+	@Theory
+	public void mergeWith_gapsAreNotActive(@FromDataPoints(DATA_POINTS__START_NANOS) final Long start) {
+		final TimeRange merged = range(start, 0L, 10L).mergeWith(range(start, 20L, 30L));
+		assertThat(merged.getDurationNanos()).isEqualTo(30L * SECOND);
+		assertThat(merged.getActiveNanos()).isEqualTo(20L * SECOND);
+		assertThat(merged.getRatePerSecond(40L)).isCloseTo(2.0, within(1e-9));
+	}
+
+	@Theory
+	public void mergeWith_unknownRangeIsIdentity(@FromDataPoints(DATA_POINTS__START_NANOS) final Long start) {
+		final TimeRange range = range(start, 0L, 10L);
+		assertThat(range.mergeWith(TimeRange.unknown())).isSameAs(range);
+		assertThat(TimeRange.unknown().mergeWith(range)).isSameAs(range);
+		assertThat(TimeRange.unknown().isKnown()).isFalse();
+		assertThat(TimeRange.unknown().getRatePerSecond(10L)).isEqualTo(0.0);
+	}
+
+	@Theory
+	public void between_endBeforeStartThrowsIllegalArgumentException() {
+		expected.expect(IllegalArgumentException.class);
+		TimeRange.between(10L, 0L, 5L, 0L);
+	}
+
+	@Theory
+	public void takeSnapshot_isStampedWithTheTimeOfRecording() throws Exception {
+		final long before = System.currentTimeMillis();
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		recorder.recordSuccess();
+		recorder.recordError();
+		Thread.sleep(5L);
+
+		final Statistics snapshot = recorder.takeSnapshot();
+		assertThat(snapshot.getTimeRange().isKnown()).isTrue();
+		assertThat(snapshot.getTimeRange().getStartMillis()).isGreaterThanOrEqualTo(before);
+		assertThat(snapshot.getTimeRange().getActiveNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(5L));
+		assertThat(snapshot.getEventsPerSecond()).isCloseTo(snapshot.getSuccessesPerSecond() * 2, within(1e-6));
+		assertThat(snapshot.getErrorStatistics().getErrorsPerSecond()).isEqualTo(snapshot.getErrorsPerSecond());
+	}
+
+	private static TimeRange range(final long startNanos, final long fromSecond, final long toSecond) {
+		return TimeRange.between(startNanos + fromSecond * SECOND, fromSecond * 1000L,
+								 startNanos + toSecond * SECOND, toSecond * 1000L);
+	}
+}
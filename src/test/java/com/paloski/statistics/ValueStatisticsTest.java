@@ -0,0 +1,145 @@
+package com.paloski.statistics;
+
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.FromDataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@RunWith(Theories.class)
+public final class ValueStatisticsTest {
+
+	public static final String DATA_POINTS__VALUES = "Data-Points::values";
+	public static final String DATA_POINTS__SPLITS = "Data-Points::splits";
+
+	@DataPoints(DATA_POINTS__VALUES)
+	public static List<long[]> getValues() {
+		return Arrays.asList(new long[]{5L},
+							 new long[]{1L, 2L, 3L, 4L, 5L},
+							 new long[]{-10L, 0L, 10L, 1000L},
+							 new long[]{1000000000000L, 1000000000001L, 1000000000002L, 1000000000003L});
+	}
+
+	@DataPoints(DATA_POINTS__SPLITS)
+	public static List<Integer> getSplits() {
+		return Arrays.asList(0, 1, 2);
+	}
+
+	private static double mean(final long[] values) {
+		double sum = 0.0;
+		for (final long value : values) {
+			sum += value;
+		}
+		return sum / values.length;
+	}
+
+	private static double variance(final long[] values) {
+		final double mean = mean(values);
+		double sum = 0.0;
+		for (final long value : values) {
+			sum += (value - mean) * (value - mean);
+		}
+		return sum / values.length;
+	}
+
+	@Theory
+	public void snapshot_computesAggregatesOfValues(@FromDataPoints(DATA_POINTS__VALUES) final long[] values) {
+		final ValueStatistics.Accumulator accumulator = new ValueStatistics.Accumulator();
+		for (final long value : values) {
+			accumulator.add(value);
+		}
+
+		final ValueStatistics stats = accumulator.snapshot();
+		assertThat(stats.getCount()).isEqualTo(values.length);
+		assertThat(stats.getSum()).isEqualTo(Arrays.stream(values).sum());
+		assertThat(stats.getMin()).isEqualTo(Arrays.stream(values).min().getAsLong());
+		assertThat(stats.getMax()).isEqualTo(Arrays.stream(values).max().getAsLong());
+		assertThat(stats.getMean()).isCloseTo(mean(values), within(1e-6));
+		assertThat(stats.getVariance()).isCloseTo(variance(values), within(1e-6));
+	}
+
+	@Theory
+	public void mergeWith_isEquivalentToRecordingEveryValue(@FromDataPoints(DATA_POINTS__VALUES) final long[] values,
+															@FromDataPoints(DATA_POINTS__SPLITS) final Integer split) {
+		final int index = Math.min(split, values.length);
+		final ValueStatistics.Accumulator first = new ValueStatistics.Accumulator();
+		final ValueStatistics.Accumulator second = new ValueStatistics.Accumulator();
+		for (int x = 0; x < values.length; x++) {
+			(x < index ? first : second).add(values[x]);
+		}
+
+		final ValueStatistics merged = first.snapshot().mergeWith(second.snapshot());
+		assertThat(merged.getCount()).isEqualTo(values.length);
+		assertThat(merged.getSum()).isEqualTo(Arrays.stream(values).sum());
+		assertThat(merged.getMin()).isEqualTo(Arrays.stream(values).min().getAsLong());
+		assertThat(merged.getMax()).isEqualTo(Arrays.stream(values).max().getAsLong());
+		assertThat(merged.getVariance()).isCloseTo(variance(values), within(1e-6));
+	}
+
+	@Theory
+	public void empty_hasNoValues() {
+		final ValueStatistics empty = ValueStatistics.empty();
+
+		assertThat(empty.getCount()).isEqualTo(0L);
+		assertThat(empty.getMean()).isEqualTo(0.0);
+		assertThat(empty.getVariance()).isEqualTo(0.0);
+		assertThat(empty.mergeWith(empty)).isSameAs(empty);
+	}
+
+	@Theory
+	public void recordSuccess_valuesAreCountedAsSuccesses(@FromDataPoints(DATA_POINTS__VALUES) final long[] values) {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		recorder.recordSuccess();
+		for (final long value : values) {
+			recorder.recordSuccess(value);
+		}
+
+		final SuccessStatistics stats = recorder.takeSnapshot().getSuccessStatistics();
+		assertThat(stats.getSuccessCount()).isEqualTo(values.length + 1L);
+		assertThat(stats.getValueStatistics().getCount()).isEqualTo(values.length);
+		assertThat(stats.getValueStatistics().getSum()).isEqualTo(Arrays.stream(values).sum());
+
+		final StatisticsRecorder seeded = StatisticsRecorder.newSeededRecorder(recorder.takeSnapshot());
+		seeded.recordSuccess(values[0]);
+		final SuccessStatistics seededStats = seeded.takeSnapshot().getSuccessStatistics();
+		assertThat(seededStats.getSuccessCount()).isEqualTo(values.length + 2L);
+		assertThat(seededStats.getValueStatistics().getSum()).isEqualTo(Arrays.stream(values).sum() + values[0]);
+	}
+
+	@Theory
+	public void recordSuccess_concurrentValuesAreAllRecorded() throws InterruptedException {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final ExecutorService service = Executors.newFixedThreadPool(4);
+		try {
+			for (int thread = 0; thread < 4; thread++) {
+				service.execute(() -> {
+					for (long value = 1L; value <= 10000L; value++) {
+						recorder.recordSuccess(value);
+					}
+				});
+			}
+			service.shutdown();
+			assertThat(service.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+		} finally {
+			service.shutdownNow();
+		}
+
+		final ValueStatistics values = recorder.takeSnapshot().getSuccessStatistics().getValueStatistics();
+		assertThat(values.getCount()).isEqualTo(40000L);
+		assertThat(values.getSum()).isEqualTo(4L * 10000L * 10001L / 2L);
+		assertThat(values.getMin()).isEqualTo(1L);
+		assertThat(values.getMax()).isEqualTo(10000L);
+		assertThat(values.getMean()).isCloseTo(5000.5, within(1e-6));
+		//The variance of the integers 1 through n is (n^2 - 1) / 12
+		assertThat(values.getVariance()).isCloseTo((10000.0 * 10000.0 - 1.0) / 12.0, within(1e-3));
+	}
+}
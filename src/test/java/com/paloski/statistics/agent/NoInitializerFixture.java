@@ -0,0 +1,16 @@
+package com.paloski.statistics.agent;
+
+import com.paloski.annotation.Recorded;
+
+/**
+ * A class without a static initializer that is woven by {@link RecordingTransformerTest}.
+ */
+public class NoInitializerFixture {
+
+	public static final String RECORDER = "RecordingTransformerTest::no-initializer";
+
+	@Recorded(RECORDER)
+	public Object identity(final Object value) {
+		return value;
+	}
+}
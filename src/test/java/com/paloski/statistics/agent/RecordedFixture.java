@@ -0,0 +1,67 @@
+package com.paloski.statistics.agent;
+
+import com.paloski.annotation.Recorded;
+
+import java.io.IOException;
+
+/**
+ * Methods that are woven by {@link RecordingTransformerTest}.
+ */
+public class RecordedFixture {
+
+	public static final String RECORDER = "RecordingTransformerTest::fixture";
+	public static final String OTHER_RECORDER = "RecordingTransformerTest::other";
+
+	private static final String PREFIX;
+
+	static {
+		PREFIX = "value-";
+	}
+
+	@Recorded(RECORDER)
+	public String describe(final int value) {
+		return PREFIX + value;
+	}
+
+	@Recorded(RECORDER)
+	public long sum(final long[] values) {
+		long total = 0L;
+		for (final long value : values) {
+			if (value < 0L) {
+				return -1L;
+			}
+			total += value;
+		}
+		return total;
+	}
+
+	@Recorded(RECORDER)
+	public void fail(final boolean checked) throws IOException {
+		if (checked) {
+			throw new IOException();
+		}
+		throw new IllegalStateException();
+	}
+
+	@Recorded(OTHER_RECORDER)
+	public int recover(final String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (final NumberFormatException exp) {
+			return -1;
+		}
+	}
+
+	@Recorded(OTHER_RECORDER)
+	private static double half(final double value) {
+		return value / 2.0;
+	}
+
+	public static double callHalf(final double value) {
+		return half(value);
+	}
+
+	public int unrecorded() {
+		return 1;
+	}
+}
@@ -0,0 +1,167 @@
+package com.paloski.statistics.agent;
+
+import com.paloski.statistics.RecorderRegistry;
+import com.paloski.statistics.Statistics;
+import com.paloski.statistics.concurrent.StatsRecordingCallable;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public final class RecordingTransformerTest {
+
+	private final RecordingTransformer mTransformer = new RecordingTransformer();
+
+	@Test
+	public void weave_recordsReturnsAndFailures() throws Exception {
+		final Class<?> woven = weave(RecordedFixture.class);
+		final Object fixture = woven.newInstance();
+
+		assertThat(invoke(fixture, "describe", new Class<?>[]{int.class}, 3)).isEqualTo("value-3");
+		assertThat(invoke(fixture, "sum", new Class<?>[]{long[].class}, (Object) new long[]{1L, 2L})).isEqualTo(3L);
+		assertThat(invoke(fixture, "sum", new Class<?>[]{long[].class}, (Object) new long[]{1L, -2L})).isEqualTo(-1L);
+		assertThat(invoke(fixture, "unrecorded", new Class<?>[0])).isEqualTo(1);
+		assertThrows(fixture, true, IOException.class);
+		assertThrows(fixture, false, IllegalStateException.class);
+
+		final Statistics stats = RecorderRegistry.getRecorder(RecordedFixture.RECORDER).takeSnapshot();
+		assertThat(stats.getSuccessCount()).isEqualTo(3L);
+		assertThat(stats.getSuccessStatistics().getLatencySketch().getCount()).isEqualTo(3L);
+		assertThat(stats.getErrorStatistics().getCountOfExceptionTypes()).containsEntry(IOException.class, 1L)
+																		 .containsEntry(IllegalStateException.class, 1L);
+	}
+
+	@Test
+	public void weave_handlersOfTheMethodTakePrecedence() throws Exception {
+		final Class<?> woven = weave(RecordedFixture.class);
+		final Object fixture = woven.newInstance();
+
+		assertThat(invoke(fixture, "recover", new Class<?>[]{String.class}, "12")).isEqualTo(12);
+		assertThat(invoke(fixture, "recover", new Class<?>[]{String.class}, "twelve")).isEqualTo(-1);
+		assertThat(invoke(null, woven.getMethod("callHalf", double.class), 3.0)).isEqualTo(1.5);
+
+		final Statistics stats = RecorderRegistry.getRecorder(RecordedFixture.OTHER_RECORDER).takeSnapshot();
+		assertThat(stats.getSuccessCount()).isGreaterThanOrEqualTo(3L);
+		assertThat(stats.getErrorCount()).isEqualTo(0L);
+	}
+
+	@Test
+	public void weave_recordingReturnsIsNotCoveredByTheFailureHandler() throws IOException {
+		final byte[] woven = mTransformer.weave(getClass().getClassLoader(), readClass(RecordedFixture.class));
+		final List<String> returns = new ArrayList<>();
+		new ClassReader(woven).accept(new ClassVisitor(Opcodes.ASM9) {
+			@Override
+			public MethodVisitor visitMethod(final int access, final String name, final String descriptor,
+											 final String signature, final String[] exceptions) {
+				return new MethodVisitor(Opcodes.ASM9) {
+					private final List<Label> mRanges = new ArrayList<>();
+					private final Set<Label> mOpen = new HashSet<>();
+
+					@Override
+					public void visitTryCatchBlock(final Label start, final Label end, final Label handler, final String type) {
+						if ("java/lang/Throwable".equals(type)) {
+							mRanges.add(start);
+							mRanges.add(end);
+						}
+					}
+
+					@Override
+					public void visitLabel(final Label label) {
+						for (int i = 0; i < mRanges.size(); i += 2) {
+							if (mRanges.get(i + 1) == label) {
+								mOpen.remove(mRanges.get(i));
+							} else if (mRanges.get(i) == label) {
+								mOpen.add(label);
+							}
+						}
+					}
+
+					@Override
+					public void visitMethodInsn(final int opcode, final String owner, final String method,
+												final String methodDescriptor, final boolean isInterface) {
+						if ("returned".equals(method)) {
+							assertThat(mOpen).as("Handler ranges covering the return of " + name).isEmpty();
+							returns.add(name);
+						}
+					}
+				};
+			}
+		}, 0);
+
+		assertThat(returns).contains("describe", "sum", "recover", "half");
+	}
+
+	@Test
+	public void weave_addsStaticInitializerWhenMissing() throws Exception {
+		final Class<?> woven = weave(NoInitializerFixture.class);
+		final Object fixture = woven.newInstance();
+
+		assertThat(invoke(fixture, "identity", new Class<?>[]{Object.class}, "x")).isEqualTo("x");
+		assertThat(RecorderRegistry.getRecorder(NoInitializerFixture.RECORDER).takeSnapshot().getSuccessCount()).isEqualTo(1L);
+	}
+
+	@Test
+	public void weave_classWithoutRecordedMethodsIsUnchanged() throws IOException {
+		assertThat(mTransformer.weave(getClass().getClassLoader(), readClass(StatsRecordingCallable.class))).isNull();
+		assertThat(mTransformer.weave(getClass().getClassLoader(), readClass(Runnable.class))).isNull();
+	}
+
+	private Class<?> weave(final Class<?> type) throws IOException, ClassNotFoundException {
+		final byte[] woven = mTransformer.weave(type.getClassLoader(), readClass(type));
+		assertThat(woven).isNotNull();
+		return new ClassLoader(type.getClassLoader()) {
+			{
+				defineClass(type.getName(), woven, 0, woven.length);
+			}
+		}.loadClass(type.getName());
+	}
+
+	private static byte[] readClass(final Class<?> type) throws IOException {
+		try (final InputStream in = ClassLoader.getSystemResourceAsStream(type.getName().replace('.', '/') + ".class")) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	private static Object invoke(final Object target, final String name, final Class<?>[] parameterTypes,
+								 final Object... arguments) throws Exception {
+		return invoke(target, target.getClass().getMethod(name, parameterTypes), arguments);
+	}
+
+	private static Object invoke(final Object target, final Method method, final Object... arguments) throws Exception {
+		try {
+			return method.invoke(target, arguments);
+		} catch (final InvocationTargetException exp) {
+			throw (Exception) exp.getCause();
+		}
+	}
+
+	private static void assertThrows(final Object fixture, final boolean checked, final Class<? extends Exception> expected) {
+		try {
+			invoke(fixture, "fail", new Class<?>[]{boolean.class}, checked);
+			fail("Method should have thrown " + expected);
+		} catch (final Exception exp) {
+			assertThat(exp).isInstanceOf(expected);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package com.paloski.statistics.concurrent;
+
+import com.paloski.statistics.ExceptionClassifier;
+import com.paloski.statistics.OutcomeCategory;
+import com.paloski.statistics.Statistics;
+import com.paloski.statistics.StatisticsRecorder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class AsyncStatisticsRecorderTest {
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	@Test
+	public void drain_recordsEveryKindOfEventIntoRecorder() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final AsyncStatisticsRecorder sut = new AsyncStatisticsRecorder(recorder, 16, AsyncStatisticsRecorder.OverflowPolicy.DROP, false);
+		sut.recordSuccess();
+		sut.recordTimedSuccess(100L);
+		sut.recordError(new IOException());
+		sut.recordError();
+		sut.recordOutcome(OutcomeCategory.CANCELLED);
+		sut.recordFailure(new TimeoutException());
+		assertThat(recorder.takeSnapshot().getSuccessCount()).isEqualTo(0L);
+
+		assertThat(sut.drain()).isEqualTo(6);
+		final Statistics stats = recorder.takeSnapshot();
+		assertThat(stats.getSuccessCount()).isEqualTo(2L);
+		assertThat(stats.getSuccessStatistics().getTimedSuccessCount()).isEqualTo(1L);
+		assertThat(stats.getErrorCount()).isEqualTo(2L);
+		assertThat(stats.getErrorStatistics().getCountOfExceptionTypes()).containsEntry(IOException.class, 1L);
+		assertThat(stats.getCancelledCount()).isEqualTo(1L);
+		assertThat(stats.getTimedOutCount()).isEqualTo(1L);
+		assertThat(sut.drain()).isEqualTo(0);
+	}
+
+	@Test
+	public void recordSuccess_dropsAndCountsEventsWhenFull() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final AsyncStatisticsRecorder sut = new AsyncStatisticsRecorder(recorder, 3, AsyncStatisticsRecorder.OverflowPolicy.DROP, false);
+		for (int count = 0; count < 6; count++) {
+			sut.recordSuccess();
+		}
+		assertThat(sut.getDroppedCount()).isEqualTo(2L);
+
+		sut.close();
+		assertThat(recorder.takeSnapshot().getSuccessCount()).isEqualTo(4L);
+		sut.recordSuccess();
+		assertThat(sut.getDroppedCount()).isEqualTo(3L);
+		assertThat(recorder.takeSnapshot().getSuccessCount()).isEqualTo(4L);
+	}
+
+	@Test(timeout = 10000L)
+	public void recordSuccess_afterCloseUnderSpinIsRecordedByThePublisher() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final AsyncStatisticsRecorder sut = AsyncStatisticsRecorder.start(recorder, 2, AsyncStatisticsRecorder.OverflowPolicy.SPIN);
+		sut.recordSuccess();
+		sut.close();
+		for (int count = 0; count < 10; count++) {
+			sut.recordSuccess();
+		}
+
+		assertThat(recorder.takeSnapshot().getSuccessCount()).isEqualTo(11L);
+		assertThat(sut.getDroppedCount()).isEqualTo(0L);
+	}
+
+	@Test(timeout = 10000L)
+	public void aggregate_keepsDrainingWhenTheRecorderThrows() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newBuilder()
+				.withExceptionClassifier(ExceptionClassifier.newBuilder()
+						.classifyMatching(type -> {
+							if (type == IllegalStateException.class) {
+								throw new UnsupportedOperationException();
+							}
+							return false;
+						}, "unreachable")
+						.build())
+				.build();
+		final AsyncStatisticsRecorder sut = AsyncStatisticsRecorder.start(recorder, 2, AsyncStatisticsRecorder.OverflowPolicy.SPIN);
+		sut.recordError(new IllegalStateException());
+		for (int count = 0; count < 100; count++) {
+			sut.recordSuccess();
+		}
+		sut.recordError(new IOException());
+		sut.close();
+
+		final Statistics stats = recorder.takeSnapshot();
+		assertThat(sut.getFailedCount()).isEqualTo(1L);
+		assertThat(stats.getSuccessCount()).isEqualTo(100L);
+		assertThat(stats.getErrorCount()).isEqualTo(1L);
+	}
+
+	@Test
+	public void close_recordsEveryEventPublishedBeforeIt() throws Exception {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final AsyncStatisticsRecorder sut = AsyncStatisticsRecorder.start(recorder, 64, AsyncStatisticsRecorder.OverflowPolicy.SPIN);
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int thread = 0; thread < 4; thread++) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						for (int count = 0; count < 10000; count++) {
+							sut.recordSuccess();
+							sut.recordError(new IllegalStateException());
+						}
+					}
+				}));
+			}
+			for (final Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		sut.close();
+
+		final Statistics stats = recorder.takeSnapshot();
+		assertThat(stats.getSuccessCount()).isEqualTo(40000L);
+		assertThat(stats.getErrorCount()).isEqualTo(40000L);
+		assertThat(sut.getDroppedCount()).isEqualTo(0L);
+	}
+
+	@Test
+	public void start_nonPositiveCapacityIsRejected() {
+		expected.expect(IllegalArgumentException.class);
+		AsyncStatisticsRecorder.start(StatisticsRecorder.newRecorder(), 0, AsyncStatisticsRecorder.OverflowPolicy.DROP);
+	}
+}
@@ -0,0 +1,136 @@
+package com.paloski.statistics.concurrent;
+
+import com.paloski.statistics.Statistics;
+import com.paloski.statistics.StatisticsRecorder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public final class DeadlineCallableTest {
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	private ExecutorService mExecutor;
+
+	@Before
+	public void createExecutor() {
+		mExecutor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void shutdownExecutor() {
+		mExecutor.shutdownNow();
+	}
+
+	@Test
+	public void call_recordsSuccessWithinBudget() throws Exception {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final DeadlineCallable<String> sut = DeadlineCallable.forCallable(recorder, new Callable<String>() {
+			@Override
+			public String call() {
+				return "done";
+			}
+		}, mExecutor, 1L, TimeUnit.MINUTES);
+
+		assertThat(sut.call()).isEqualTo("done");
+		final Statistics stats = recorder.takeSnapshot();
+		assertThat(stats.getSuccessCount()).isEqualTo(1L);
+		assertThat(stats.getTimedOutCount()).isEqualTo(0L);
+	}
+
+	@Test
+	public void call_recordsTimeoutAndInterruptsCallWhenBudgetExceeded() throws Exception {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		final DeadlineCallable<String> sut = DeadlineCallable.forCallable(recorder, new Callable<String>() {
+			@Override
+			public String call() {
+				try {
+					Thread.sleep(TimeUnit.MINUTES.toMillis(1L));
+				} catch (final InterruptedException exp) {
+					interrupted.countDown();
+				}
+				return "late";
+			}
+		}, mExecutor, 10L, TimeUnit.MILLISECONDS);
+
+		try {
+			sut.call();
+			fail("Call should have timed out");
+		} catch (final TimeoutException exp) {
+			//Expected
+		}
+		assertThat(interrupted.await(1L, TimeUnit.MINUTES)).isTrue();
+		final Statistics stats = recorder.takeSnapshot();
+		assertThat(stats.getTimedOutCount()).isEqualTo(1L);
+		assertThat(stats.getEventCount()).isEqualTo(0L);
+	}
+
+	@Test
+	public void call_recordsErrorOfCallable() throws Exception {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final DeadlineCallable<String> sut = DeadlineCallable.forCallable(recorder, new Callable<String>() {
+			@Override
+			public String call() throws IOException {
+				throw new IOException();
+			}
+		}, mExecutor, 1L, TimeUnit.MINUTES);
+
+		try {
+			sut.call();
+			fail("Call should have thrown");
+		} catch (final IOException exp) {
+			//Expected
+		}
+		final Statistics stats = recorder.takeSnapshot();
+		assertThat(stats.getErrorStatistics().getCountOfExceptionTypes()).containsEntry(IOException.class, 1L);
+		assertThat(stats.getTimedOutCount()).isEqualTo(0L);
+	}
+
+	@Test
+	public void call_recordsRejection() throws Exception {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		mExecutor.shutdown();
+		final DeadlineCallable<String> sut = DeadlineCallable.forCallable(recorder, new Callable<String>() {
+			@Override
+			public String call() {
+				return "never";
+			}
+		}, mExecutor, 1L, TimeUnit.MINUTES);
+
+		try {
+			sut.call();
+			fail("Call should have been rejected");
+		} catch (final RejectedExecutionException exp) {
+			//Expected
+		}
+		assertThat(recorder.takeSnapshot().getRejectedCount()).isEqualTo(1L);
+	}
+
+	@Test
+	public void forCallable_nonPositiveBudgetThrows() {
+		expected.expect(IllegalArgumentException.class);
+		DeadlineCallable.forCallable(StatisticsRecorder.newRecorder(), new Callable<String>() {
+			@Override
+			public String call() {
+				return "";
+			}
+		}, mExecutor, 0L, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,184 @@
+package com.paloski.statistics.concurrent;
+
+import com.paloski.statistics.Statistics;
+import com.paloski.statistics.StatisticsRecorder;
+
+import org.junit.Rule;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.FromDataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+@RunWith(Theories.class)
+public final class RetryingCallableTest {
+
+	public static final String DATA_POINTS__FAILURES = "Data-Points::failures";
+
+	@Rule
+	public ExpectedException expected = ExpectedException.none();
+
+	@DataPoints(DATA_POINTS__FAILURES)
+	public static List<Integer> getFailures() {
+		return Arrays.asList(0, 1, 2, 5);
+	}
+
+	@Theory
+	public void call_recordsAttemptsAndOutcomesSeparately(@FromDataPoints(DATA_POINTS__FAILURES) final Integer failures) throws Exception {
+		final StatisticsRecorder attempts = StatisticsRecorder.newRecorder();
+		final StatisticsRecorder outcomes = StatisticsRecorder.newRecorder();
+		final RetryingCallable<String> sut = RetryingCallable.newBuilder(failingTimes(failures, new IOException()))
+															 .recordingAttemptsInto(attempts)
+															 .recordingOutcomesInto(outcomes)
+															 .withMaxAttempts(3)
+															 .build();
+		try {
+			assertThat(sut.call()).isEqualTo("done");
+			assertThat(failures).isLessThan(3);
+		} catch (final IOException exp) {
+			assertThat(failures).isGreaterThanOrEqualTo(3);
+		}
+
+		final Statistics attemptStats = attempts.takeSnapshot();
+		final Statistics outcomeStats = outcomes.takeSnapshot();
+		assertThat(attemptStats.getErrorCount()).isEqualTo(Math.min(failures, 3));
+		assertThat(attemptStats.getSuccessCount()).isEqualTo(failures < 3 ? 1L : 0L);
+		assertThat(outcomeStats.getEventCount()).isEqualTo(1L);
+		assertThat(outcomeStats.getSuccessCount()).isEqualTo(failures < 3 ? 1L : 0L);
+		assertThat(sut.getRetriesPerCall()[Math.min(failures, 2)]).isEqualTo(1L);
+	}
+
+	@Theory
+	public void call_nonRetryableExceptionsAreNotRetried() throws Exception {
+		final StatisticsRecorder attempts = StatisticsRecorder.newRecorder();
+		final RetryingCallable<String> sut = RetryingCallable.newBuilder(failingTimes(1, new IllegalStateException()))
+															 .recordingAttemptsInto(attempts)
+															 .withClassifier(RetryClassifier.retryOn(IOException.class))
+															 .build();
+		try {
+			sut.call();
+			fail("Expected the call to fail");
+		} catch (final IllegalStateException exp) {
+			assertThat(attempts.takeSnapshot().getErrorCount()).isEqualTo(1L);
+			assertThat(sut.getRetriesPerCall()).containsExactly(1L, 0L, 0L);
+		}
+	}
+
+	@Theory
+	public void callAsync_retriesOnTheScheduler(@FromDataPoints(DATA_POINTS__FAILURES) final Integer failures) throws Exception {
+		final StatisticsRecorder outcomes = StatisticsRecorder.newRecorder();
+		final RetryingCallable<String> sut = RetryingCallable.newBuilder(failingTimes(failures, new IOException()))
+															 .recordingOutcomesInto(outcomes)
+															 .withBackoff(BackoffPolicy.exponentialWithJitter(1L, 4L, TimeUnit.MILLISECONDS))
+															 .withMaxAttempts(4)
+															 .build();
+		final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		try {
+			assertThat(sut.callAsync(executor).get(5L, TimeUnit.SECONDS)).isEqualTo("done");
+			assertThat(failures).isLessThan(4);
+		} catch (final ExecutionException exp) {
+			assertThat(exp.getCause()).isInstanceOf(IOException.class);
+			assertThat(failures).isGreaterThanOrEqualTo(4);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(outcomes.takeSnapshot().getEventCount()).isEqualTo(1L);
+	}
+
+	@Theory
+	public void callAsync_cancelRacingAnAttemptRecordsTheCallOnce() throws Exception {
+		final StatisticsRecorder outcomes = StatisticsRecorder.newRecorder();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(1);
+		final RetryingCallable<String> sut = RetryingCallable.newBuilder(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				started.countDown();
+				release.await();
+				finished.countDown();
+				return "done";
+			}
+		}).recordingOutcomesInto(outcomes).build();
+		final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		try {
+			final Future<String> call = sut.callAsync(executor);
+			started.await();
+			assertThat(call.cancel(false)).isTrue();
+			assertThat(call.cancel(false)).isTrue();
+			release.countDown();
+			finished.await();
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(5L, TimeUnit.SECONDS);
+		}
+
+		final Statistics outcomeStats = outcomes.takeSnapshot();
+		assertThat(outcomeStats.getCancelledCount()).isEqualTo(1L);
+		assertThat(outcomeStats.getSuccessCount()).isEqualTo(0L);
+	}
+
+	@Theory
+	public void callAsync_cancelAfterCompletionIsNotRecorded() throws Exception {
+		final StatisticsRecorder outcomes = StatisticsRecorder.newRecorder();
+		final RetryingCallable<String> sut = RetryingCallable.newBuilder(failingTimes(0, new IOException()))
+															 .recordingOutcomesInto(outcomes)
+															 .build();
+		final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		try {
+			final Future<String> call = sut.callAsync(executor);
+			assertThat(call.get(5L, TimeUnit.SECONDS)).isEqualTo("done");
+			assertThat(call.cancel(true)).isFalse();
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(outcomes.takeSnapshot().getCancelledCount()).isEqualTo(0L);
+		assertThat(outcomes.takeSnapshot().getSuccessCount()).isEqualTo(1L);
+	}
+
+	@Theory
+	public void exponential_delaysDoubleUpToTheMaximum() {
+		final BackoffPolicy backoff = BackoffPolicy.exponential(10L, 50L, TimeUnit.NANOSECONDS);
+		assertThat(backoff.getDelayNanos(1)).isEqualTo(10L);
+		assertThat(backoff.getDelayNanos(2)).isEqualTo(20L);
+		assertThat(backoff.getDelayNanos(3)).isEqualTo(40L);
+		assertThat(backoff.getDelayNanos(4)).isEqualTo(50L);
+		assertThat(backoff.getDelayNanos(100)).isEqualTo(50L);
+		assertThat(BackoffPolicy.exponentialWithJitter(10L, 50L, TimeUnit.NANOSECONDS).getDelayNanos(3)).isBetween(0L, 40L);
+	}
+
+	@Theory
+	public void withMaxAttempts_nonPositiveThrowsIllegalArgumentException() {
+		expected.expect(IllegalArgumentException.class);
+		RetryingCallable.newBuilder(failingTimes(0, new IOException())).withMaxAttempts(0);
+	}
+
+	private static Callable<String> failingTimes(final int failures, final Exception exp) {
+		final AtomicInteger calls = new AtomicInteger();
+		return new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				if (calls.incrementAndGet() <= failures) {
+					throw exp;
+				}
+				return "done";
+			}
+		};
+	}
+}
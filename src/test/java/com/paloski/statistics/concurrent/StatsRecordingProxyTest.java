@@ -0,0 +1,139 @@
+package com.paloski.statistics.concurrent;
+
+import com.paloski.statistics.Statistics;
+
+import org.assertj.core.api.ThrowableAssert;
+import org.junit.Rule;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(Theories.class)
+public final class StatsRecordingProxyTest {
+
+	@DataPoints
+	public static List<Integer> getCallCounts() {
+		return Arrays.asList(0, 1, 5);
+	}
+
+	@Rule
+	public ExpectedException expectedException = ExpectedException.none();
+
+	public interface Service {
+		String echo(String value);
+
+		int add(int first, int second);
+
+		void fail(Exception exp) throws Exception;
+	}
+
+	private static final class ServiceImpl implements Service {
+		@Override
+		public String echo(final String value) {
+			return value;
+		}
+
+		@Override
+		public int add(final int first, final int second) {
+			return first + second;
+		}
+
+		@Override
+		public void fail(final Exception exp) throws Exception {
+			throw exp;
+		}
+
+		@Override
+		public String toString() {
+			return "ServiceImpl";
+		}
+	}
+
+	@Theory
+	public void getProxy_forwardsCallsToTarget() {
+		final Service proxy = StatsRecordingProxy.forInterface(Service.class, new ServiceImpl()).getProxy();
+		assertThat(proxy.echo("value")).isEqualTo("value");
+		assertThat(proxy.add(2, 3)).isEqualTo(5);
+		assertThat(proxy.toString()).isEqualTo("ServiceImpl");
+	}
+
+	@Theory
+	public void getProxy_exceptionsReachCaller() {
+		final Service proxy = StatsRecordingProxy.forInterface(Service.class, new ServiceImpl()).getProxy();
+		final IOException exp = new IOException();
+		assertThatThrownBy(new ThrowableAssert.ThrowingCallable() {
+			@Override
+			public void call() throws Throwable {
+				proxy.fail(exp);
+			}
+		}).isEqualTo(exp);
+	}
+
+	@Theory
+	public void takeSnapshots_eachMethodRecordsIndependently(final Integer echoCalls, final Integer addCalls) throws Exception {
+		final StatsRecordingProxy<Service> sut = StatsRecordingProxy.forInterface(Service.class, new ServiceImpl());
+		for (int count = 0; count < echoCalls; count++) {
+			sut.getProxy().echo("value");
+		}
+		for (int count = 0; count < addCalls; count++) {
+			sut.getProxy().add(1, 1);
+		}
+
+		final Map<Method, Statistics> snapshots = sut.takeSnapshots();
+		final Statistics echo = snapshots.get(Service.class.getMethod("echo", String.class));
+		final Statistics add = snapshots.get(Service.class.getMethod("add", int.class, int.class));
+		assertThat(echo.getSuccessCount()).isEqualTo((long) echoCalls);
+		assertThat(echo.getSuccessStatistics().getTimedSuccessCount()).isEqualTo((long) echoCalls);
+		assertThat(add.getSuccessCount()).isEqualTo((long) addCalls);
+		assertThat(snapshots).hasSize(3);
+	}
+
+	@Theory
+	public void takeSnapshots_errorsAreRecordedByType() throws Exception {
+		final StatsRecordingProxy<Service> sut = StatsRecordingProxy.forInterface(Service.class, new ServiceImpl());
+		try {
+			sut.getProxy().fail(new IOException());
+		} catch (final IOException ignored) {
+		}
+		try {
+			sut.getProxy().fail(new IllegalStateException());
+		} catch (final IllegalStateException ignored) {
+		}
+
+		final Statistics fail = sut.getRecorder(Service.class.getMethod("fail", Exception.class)).takeSnapshot();
+		assertThat(fail.getSuccessCount()).isEqualTo(0L);
+		assertThat(fail.getErrorStatistics().getCountOfExceptionTypes().get(IOException.class)).isEqualTo(1L);
+		assertThat(fail.getErrorStatistics().getCountOfExceptionTypes().get(IllegalStateException.class)).isEqualTo(1L);
+	}
+
+	@Theory
+	public void getRecorder_objectMethodsAreNotRecorded() throws Exception {
+		final StatsRecordingProxy<Service> sut = StatsRecordingProxy.forInterface(Service.class, new ServiceImpl());
+		expectedException.expect(IllegalArgumentException.class);
+		sut.getRecorder(Object.class.getMethod("toString"));
+	}
+
+	@Theory
+	public void forInterface_nonInterfaceFailsFast() {
+		expectedException.expect(IllegalArgumentException.class);
+		StatsRecordingProxy.forInterface(ServiceImpl.class, new ServiceImpl());
+	}
+
+	@Theory
+	public void forInterface_nullTargetFailsFast() {
+		expectedException.expect(IllegalArgumentException.class);
+		expectedException.expectMessage("Target");
+		StatsRecordingProxy.forInterface(Service.class, null);
+	}
+}
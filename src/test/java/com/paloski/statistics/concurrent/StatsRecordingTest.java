@@ -0,0 +1,92 @@
+package com.paloski.statistics.concurrent;
+
+import com.paloski.statistics.Statistics;
+import com.paloski.statistics.StatisticsRecorder;
+
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+@RunWith(Theories.class)
+public final class StatsRecordingTest {
+
+	@DataPoints
+	public static List<RuntimeException> getExceptions() {
+		return Arrays.asList(new IllegalStateException(), new UnsupportedOperationException(), new RuntimeException());
+	}
+
+	@Theory
+	public void helpers_returnResultsAndRecordSuccesses() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final AtomicInteger runs = new AtomicInteger();
+
+		StatsRecording.run(recorder, runs::incrementAndGet);
+		StatsRecording.accept(recorder, (Integer value) -> runs.addAndGet(value), 2);
+		assertThat(runs.get()).isEqualTo(3);
+		assertThat(StatsRecording.get(recorder, () -> "value")).isEqualTo("value");
+		assertThat(StatsRecording.apply(recorder, (String value) -> value.length(), "four")).isEqualTo(4);
+		assertThat(StatsRecording.test(recorder, (String value) -> value.isEmpty(), "x")).isFalse();
+		assertThat(StatsRecording.getAsBoolean(recorder, () -> true)).isTrue();
+		assertThat(StatsRecording.getAsInt(recorder, () -> 7)).isEqualTo(7);
+		assertThat(StatsRecording.getAsLong(recorder, () -> 8L)).isEqualTo(8L);
+		assertThat(StatsRecording.getAsDouble(recorder, () -> 0.5)).isEqualTo(0.5);
+		assertThat(StatsRecording.applyAsInt(recorder, value -> value + 1, 1)).isEqualTo(2);
+		assertThat(StatsRecording.applyAsLong(recorder, value -> value * 2L, 3L)).isEqualTo(6L);
+		assertThat(StatsRecording.applyAsDouble(recorder, value -> value / 2.0, 3.0)).isEqualTo(1.5);
+
+		final Statistics stats = recorder.takeSnapshot();
+		assertThat(stats.getSuccessCount()).isEqualTo(12L);
+		assertThat(stats.getErrorCount()).isEqualTo(0L);
+	}
+
+	@Theory
+	public void helpers_recordAndRethrowFailures(final RuntimeException exp) {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		try {
+			StatsRecording.run(recorder, () -> {
+				throw exp;
+			});
+			fail("Exception should have been rethrown");
+		} catch (final RuntimeException thrown) {
+			assertThat(thrown).isSameAs(exp);
+		}
+		try {
+			StatsRecording.applyAsLong(recorder, value -> {
+				throw exp;
+			}, 1L);
+			fail("Exception should have been rethrown");
+		} catch (final RuntimeException thrown) {
+			assertThat(thrown).isSameAs(exp);
+		}
+
+		final Statistics stats = recorder.takeSnapshot();
+		assertThat(stats.getSuccessCount()).isEqualTo(0L);
+		assertThat(stats.getErrorStatistics().getCountOfExceptionTypes()).containsEntry(exp.getClass(), 2L);
+	}
+
+	@Theory
+	public void helpers_recordCancellationAsOutcome() {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		try {
+			StatsRecording.get(recorder, () -> {
+				throw new CancellationException();
+			});
+			fail("Exception should have been rethrown");
+		} catch (final CancellationException exp) {
+			//Expected
+		}
+
+		final Statistics stats = recorder.takeSnapshot();
+		assertThat(stats.getCancelledCount()).isEqualTo(1L);
+		assertThat(stats.getErrorCount()).isEqualTo(0L);
+	}
+}
@@ -0,0 +1,109 @@
+package com.paloski.statistics.stream;
+
+import com.paloski.statistics.Statistics;
+import com.paloski.statistics.StatisticsRecorder;
+
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.FromDataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(Theories.class)
+public final class RecordingStreamsTest {
+
+	public static final String DATA_POINTS__SIZES = "Data-Points::sizes";
+	public static final String DATA_POINTS__PARALLEL = "Data-Points::parallel";
+
+	@DataPoints(DATA_POINTS__SIZES)
+	public static List<Long> getSizes() {
+		return Arrays.asList(0L, 1L, 100L, 100000L);
+	}
+
+	@DataPoints(DATA_POINTS__PARALLEL)
+	public static List<Boolean> getParallel() {
+		return Arrays.asList(false, true);
+	}
+
+	private static Stream<Long> numbers(final long size, final boolean parallel) {
+		final Stream<Long> stream = LongStream.range(0L, size).boxed();
+		return parallel ? stream.parallel() : stream;
+	}
+
+	@Theory
+	public void map_recordsSuccessesAndFailuresOfEveryElement(@FromDataPoints(DATA_POINTS__SIZES) final Long size,
+															  @FromDataPoints(DATA_POINTS__PARALLEL) final Boolean parallel) {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final List<Long> mapped = RecordingStreams.map(recorder, numbers(size, parallel), value -> {
+			if (value % 3L == 0L) {
+				throw new IllegalStateException();
+			}
+			return value * 2L;
+		}).collect(Collectors.toList());
+
+		final long failures = (size + 2L) / 3L;
+		assertThat(mapped).hasSize((int) (size - failures));
+		assertThat(mapped).doesNotContain(0L);
+		final Statistics stats = recorder.takeSnapshot();
+		assertThat(stats.getSuccessCount()).isEqualTo(size - failures);
+		assertThat(stats.getErrorCount()).isEqualTo(failures);
+		if (failures != 0L) {
+			assertThat(stats.getErrorStatistics().getCountOfExceptionTypes()).containsEntry(IllegalStateException.class, failures);
+		}
+	}
+
+	@Theory
+	public void map_preservesEncounterOrderAndNullResults(@FromDataPoints(DATA_POINTS__PARALLEL) final Boolean parallel) {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final List<String> mapped = RecordingStreams.map(recorder, numbers(4L, parallel), value -> value == 2L ? null : "v" + value)
+													.collect(Collectors.toList());
+
+		assertThat(mapped).containsExactly("v0", "v1", null, "v3");
+		assertThat(recorder.takeSnapshot().getSuccessCount()).isEqualTo(4L);
+	}
+
+	@Theory
+	public void map_shortCircuitedStreamCommitsWhenClosed(@FromDataPoints(DATA_POINTS__PARALLEL) final Boolean parallel) {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final AtomicLong mappedCount = new AtomicLong();
+		final Optional<Long> first;
+		try (final Stream<Long> stream = RecordingStreams.map(recorder, numbers(100000L, parallel), value -> {
+			mappedCount.incrementAndGet();
+			return value;
+		})) {
+			first = stream.filter(value -> value >= 10L).findFirst();
+		}
+
+		assertThat(first.get()).isEqualTo(10L);
+		assertThat(recorder.takeSnapshot().getSuccessCount()).isEqualTo(mappedCount.get());
+	}
+
+	@Theory
+	public void forEach_recordsEveryElement(@FromDataPoints(DATA_POINTS__SIZES) final Long size,
+											@FromDataPoints(DATA_POINTS__PARALLEL) final Boolean parallel) {
+		final StatisticsRecorder recorder = StatisticsRecorder.newRecorder();
+		final AtomicLong sum = new AtomicLong();
+		RecordingStreams.forEach(recorder, numbers(size, parallel), value -> {
+			if (value % 2L == 1L) {
+				throw new IllegalArgumentException();
+			}
+			sum.addAndGet(value);
+		});
+
+		final long failures = size / 2L;
+		final Statistics stats = recorder.takeSnapshot();
+		assertThat(stats.getSuccessCount()).isEqualTo(size - failures);
+		assertThat(stats.getErrorCount()).isEqualTo(failures);
+		assertThat(sum.get()).isEqualTo(LongStream.range(0L, size).filter(value -> value % 2L == 0L).sum());
+	}
+}